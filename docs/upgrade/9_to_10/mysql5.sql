@@ -0,0 +1,19 @@
+-- Create the footprint histograms of media packages from the footprints recorded so far.
+-- Run this before starting Opencast 10, footprints recorded afterwards update the histograms themselves.
+CREATE TABLE IF NOT EXISTS oc_user_footprint_delta (
+  mediapackage VARCHAR(128) NOT NULL,
+  position INT NOT NULL,
+  delta INT NOT NULL,
+  PRIMARY KEY (mediapackage, position)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+
+INSERT INTO oc_user_footprint_delta (mediapackage, position, delta)
+  SELECT mediapackage, position, SUM(delta) FROM (
+    SELECT mediapackage, inpoint AS position, 1 AS delta FROM oc_user_action
+      WHERE type = 'FOOTPRINT' AND mediapackage IS NOT NULL AND inpoint >= 0 AND outpoint > inpoint
+    UNION ALL
+    SELECT mediapackage, outpoint AS position, -1 AS delta FROM oc_user_action
+      WHERE type = 'FOOTPRINT' AND mediapackage IS NOT NULL AND inpoint >= 0 AND outpoint > inpoint
+  ) footprints
+  GROUP BY mediapackage, position
+  HAVING SUM(delta) <> 0;
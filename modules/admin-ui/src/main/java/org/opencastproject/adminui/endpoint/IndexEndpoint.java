@@ -21,8 +21,16 @@
 
 package org.opencastproject.adminui.endpoint;
 
+import static com.entwinemedia.fn.data.json.Jsons.arr;
+import static com.entwinemedia.fn.data.json.Jsons.f;
+import static com.entwinemedia.fn.data.json.Jsons.obj;
+import static com.entwinemedia.fn.data.json.Jsons.v;
+import static org.opencastproject.util.DateTimeSupport.toUTC;
+
 import org.opencastproject.adminui.index.AdminUISearchIndex;
+import org.opencastproject.index.rebuild.IndexRebuildProgress;
 import org.opencastproject.index.rebuild.IndexRebuildService;
+import org.opencastproject.index.service.util.RestUtils;
 import org.opencastproject.security.api.SecurityService;
 import org.opencastproject.security.util.SecurityContext;
 import org.opencastproject.util.RestUtil.R;
@@ -31,17 +39,25 @@ import org.opencastproject.util.doc.rest.RestQuery;
 import org.opencastproject.util.doc.rest.RestResponse;
 import org.opencastproject.util.doc.rest.RestService;
 
+import com.entwinemedia.fn.data.json.JValue;
+import com.entwinemedia.fn.data.json.Jsons;
+
 import org.osgi.service.component.ComponentContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
 /**
@@ -157,4 +173,64 @@ public class IndexEndpoint {
     }));
     return R.ok();
   }
+
+  @POST
+  @Path("resumeIndex")
+  @RestQuery(name = "resumeIndex", description = "Resumes an interrupted repopulation of the Admin UI Index, skipping "
+    + "the services and elements that have been re-added already",
+    returnDescription = "OK if repopulation has been resumed", responses = {
+    @RestResponse(description = "OK if repopulation has been resumed", responseCode = HttpServletResponse.SC_OK),
+    @RestResponse(description = "There is no interrupted repopulation to resume",
+      responseCode = HttpServletResponse.SC_CONFLICT) })
+  public Response resumeIndex() {
+    if (!indexRebuildService.isResumable(adminUISearchIndex)) {
+      return R.conflict();
+    }
+    final SecurityContext securityContext = new SecurityContext(securityService, securityService.getOrganization(),
+            securityService.getUser());
+    executor.execute(() -> securityContext.runInContext(() -> {
+      try {
+        logger.info("Resuming to repopulate the index");
+        indexRebuildService.resumeIndexRebuild(adminUISearchIndex);
+      } catch (Throwable t) {
+        logger.error("Repopulating the index failed", t);
+      }
+    }));
+    return R.ok();
+  }
+
+  @GET
+  @Path("rebuildProgress")
+  @Produces(MediaType.APPLICATION_JSON)
+  @RestQuery(name = "rebuildProgress", description = "Returns the progress of the running or last repopulation of "
+    + "the Admin UI Index, broken down by service",
+    returnDescription = "The progress as JSON", responses = {
+    @RestResponse(description = "The progress of the repopulation", responseCode = HttpServletResponse.SC_OK),
+    @RestResponse(description = "The index hasn't been repopulated since startup",
+      responseCode = HttpServletResponse.SC_NOT_FOUND) })
+  public Response getRebuildProgress() {
+    final IndexRebuildProgress progress = indexRebuildService.getProgress(adminUISearchIndex.getIndexName());
+    if (progress == null) {
+      return R.notFound();
+    }
+    final List<JValue> services = new ArrayList<>();
+    for (IndexRebuildProgress.ServiceProgress service : progress.getServices()) {
+      services.add(obj(
+              f("service", v(service.getService().name())),
+              f("state", v(service.getState().name())),
+              f("total", v(service.getTotal())),
+              f("indexed", v(service.getIndexed())),
+              f("skipped", v(service.getSkipped())),
+              f("failed", v(service.getFailed()))));
+    }
+    final String finished = progress.getFinished() != null ? toUTC(progress.getFinished().getTime()) : null;
+    return RestUtils.okJson(obj(
+            f("index", v(progress.getIndexName())),
+            f("state", v(progress.getState().name())),
+            f("resumed", v(progress.isResumed())),
+            f("resumable", v(indexRebuildService.isResumable(adminUISearchIndex))),
+            f("started", v(toUTC(progress.getStarted().getTime()))),
+            f("finished", v(finished, Jsons.BLANK)),
+            f("services", arr(services))));
+  }
 }
@@ -76,8 +76,15 @@ import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Core implementation of the asset manager interface.
@@ -106,6 +113,34 @@ public abstract class AbstractAssetManager implements AssetManager {
   /** Return the organization ID of the currently executing thread. */
   protected abstract String getCurrentOrgId();
 
+  /**
+   * Wraps a task so that it runs in the security context of the currently executing thread when it is handed to a
+   * snapshot worker. The task is returned unchanged by default.
+   */
+  protected Runnable inCurrentContext(Runnable task) {
+    return task;
+  }
+
+  /* ------------------------------------------------------------------------------------------------------------------ */
+
+  /** Computes missing checksums and stores the assets of snapshots, <code>null</code> to use the calling thread */
+  private volatile ExecutorService snapshotWorkers = null;
+
+  /**
+   * Sets the number of threads computing missing checksums and storing the assets of a snapshot in parallel. Snapshots
+   * currently being taken finish on the previous threads.
+   *
+   * @param workers
+   *          the number of threads, a value below 2 takes snapshots on the calling thread
+   */
+  public synchronized void setSnapshotWorkers(int workers) {
+    final ExecutorService previous = snapshotWorkers;
+    snapshotWorkers = workers > 1 ? Executors.newFixedThreadPool(workers) : null;
+    if (previous != null) {
+      previous.shutdown();
+    }
+  }
+
   /* ------------------------------------------------------------------------------------------------------------------ */
 
   @Override
@@ -246,9 +281,7 @@ public abstract class AbstractAssetManager implements AssetManager {
     final VersionImpl version = getDb().claimVersion(mpId);
     logger.info("Creating new version {} of media package {}", version, mp);
     final PartialMediaPackage pmp = assetsOnly(mp);
-    // make sure they have a checksum
-    calcChecksumsForMediaPackageElements(pmp);
-    // download and archive elements
+    // make sure they have a checksum, then download and archive elements
     storeAssets(pmp, version);
     // store mediapackage in db
     final SnapshotDto snapshotDto;
@@ -267,6 +300,13 @@ public abstract class AbstractAssetManager implements AssetManager {
 
   private final Fx<MediaPackageElement> addChecksum = new Fx<MediaPackageElement>() {
     @Override public void apply(MediaPackageElement mpe) {
+      // reuse a checksum the working file repository already computed instead of reading the file again
+      final Checksum known = getWorkspace().getChecksum(mpe.getURI());
+      if (known != null) {
+        logger.trace("Reuse known checksum for {}", mpe.getURI());
+        mpe.setChecksum(known);
+        return;
+      }
       File file = null;
       try {
         logger.trace("Calculate checksum for {}", mpe.getURI());
@@ -283,28 +323,79 @@ public abstract class AbstractAssetManager implements AssetManager {
   };
 
   /**
-   * Store all elements of <code>pmp</code> under the given version.
+   * Store all elements of <code>pmp</code> under the given version, computing missing checksums first. The elements are
+   * processed in parallel if snapshot workers are configured, so hashing one element overlaps with storing another.
    */
   private void storeAssets(final PartialMediaPackage pmp, final Version version) throws Exception {
     final String mpId = pmp.getMediaPackage().getIdentifier().toString();
     final String orgId = getCurrentOrgId();
+    final ExecutorService workers = snapshotWorkers;
+    final AtomicBoolean failed = new AtomicBoolean(false);
+    final List<CompletableFuture<Void>> stored = new ArrayList<>();
     for (final MediaPackageElement e : pmp.getElements()) {
-      logger.debug("Archiving {} {} {}", e.getFlavor(), e.getMimeType(), e.getURI());
       final StoragePath storagePath = StoragePath.mk(orgId, mpId, version, e.getIdentifier());
-      final Opt<StoragePath> existingAssetOpt = findAssetInVersions(e.getChecksum().toString());
-      if (existingAssetOpt.isSome()) {
-        final StoragePath existingAsset = existingAssetOpt.get();
-        logger.debug("Content of asset {} with checksum {} has been archived before",
-                    existingAsset.getMediaPackageElementId(), e.getChecksum());
-        if (!getLocalAssetStore().copy(existingAsset, storagePath)) {
-          throw new AssetManagerException(
-                  format("An asset with checksum %s has already been archived but trying to copy or link asset %s to it failed",
-                         e.getChecksum(), existingAsset));
+      final CompletableFuture<Void> future = new CompletableFuture<>();
+      stored.add(future);
+      final Runnable task = () -> {
+        // do not start on further elements once an element failed
+        if (failed.get()) {
+          future.complete(null);
+          return;
         }
-      } else {
-        final Opt<Long> size = e.getSize() > 0 ? Opt.some(e.getSize()) : Opt.<Long>none();
-        getLocalAssetStore().put(storagePath, Source.mk(e.getURI(), size, Opt.nul(e.getMimeType())));
+        try {
+          storeAsset(e, storagePath);
+          future.complete(null);
+        } catch (Throwable t) {
+          failed.set(true);
+          future.completeExceptionally(t);
+        }
+      };
+      if (workers != null) {
+        try {
+          workers.execute(inCurrentContext(task));
+          continue;
+        } catch (RejectedExecutionException ex) {
+          // the workers are being reconfigured, fall back to the calling thread
+        }
+      }
+      task.run();
+    }
+    // wait for all elements, so no asset is written after the snapshot failed
+    Exception failure = null;
+    for (CompletableFuture<Void> future : stored) {
+      try {
+        future.get();
+      } catch (ExecutionException ex) {
+        if (failure == null)
+          failure = ex.getCause() instanceof Exception ? (Exception) ex.getCause() : ex;
+      }
+    }
+    if (failure != null)
+      throw failure;
+  }
+
+  /**
+   * Store a single element, computing its checksum if it does not have one yet. Content that has been archived before
+   * is copied or linked instead of being stored again.
+   */
+  private void storeAsset(final MediaPackageElement e, final StoragePath storagePath) throws Exception {
+    if (e.getChecksum() == null) {
+      addChecksum.apply(e);
+    }
+    logger.debug("Archiving {} {} {}", e.getFlavor(), e.getMimeType(), e.getURI());
+    final Opt<StoragePath> existingAssetOpt = findAssetInVersions(e.getChecksum().toString());
+    if (existingAssetOpt.isSome()) {
+      final StoragePath existingAsset = existingAssetOpt.get();
+      logger.debug("Content of asset {} with checksum {} has been archived before",
+                  existingAsset.getMediaPackageElementId(), e.getChecksum());
+      if (!getLocalAssetStore().copy(existingAsset, storagePath)) {
+        throw new AssetManagerException(
+                format("An asset with checksum %s has already been archived but trying to copy or link asset %s to it failed",
+                       e.getChecksum(), existingAsset));
       }
+    } else {
+      final Opt<Long> size = e.getSize() > 0 ? Opt.some(e.getSize()) : Opt.<Long>none();
+      getLocalAssetStore().put(storagePath, Source.mk(e.getURI(), size, Opt.nul(e.getMimeType())));
     }
   }
 
@@ -36,6 +36,7 @@ import org.opencastproject.assetmanager.impl.storage.AssetStore;
 import org.opencastproject.assetmanager.impl.storage.RemoteAssetStore;
 import org.opencastproject.index.rebuild.AbstractIndexProducer;
 import org.opencastproject.index.rebuild.IndexProducer;
+import org.opencastproject.index.rebuild.IndexRebuildContext;
 import org.opencastproject.index.rebuild.IndexRebuildException;
 import org.opencastproject.index.rebuild.IndexRebuildService;
 import org.opencastproject.mediapackage.MediaPackage;
@@ -55,6 +56,7 @@ import org.opencastproject.workspace.api.Workspace;
 import com.entwinemedia.fn.data.Opt;
 
 import org.apache.commons.lang3.BooleanUtils;
+import org.apache.commons.lang3.math.NumberUtils;
 import org.apache.commons.lang3.text.WordUtils;
 import org.osgi.service.component.ComponentContext;
 import org.osgi.service.component.annotations.Activate;
@@ -96,6 +98,12 @@ public class OsgiAssetManager extends AbstractIndexProducer implements AssetMana
    */
   private static final Logger logger = LoggerFactory.getLogger(OsgiAssetManager.class);
 
+  /** Configuration key for the number of threads computing checksums and storing assets of a snapshot */
+  private static final String SNAPSHOT_WORKERS_KEY = "snapshot.workers";
+
+  /** The default number of snapshot workers */
+  private static final int DEFAULT_SNAPSHOT_WORKERS = 4;
+
   private SecurityService secSvc;
   private AuthorizationService authSvc;
   private OrganizationDirectoryService orgDir;
@@ -174,7 +182,16 @@ public class OsgiAssetManager extends AbstractIndexProducer implements AssetMana
       protected String getCurrentOrgId() {
         return secSvc.getOrganization().getId();
       }
+
+      @Override
+      protected Runnable inCurrentContext(Runnable task) {
+        final Organization org = secSvc.getOrganization();
+        final User user = secSvc.getUser();
+        return () -> SecurityUtil.runAs(secSvc, org, user, task);
+      }
     };
+    core.setSnapshotWorkers(NumberUtils.toInt(Objects.toString(cc.getProperties().get(SNAPSHOT_WORKERS_KEY), null),
+            DEFAULT_SNAPSHOT_WORKERS));
     // compose with ActiveMQ messaging
     withMessaging = new AssetManagerWithMessaging(core, messageSender, authSvc, workspace);
     // compose with security
@@ -191,6 +208,7 @@ public class OsgiAssetManager extends AbstractIndexProducer implements AssetMana
     toClose = new AutoCloseable() {
       @Override
       public void close() throws Exception {
+        core.setSnapshotWorkers(0);
         withMessaging.close();
       }
     };
@@ -435,6 +453,12 @@ public class OsgiAssetManager extends AbstractIndexProducer implements AssetMana
 
   @Override
   public void repopulate(final String indexName) throws IndexRebuildException {
+    repopulate(IndexRebuildContext.sequential(indexName, getService()));
+  }
+
+  @Override
+  public void repopulate(final IndexRebuildContext context) throws IndexRebuildException {
+    final String indexName = context.getIndexName();
     final Organization org = secSvc.getOrganization();
     final User user = (org != null ? secSvc.getUser() : null);
     try {
@@ -446,27 +470,26 @@ public class OsgiAssetManager extends AbstractIndexProducer implements AssetMana
       final AQueryBuilder q = delegate.createQuery();
       final RichAResult r = enrich(q.select(q.snapshot()).where(q.version().isLatest()).run());
       final int total = r.countSnapshots();
-      int current = 0;
       logIndexRebuildBegin(logger, indexName, total, "snapshot(s)");
+      context.setTotal(total);
 
       final Map<String, List<Snapshot>> byOrg = r.getSnapshots().groupMulti(Snapshots.getOrganizationId);
       for (String orgId : byOrg.keySet()) {
         final Organization snapshotOrg;
         try {
           snapshotOrg = orgDir.getOrganization(orgId);
-          secSvc.setOrganization(snapshotOrg);
-          secSvc.setUser(SecurityUtil.createSystemUser(systemUserName, snapshotOrg));
+          final User snapshotUser = SecurityUtil.createSystemUser(systemUserName, snapshotOrg);
 
           for (Snapshot snapshot : byOrg.get(orgId)) {
-            current += 1;
-            try {
+            final String mpId = snapshot.getMediaPackage().getIdentifier().toString();
+            // Updates are written from the threads of the rebuild, so each one sets up its own security context
+            context.submit(mpId, mpId, () -> SecurityUtil.runAs(secSvc, snapshotOrg, snapshotUser, () -> {
+              final String destinationId = AssetManagerItem.ASSETMANAGER_QUEUE_PREFIX
+                      + WordUtils.capitalize(indexName);
               AssetManagerItem.TakeSnapshot takeSnapshot = withMessaging.mkTakeSnapshotMessage(snapshot, null);
-              messageSender.sendObjectMessage(AssetManagerItem.ASSETMANAGER_QUEUE_PREFIX + WordUtils.capitalize(indexName),
-                      MessageSender.DestinationType.Queue, takeSnapshot);
-            } catch (Throwable t) {
-              logSkippingElement(logger, "event", snapshot.getMediaPackage().getIdentifier().toString(), org, t);
-            }
-            logIndexRebuildProgress(logger, indexName, total, current);
+              context.write(destinationId, takeSnapshot, () -> messageSender.sendObjectMessage(destinationId,
+                      MessageSender.DestinationType.Queue, takeSnapshot));
+            }));
           }
         } catch (Throwable t) {
           logIndexRebuildError(logger, indexName, t, org);
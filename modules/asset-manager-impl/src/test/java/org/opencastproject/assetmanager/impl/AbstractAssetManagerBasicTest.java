@@ -23,6 +23,7 @@ package org.opencastproject.assetmanager.impl;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.opencastproject.assetmanager.api.fn.ARecords.getProperties;
@@ -31,6 +32,7 @@ import org.opencastproject.assetmanager.api.AssetManagerException;
 import org.opencastproject.assetmanager.api.Availability;
 import org.opencastproject.assetmanager.api.Property;
 import org.opencastproject.assetmanager.api.PropertyId;
+import org.opencastproject.assetmanager.api.Snapshot;
 import org.opencastproject.assetmanager.api.Value;
 import org.opencastproject.assetmanager.api.Version;
 import org.opencastproject.assetmanager.api.query.AResult;
@@ -59,6 +61,22 @@ public class AbstractAssetManagerBasicTest extends AbstractAssetManagerTestBase
     assertStoreSize(8);
   }
 
+  @Test
+  public void testTakeSnapshotWithSnapshotWorkers() throws Exception {
+    am.setSnapshotWorkers(4);
+    try {
+      final MediaPackage mp = mkMediaPackage(mkCatalog(), mkCatalog(), mkCatalog(), mkCatalog(), mkCatalog());
+      final Snapshot snapshot = am.takeSnapshot(OWNER, mp);
+      for (MediaPackageElement e : snapshot.getMediaPackage().getElements()) {
+        assertNotNull("Checksum of " + e.getIdentifier(), e.getChecksum());
+      }
+      // five catalogs and the manifest
+      assertStoreSize(6);
+    } finally {
+      am.setSnapshotWorkers(0);
+    }
+  }
+
   @Test
   public void testQuerydslEquality() {
     final QSnapshotDto dto1 = QSnapshotDto.snapshotDto;
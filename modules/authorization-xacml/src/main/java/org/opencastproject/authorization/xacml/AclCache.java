@@ -0,0 +1,163 @@
+/**
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.authorization.xacml;
+
+import org.opencastproject.security.api.AccessControlList;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache of parsed access control lists, evicting the least recently used ones.
+ * <p>
+ * Entries are keyed by what identifies the content of a policy, like the checksum or a digest of the XACML document,
+ * so they never need to be invalidated.
+ */
+final class AclCache implements AclCacheMXBean {
+
+  private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+      return size() > maxSize;
+    }
+  };
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private volatile int maxSize;
+
+  AclCache(int maxSize) {
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * Sets the maximum number of cached access control lists. A size of 0 disables the cache.
+   */
+  synchronized void setMaxSize(int maxSize) {
+    this.maxSize = Math.max(0, maxSize);
+    if (entries.size() > this.maxSize) {
+      entries.clear();
+    }
+  }
+
+  /**
+   * Looks up an access control list, counting a hit if it is found.
+   *
+   * @return the cached entry or <code>null</code>
+   */
+  Entry get(String key) {
+    final Entry entry;
+    synchronized (this) {
+      entry = entries.get(key);
+    }
+    if (entry != null) {
+      hits.increment();
+    }
+    return entry;
+  }
+
+  /**
+   * Caches an access control list that has just been parsed or merged, counting a miss.
+   *
+   * @return the cached entry
+   */
+  Entry put(String key, AccessControlList acl) {
+    misses.increment();
+    final Entry entry = new Entry(key, acl);
+    synchronized (this) {
+      if (maxSize > 0) {
+        entries.put(key, entry);
+      }
+    }
+    return entry;
+  }
+
+  @Override
+  public synchronized int getSize() {
+    return entries.size();
+  }
+
+  @Override
+  public int getMaxSize() {
+    return maxSize;
+  }
+
+  @Override
+  public long getHits() {
+    return hits.sum();
+  }
+
+  @Override
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  @Override
+  public double getHitRate() {
+    final long hitCount = hits.sum();
+    final long total = hitCount + misses.sum();
+    return total == 0 ? 0 : (double) hitCount / total;
+  }
+
+  @Override
+  public synchronized void clear() {
+    entries.clear();
+  }
+
+  /**
+   * A parsed access control list along with its precomputed permissions. The list is never handed out directly, since
+   * access control lists are mutable.
+   */
+  static final class Entry {
+
+    private final String key;
+    private final AccessControlList acl;
+    private final AclPermissions permissions;
+
+    Entry(String key, AccessControlList acl) {
+      this.key = key;
+      this.acl = new AccessControlList(acl.getEntries());
+      this.permissions = new AclPermissions(this.acl);
+    }
+
+    /**
+     * @return the key identifying the content of the access control list
+     */
+    String getKey() {
+      return key;
+    }
+
+    /**
+     * @return a copy of the access control list
+     */
+    AccessControlList getAcl() {
+      return new AccessControlList(new ArrayList<>(acl.getEntries()));
+    }
+
+    AclPermissions getPermissions() {
+      return permissions;
+    }
+  }
+
+}
@@ -0,0 +1,59 @@
+/**
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.authorization.xacml;
+
+/**
+ * JMX statistics of the cache of parsed XACML policies.
+ */
+public interface AclCacheMXBean {
+
+  /**
+   * @return the number of cached access control lists
+   */
+  int getSize();
+
+  /**
+   * @return the maximum number of cached access control lists
+   */
+  int getMaxSize();
+
+  /**
+   * @return the number of access control lists served from the cache
+   */
+  long getHits();
+
+  /**
+   * @return the number of access control lists that had to be parsed or merged
+   */
+  long getMisses();
+
+  /**
+   * @return the share of access control lists served from the cache, between 0 and 1
+   */
+  double getHitRate();
+
+  /**
+   * Removes all entries from the cache.
+   */
+  void clear();
+
+}
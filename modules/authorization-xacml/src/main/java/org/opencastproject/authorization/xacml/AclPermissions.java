@@ -0,0 +1,90 @@
+/**
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.authorization.xacml;
+
+import org.opencastproject.security.api.AccessControlEntry;
+import org.opencastproject.security.api.AccessControlList;
+import org.opencastproject.security.api.Role;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The rules of an access control list, precomputed as one set of allowed and one set of denied actions per role.
+ * Checking a permission then only takes a lookup per role of the user instead of comparing every entry of the list
+ * with every role.
+ */
+final class AclPermissions {
+
+  /** The bit of each action */
+  private final Map<String, Integer> actions = new HashMap<>();
+
+  /** The actions explicitly allowed per role */
+  private final Map<String, BitSet> allowed = new HashMap<>();
+
+  /** The actions explicitly denied per role */
+  private final Map<String, BitSet> denied = new HashMap<>();
+
+  AclPermissions(AccessControlList acl) {
+    for (AccessControlEntry entry : acl.getEntries()) {
+      if (entry.getRole() == null || entry.getAction() == null) {
+        continue;
+      }
+      Integer bit = actions.get(entry.getAction());
+      if (bit == null) {
+        bit = actions.size();
+        actions.put(entry.getAction(), bit);
+      }
+      (entry.isAllow() ? allowed : denied).computeIfAbsent(entry.getRole(), role -> new BitSet()).set(bit);
+    }
+  }
+
+  /**
+   * Checks whether any of the given roles is allowed to perform an action. A matching deny rule always takes precedence
+   * over matching allow rules.
+   *
+   * @param roles
+   *          the roles of the user
+   * @param action
+   *          the action to check
+   * @return whether the action is allowed
+   */
+  boolean hasPermission(Collection<Role> roles, String action) {
+    final Integer bit = actions.get(action);
+    if (bit == null) {
+      return false;
+    }
+    boolean allow = false;
+    for (Role role : roles) {
+      final BitSet deniedActions = denied.get(role.getName());
+      if (deniedActions != null && deniedActions.get(bit)) {
+        return false;
+      }
+      final BitSet allowedActions = allowed.get(role.getName());
+      allow |= allowedActions != null && allowedActions.get(bit);
+    }
+    return allow;
+  }
+
+}
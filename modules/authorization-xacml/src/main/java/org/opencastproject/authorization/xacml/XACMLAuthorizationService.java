@@ -31,17 +31,17 @@ import org.opencastproject.mediapackage.MediaPackageElementBuilderFactory;
 import org.opencastproject.mediapackage.MediaPackageElementFlavor;
 import org.opencastproject.mediapackage.MediaPackageException;
 import org.opencastproject.mediapackage.MediaPackageSerializer;
-import org.opencastproject.security.api.AccessControlEntry;
 import org.opencastproject.security.api.AccessControlList;
 import org.opencastproject.security.api.AclScope;
 import org.opencastproject.security.api.AuthorizationService;
-import org.opencastproject.security.api.Role;
 import org.opencastproject.security.api.SecurityService;
 import org.opencastproject.security.api.User;
 import org.opencastproject.series.api.SeriesService;
+import org.opencastproject.util.Checksum;
 import org.opencastproject.util.MimeTypes;
 import org.opencastproject.util.NotFoundException;
 import org.opencastproject.util.data.Tuple;
+import org.opencastproject.util.jmx.JmxUtil;
 import org.opencastproject.workspace.api.Workspace;
 
 import org.apache.commons.io.IOUtils;
@@ -50,21 +50,25 @@ import org.osgi.service.cm.ManagedService;
 import org.osgi.service.component.ComponentContext;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
 import org.osgi.service.component.annotations.Modified;
 import org.osgi.service.component.annotations.Reference;
 import org.osgi.service.component.annotations.ReferenceCardinality;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.security.MessageDigest;
 import java.util.Arrays;
 import java.util.Dictionary;
 import java.util.Map;
 import java.util.Optional;
 
+import javax.management.ObjectInstance;
 import javax.xml.bind.JAXBException;
 
 /**
@@ -98,6 +102,20 @@ public class XACMLAuthorizationService implements AuthorizationService, ManagedS
 
   private static final String CONFIG_MERGE_MODE = "merge.mode";
 
+  private static final String CONFIG_CACHE_SIZE = "cache.size";
+
+  /** The default maximum number of parsed ACLs to keep */
+  private static final int DEFAULT_CACHE_SIZE = 1000;
+
+  /** The JMX type of the ACL cache statistics */
+  private static final String JMX_ACL_CACHE_TYPE = "XACMLAclCache";
+
+  /** Parsed ACLs, keyed by the content of the XACML attachments */
+  final AclCache aclCache = new AclCache(DEFAULT_CACHE_SIZE);
+
+  /** The registered ACL cache statistics */
+  private ObjectInstance registeredMXBean;
+
   /** Definition of how merging of series and episode ACLs work */
   private static MergeMode mergeMode = MergeMode.OVERRIDE;
 
@@ -108,6 +126,13 @@ public class XACMLAuthorizationService implements AuthorizationService, ManagedS
   @Activate
   public void activate(ComponentContext cc) {
     updated(cc.getProperties());
+    registeredMXBean = JmxUtil.registerMXBean(aclCache, JMX_ACL_CACHE_TYPE);
+  }
+
+  @Deactivate
+  public void deactivate() {
+    JmxUtil.unregisterMXBean(registeredMXBean);
+    aclCache.clear();
   }
 
   @Modified
@@ -126,6 +151,7 @@ public class XACMLAuthorizationService implements AuthorizationService, ManagedS
     if (properties == null) {
       mergeMode = MergeMode.OVERRIDE;
       logger.debug("Merge mode set to {}", mergeMode);
+      aclCache.setMaxSize(DEFAULT_CACHE_SIZE);
       return;
     }
     final String mode = StringUtils.defaultIfBlank((String) properties.get(CONFIG_MERGE_MODE),
@@ -137,6 +163,18 @@ public class XACMLAuthorizationService implements AuthorizationService, ManagedS
       mergeMode = MergeMode.OVERRIDE;
     }
     logger.debug("Merge mode set to {}", mergeMode);
+
+    int cacheSize = DEFAULT_CACHE_SIZE;
+    final String size = StringUtils.trimToNull((String) properties.get(CONFIG_CACHE_SIZE));
+    if (size != null) {
+      try {
+        cacheSize = Integer.parseInt(size);
+      } catch (NumberFormatException e) {
+        logger.warn("Invalid value set for ACL cache size, defaulting to {}", DEFAULT_CACHE_SIZE);
+      }
+    }
+    aclCache.setMaxSize(cacheSize);
+    logger.debug("ACL cache size set to {}", cacheSize);
   }
 
   @Override
@@ -147,47 +185,54 @@ public class XACMLAuthorizationService implements AuthorizationService, ManagedS
 
   @Override
   public Tuple<AccessControlList, AclScope> getAcl(final MediaPackage mp, final AclScope scope) {
-    Optional<AccessControlList> episode = Optional.empty();
-    Optional<AccessControlList> series = Optional.empty();
+    final Tuple<AclCache.Entry, AclScope> acl = getCachedAcl(mp, scope);
+    if (acl.getA() == null) {
+      return tuple(new AccessControlList(), acl.getB());
+    }
+    return tuple(acl.getA().getAcl(), acl.getB());
+  }
+
+  /**
+   * Get the ACL of the given scope like {@link #getAcl(MediaPackage, AclScope)} does, but as cache entry.
+   *
+   * @return the cache entry, or <code>null</code> if the global default ACL applies, along with the scope
+   */
+  private Tuple<AclCache.Entry, AclScope> getCachedAcl(final MediaPackage mp, final AclScope scope) {
+    Optional<AclCache.Entry> episode = Optional.empty();
+    Optional<AclCache.Entry> series = Optional.empty();
 
     // Start with the requested scope but fall back to the less specific scope if it does not exist.
     // The order is: episode -> series -> general (deprecated) -> global
     if (AclScope.Episode.equals(scope) || AclScope.Merged.equals(scope)) {
       for (Attachment xacml : mp.getAttachments(XACML_POLICY_EPISODE)) {
-        URI uri = xacml.getURI();
-        try {
-          if (serializer != null) uri = serializer.decodeURI(uri);
-        } catch (URISyntaxException e) {
-          logger.warn("URI {} syntax error, skip decoding", uri);
-        }
-        episode = loadAcl(uri);
+        episode = loadAcl(xacml);
       }
     }
     if (Arrays.asList(AclScope.Episode, AclScope.Series, AclScope.Merged).contains(scope)) {
       for (Attachment xacml : mp.getAttachments(XACML_POLICY_SERIES)) {
-        URI uri = xacml.getURI();
-        try {
-          if (serializer != null) uri = serializer.decodeURI(uri);
-        } catch (URISyntaxException e) {
-          logger.warn("URI {} syntax error, skip decoding", uri);
-        }
-        series = loadAcl(uri);
+        series = loadAcl(xacml);
       }
     }
 
     if (episode.isPresent() && series.isPresent()) {
       logger.debug("Found event and series ACL for media package {}", mp.getIdentifier());
-      switch (mergeMode) {
-        case ACTIONS:
+      final MergeMode mode = mergeMode;
+      if (mode == MergeMode.OVERRIDE) {
+        logger.debug("Episode ACL overrides series ACL");
+        return tuple(episode.get(), AclScope.Merged);
+      }
+      final String key = "merged:" + mode + ":" + series.get().getKey() + ":" + episode.get().getKey();
+      AclCache.Entry merged = aclCache.get(key);
+      if (merged == null) {
+        if (mode == MergeMode.ACTIONS) {
           logger.debug("Merging ACLs based on individual actions");
-          return tuple(series.get().mergeActions(episode.get()), AclScope.Merged);
-        case ROLES:
+          merged = aclCache.put(key, series.get().getAcl().mergeActions(episode.get().getAcl()));
+        } else {
           logger.debug("Merging ACLs based on roles");
-          return tuple(series.get().merge(episode.get()), AclScope.Merged);
-        default:
-          logger.debug("Episode ACL overrides series ACL");
-          return tuple(episode.get(), AclScope.Merged);
+          merged = aclCache.put(key, series.get().getAcl().merge(episode.get().getAcl()));
+        }
       }
+      return tuple(merged, AclScope.Merged);
     }
     if (episode.isPresent()) {
       logger.debug("Found event ACL for media package {}", mp.getIdentifier());
@@ -199,7 +244,7 @@ public class XACMLAuthorizationService implements AuthorizationService, ManagedS
     }
 
     logger.debug("Falling back to global default ACL");
-    return tuple(new AccessControlList(), AclScope.Global);
+    return tuple(null, AclScope.Global);
   }
 
   @Override
@@ -291,14 +336,45 @@ public class XACMLAuthorizationService implements AuthorizationService, ManagedS
     return Tuple.tuple(mp, attachment);
   }
 
-  /** Load an ACL from the given URI. */
-  private Optional<AccessControlList> loadAcl(final URI uri) {
+  /**
+   * Load the ACL of a XACML attachment. Parsed ACLs are cached per organization by the checksum the working file
+   * repository computed for the XACML document if it is known, and by a digest of the document otherwise. The checksum
+   * declared by the attachment is not used, since it is not verified and may not match the document.
+   */
+  private Optional<AclCache.Entry> loadAcl(final Attachment xacml) {
+    URI uri = xacml.getURI();
+    try {
+      if (serializer != null) uri = serializer.decodeURI(uri);
+    } catch (URISyntaxException e) {
+      logger.warn("URI {} syntax error, skip decoding", uri);
+    }
+
+    final String prefix = securityService.getOrganization().getId() + ":";
+    final Checksum checksum = workspace.getChecksum(uri);
+    String key = null;
+    if (checksum != null) {
+      key = prefix + "checksum:" + checksum.getType() + ":" + checksum.getValue();
+      final AclCache.Entry entry = aclCache.get(key);
+      if (entry != null) {
+        return Optional.of(entry);
+      }
+    }
+
     logger.debug("Load Acl from {}", uri);
     try (InputStream is = workspace.read(uri)) {
-      AccessControlList acl = XACMLUtils.parseXacml(is);
-      if (acl != null) {
-        return Optional.of(acl);
+      final byte[] content = IOUtils.toByteArray(is);
+      if (key == null) {
+        key = prefix + "sha256:" + Checksum.convertToHex(MessageDigest.getInstance("SHA-256").digest(content));
+        final AclCache.Entry entry = aclCache.get(key);
+        if (entry != null) {
+          return Optional.of(entry);
+        }
       }
+      AccessControlList acl = XACMLUtils.parseXacml(new ByteArrayInputStream(content));
+      if (acl == null) {
+        return Optional.empty();
+      }
+      return Optional.of(aclCache.put(key, acl));
     } catch (NotFoundException e) {
       logger.debug("URI {} not found", uri);
     } catch (Exception e) {
@@ -309,27 +385,13 @@ public class XACMLAuthorizationService implements AuthorizationService, ManagedS
 
   @Override
   public boolean hasPermission(final MediaPackage mp, final String action) {
-    AccessControlList acl = getActiveAcl(mp).getA();
-    boolean allowed = false;
-    final User user = securityService.getUser();
-    for (AccessControlEntry entry: acl.getEntries()) {
-      // ignore entries for other actions
-      if (!entry.getAction().equals(action)) {
-        continue;
-      }
-      for (Role role : user.getRoles()) {
-        if (entry.getRole().equals(role.getName())) {
-          // immediately abort on matching deny rules
-          // (never allow if a deny rule matches, even if another allow rule matches)
-          if (!entry.isAllow()) {
-            logger.debug("Access explicitly denied for role({}), action({})", role.getName(), action);
-            return false;
-          }
-          allowed = true;
-        }
-      }
+    final AclCache.Entry acl = getCachedAcl(mp, AclScope.Episode).getA();
+    if (acl == null) {
+      return false;
     }
-    logger.debug("XACML file allowed access");
+    final User user = securityService.getUser();
+    final boolean allowed = acl.getPermissions().hasPermission(user.getRoles(), action);
+    logger.debug("XACML file {} access for action({})", allowed ? "allowed" : "denied", action);
     return allowed;
   }
 
@@ -23,6 +23,7 @@ package org.opencastproject.authorization.xacml;
 
 import org.opencastproject.mediapackage.MediaPackage;
 import org.opencastproject.mediapackage.MediaPackageBuilderFactory;
+import org.opencastproject.mediapackage.MediaPackageElements;
 import org.opencastproject.security.api.AccessControlEntry;
 import org.opencastproject.security.api.AccessControlList;
 import org.opencastproject.security.api.AclScope;
@@ -31,6 +32,8 @@ import org.opencastproject.security.api.JaxbOrganization;
 import org.opencastproject.security.api.JaxbRole;
 import org.opencastproject.security.api.JaxbUser;
 import org.opencastproject.security.api.SecurityService;
+import org.opencastproject.util.Checksum;
+import org.opencastproject.util.ChecksumType;
 import org.opencastproject.workspace.api.Workspace;
 
 import org.apache.commons.io.FileUtils;
@@ -83,6 +86,7 @@ public class XACMLSecurityTest {
     securityService = EasyMock.createMock(SecurityService.class);
     EasyMock.expect(securityService.getUser()).andAnswer(
             () -> new JaxbUser(currentUser, "test", organization, currentRoles)).anyTimes();
+    EasyMock.expect(securityService.getOrganization()).andReturn(organization).anyTimes();
 
     // Mock workspace
     Workspace workspace = EasyMock.createMock(Workspace.class);
@@ -105,6 +109,7 @@ public class XACMLSecurityTest {
             }).anyTimes();
     EasyMock.expect(workspace.read(EasyMock.capture(uri))).andAnswer(
             () -> new FileInputStream(uri.getValue().getPath())).anyTimes();
+    EasyMock.expect(workspace.getChecksum(EasyMock.anyObject(URI.class))).andReturn(null).anyTimes();
     workspace.delete(EasyMock.anyObject(URI.class));
     EasyMock.expectLastCall().anyTimes();
     EasyMock.replay(securityService, workspace);
@@ -194,4 +199,62 @@ public class XACMLSecurityTest {
     Assert.assertTrue(authzService.hasPermission(mediapackage, "read"));
     Assert.assertFalse(authzService.hasPermission(mediapackage, "comment"));
   }
+
+  @Test
+  public void testAclCache() throws Exception {
+    MediaPackage mediapackage = MediaPackageBuilderFactory.newInstance().newMediaPackageBuilder().createNew();
+    AccessControlList acl = new AccessControlList(
+        new AccessControlEntry("admin", "read", true),
+        new AccessControlEntry("admin", "write", true),
+        new AccessControlEntry("student", "read", true),
+        new AccessControlEntry("student", "write", false));
+    authzService.setAcl(mediapackage, AclScope.Series, acl);
+
+    currentRoles.clear();
+    currentRoles.add(new JaxbRole("student", organization, ""));
+    Assert.assertTrue(authzService.hasPermission(mediapackage, "read"));
+    Assert.assertFalse(authzService.hasPermission(mediapackage, "write"));
+    Assert.assertFalse(authzService.hasPermission(mediapackage, "delete"));
+
+    // deny rules take precedence over allow rules of other roles
+    currentRoles.add(new JaxbRole("admin", organization, ""));
+    Assert.assertFalse(authzService.hasPermission(mediapackage, "write"));
+
+    // the policy has been parsed only once
+    Assert.assertEquals(1, authzService.aclCache.getMisses());
+    Assert.assertEquals(3, authzService.aclCache.getHits());
+
+    // modifying a returned ACL does not affect the cached one
+    authzService.getActiveAcl(mediapackage).getA().getEntries().clear();
+    Assert.assertEquals(4, authzService.getActiveAcl(mediapackage).getA().getEntries().size());
+
+    // a changed policy is parsed again
+    authzService.setAcl(mediapackage, AclScope.Series, new AccessControlList(
+        new AccessControlEntry("student", "write", true)));
+    currentRoles.clear();
+    currentRoles.add(new JaxbRole("student", organization, ""));
+    Assert.assertTrue(authzService.hasPermission(mediapackage, "write"));
+    Assert.assertFalse(authzService.hasPermission(mediapackage, "read"));
+    Assert.assertEquals(2, authzService.aclCache.getMisses());
+  }
+
+  @Test
+  public void testAclCacheIgnoresDeclaredChecksum() throws Exception {
+    AccessControlList acl = new AccessControlList(new AccessControlEntry("student", "read", true));
+    MediaPackage mediapackage = MediaPackageBuilderFactory.newInstance().newMediaPackageBuilder().createNew();
+    authzService.setAcl(mediapackage, AclScope.Episode, acl);
+    MediaPackage other = MediaPackageBuilderFactory.newInstance().newMediaPackageBuilder().createNew();
+    authzService.setAcl(other, AclScope.Episode, new AccessControlList());
+
+    // Both policies claim the same checksum, which must not make them share the cached ACL
+    final Checksum checksum = Checksum.create(ChecksumType.DEFAULT_TYPE, "0123456789abcdef0123456789abcdef");
+    mediapackage.getAttachments(MediaPackageElements.XACML_POLICY_EPISODE)[0].setChecksum(checksum);
+    other.getAttachments(MediaPackageElements.XACML_POLICY_EPISODE)[0].setChecksum(checksum);
+
+    currentRoles.clear();
+    currentRoles.add(new JaxbRole("student", organization, ""));
+    Assert.assertTrue(authzService.hasPermission(mediapackage, "read"));
+    Assert.assertFalse(authzService.hasPermission(other, "read"));
+    Assert.assertEquals(2, authzService.aclCache.getMisses());
+  }
 }
@@ -97,6 +97,13 @@ import javax.persistence.Version;
                 + "j.status in :statuses order by j.dateCreated"),
         @NamedQuery(name = "Job.dispatchable.status.idfilter", query = "SELECT j.id FROM Job j "
                 + "WHERE j.dispatchable = true AND j.status IN :statuses AND j.id IN :jobids ORDER BY j.dateCreated"),
+        @NamedQuery(name = "Job.dispatchable.status.entries", query = "SELECT j.id, s.serviceType, j.status, "
+                + "j.dateCreated FROM Job j JOIN j.creatorServiceRegistration s "
+                + "WHERE j.dispatchable = true AND j.status IN :statuses"),
+        @NamedQuery(name = "Job.dispatchable.status.entries.since", query = "SELECT j.id, s.serviceType, j.status, "
+                + "j.dateCreated FROM Job j JOIN j.creatorServiceRegistration s "
+                + "WHERE j.dispatchable = true AND j.status IN :statuses AND j.dateCreated >= :since"),
+        @NamedQuery(name = "Job.ids", query = "SELECT j FROM Job j WHERE j.id IN :jobids"),
         @NamedQuery(name = "Job.undispatchable.status", query = "SELECT j FROM Job j where j.dispatchable = false and "
                 + "j.status in :statuses order by j.dateCreated"),
         @NamedQuery(name = "Job.payload", query = "SELECT j.payload FROM Job j where j.operation = :operation "
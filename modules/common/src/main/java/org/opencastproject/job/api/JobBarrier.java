@@ -22,6 +22,7 @@
 package org.opencastproject.job.api;
 
 import org.opencastproject.job.api.Job.Status;
+import org.opencastproject.serviceregistry.api.JobListener;
 import org.opencastproject.serviceregistry.api.ServiceRegistry;
 import org.opencastproject.serviceregistry.api.ServiceRegistryException;
 import org.opencastproject.util.JobCanceledException;
@@ -35,8 +36,10 @@ import org.slf4j.LoggerFactory;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * This class is a utility implementation that will wait for all given jobs to change their status to either one of:
@@ -45,6 +48,9 @@ import java.util.Map;
  * <li>{@link Job.Status#FAILED}</li>
  * <li>{@link Job.Status#DELETED}</li>
  * </ul>
+ * <p>
+ * If the service registry supports {@link JobListener}s, the barrier checks the job status as soon as it is notified
+ * about a terminated job. It still polls in the configured interval in case a notification is missed.
  */
 public final class JobBarrier {
   /** The logging facility */
@@ -71,6 +77,28 @@ public final class JobBarrier {
   /** The status map */
   private volatile Result status = null;
 
+  /** Identifiers of the jobs to wait on */
+  private volatile Set<Long> watchedJobIds = new HashSet<Long>();
+
+  /** Identifiers of the watched jobs the service registry reported as terminated, but which have not been checked */
+  private final Set<Long> terminatedJobIds = new HashSet<Long>();
+
+  /** Whether the service registry notifies the barrier about terminated jobs */
+  private volatile boolean notified = false;
+
+  /** Collects the notifications about terminated jobs */
+  private final JobListener jobListener = new JobListener() {
+    @Override
+    public void jobTerminated(long jobId, Status status) {
+      if (!watchedJobIds.contains(jobId))
+        return;
+      synchronized (terminatedJobIds) {
+        terminatedJobIds.add(jobId);
+        terminatedJobIds.notifyAll();
+      }
+    }
+  };
+
   /**
    * Creates a barrier without any jobs, using <code>registry</code> to poll for the outcome of the monitored jobs using
    * the default polling interval {@link #DEFAULT_POLLING_INTERVAL}. The <code>waiter</code> is the job which is waiting
@@ -204,14 +232,25 @@ public final class JobBarrier {
     if (jobs.size() == 0)
       return new Result(new HashMap<Job, Status>());
     this.suspendWaiterJob();
-    synchronized (this) {
-      JobStatusUpdater updater = new JobStatusUpdater(timeout);
-      try {
-        updater.start();
-        wait();
-      } catch (InterruptedException e) {
-        logger.debug("Interrupted while waiting for job");
+    Set<Long> jobIds = new HashSet<Long>();
+    for (Job job : jobs) {
+      jobIds.add(job.getId());
+    }
+    watchedJobIds = jobIds;
+    notified = serviceRegistry.addJobListener(jobListener);
+    try {
+      synchronized (this) {
+        JobStatusUpdater updater = new JobStatusUpdater(timeout);
+        try {
+          updater.start();
+          wait();
+        } catch (InterruptedException e) {
+          logger.debug("Interrupted while waiting for job");
+        }
       }
+    } finally {
+      if (notified)
+        serviceRegistry.removeJobListener(jobListener);
     }
     if (pollingException != null) {
       if (pollingException instanceof JobCanceledException)
@@ -256,6 +295,27 @@ public final class JobBarrier {
     return status;
   }
 
+  /**
+   * Waits until the service registry reports a terminated job or the given time has passed.
+   *
+   * @param millis
+   *          the maximum time to wait
+   * @return the identifiers of the jobs reported as terminated, or <code>null</code> if the time has passed
+   * @throws InterruptedException
+   *           if the thread was interrupted while waiting
+   */
+  private Set<Long> awaitTerminatedJobs(long millis) throws InterruptedException {
+    synchronized (terminatedJobIds) {
+      if (terminatedJobIds.isEmpty())
+        terminatedJobIds.wait(Math.max(millis, 1));
+      if (terminatedJobIds.isEmpty())
+        return null;
+      Set<Long> jobIds = new HashSet<Long>(terminatedJobIds);
+      terminatedJobIds.clear();
+      return jobIds;
+    }
+  }
+
   /** Thread that keeps polling for status changes. */
   class JobStatusUpdater extends Thread {
     /** Maximum wait in milliseconds or 0 for unlimited waiting */
@@ -276,20 +336,29 @@ public final class JobBarrier {
     public void run() {
       final long endTime = workTime > 0 ? System.currentTimeMillis() + workTime : 0;
       final Map<Job, Job.Status> finishedJobs = new HashMap<Job, Job.Status>();
+      // Jobs may have terminated before the listener was registered, so look at all of them right away
+      boolean initialCheck = notified;
       while (true) {
         final long time = System.currentTimeMillis();
-        // Wait a little..
+        // Wait a little, or until the service registry reports terminated jobs
+        Set<Long> jobsToCheck = null;
         try {
-          final long timeToSleep = Math.min(pollingInterval, Math.abs(endTime - time));
-          Thread.sleep(timeToSleep);
+          if (initialCheck) {
+            initialCheck = false;
+          } else if (notified) {
+            jobsToCheck = awaitTerminatedJobs(Math.min(pollingInterval, Math.abs(endTime - time)));
+          } else {
+            final long timeToSleep = Math.min(pollingInterval, Math.abs(endTime - time));
+            Thread.sleep(timeToSleep);
+          }
         } catch (InterruptedException e) {
           logger.debug("Job polling thread was interrupted");
           return;
         }
         // Look at all jobs and make sure all of them have reached the expected status
         for (final Job job : jobs) {
-          // Don't ask if we already know
-          if (!finishedJobs.containsKey(job)) {
+          // Don't ask if we already know, or if we have been told about other jobs only
+          if (!finishedJobs.containsKey(job) && (jobsToCheck == null || jobsToCheck.contains(job.getId()))) {
             // Get the job status from the service registry
             try {
               final Job processedJob = serviceRegistry.getJob(job.getId());
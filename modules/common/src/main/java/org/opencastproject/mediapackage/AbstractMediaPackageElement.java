@@ -54,7 +54,7 @@ import javax.xml.bind.annotation.XmlTransient;
  */
 @XmlTransient
 @XmlAccessorType(XmlAccessType.NONE)
-public abstract class AbstractMediaPackageElement implements MediaPackageElement, Serializable {
+public abstract class AbstractMediaPackageElement implements MediaPackageElement, Serializable, Cloneable {
 
   /** Serial version uid */
   private static final long serialVersionUID = 1L;
@@ -549,9 +549,34 @@ public abstract class AbstractMediaPackageElement implements MediaPackageElement
     return s.toLowerCase();
   }
 
+  /**
+   * Creates a deep copy of the element without serializing it. Subclasses holding further mutable state need to
+   * override this method and copy that state as well.
+   * <p>
+   * Like with {@link #clone()}, the media package reference is not being copied.
+   *
+   * @return the copy
+   */
+  protected AbstractMediaPackageElement copy() {
+    final AbstractMediaPackageElement copy;
+    try {
+      copy = (AbstractMediaPackageElement) super.clone();
+    } catch (CloneNotSupportedException e) {
+      throw new IllegalStateException(e);
+    }
+    copy.mediaPackage = null;
+    copy.tags = new TreeSet<String>(tags);
+    if (reference != null)
+      copy.reference = (MediaPackageReference) reference.clone();
+    return copy;
+  }
+
   /**
    * Attention: The media package reference is not being cloned so that calling <code>getMediaPackage()</code> on the
    * clone yields null.
+   * <p>
+   * This implementation serializes the element and parses it again. Subclasses knowing all of their state use
+   * {@link #copy()} instead.
    */
   @Override
   public Object clone() {
@@ -85,6 +85,18 @@ public class CatalogImpl extends AbstractMediaPackageElement implements Catalog
     return cat;
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * Catalogs are copied without serializing them, unless they are a subclass which may hold further state.
+   */
+  @Override
+  public Object clone() {
+    if (getClass() != CatalogImpl.class)
+      return super.clone();
+    return copy();
+  }
+
   public static class Adapter extends XmlAdapter<CatalogImpl, Catalog> {
     public CatalogImpl marshal(Catalog cat) throws Exception {
       return (CatalogImpl) cat;
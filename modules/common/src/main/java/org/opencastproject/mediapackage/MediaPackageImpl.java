@@ -26,8 +26,10 @@ import static org.opencastproject.mediapackage.MediaPackageSupport.Filters.prese
 import static org.opencastproject.util.data.Monadics.mlist;
 
 import org.opencastproject.mediapackage.MediaPackageElement.Type;
+import org.opencastproject.mediapackage.attachment.AttachmentImpl;
 import org.opencastproject.mediapackage.identifier.Id;
 import org.opencastproject.mediapackage.identifier.IdImpl;
+import org.opencastproject.mediapackage.track.TrackImpl;
 import org.opencastproject.util.DateTimeSupport;
 import org.opencastproject.util.IoSupport;
 
@@ -1153,10 +1155,45 @@ public final class MediaPackageImpl implements MediaPackage {
   /**
    * {@inheritDoc}
    *
+   * The clone is equivalent to serializing the media package and parsing it again. Unless the media package contains
+   * elements of other implementations than the default ones, it is created without the serialization round trip by
+   * copying the media package and its elements.
+   *
    * @see java.lang.Object#clone()
    */
   @Override
   public Object clone() {
+    for (MediaPackageElement element : getElements()) {
+      if (!isCopyable(element))
+        return cloneBySerialization();
+    }
+
+    MediaPackageImpl clone = new MediaPackageImpl(identifier);
+    clone.title = title;
+    clone.seriesTitle = seriesTitle;
+    clone.language = language;
+    clone.series = series;
+    clone.license = license;
+    if (creators != null)
+      clone.creators = new TreeSet<>(creators);
+    if (contributors != null)
+      clone.contributors = new TreeSet<>(contributors);
+    if (subjects != null)
+      clone.subjects = new TreeSet<>(subjects);
+    // The start date is serialized with a precision of seconds
+    clone.startTime = Math.floorDiv(startTime, 1000L) * 1000L;
+    clone.duration = duration;
+
+    // Add the elements the same way and in the same order as when parsing the media package
+    clone.setTracks(cloneElements(getTracks(), new Track[0]));
+    clone.setCatalogs(cloneElements(getCatalogs(), new Catalog[0]));
+    clone.setAttachments(cloneElements(getAttachments(), new Attachment[0]));
+    clone.setPublications(cloneElements(getPublications(), new Publication[0]));
+    return clone;
+  }
+
+  /** Clones the media package by serializing it and parsing it again. */
+  private Object cloneBySerialization() {
     try {
       String xml = MediaPackageParser.getAsXml(this);
       return MediaPackageBuilderFactory.newInstance().newMediaPackageBuilder().loadFromXml(xml);
@@ -1165,6 +1202,41 @@ public final class MediaPackageImpl implements MediaPackage {
     }
   }
 
+  /**
+   * Returns whether cloning the element yields the same result as serializing and parsing it, which is the case for
+   * the default implementations of the elements.
+   */
+  private static boolean isCopyable(MediaPackageElement element) {
+    final Class<?> type = element.getClass();
+    if (type == TrackImpl.class || type == CatalogImpl.class || type == AttachmentImpl.class)
+      return true;
+    if (type != PublicationImpl.class)
+      return false;
+    final Publication publication = (Publication) element;
+    for (MediaPackageElement e : publication.getTracks()) {
+      if (!isCopyable(e))
+        return false;
+    }
+    for (MediaPackageElement e : publication.getCatalogs()) {
+      if (!isCopyable(e))
+        return false;
+    }
+    for (MediaPackageElement e : publication.getAttachments()) {
+      if (!isCopyable(e))
+        return false;
+    }
+    return true;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T extends MediaPackageElement> T[] cloneElements(T[] elements, T[] type) {
+    final List<T> clones = new ArrayList<>(elements.length);
+    for (T element : elements) {
+      clones.add((T) element.clone());
+    }
+    return clones.toArray(type);
+  }
+
   /**
    * @see java.lang.Object#toString()
    */
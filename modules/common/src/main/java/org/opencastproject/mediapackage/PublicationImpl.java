@@ -49,15 +49,15 @@ public class PublicationImpl extends AbstractMediaPackageElement implements Publ
 
   @XmlElementWrapper(name = "media")
   @XmlElement(name = "track")
-  private final List<Track> tracks = new ArrayList<Track>();
+  private List<Track> tracks = new ArrayList<Track>();
 
   @XmlElementWrapper(name = "attachments")
   @XmlElement(name = "attachment")
-  private final List<Attachment> attachments = new ArrayList<Attachment>();
+  private List<Attachment> attachments = new ArrayList<Attachment>();
 
   @XmlElementWrapper(name = "metadata")
   @XmlElement(name = "catalog")
-  private final List<Catalog> catalogs = new ArrayList<Catalog>();
+  private List<Catalog> catalogs = new ArrayList<Catalog>();
 
   /** JAXB constructor */
   public PublicationImpl() {
@@ -141,6 +141,34 @@ public class PublicationImpl extends AbstractMediaPackageElement implements Publ
     throw new UnsupportedOperationException("Unable to set the flavor of publications.");
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * @see org.opencastproject.mediapackage.AbstractMediaPackageElement#clone()
+   */
+  @Override
+  public Object clone() {
+    return copy();
+  }
+
+  @Override
+  protected PublicationImpl copy() {
+    PublicationImpl copy = (PublicationImpl) super.copy();
+    copy.tracks = new ArrayList<Track>(tracks.size());
+    for (Track track : tracks) {
+      copy.tracks.add((Track) track.clone());
+    }
+    copy.attachments = new ArrayList<Attachment>(attachments.size());
+    for (Attachment attachment : attachments) {
+      copy.attachments.add((Attachment) attachment.clone());
+    }
+    copy.catalogs = new ArrayList<Catalog>(catalogs.size());
+    for (Catalog catalog : catalogs) {
+      copy.catalogs.add((Catalog) catalog.clone());
+    }
+    return copy;
+  }
+
   /**
    * Returns a media package element identifier. The identifier will be unique within the media package.
    *
@@ -120,6 +120,24 @@ public class AttachmentImpl extends AbstractMediaPackageElement implements Attac
     return properties;
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * @see org.opencastproject.mediapackage.AbstractMediaPackageElement#clone()
+   */
+  @Override
+  public Object clone() {
+    return copy();
+  }
+
+  @Override
+  protected AttachmentImpl copy() {
+    AttachmentImpl copy = (AttachmentImpl) super.copy();
+    if (properties != null)
+      copy.properties = new HashMap<>(properties);
+    return copy;
+  }
+
   /**
    * JAXB properties xml adapter class.
    */
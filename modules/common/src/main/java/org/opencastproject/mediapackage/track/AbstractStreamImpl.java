@@ -38,7 +38,7 @@ import javax.xml.bind.annotation.XmlType;
 
 @XmlTransient
 @XmlAccessorType(XmlAccessType.NONE)
-public abstract class AbstractStreamImpl implements Stream {
+public abstract class AbstractStreamImpl implements Stream, Cloneable {
 
   @XmlID
   @XmlAttribute(name = "id")
@@ -61,6 +61,14 @@ public abstract class AbstractStreamImpl implements Stream {
     protected String version;
     @XmlAttribute(name = "vendor")
     protected String vendor;
+
+    Device copy() {
+      Device copy = new Device();
+      copy.type = type;
+      copy.version = version;
+      copy.vendor = vendor;
+      return copy;
+    }
   }
 
   @XmlType(name = "encoder")
@@ -71,6 +79,14 @@ public abstract class AbstractStreamImpl implements Stream {
     protected String version;
     @XmlAttribute(name = "vendor")
     protected String vendor;
+
+    Encoder copy() {
+      Encoder copy = new Encoder();
+      copy.type = type;
+      copy.version = version;
+      copy.vendor = vendor;
+      return copy;
+    }
   }
 
   protected AbstractStreamImpl() {
@@ -144,6 +160,26 @@ public abstract class AbstractStreamImpl implements Stream {
     this.encoder.vendor = encoderLibraryVendor;
   }
 
+  /**
+   * Creates a deep copy of the stream. Subclasses holding further mutable state need to override this method and copy
+   * that state as well.
+   *
+   * @return the copy
+   */
+  protected AbstractStreamImpl copy() {
+    final AbstractStreamImpl copy;
+    try {
+      copy = (AbstractStreamImpl) super.clone();
+    } catch (CloneNotSupportedException e) {
+      throw new IllegalStateException(e);
+    }
+    if (device != null)
+      copy.device = device.copy();
+    if (encoder != null)
+      copy.encoder = encoder.copy();
+    return copy;
+  }
+
   /**
    * {@inheritDoc}
    *
@@ -301,22 +301,38 @@ public class TrackImpl extends AbstractMediaPackageElement implements Track {
   }
 
   /**
-   * @see java.lang.Object#clone() todo
+   * {@inheritDoc}
+   *
+   * Tracks are copied without serializing them, unless they contain streams of an unknown implementation.
+   *
+   * @see org.opencastproject.mediapackage.AbstractMediaPackageElement#clone()
    */
-  // @Override
-  // public Object clone() throws CloneNotSupportedException {
-  // TrackImpl t = null;
-  // try {
-  // t = new TrackImpl(flavor, mimeType, new File(path, fileName), checksum);
-  // t.duration = duration;
-  // // todo
-  // //t.audioSettings = (AudioSettings)audioSettings.clone();
-  // //t.videoSettings = (VideoSettings)videoSettings.clone();
-  // } catch (Exception e) {
-  // throw new IllegalStateException("Illegal state while cloning track: " + t);
-  // }
-  // return super.clone();
-  // }
+  @Override
+  public Object clone() {
+    for (Stream stream : getStreams()) {
+      if (!(stream instanceof AbstractStreamImpl))
+        return super.clone();
+    }
+    return copy();
+  }
+
+  @Override
+  protected TrackImpl copy() {
+    TrackImpl copy = (TrackImpl) super.copy();
+    if (audio != null) {
+      copy.audio = new ArrayList<>(audio.size());
+      for (AudioStream stream : audio) {
+        copy.audio.add((AudioStream) ((AbstractStreamImpl) stream).copy());
+      }
+    }
+    if (video != null) {
+      copy.video = new ArrayList<>(video.size());
+      for (VideoStream stream : video) {
+        copy.video.add((VideoStream) ((AbstractStreamImpl) stream).copy());
+      }
+    }
+    return copy;
+  }
 
   public static class Adapter extends XmlAdapter<TrackImpl, Track> {
     @Override
@@ -362,4 +362,15 @@ public class VideoStreamImpl extends AbstractStreamImpl implements VideoStream {
       this.scanType = new Scan();
     this.scanType.order = scanOrder;
   }
+
+  @Override
+  protected VideoStreamImpl copy() {
+    VideoStreamImpl copy = (VideoStreamImpl) super.copy();
+    if (scanType != null) {
+      copy.scanType = new Scan();
+      copy.scanType.type = scanType.type;
+      copy.scanType.order = scanType.order;
+    }
+    return copy;
+  }
 }
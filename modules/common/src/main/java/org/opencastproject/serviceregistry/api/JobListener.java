@@ -0,0 +1,45 @@
+/**
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.serviceregistry.api;
+
+import org.opencastproject.job.api.Job;
+
+/**
+ * A listener that is notified when jobs known to the service registry reach a terminal state.
+ *
+ * @see ServiceRegistry#addJobListener(JobListener)
+ */
+public interface JobListener {
+
+  /**
+   * Called when a job has reached a terminal state, i.e. one of {@link Job.Status#FINISHED},
+   * {@link Job.Status#FAILED}, {@link Job.Status#CANCELED} or {@link Job.Status#DELETED}. Implementations must return
+   * quickly, since they are called from the thread updating the job.
+   *
+   * @param jobId
+   *          the job identifier
+   * @param status
+   *          the terminal status of the job
+   */
+  void jobTerminated(long jobId, Job.Status status);
+
+}
@@ -613,4 +613,25 @@ public interface ServiceRegistry {
    */
   void sanitize(String serviceType, String host) throws NotFoundException;
 
+  /**
+   * Registers a listener that is notified as soon as jobs reach a terminal state. Service registries which are not able
+   * to notify listeners return <code>false</code>, in which case the caller has to poll for the job status.
+   *
+   * @param listener
+   *          the listener
+   * @return <code>true</code> if the listener will be notified about terminated jobs
+   */
+  default boolean addJobListener(JobListener listener) {
+    return false;
+  }
+
+  /**
+   * Removes a listener registered with {@link #addJobListener(JobListener)}.
+   *
+   * @param listener
+   *          the listener
+   */
+  default void removeJobListener(JobListener listener) {
+  }
+
 }
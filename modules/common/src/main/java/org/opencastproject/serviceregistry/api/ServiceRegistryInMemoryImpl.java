@@ -52,6 +52,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -105,6 +106,9 @@ public class ServiceRegistryInMemoryImpl implements ServiceRegistry {
 
   protected Incidents incidents;
 
+  /** The listeners to notify about terminated jobs */
+  protected List<JobListener> jobListeners = new CopyOnWriteArrayList<JobListener>();
+
   /**
    * A static list of statuses that influence how load balancing is calculated
    */
@@ -542,9 +546,35 @@ public class ServiceRegistryInMemoryImpl implements ServiceRegistry {
         throw new IllegalStateException("Error serializing job", e);
       }
     }
+    if (updatedJob.getStatus().isTerminated()) {
+      for (JobListener listener : jobListeners) {
+        listener.jobTerminated(updatedJob.getId(), updatedJob.getStatus());
+      }
+    }
     return updatedJob;
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * @see org.opencastproject.serviceregistry.api.ServiceRegistry#addJobListener(JobListener)
+   */
+  @Override
+  public boolean addJobListener(JobListener listener) {
+    jobListeners.add(listener);
+    return true;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @see org.opencastproject.serviceregistry.api.ServiceRegistry#removeJobListener(JobListener)
+   */
+  @Override
+  public void removeJobListener(JobListener listener) {
+    jobListeners.remove(listener);
+  }
+
   private Job updateInternal(Job job) {
     Date now = new Date();
     Status status = job.getStatus();
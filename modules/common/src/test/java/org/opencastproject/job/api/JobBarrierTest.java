@@ -22,14 +22,17 @@
 package org.opencastproject.job.api;
 
 import static org.easymock.EasyMock.createNiceMock;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.opencastproject.util.data.Collections.toArray;
 import static org.opencastproject.util.data.Monadics.mlist;
 
+import org.opencastproject.serviceregistry.api.JobListener;
 import org.opencastproject.serviceregistry.api.ServiceRegistry;
 import org.opencastproject.util.data.Function;
 import org.opencastproject.util.data.Function2;
 
+import org.easymock.Capture;
 import org.easymock.EasyMock;
 import org.junit.Test;
 import org.slf4j.Logger;
@@ -56,6 +59,49 @@ public class JobBarrierTest {
     }
   }
 
+  @Test
+  public void testWaitForJobsNotified() throws Exception {
+    final TestJob job = new TestJob(1L, System.currentTimeMillis() + 300L, Job.Status.FINISHED);
+    final Capture<JobListener> listener = Capture.newInstance();
+    final ServiceRegistry sr = createNiceMock(ServiceRegistry.class);
+    EasyMock.expect(sr.getJob(1L)).andReturn(job).anyTimes();
+    EasyMock.expect(sr.addJobListener(EasyMock.capture(listener))).andReturn(true).once();
+    sr.removeJobListener(EasyMock.anyObject(JobListener.class));
+    EasyMock.expectLastCall().once();
+    EasyMock.replay(sr);
+    // report the job once it has finished, the polling interval alone would let the barrier wait for a minute
+    final Thread reporter = new Thread(() -> {
+      try {
+        Thread.sleep(500L);
+      } catch (InterruptedException e) {
+        return;
+      }
+      listener.getValue().jobTerminated(2L, Job.Status.FAILED);
+      listener.getValue().jobTerminated(1L, Job.Status.FINISHED);
+    });
+    reporter.start();
+    final long start = System.currentTimeMillis();
+    final JobBarrier.Result result = new JobBarrier(null, sr, 60000L, job).waitForJobs();
+    assertTrue("Barrier did not react to the notification", System.currentTimeMillis() - start < 10000L);
+    assertTrue(result.isSuccess());
+    assertEquals(Job.Status.FINISHED, result.getStatus().get(job));
+    EasyMock.verify(sr);
+  }
+
+  @Test
+  public void testWaitForJobsNotifiedPollsInConfiguredInterval() throws Exception {
+    final TestJob job = new TestJob(1L, System.currentTimeMillis() + 300L, Job.Status.FINISHED);
+    final ServiceRegistry sr = createNiceMock(ServiceRegistry.class);
+    EasyMock.expect(sr.getJob(1L)).andReturn(job).anyTimes();
+    EasyMock.expect(sr.addJobListener(EasyMock.anyObject(JobListener.class))).andReturn(true).once();
+    EasyMock.replay(sr);
+    // the notification about the terminated job is missed, so the barrier has to notice by polling
+    final long start = System.currentTimeMillis();
+    final JobBarrier.Result result = new JobBarrier(null, sr, 100L, job).waitForJobs();
+    assertTrue("Barrier did not poll in the configured interval", System.currentTimeMillis() - start < 10000L);
+    assertTrue(result.isSuccess());
+  }
+
   private void runWaitForJobsTest(Function<Long, TestJob> jobCreator) throws Exception {
     // create a bunch of jobs
     final Map<Long, TestJob> jobs = new HashMap<Long, TestJob>();
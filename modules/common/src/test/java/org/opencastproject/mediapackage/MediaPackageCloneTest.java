@@ -0,0 +1,116 @@
+/**
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+
+package org.opencastproject.mediapackage;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.opencastproject.mediapackage.MediaPackageSupport.loadFromClassPath;
+
+import org.opencastproject.mediapackage.attachment.AttachmentImpl;
+import org.opencastproject.mediapackage.track.VideoStreamImpl;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import java.net.URI;
+
+/**
+ * Tests for cloning media packages and their elements without serializing them.
+ */
+public class MediaPackageCloneTest {
+
+  @Test
+  public void testCloneIsEquivalentToSerialization() throws Exception {
+    for (String manifest : new String[] { "/manifest.xml", "/source-manifest.xml", "/source-hls-manifest.xml",
+            "/target-manifest.xml" }) {
+      MediaPackage mp = loadFromClassPath(manifest);
+      String xml = MediaPackageParser.getAsXml(mp);
+      MediaPackage parsed = MediaPackageParser.getFromXml(xml);
+      MediaPackage clone = (MediaPackage) mp.clone();
+
+      assertNotSame(mp, clone);
+      assertEquals(manifest, MediaPackageParser.getAsXml(parsed), MediaPackageParser.getAsXml(clone));
+      assertEquals(manifest, xml, MediaPackageParser.getAsXml(mp));
+      assertEquals(mp.getDuration(), clone.getDuration());
+      assertEquals(mp.getDate(), clone.getDate());
+      for (MediaPackageElement element : mp.getElements()) {
+        MediaPackageElement elementClone = clone.getElementById(element.getIdentifier());
+        assertNotSame(element, elementClone);
+        assertSame(clone, elementClone.getMediaPackage());
+        assertEquals(MediaPackageElementParser.getAsXml(element), MediaPackageElementParser.getAsXml(elementClone));
+      }
+    }
+  }
+
+  @Test
+  public void testCloneIsDeep() throws Exception {
+    MediaPackage mp = loadFromClassPath("/manifest.xml");
+    String xml = MediaPackageParser.getAsXml(mp);
+    MediaPackage clone = (MediaPackage) mp.clone();
+
+    clone.setTitle("changed");
+    clone.addCreator("creator");
+    Track track = clone.getTracks()[0];
+    track.addTag("tag");
+    ((VideoStreamImpl) track.getStreams()[0]).setFormat("VP9");
+    ((VideoStreamImpl) track.getStreams()[0]).setCaptureDevice("device");
+    Catalog catalog = clone.getCatalog("catalog-3");
+    catalog.getReference().setProperty("key", "value");
+    Attachment attachment = clone.getAttachments()[0];
+    attachment.getProperties().put("key", "value");
+    Publication publication = clone.getPublications()[0];
+    publication.addTrack((Track) track.clone());
+    publication.getTracks()[0].addTag("tag");
+
+    assertEquals(xml, MediaPackageParser.getAsXml(mp));
+    assertNull(mp.getCatalog("catalog-3").getReference().getProperty("key"));
+    assertEquals(0, mp.getAttachments()[0].getProperties().size());
+  }
+
+  @Test
+  public void testCloneElement() throws Exception {
+    Publication publication = (Publication) MediaPackageElementParser.getFromXml(
+            IOUtils.toString(getClass().getResourceAsStream("/publication-with-elements.xml")));
+    Publication clone = (Publication) publication.clone();
+    assertNull(clone.getMediaPackage());
+    assertEquals(MediaPackageElementParser.getAsXml(publication), MediaPackageElementParser.getAsXml(clone));
+    assertNotSame(publication.getTracks()[0], clone.getTracks()[0]);
+    assertNotSame(publication.getAttachments()[0], clone.getAttachments()[0]);
+    assertNotSame(publication.getCatalogs()[0], clone.getCatalogs()[0]);
+
+    AttachmentImpl attachment = (AttachmentImpl) AttachmentImpl.fromURI(URI.create("http://localhost/image.png"));
+    attachment.addTag("tag");
+    attachment.getProperties().put("key", "value");
+    AttachmentImpl attachmentClone = (AttachmentImpl) attachment.clone();
+    attachmentClone.addTag("other");
+    attachmentClone.getProperties().put("key", "other");
+    assertArrayEquals(new String[] { "tag" }, attachment.getTags());
+    assertEquals("value", attachment.getProperties().get("key"));
+    assertEquals(attachment.getMimeType(), attachmentClone.getMimeType());
+    assertEquals(attachment.getURI(), attachmentClone.getURI());
+  }
+
+}
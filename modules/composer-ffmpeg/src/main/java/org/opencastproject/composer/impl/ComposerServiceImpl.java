@@ -97,7 +97,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
@@ -120,7 +119,10 @@ import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.Properties;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /** FFMPEG based implementation of the composer service api. */
 @Component(
@@ -206,6 +208,17 @@ public class ComposerServiceImpl extends AbstractJobProducer implements Composer
   private float processSmilJobLoadFactor = DEFAULT_PROCESS_SMIL_JOB_LOAD_FACTOR;
   private float multiEncodeJobLoadFactor = DEFAULT_MULTI_ENCODE_JOB_LOAD_FACTOR;
 
+  /** Whether jobs with a single encoding profile get the load measured for the profile instead of the configured one */
+  public static final String JOB_LOAD_MEASURED = "job.load.measured";
+  /** Encoder processes running shorter than this in milliseconds are not used to measure the load of a profile */
+  static final long MEASURED_JOB_LOAD_MIN_WALL_TIME = 10000;
+  /** The lowest load assigned to a job based on measurements */
+  static final float MEASURED_JOB_LOAD_MIN = 0.1f;
+  /** The weight of a new measurement when updating the measured load of a profile */
+  static final float MEASURED_JOB_LOAD_WEIGHT = 0.3f;
+
+  private boolean measuredJobLoad = false;
+
   // NOMINAL TRIM - remove this from the beginning of all mylti-encoded videos
   // This was added to deal with lipsync issue with ffmpeg4, using libfdk_aac appears to fix it
   public static final int DEFAULT_MULTI_ENCODE_TRIM_MILLISECONDS = 0;
@@ -217,17 +230,37 @@ public class ComposerServiceImpl extends AbstractJobProducer implements Composer
   public static final String MULTI_ENCODE_FADE_MILLISECONDS = "org.composer.multi_encode.fade.milliseconds";
   private int multiEncodeFade = DEFAULT_MULTI_ENCODE_FADE_MILLISECONDS;
 
+  /** Encoding profile extension enabling segmented encoding by setting the maximum number of chunks */
+  static final String SEGMENTED_CHUNKS = "segmented.chunks";
+  /** Encoding profile extension setting the minimum duration of a chunk in seconds */
+  static final String SEGMENTED_MIN_DURATION = "segmented.min.duration";
+  /** Encoding profile extension setting the profile used to concatenate the encoded chunks */
+  static final String SEGMENTED_CONCAT_PROFILE = "segmented.concat.profile";
+  public static final long DEFAULT_SEGMENTED_MIN_DURATION = 300;
+  public static final String DEFAULT_SEGMENTED_CONCAT_PROFILE = "concat-samecodec.work";
+
   /** default transition */
   private int transitionDuration = (int) (DEFAULT_PROCESS_SMIL_CLIP_TRANSITION_DURATION * 1000);
 
   /** List of available operations on jobs */
   enum Operation {
-    Encode, Image, ImageConversion, Mux, Trim, Composite, Concat, ImageToVideo, ParallelEncode, Demux, ProcessSmil, MultiEncode
+    Encode, Image, ImageConversion, Mux, Trim, Composite, Concat, ImageToVideo, ParallelEncode, Demux, ProcessSmil, MultiEncode,
+    EncodeSegment
   }
 
+  /** Operations whose first argument is not a single encoding profile */
+  private static final Set<String> MULTIPLE_PROFILE_OPERATIONS = Stream.of(Operation.ImageConversion,
+          Operation.ProcessSmil, Operation.MultiEncode).map(Operation::toString).collect(Collectors.toSet());
+
   /** tracked encoder engines */
   private Set<EncoderEngine> activeEncoder = new HashSet<>();
 
+  /** Progress of the jobs running on this node */
+  private final Map<Long, EncodingProgress> encodingProgress = new ConcurrentHashMap<>();
+
+  /** Average number of CPU cores used by the encoder, by encoding profile */
+  private final Map<String, Float> measuredJobLoads = new ConcurrentHashMap<>();
+
   /** Encoding profile manager */
   private EncodingProfileScanner profileScanner = null;
 
@@ -299,7 +332,7 @@ public class ComposerServiceImpl extends AbstractJobProducer implements Composer
     try {
       final EncodingProfile profile = profileScanner.getProfile(profileId);
       return serviceRegistry.createJob(JOB_TYPE, Operation.Encode.toString(),
-              Arrays.asList(profileId, MediaPackageElementParser.getAsXml(sourceTrack)), profile.getJobLoad());
+              Arrays.asList(profileId, MediaPackageElementParser.getAsXml(sourceTrack)), getJobLoad(profile));
     } catch (ServiceRegistryException e) {
       throw new EncoderException("Unable to create a job", e);
     }
@@ -392,7 +425,7 @@ public class ComposerServiceImpl extends AbstractJobProducer implements Composer
     logger.info("Encoding {} into {} using profile {}", StringUtils.join(trackMsg, ", "), targetTrackId, profileId);
 
     // Do the work
-    final EncoderEngine encoder = getEncoderEngine();
+    final EncoderEngine encoder = getEncoderEngine(job);
     List<File> output;
     try {
       output = encoder.process(files, profile, null);
@@ -430,6 +463,160 @@ public class ComposerServiceImpl extends AbstractJobProducer implements Composer
     return some(inspectedTrack);
   }
 
+  /**
+   * Returns the number of chunks a track should be encoded in. Segmented encoding is enabled by setting the maximum
+   * number of chunks in the encoding profile. A track is only split if every chunk lasts at least the minimum duration
+   * configured by the profile. Profiles producing multiple outputs are always encoded in a single pass.
+   *
+   * @param job
+   *          the encoding job
+   * @param track
+   *          the track to encode
+   * @param profileId
+   *          the encoding profile
+   * @return the number of chunks, <code>1</code> to encode the track in a single pass
+   * @throws EncoderException
+   *           if the profile is unknown
+   */
+  private int getSegmentCount(Job job, Track track, String profileId) throws EncoderException {
+    final EncodingProfile profile = getProfile(job, profileId);
+    final int maxChunks = NumberUtils.toInt(StringUtils.trimToNull(profile.getExtension(SEGMENTED_CHUNKS)), 1);
+    if (maxChunks < 2 || track.getDuration() == null)
+      return 1;
+    if (!profile.getTags().isEmpty()) {
+      logger.warn("Ignoring segmented encoding of profile {} since it produces multiple outputs", profileId);
+      return 1;
+    }
+    final long minDuration = NumberUtils.toLong(StringUtils.trimToNull(profile.getExtension(SEGMENTED_MIN_DURATION)),
+            DEFAULT_SEGMENTED_MIN_DURATION) * 1000L;
+    return (int) Math.min(maxChunks, track.getDuration() / Math.max(minDuration, 1L));
+  }
+
+  /**
+   * Encodes a track in chunks which are dispatched as separate jobs, so they can be processed by any available composer
+   * at the same time. The track is split at key frames without re-encoding it, and the encoded chunks are concatenated
+   * without re-encoding them again using the concat profile configured by the encoding profile.
+   *
+   * @param job
+   *          the encoding job
+   * @param track
+   *          the track to encode
+   * @param profileId
+   *          the encoding profile
+   * @param chunks
+   *          the number of chunks to split the track into
+   * @return the encoded track or none if the operation does not return a track
+   * @throws EncoderException
+   *           if splitting, encoding or concatenating fails
+   */
+  private Option<Track> segmentedEncode(final Job job, Track track, String profileId, int chunks)
+          throws EncoderException, MediaPackageException {
+    final EncodingProfile profile = getProfile(job, profileId);
+    final String concatProfileId = StringUtils.defaultIfBlank(profile.getExtension(SEGMENTED_CONCAT_PROFILE),
+            DEFAULT_SEGMENTED_CONCAT_PROFILE).trim();
+    // Make sure the chunks can be put together again before doing any work
+    getProfile(job, concatProfileId);
+
+    final File mediaFile = loadTrackIntoWorkspace(job, "source", track, false);
+    final List<Long> splitTimes = new ArrayList<>(chunks - 1);
+    for (int i = 1; i < chunks; i++) {
+      splitTimes.add(track.getDuration() * i / chunks);
+    }
+
+    // Split the track
+    final File chunkDir = new File(workspace.rootDirectory(), "segmented_" + job.getId());
+    final EncoderEngine encoder = getEncoderEngine(job);
+    List<File> chunkFiles;
+    try {
+      chunkFiles = encoder.splitAtKeyframes(mediaFile, splitTimes, chunkDir);
+    } catch (EncoderException e) {
+      FileUtils.deleteQuietly(chunkDir);
+      Map<String, String> params = new HashMap<>();
+      params.put("video", track.getIdentifier());
+      params.put("profile", profileId);
+      params.put("properties", "segment_times=" + StringUtils.join(splitTimes, ","));
+      incident().recordFailure(job, ENCODING_FAILED, e, params, detailsFor(e, encoder));
+      throw e;
+    } finally {
+      activeEncoder.remove(encoder);
+    }
+
+    // Sparse key frames may result in fewer chunks than requested
+    if (chunkFiles.size() < 2) {
+      logger.info("Track {} cannot be split, encoding it in a single pass", track.getIdentifier());
+      FileUtils.deleteQuietly(chunkDir);
+      return encode(job, Collections.map(tuple("video", track)), profileId);
+    }
+
+    final List<URI> chunkURIs;
+    try {
+      chunkURIs = putToCollection(job, chunkFiles, "source chunk");
+    } finally {
+      FileUtils.deleteQuietly(chunkDir);
+    }
+
+    logger.info("Encoding track {} in {} chunks using profile {}", track.getIdentifier(), chunkURIs.size(), profileId);
+    final List<URI> encodedURIs = new ArrayList<>();
+    try {
+      // Dispatch the chunks
+      final Job[] chunkJobs = new Job[chunkURIs.size()];
+      for (int i = 0; i < chunkJobs.length; i++) {
+        final Track chunk = (Track) track.clone();
+        chunk.setURI(chunkURIs.get(i));
+        chunk.setChecksum(null);
+        try {
+          chunkJobs[i] = serviceRegistry.createJob(JOB_TYPE, Operation.EncodeSegment.toString(),
+                  Arrays.asList(profileId, MediaPackageElementParser.getAsXml(chunk)), getJobLoad(profile));
+        } catch (ServiceRegistryException e) {
+          throw new EncoderException("Unable to create a job", e);
+        }
+      }
+
+      // The chunks may need the capacity of this node, so this job must not block it while waiting for them
+      try {
+        job.setJobLoad(0.0f);
+        serviceRegistry.updateJob(job);
+      } catch (ServiceRegistryException | NotFoundException e) {
+        logger.warn("Unable to release the load of job {} while waiting for its chunks, this may cause a deadlock: {}",
+                job.getId(), e.getMessage());
+      }
+
+      // Wait for the chunks to be encoded
+      final JobBarrier barrier = new JobBarrier(job, serviceRegistry, chunkJobs);
+      final JobBarrier.Result result = barrier.waitForJobs();
+      final List<Track> encodedChunks = new ArrayList<>(chunkJobs.length);
+      for (Job chunkJob : chunkJobs) {
+        if (chunkJob.getStatus() == Job.Status.FINISHED && StringUtils.isNotBlank(chunkJob.getPayload())) {
+          final Track encodedChunk = (Track) MediaPackageElementParser.getFromXml(chunkJob.getPayload());
+          encodedChunks.add(encodedChunk);
+          encodedURIs.add(encodedChunk.getURI());
+        }
+      }
+      if (!result.isSuccess() || encodedChunks.size() != chunkJobs.length) {
+        for (Map.Entry<Job, Job.Status> status : result.getStatus().entrySet()) {
+          if (status.getValue() != Job.Status.FINISHED) {
+            logger.error("Encoding of chunk failed in job {}: {}", status.getKey(), status.getValue());
+          }
+        }
+        throw new EncoderException(format("Encoding track %s in chunks failed", track.getIdentifier()));
+      }
+
+      // Put the encoded chunks together again, naming the result as if the track had been encoded in a single pass
+      final Map<String, String> params = new HashMap<>();
+      params.put("in.video.name", FilenameUtils.getBaseName(mediaFile.getName()));
+      params.put("in.video.suffix", FilenameUtils.getExtension(mediaFile.getName()));
+      params.put("in.video.filename", mediaFile.getName());
+      final String outputName = FilenameUtils.getBaseName(mediaFile.getName()) + "_" + UUID.randomUUID()
+              + EncoderEngine.processParameters(StringUtils.defaultString(profile.getSuffix()), params);
+      return concat(job, encodedChunks, concatProfileId, null, -1.0f, true, outputName);
+    } finally {
+      cleanupWorkspace(chunkURIs.toArray(new URI[0]));
+      cleanupWorkspace(encodedURIs.toArray(new URI[0]));
+      // Splitting and concatenating copies streams, which says nothing about the load of the encoding profile
+      encodingProgress.remove(job.getId());
+    }
+  }
+
   /**
    * Encodes audio and video track to a file. If both an audio and a video track are given, they are muxed together into
    * one movie container.
@@ -455,7 +642,7 @@ public class ComposerServiceImpl extends AbstractJobProducer implements Composer
 
     // Create the engine
     final EncodingProfile profile = getProfile(profileId);
-    final EncoderEngine encoderEngine = getEncoderEngine();
+    final EncoderEngine encoderEngine = getEncoderEngine(job);
 
     // conditional settings based on frame height and width
     final Optional<VideoStream> videoStream = Arrays.stream(mediaTrack.getStreams())
@@ -500,15 +687,11 @@ public class ComposerServiceImpl extends AbstractJobProducer implements Composer
       URI returnURL;
       final String targetTrackId = IdImpl.fromUUID().toString();
 
-      try (InputStream in = new FileInputStream(encodingOutput)) {
-        returnURL = workspace.putInCollection(COLLECTION,
-                job.getId() + "-" + i + "." + FilenameUtils.getExtension(encodingOutput.getAbsolutePath()), in);
-        logger.info("Copied the encoded file to the workspace at {}", returnURL);
-        if (encodingOutput.delete()) {
-          logger.info("Deleted the local copy of the encoded file at {}", encodingOutput.getAbsolutePath());
-        } else {
-          logger.warn("Unable to delete the encoding output at {}", encodingOutput);
-        }
+      try {
+        returnURL = workspace.moveIntoCollection(COLLECTION,
+                job.getId() + "-" + i + "." + FilenameUtils.getExtension(encodingOutput.getAbsolutePath()),
+                encodingOutput);
+        logger.info("Moved the encoded file to the workspace at {}", returnURL);
       } catch (Exception e) {
         throw new EncoderException("Unable to put the encoded file into the workspace", e);
       }
@@ -540,9 +723,9 @@ public class ComposerServiceImpl extends AbstractJobProducer implements Composer
   public Job parallelEncode(Track sourceTrack, String profileId) throws EncoderException, MediaPackageException {
     try {
       final EncodingProfile profile = profileScanner.getProfile(profileId);
-      logger.info("Starting parallel encode with profile {} with job load {}", profileId, df.format(profile.getJobLoad()));
+      logger.info("Starting parallel encode with profile {} with job load {}", profileId, df.format(getJobLoad(profile)));
       return serviceRegistry.createJob(JOB_TYPE, Operation.ParallelEncode.toString(),
-              Arrays.asList(profileId, MediaPackageElementParser.getAsXml(sourceTrack)), profile.getJobLoad());
+              Arrays.asList(profileId, MediaPackageElementParser.getAsXml(sourceTrack)), getJobLoad(profile));
     } catch (ServiceRegistryException e) {
       throw new EncoderException("Unable to create a job", e);
     }
@@ -561,7 +744,7 @@ public class ComposerServiceImpl extends AbstractJobProducer implements Composer
       final EncodingProfile profile = profileScanner.getProfile(profileId);
       return serviceRegistry.createJob(JOB_TYPE, Operation.Trim.toString(),
               Arrays.asList(profileId, MediaPackageElementParser.getAsXml(sourceTrack), Long.toString(start),
-                      Long.toString(duration)), profile.getJobLoad());
+                      Long.toString(duration)), getJobLoad(profile));
     } catch (ServiceRegistryException e) {
       throw new EncoderException("Unable to create a job", e);
     }
@@ -597,7 +780,7 @@ public class ComposerServiceImpl extends AbstractJobProducer implements Composer
     final EncodingProfile profile = getProfile(job, profileId);
 
     // Create the engine
-    final EncoderEngine encoderEngine = getEncoderEngine();
+    final EncoderEngine encoderEngine = getEncoderEngine(job);
 
     File output;
     try {
@@ -639,7 +822,7 @@ public class ComposerServiceImpl extends AbstractJobProducer implements Composer
       final EncodingProfile profile = profileScanner.getProfile(profileId);
       return serviceRegistry.createJob(JOB_TYPE, Operation.Mux.toString(),
               Arrays.asList(profileId, MediaPackageElementParser.getAsXml(videoTrack),
-                      MediaPackageElementParser.getAsXml(audioTrack)), profile.getJobLoad());
+                      MediaPackageElementParser.getAsXml(audioTrack)), getJobLoad(profile));
     } catch (ServiceRegistryException e) {
       throw new EncoderException("Unable to create a job", e);
     }
@@ -695,7 +878,7 @@ public class ComposerServiceImpl extends AbstractJobProducer implements Composer
     }
     try {
       final EncodingProfile profile = profileScanner.getProfile(profileId);
-      return serviceRegistry.createJob(JOB_TYPE, Operation.Composite.toString(), arguments, profile.getJobLoad());
+      return serviceRegistry.createJob(JOB_TYPE, Operation.Composite.toString(), arguments, getJobLoad(profile));
     } catch (ServiceRegistryException e) {
       throw new EncoderException("Unable to create composite job", e);
     }
@@ -709,7 +892,7 @@ public class ComposerServiceImpl extends AbstractJobProducer implements Composer
     final EncodingProfile profile = getProfile(job, profileId);
 
     // Create the engine
-    final EncoderEngine encoderEngine = getEncoderEngine();
+    final EncoderEngine encoderEngine = getEncoderEngine(job);
 
     final String targetTrackId = IdImpl.fromUUID().toString();
     Option<File> upperVideoFile = Option.none();
@@ -848,7 +1031,7 @@ public class ComposerServiceImpl extends AbstractJobProducer implements Composer
     }
     try {
       final EncodingProfile profile = profileScanner.getProfile(profileId);
-      return serviceRegistry.createJob(JOB_TYPE, Operation.Concat.toString(), arguments, profile.getJobLoad());
+      return serviceRegistry.createJob(JOB_TYPE, Operation.Concat.toString(), arguments, getJobLoad(profile));
     } catch (ServiceRegistryException e) {
       throw new EncoderException("Unable to create concat job", e);
     }
@@ -857,6 +1040,16 @@ public class ComposerServiceImpl extends AbstractJobProducer implements Composer
   private Option<Track> concat(Job job, List<Track> tracks, String profileId, Dimension outputDimension,
           float outputFrameRate, boolean sameCodec)
           throws EncoderException, MediaPackageException {
+    return concat(job, tracks, profileId, outputDimension, outputFrameRate, sameCodec, null);
+  }
+
+  /**
+   * Concatenates the tracks, naming the output file <code>outputName</code> if given rather than using the suffix of
+   * the concat profile.
+   */
+  private Option<Track> concat(Job job, List<Track> tracks, String profileId, Dimension outputDimension,
+          float outputFrameRate, boolean sameCodec, String outputName)
+          throws EncoderException, MediaPackageException {
 
     if (tracks.size() < 2) {
       Map<String, String> params = new HashMap<>();
@@ -897,7 +1090,7 @@ public class ComposerServiceImpl extends AbstractJobProducer implements Composer
     }
 
     // Create the engine
-    final EncoderEngine encoderEngine = getEncoderEngine();
+    final EncoderEngine encoderEngine = getEncoderEngine(job);
 
     if (onlyAudio) {
       logger.info("Concatenating audio tracks {} into {}", trackFiles, targetTrackId);
@@ -956,6 +1149,17 @@ public class ComposerServiceImpl extends AbstractJobProducer implements Composer
     if (!output.exists() || output.length() == 0)
       return none();
 
+    if (outputName != null) {
+      final File renamed = new File(output.getParentFile(), outputName);
+      try {
+        FileUtils.moveFile(output, renamed);
+      } catch (IOException e) {
+        cleanup(output);
+        throw new EncoderException("Unable to rename the concatenated file to " + outputName, e);
+      }
+      output = renamed;
+    }
+
     // Put the file in the workspace
     URI workspaceURI = putToCollection(job, output, "concatenated file");
 
@@ -973,7 +1177,7 @@ public class ComposerServiceImpl extends AbstractJobProducer implements Composer
       final EncodingProfile profile = profileScanner.getProfile(profileId);
       return serviceRegistry.createJob(JOB_TYPE, Operation.ImageToVideo.toString(), Arrays.asList(
               profileId, MediaPackageElementParser.getAsXml(sourceImageAttachment), Double.toString(time)),
-              profile.getJobLoad());
+              getJobLoad(profile));
     } catch (ServiceRegistryException e) {
       throw new EncoderException("Unable to create image to video job", e);
     }
@@ -1001,7 +1205,7 @@ public class ComposerServiceImpl extends AbstractJobProducer implements Composer
     }
 
     // Create the engine
-    final EncoderEngine encoderEngine = getEncoderEngine();
+    final EncoderEngine encoderEngine = getEncoderEngine(job);
 
     logger.info("Converting image attachment {} into video {}", sourceImage.getIdentifier(), targetTrackId);
 
@@ -1065,7 +1269,7 @@ public class ComposerServiceImpl extends AbstractJobProducer implements Composer
 
     try {
       final EncodingProfile profile = profileScanner.getProfile(profileId);
-      return serviceRegistry.createJob(JOB_TYPE, Operation.Image.toString(), parameters, profile.getJobLoad());
+      return serviceRegistry.createJob(JOB_TYPE, Operation.Image.toString(), parameters, getJobLoad(profile));
     } catch (ServiceRegistryException e) {
       throw new EncoderException("Unable to create a job", e);
     }
@@ -1079,7 +1283,7 @@ public class ComposerServiceImpl extends AbstractJobProducer implements Composer
       final EncodingProfile profile = profileScanner.getProfile(profileId);
       job = serviceRegistry
           .createJob(
-              JOB_TYPE, Operation.Image.toString(), null, null, false, profile.getJobLoad());
+              JOB_TYPE, Operation.Image.toString(), null, null, false, getJobLoad(profile));
       job.setStatus(Job.Status.RUNNING);
       job = serviceRegistry.updateJob(job);
       final List<Attachment> images = extractImages(job, sourceTrack, profileId, null, time);
@@ -1106,7 +1310,7 @@ public class ComposerServiceImpl extends AbstractJobProducer implements Composer
 
     try {
       final EncodingProfile profile = profileScanner.getProfile(profileId);
-      return serviceRegistry.createJob(JOB_TYPE, Operation.Image.toString(), arguments, profile.getJobLoad());
+      return serviceRegistry.createJob(JOB_TYPE, Operation.Image.toString(), arguments, getJobLoad(profile));
     } catch (ServiceRegistryException e) {
       throw new EncoderException("Unable to create a job", e);
     }
@@ -1140,7 +1344,7 @@ public class ComposerServiceImpl extends AbstractJobProducer implements Composer
     final EncodingProfile profile = getProfile(job, profileId);
 
     // Create the encoding engine
-    final EncoderEngine encoderEngine = getEncoderEngine();
+    final EncoderEngine encoderEngine = getEncoderEngine(job);
 
     // Finally get the file that needs to be encoded
     File videoFile = loadTrackIntoWorkspace(job, "video", sourceTrack, true);
@@ -1177,10 +1381,10 @@ public class ComposerServiceImpl extends AbstractJobProducer implements Composer
 
       // Put the file in the workspace
 
-      try (InputStream in = new FileInputStream(output)) {
-        URI returnURL = workspace.putInCollection(COLLECTION,
-                job.getId() + "_" + i++ + "." + FilenameUtils.getExtension(output.getAbsolutePath()), in);
-        logger.debug("Copied image file to the workspace at {}", returnURL);
+      try {
+        URI returnURL = workspace.moveIntoCollection(COLLECTION,
+                job.getId() + "_" + i++ + "." + FilenameUtils.getExtension(output.getAbsolutePath()), output);
+        logger.debug("Moved image file to the workspace at {}", returnURL);
         workspaceURIs.add(returnURL);
       } catch (Exception e) {
         cleanup(encodingOutput.toArray(new File[encodingOutput.size()]));
@@ -1300,7 +1504,7 @@ public class ComposerServiceImpl extends AbstractJobProducer implements Composer
   private List<Attachment> convertImage(Job job, Attachment sourceImage, String... profileIds) throws EncoderException,
           MediaPackageException {
     List<Attachment> convertedImages = new ArrayList<>();
-    final EncoderEngine encoderEngine = getEncoderEngine();
+    final EncoderEngine encoderEngine = getEncoderEngine(job);
     try {
       for (String profileId : profileIds) {
         logger.info("Converting {} using encoding profile {}", sourceImage, profileId);
@@ -1390,13 +1594,24 @@ public class ComposerServiceImpl extends AbstractJobProducer implements Composer
 
       switch (op) {
         case Encode:
+          firstTrack = (Track) MediaPackageElementParser.getFromXml(arguments.get(1));
+          final int segments = getSegmentCount(job, firstTrack, encodingProfile);
+          final Option<Track> encoded = segments > 1
+                  ? segmentedEncode(job, firstTrack, encodingProfile, segments)
+                  : encode(job, Collections.map(tuple("video", firstTrack)), encodingProfile);
+          serialized = encoded.map(MediaPackageElementParser.getAsXml()).getOrElse("");
+          break;
+        case EncodeSegment:
           firstTrack = (Track) MediaPackageElementParser.getFromXml(arguments.get(1));
           serialized = encode(job, Collections.map(tuple("video", firstTrack)), encodingProfile).map(
                   MediaPackageElementParser.getAsXml()).getOrElse("");
           break;
         case ParallelEncode:
           firstTrack = (Track) MediaPackageElementParser.getFromXml(arguments.get(1));
-          serialized = MediaPackageElementParser.getArrayAsXml(parallelEncode(job, firstTrack, encodingProfile));
+          final int parallelSegments = getSegmentCount(job, firstTrack, encodingProfile);
+          serialized = MediaPackageElementParser.getArrayAsXml(parallelSegments > 1
+                  ? segmentedEncode(job, firstTrack, encodingProfile, parallelSegments).list()
+                  : parallelEncode(job, firstTrack, encodingProfile));
           break;
         case Image:
           firstTrack = (Track) MediaPackageElementParser.getFromXml(arguments.get(1));
@@ -1515,6 +1730,8 @@ public class ComposerServiceImpl extends AbstractJobProducer implements Composer
       throw new ServiceRegistryException(format("Invalid arguments for operation '%s'", operation), e);
     } catch (Exception e) {
       throw new ServiceRegistryException(format("Error handling operation '%s'", operation), e);
+    } finally {
+      recordEncodingProgress(job);
     }
   }
 
@@ -1607,12 +1824,71 @@ public class ComposerServiceImpl extends AbstractJobProducer implements Composer
     }
   }
 
-  private EncoderEngine getEncoderEngine() {
-    EncoderEngine engine = new EncoderEngine(ffmpegBinary);
+  private EncoderEngine getEncoderEngine(Job job) {
+    EncoderEngine engine = new EncoderEngine(ffmpegBinary,
+            encodingProgress.computeIfAbsent(job.getId(), EncodingProgress::new));
     activeEncoder.add(engine);
     return engine;
   }
 
+  /**
+   * Returns the progress of a job running on this node.
+   *
+   * @param jobId
+   *          the job identifier
+   * @return the progress or <code>null</code> if the job has not started an encoder on this node or has finished
+   */
+  public EncodingProgress getEncodingProgress(long jobId) {
+    return encodingProgress.get(jobId);
+  }
+
+  /**
+   * @return the progress of all jobs running an encoder on this node
+   */
+  public Collection<EncodingProgress> getEncodingProgress() {
+    return new ArrayList<>(encodingProgress.values());
+  }
+
+  /**
+   * Returns the load of a job using the given encoding profile. This is the load measured for the profile if enabled
+   * and available, the configured load of the profile otherwise.
+   *
+   * @param profile
+   *          the encoding profile
+   * @return the job load
+   */
+  private float getJobLoad(EncodingProfile profile) {
+    if (measuredJobLoad) {
+      final Float load = measuredJobLoads.get(profile.getIdentifier());
+      if (load != null)
+        return load;
+    }
+    return profile.getJobLoad();
+  }
+
+  /**
+   * Logs the resource usage of a finished job and updates the measured load of its encoding profile.
+   *
+   * @param job
+   *          the job
+   */
+  private void recordEncodingProgress(Job job) {
+    final EncodingProgress progress = encodingProgress.remove(job.getId());
+    if (progress == null)
+      return;
+    logger.info("Encoder processes of job {} used {} ms of CPU time in {} ms", job.getId(), progress.getCpuTime(),
+            progress.getWallTime());
+
+    final List<String> arguments = job.getArguments();
+    final float load = progress.getMeasuredLoad();
+    if (MULTIPLE_PROFILE_OPERATIONS.contains(job.getOperation()) || arguments == null || arguments.isEmpty()
+            || load < 0 || progress.getWallTime() < MEASURED_JOB_LOAD_MIN_WALL_TIME)
+      return;
+    final float measured = measuredJobLoads.merge(arguments.get(0), Math.max(MEASURED_JOB_LOAD_MIN, load),
+            (previous, current) -> previous + MEASURED_JOB_LOAD_WEIGHT * (current - previous));
+    logger.debug("Measured load of encoding profile {} is {}", arguments.get(0), measured);
+  }
+
   private EncodingProfile getProfile(Job job, String profileId) throws EncoderException {
     final EncodingProfile profile = profileScanner.getProfile(profileId);
     if (profile == null) {
@@ -1832,9 +2108,9 @@ public class ComposerServiceImpl extends AbstractJobProducer implements Composer
   private List<URI> putToCollection(Job job, List<File> files, String description) throws EncoderException {
     List<URI> returnURLs = new ArrayList<>(files.size());
     for (File file: files) {
-      try (InputStream in = new FileInputStream(file)) {
-        URI newFileURI = workspace.putInCollection(COLLECTION, renameJobFile(job.getId(), file), in);
-        logger.info("Copied the {} to the workspace at {}", description, newFileURI);
+      try {
+        URI newFileURI = workspace.moveIntoCollection(COLLECTION, renameJobFile(job.getId(), file), file);
+        logger.info("Moved the {} to the workspace at {}", description, newFileURI);
         returnURLs.add(newFileURI);
       } catch (Exception e) {
         incident().recordFailure(job, WORKSPACE_PUT_COLLECTION_IO_EXCEPTION, e,
@@ -2030,7 +2306,7 @@ public class ComposerServiceImpl extends AbstractJobProducer implements Composer
       EncodingProfile profile = getProfile(job, encodingProfile);
       // Create the engine/get
       logger.info("Encoding video track {} using profile '{}'", videoTrack.getIdentifier(), profile);
-      final EncoderEngine encoderEngine = getEncoderEngine();
+      final EncoderEngine encoderEngine = getEncoderEngine(job);
 
       // Do the work
       List<File> outputs;
@@ -2104,6 +2380,7 @@ public class ComposerServiceImpl extends AbstractJobProducer implements Composer
     }
     transitionDuration = (int) (1000 * LoadUtil.getConfiguredLoadValue(properties,
             PROCESS_SMIL_CLIP_TRANSITION_DURATION, DEFAULT_PROCESS_SMIL_CLIP_TRANSITION_DURATION, serviceRegistry));
+    measuredJobLoad = Boolean.parseBoolean(StringUtils.trimToNull((String) properties.get(JOB_LOAD_MEASURED)));
   }
 
   /**
@@ -2318,7 +2595,7 @@ public class ComposerServiceImpl extends AbstractJobProducer implements Composer
       for (String f : inputfile) {
         inputs.add(new File(f));
       }
-      EncoderEngine encoderEngine = getEncoderEngine();
+      EncoderEngine encoderEngine = getEncoderEngine(job);
       try {
         outputs = encoderEngine.multiTrimConcat(inputs, edits, profiles, transitionDuration,
                 !AUDIO_ONLY.equals(mediaType), !VIDEO_ONLY.equals(mediaType));
@@ -2412,7 +2689,7 @@ public class ComposerServiceImpl extends AbstractJobProducer implements Composer
       }
       logger.info("Encoding source track {} using profiles '{}'", track.getIdentifier(), profileIds);
       // Do the work
-      EncoderEngine encoderEngine = getEncoderEngine();
+      EncoderEngine encoderEngine = getEncoderEngine(job);
       try {
         outputs = encoderEngine.multiTrimConcat(Arrays.asList(videoFile), null, profiles, multiEncodeFade,
                 track.hasVideo(),
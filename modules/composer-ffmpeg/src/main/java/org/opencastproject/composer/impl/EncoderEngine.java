@@ -34,6 +34,7 @@ import org.opencastproject.util.data.Tuple;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
 import org.codehaus.plexus.util.cli.CommandLineUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -75,12 +76,16 @@ public class EncoderEngine implements AutoCloseable {
   static final String PROP_TRIMMING_DURATION = "trim.duration";
   /** If true STDERR and STDOUT of the spawned process will be mixed so that both can be read via STDIN */
   private static final boolean REDIRECT_ERROR_STREAM = true;
+  /** Makes the encoder report its progress and resource usage, see {@link EncodingProgress} */
+  private static final List<String> PROGRESS_OPTIONS = Arrays.asList("-progress", "pipe:1", "-benchmark");
 
   private static Logger logger = LoggerFactory.getLogger(EncoderEngine.class);
   /** the encoder binary */
   private String binary = "ffmpeg";
   /** Set of processes to clean up */
   private Set<Process> processes = new HashSet<>();
+  /** Progress of the encoder processes */
+  private final EncodingProgress progress;
 
   private final Pattern outputPattern = Pattern.compile("Output .* (\\S+) to '(.*)':");
   // ffmpeg4 generates HLS output files and may use a .tmp suffix while writing
@@ -97,7 +102,27 @@ public class EncoderEngine implements AutoCloseable {
    * Creates a new abstract encoder engine with or without support for multiple job submission.
    */
   EncoderEngine(String binary) {
+    this(binary, new EncodingProgress(-1));
+  }
+
+  /**
+   * Creates a new encoder engine reporting the progress of its encoder processes.
+   *
+   * @param binary
+   *          the encoder binary
+   * @param progress
+   *          the progress to update
+   */
+  EncoderEngine(String binary, EncodingProgress progress) {
     this.binary = binary;
+    this.progress = progress;
+  }
+
+  /**
+   * @return the progress of the encoder processes run by this engine
+   */
+  EncodingProgress getProgress() {
+    return progress;
   }
 
   /**
@@ -222,6 +247,7 @@ public class EncoderEngine implements AutoCloseable {
     try {
       ProcessBuilder processBuilder = new ProcessBuilder(command);
       processBuilder.redirectErrorStream(REDIRECT_ERROR_STREAM);
+      progress.processStarted(getExpectedDuration(params));
       encoderProcess = processBuilder.start();
       processes.add(encoderProcess);
 
@@ -254,6 +280,7 @@ public class EncoderEngine implements AutoCloseable {
     } finally {
       IoSupport.closeQuietly(in);
       IoSupport.closeQuietly(encoderProcess);
+      progress.processFinished();
     }
   }
 
@@ -275,6 +302,22 @@ public class EncoderEngine implements AutoCloseable {
    */
 
   protected List<File> process(List<String> commandopts) throws EncoderException {
+    return process(commandopts, -1);
+  }
+
+  /*
+   * Runs the raw command string thru the encoder, see process(List).
+   *
+   * @param commandopts - tokenized ffmpeg command
+   *
+   * @param expectedDuration - duration of the output in milliseconds used to estimate the remaining time, or -1 to use
+   * the duration of the first input
+   *
+   * @return encoded - media as a result of running the command
+   *
+   * @throws EncoderException if it fails
+   */
+  protected List<File> process(List<String> commandopts, long expectedDuration) throws EncoderException {
     logger.trace("Process raw command -  {}", commandopts);
     // create encoder process. using working dir of the
     // current java process
@@ -284,11 +327,13 @@ public class EncoderEngine implements AutoCloseable {
     try {
       List<String> command = new ArrayList<>();
       command.add(binary);
+      command.addAll(PROGRESS_OPTIONS);
       command.addAll(commandopts);
       logger.info("Executing encoding command: {}", StringUtils.join(command, " "));
 
       ProcessBuilder pbuilder = new ProcessBuilder(command);
       pbuilder.redirectErrorStream(REDIRECT_ERROR_STREAM);
+      progress.processStarted(expectedDuration);
       encoderProcess = pbuilder.start();
       // tell encoder listeners about output
       in = new BufferedReader(new InputStreamReader(encoderProcess.getInputStream()));
@@ -318,9 +363,48 @@ public class EncoderEngine implements AutoCloseable {
     } finally {
       IoSupport.closeQuietly(in);
       IoSupport.closeQuietly(encoderProcess);
+      progress.processFinished();
     }
   }
 
+  /**
+   * Splits a media file into chunks without re-encoding it. Every chunk starts at the first key frame at or after its
+   * split time and has its timestamps reset, so the chunks can be encoded separately and concatenated afterwards.
+   *
+   * @param mediaSource
+   *          the media file to split
+   * @param splitTimes
+   *          the times to split the file at in milliseconds, ascending
+   * @param outputDir
+   *          the directory to write the chunks to, it is created if necessary
+   * @return the chunks in playback order
+   * @throws EncoderException
+   *           if splitting fails
+   */
+  List<File> splitAtKeyframes(File mediaSource, List<Long> splitTimes, File outputDir) throws EncoderException {
+    if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+      throw new EncoderException("Unable to create directory " + outputDir);
+    }
+    DecimalFormatSymbols ffmpegFormat = new DecimalFormatSymbols();
+    ffmpegFormat.setDecimalSeparator('.');
+    DecimalFormat df = new DecimalFormat("0.000", ffmpegFormat);
+    List<String> times = splitTimes.stream().map(time -> df.format(time / 1000.0)).collect(Collectors.toList());
+
+    final String prefix = "chunk_";
+    final String suffix = "." + FilenameUtils.getExtension(mediaSource.getName());
+    List<String> command = Arrays.asList("-nostats", "-hide_banner", "-i", mediaSource.getAbsolutePath(),
+            "-map", "0:v?", "-map", "0:a?", "-c", "copy", "-f", "segment", "-segment_times", StringUtils.join(times, ","),
+            "-reset_timestamps", "1", new File(outputDir, prefix + "%03d" + suffix).getAbsolutePath());
+    process(command);
+
+    File[] chunks = outputDir.listFiles((dir, name) -> name.startsWith(prefix) && name.endsWith(suffix));
+    if (chunks == null || chunks.length == 0) {
+      throw new EncoderException("Splitting " + mediaSource + " did not produce any chunks");
+    }
+    Arrays.sort(chunks);
+    return Arrays.asList(chunks);
+  }
+
   /**
    * Deletes all valid files found in a list
    *
@@ -353,6 +437,7 @@ public class EncoderEngine implements AutoCloseable {
     command.add(binary);
     command.add("-nostdin");
     command.add("-nostats");
+    command.addAll(PROGRESS_OPTIONS);
 
     String commandline = profile.getExtension(CMD_SUFFIX);
 
@@ -383,6 +468,18 @@ public class EncoderEngine implements AutoCloseable {
     return command;
   }
 
+  /**
+   * Returns the duration of a trimmed output.
+   *
+   * @param params
+   *          the encoding parameters
+   * @return the duration in milliseconds, or <code>-1</code> if the output is not trimmed
+   */
+  private static long getExpectedDuration(Map<String, String> params) {
+    final double duration = NumberUtils.toDouble(params.get(PROP_TRIMMING_DURATION), -1);
+    return duration < 0 ? -1 : Math.round(duration * 1000);
+  }
+
   /**
    * {@inheritDoc}
    *
@@ -407,7 +504,7 @@ public class EncoderEngine implements AutoCloseable {
    *
    * @return the commandline
    */
-  private String processParameters(String cmd, final Map<String, String> args) {
+  static String processParameters(String cmd, final Map<String, String> args) {
     for (Map.Entry<String, String> e: args.entrySet()) {
       cmd = cmd.replace("#{" + e.getKey() + "}", e.getValue());
     }
@@ -441,6 +538,14 @@ public class EncoderEngine implements AutoCloseable {
     if ("".equals(message))
       return;
 
+    // Progress reports go to trace logging, with a summary once per report
+    if (progress.handle(message)) {
+      logger.trace(message);
+      if (message.startsWith("progress="))
+        logger.debug("Encoding progress: {}", progress);
+      return;
+    }
+
     // Others go to trace logging
     if (StringUtils.startsWithAny(message.toLowerCase(),
           "ffmpeg version", "configuration", "lib", "size=", "frame=", "built with")) {
@@ -1398,6 +1503,7 @@ public class EncoderEngine implements AutoCloseable {
       logger.error("Missing encoding profiles");
       throw new EncoderException("Missing encoding profile(s)");
     }
+    final long expectedDuration = clips == null ? -1 : clips.stream().mapToLong(VideoClip::getDurationMS).sum();
     try {
       List<String> command = new ArrayList<>();
       List<String> clauses = makeEdits(clips, transitionDuration, hasVideo, hasAudio); // map inputs into [ov]
@@ -1416,7 +1522,7 @@ public class EncoderEngine implements AutoCloseable {
         clauses.add(outmaps.getVideoFilter());
       }
       clauses.removeIf(Objects::isNull); // remove all empty filters
-      command.add("-nostats"); // no progress report
+      command.add("-nostats"); // progress is reported using -progress instead
       command.add("-hide_banner"); // no configuration/library info
       for (File o : inputs) {
         command.add("-i"); // Add inputfile in the order of entry
@@ -1430,7 +1536,7 @@ public class EncoderEngine implements AutoCloseable {
         command.addAll(commandSplit(outpad)); // split by space
       }
       if (outmaps.hasAdaptivePlaylist()) {
-        List<File> results = process(command); // Run the ffmpeg command
+        List<File> results = process(command, expectedDuration); // Run the ffmpeg command
         // Sort list of segmented mp4s because the output segments are numbered
         List<File> segments = results.stream().filter(AdaptivePlaylist.isHLSFilePred.negate())
                 .collect(Collectors.toList());
@@ -1450,7 +1556,7 @@ public class EncoderEngine implements AutoCloseable {
         // Adjust the playlists to use new names
         return AdaptivePlaylist.hlsRenameAllFiles(results, renames);
       }
-      return process(command); // Run the ffmpeg command and return outputs
+      return process(command, expectedDuration); // Run the ffmpeg command and return outputs
     } catch (Exception e) {
       logger.error("MultiTrimConcat failed to run command {} ", e.getMessage());
       throw new EncoderException("Cannot encode the inputs",e);
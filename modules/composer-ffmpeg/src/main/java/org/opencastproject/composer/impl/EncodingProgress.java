@@ -0,0 +1,279 @@
+/**
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.composer.impl;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Progress and resource usage of the encoder processes run for a single job.
+ * <p>
+ * The processes are started with <code>-progress</code>, which makes FFmpeg report its progress as blocks of
+ * <code>key=value</code> lines, and with <code>-benchmark</code>, which makes it report the CPU time it used when it
+ * exits. The progress is updated by the thread reading the output of the encoder and may be read by any thread.
+ */
+public class EncodingProgress {
+
+  /** The duration of the input as printed by FFmpeg */
+  private static final Pattern DURATION_PATTERN = Pattern.compile("^Duration: (\\d+):(\\d{2}):(\\d{2}(?:\\.\\d+)?)");
+
+  /** The resource usage printed by FFmpeg if <code>-benchmark</code> is set */
+  private static final Pattern BENCHMARK_PATTERN = Pattern.compile(
+          "^bench: utime=([\\d.]+)s(?: stime=([\\d.]+)s)?(?: rtime=([\\d.]+)s)?");
+
+  /** The progress report key/value pairs */
+  private static final Pattern PROGRESS_PATTERN = Pattern.compile("^(frame|fps|stream_\\d+_\\d+_q|bitrate|total_size"
+          + "|out_time_us|out_time_ms|out_time|dup_frames|drop_frames|speed|progress)=(.*)$");
+
+  private final long jobId;
+
+  private volatile long frame;
+  private volatile double fps;
+  private volatile double speed;
+  private volatile long position;
+  private volatile long duration = -1;
+  private volatile boolean running;
+  private volatile int processes;
+
+  /** The CPU time of all finished processes in milliseconds */
+  private volatile long cpuTime;
+
+  /** The wall time of all finished processes in milliseconds */
+  private volatile long wallTime;
+
+  /** Start of the running process, see {@link System#nanoTime()} */
+  private volatile long processStart;
+
+  /**
+   * Creates the progress of a job.
+   *
+   * @param jobId
+   *          the job identifier
+   */
+  public EncodingProgress(long jobId) {
+    this.jobId = jobId;
+  }
+
+  /**
+   * Resets the progress when an encoder process is started.
+   *
+   * @param expectedDuration
+   *          the duration of the output in milliseconds, or <code>-1</code> to use the duration of the first input
+   */
+  void processStarted(long expectedDuration) {
+    frame = 0;
+    fps = 0;
+    speed = 0;
+    position = 0;
+    duration = expectedDuration;
+    processStart = System.nanoTime();
+    running = true;
+    processes++;
+  }
+
+  /**
+   * Adds the wall time of the encoder process that has just finished.
+   */
+  void processFinished() {
+    if (running) {
+      running = false;
+      wallTime += TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - processStart);
+    }
+  }
+
+  /**
+   * Updates the progress from a line of encoder output.
+   *
+   * @param message
+   *          the trimmed line
+   * @return <code>true</code> if the line is part of a progress report and does not need to be logged
+   */
+  boolean handle(String message) {
+    Matcher matcher = PROGRESS_PATTERN.matcher(message);
+    if (matcher.matches()) {
+      final String value = matcher.group(2).trim();
+      switch (matcher.group(1)) {
+        case "frame":
+          frame = NumberUtils.toLong(value, frame);
+          break;
+        case "fps":
+          fps = NumberUtils.toDouble(value, fps);
+          break;
+        case "out_time_us":
+          // out_time_ms is in microseconds as well, older versions of FFmpeg only report this one
+        case "out_time_ms":
+          position = TimeUnit.MICROSECONDS.toMillis(NumberUtils.toLong(value, position * 1000));
+          break;
+        case "speed":
+          speed = NumberUtils.toDouble(StringUtils.removeEnd(value, "x"), speed);
+          break;
+        default:
+          break;
+      }
+      return true;
+    }
+
+    matcher = DURATION_PATTERN.matcher(message);
+    if (matcher.find()) {
+      if (duration < 0) {
+        duration = TimeUnit.HOURS.toMillis(Long.parseLong(matcher.group(1)))
+                + TimeUnit.MINUTES.toMillis(Long.parseLong(matcher.group(2)))
+                + Math.round(Double.parseDouble(matcher.group(3)) * 1000);
+      }
+      return false;
+    }
+
+    matcher = BENCHMARK_PATTERN.matcher(message);
+    if (matcher.find()) {
+      double seconds = Double.parseDouble(matcher.group(1));
+      if (matcher.group(2) != null)
+        seconds += Double.parseDouble(matcher.group(2));
+      cpuTime += Math.round(seconds * 1000);
+      return false;
+    }
+    return false;
+  }
+
+  /**
+   * @return the job identifier
+   */
+  public long getJobId() {
+    return jobId;
+  }
+
+  /**
+   * @return whether an encoder process is running
+   */
+  public boolean isRunning() {
+    return running;
+  }
+
+  /**
+   * @return the number of encoder processes started for the job
+   */
+  public int getProcesses() {
+    return processes;
+  }
+
+  /**
+   * @return the number of frames encoded by the running process
+   */
+  public long getFrame() {
+    return frame;
+  }
+
+  /**
+   * @return the frames encoded per second
+   */
+  public double getFps() {
+    return fps;
+  }
+
+  /**
+   * @return the encoding speed as a multiple of the playback speed
+   */
+  public double getSpeed() {
+    return speed;
+  }
+
+  /**
+   * @return the position of the running process in the output in milliseconds
+   */
+  public long getPosition() {
+    return position;
+  }
+
+  /**
+   * @return the duration of the output of the running process in milliseconds, or <code>-1</code> if it is unknown
+   */
+  public long getDuration() {
+    return duration;
+  }
+
+  /**
+   * @return the estimated remaining time of the running process in milliseconds, or <code>-1</code> if it is unknown
+   */
+  public long getRemainingTime() {
+    final double currentSpeed = speed;
+    final long currentDuration = duration;
+    if (!running || currentSpeed <= 0 || currentDuration < 0)
+      return -1;
+    return Math.max(0, Math.round((currentDuration - position) / currentSpeed));
+  }
+
+  /**
+   * @return the CPU time used by the finished encoder processes in milliseconds, as reported by FFmpeg
+   */
+  public long getCpuTime() {
+    return cpuTime;
+  }
+
+  /**
+   * @return the wall time of the finished encoder processes in milliseconds
+   */
+  public long getWallTime() {
+    return wallTime;
+  }
+
+  /**
+   * @return the average number of CPU cores used by the finished encoder processes, or <code>-1</code> if nothing has
+   *         been measured
+   */
+  public float getMeasuredLoad() {
+    final long cpu = cpuTime;
+    final long wall = wallTime;
+    if (cpu <= 0 || wall <= 0)
+      return -1.0f;
+    return (float) cpu / wall;
+  }
+
+  /**
+   * @return the progress as a map, suitable for serializing it
+   */
+  public Map<String, Object> toMap() {
+    Map<String, Object> map = new LinkedHashMap<>();
+    map.put("job", jobId);
+    map.put("running", running);
+    map.put("processes", processes);
+    map.put("frame", frame);
+    map.put("fps", fps);
+    map.put("speed", speed);
+    map.put("position", position);
+    map.put("duration", duration);
+    map.put("remaining", getRemainingTime());
+    map.put("cpuTime", cpuTime);
+    map.put("wallTime", wallTime);
+    return map;
+  }
+
+  @Override
+  public String toString() {
+    return "EncodingProgress" + toMap();
+  }
+
+}
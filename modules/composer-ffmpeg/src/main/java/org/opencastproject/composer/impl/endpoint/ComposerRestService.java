@@ -29,6 +29,8 @@ import org.opencastproject.composer.api.EncodingProfile;
 import org.opencastproject.composer.api.EncodingProfileImpl;
 import org.opencastproject.composer.api.EncodingProfileList;
 import org.opencastproject.composer.api.LaidOutElement;
+import org.opencastproject.composer.impl.ComposerServiceImpl;
+import org.opencastproject.composer.impl.EncodingProgress;
 import org.opencastproject.composer.layout.Dimension;
 import org.opencastproject.composer.layout.Layout;
 import org.opencastproject.composer.layout.Serializer;
@@ -54,6 +56,8 @@ import org.opencastproject.util.doc.rest.RestQuery;
 import org.opencastproject.util.doc.rest.RestResponse;
 import org.opencastproject.util.doc.rest.RestService;
 
+import com.google.gson.Gson;
+
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.math.NumberUtils;
 import org.osgi.service.component.ComponentContext;
@@ -66,6 +70,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 import javax.servlet.http.HttpServletResponse;
 import javax.ws.rs.DefaultValue;
@@ -930,6 +935,35 @@ public class ComposerRestService extends AbstractJobProducerEndpoint {
     return Response.ok(profile).build();
   }
 
+  @GET
+  @Path("progress.json")
+  @Produces(MediaType.APPLICATION_JSON)
+  @RestQuery(name = "progressAll", description = "Retrieve the progress of all jobs running an encoder on this node", responses = { @RestResponse(description = "Results in a JSON array describing the progress of the jobs", responseCode = HttpServletResponse.SC_OK) }, returnDescription = "")
+  public Response listEncodingProgress() {
+    List<Map<String, Object>> list = new ArrayList<>();
+    if (composerService instanceof ComposerServiceImpl) {
+      for (EncodingProgress progress : ((ComposerServiceImpl) composerService).getEncodingProgress()) {
+        list.add(progress.toMap());
+      }
+    }
+    return Response.ok(new Gson().toJson(list)).build();
+  }
+
+  @GET
+  @Path("progress/{id}.json")
+  @Produces(MediaType.APPLICATION_JSON)
+  @RestQuery(name = "progress", description = "Retrieve the progress of a job running an encoder on this node. It contains the frames encoded per second, the encoding speed relative to the playback speed, the estimated remaining time of the running encoder process in milliseconds as well as the CPU and wall time of the finished encoder processes.", pathParameters = { @RestParameter(name = "id", description = "the job ID", isRequired = true, type = RestParameter.Type.INTEGER) }, responses = {
+          @RestResponse(description = "Results in a JSON object describing the progress of the job", responseCode = HttpServletResponse.SC_OK),
+          @RestResponse(description = "If the job is not running an encoder on this node", responseCode = HttpServletResponse.SC_NOT_FOUND) }, returnDescription = "")
+  public Response getEncodingProgress(@PathParam("id") long jobId) throws NotFoundException {
+    EncodingProgress progress = null;
+    if (composerService instanceof ComposerServiceImpl)
+      progress = ((ComposerServiceImpl) composerService).getEncodingProgress(jobId);
+    if (progress == null)
+      throw new NotFoundException();
+    return Response.ok(new Gson().toJson(progress.toMap())).build();
+  }
+
   /**
    * {@inheritDoc}
    *
@@ -71,6 +71,8 @@ import java.io.InputStream;
 import java.net.URI;
 import java.net.URL;
 import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -228,6 +230,17 @@ public class ComplexCmdsEncoderEngineTest {
                         return (f.toURI());
                       }
                     }).anyTimes();
+    EasyMock.expect(
+            workspace.moveIntoCollection((String) EasyMock.anyObject(), (String) EasyMock.anyObject(),
+                    (File) EasyMock.anyObject())).andAnswer(new IAnswer<URI>() {
+                      @Override
+                      public URI answer() throws Throwable {
+                        File f = new File(workingDirectory, (String) EasyMock.getCurrentArguments()[1]);
+                        File source = (File) EasyMock.getCurrentArguments()[2];
+                        Files.move(source.toPath(), f.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                        return (f.toURI());
+                      }
+                    }).anyTimes();
 
     profileScanner = new EncodingProfileScanner();
     File encodingProfile = getFile("/encodingprofiles.properties");
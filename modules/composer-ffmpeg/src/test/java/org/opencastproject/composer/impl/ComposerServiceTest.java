@@ -42,6 +42,7 @@ import org.opencastproject.mediapackage.Attachment;
 import org.opencastproject.mediapackage.MediaPackageElementParser;
 import org.opencastproject.mediapackage.Track;
 import org.opencastproject.mediapackage.attachment.AttachmentImpl;
+import org.opencastproject.mediapackage.track.TrackImpl;
 import org.opencastproject.security.api.DefaultOrganization;
 import org.opencastproject.security.api.JaxbOrganization;
 import org.opencastproject.security.api.JaxbRole;
@@ -60,6 +61,7 @@ import org.opencastproject.workspace.api.Workspace;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.math.NumberUtils;
 import org.easymock.Capture;
 import org.easymock.EasyMock;
 import org.junit.After;
@@ -77,11 +79,15 @@ import java.awt.image.BufferedImage;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Stream;
 
 import javax.imageio.ImageIO;
@@ -271,6 +277,8 @@ public class ComposerServiceTest {
     EasyMock.expect(workspace.get(EasyMock.anyObject(), EasyMock.anyBoolean())).andReturn(sourceVideoOnly).anyTimes();
     EasyMock.expect(workspace.putInCollection(EasyMock.anyString(), EasyMock.anyString(), EasyMock.anyObject()))
             .andReturn(sourceVideoOnly.toURI()).anyTimes();
+    EasyMock.expect(workspace.moveIntoCollection(EasyMock.anyString(), EasyMock.anyString(), EasyMock.anyObject()))
+            .andReturn(sourceVideoOnly.toURI()).anyTimes();
     composerService.setWorkspace(workspace);
     EasyMock.replay(workspace);
 
@@ -287,6 +295,8 @@ public class ComposerServiceTest {
     EasyMock.expect(workspace.get(EasyMock.anyObject(), EasyMock.anyBoolean())).andReturn(sourceVideoOnly).anyTimes();
     EasyMock.expect(workspace.putInCollection(EasyMock.anyString(), EasyMock.anyString(), EasyMock.anyObject()))
             .andReturn(sourceVideoOnly.toURI()).anyTimes();
+    EasyMock.expect(workspace.moveIntoCollection(EasyMock.anyString(), EasyMock.anyString(), EasyMock.anyObject()))
+            .andReturn(sourceVideoOnly.toURI()).anyTimes();
     composerService.setWorkspace(workspace);
     EasyMock.replay(workspace);
 
@@ -304,6 +314,8 @@ public class ComposerServiceTest {
     EasyMock.expect(workspace.get(EasyMock.anyObject(), EasyMock.anyBoolean())).andReturn(sourceVideoOnly).anyTimes();
     EasyMock.expect(workspace.putInCollection(EasyMock.anyString(), EasyMock.anyString(), EasyMock.anyObject()))
             .andReturn(sourceVideoOnly.toURI()).anyTimes();
+    EasyMock.expect(workspace.moveIntoCollection(EasyMock.anyString(), EasyMock.anyString(), EasyMock.anyObject()))
+            .andReturn(sourceVideoOnly.toURI()).anyTimes();
     composerService.setWorkspace(workspace);
     EasyMock.replay(workspace);
 
@@ -322,6 +334,8 @@ public class ComposerServiceTest {
     EasyMock.expect(workspace.get(EasyMock.anyObject(), EasyMock.anyBoolean())).andReturn(sourceAudioOnly).once();
     EasyMock.expect(workspace.putInCollection(EasyMock.anyString(), EasyMock.anyString(), EasyMock.anyObject()))
             .andReturn(sourceVideoOnly.toURI()).anyTimes();
+    EasyMock.expect(workspace.moveIntoCollection(EasyMock.anyString(), EasyMock.anyString(), EasyMock.anyObject()))
+            .andReturn(sourceVideoOnly.toURI()).anyTimes();
     composerService.setWorkspace(workspace);
     EasyMock.replay(workspace);
 
@@ -342,6 +356,8 @@ public class ComposerServiceTest {
     EasyMock.expect(workspace.get(EasyMock.anyObject())).andReturn(sourceImage).anyTimes();
     EasyMock.expect(workspace.putInCollection(EasyMock.anyString(), EasyMock.anyString(), EasyMock.anyObject()))
             .andReturn(sourceImage.toURI()).anyTimes();
+    EasyMock.expect(workspace.moveIntoCollection(EasyMock.anyString(), EasyMock.anyString(), EasyMock.anyObject()))
+            .andReturn(sourceImage.toURI()).anyTimes();
     composerService.setWorkspace(workspace);
     EasyMock.replay(workspace);
 
@@ -578,6 +594,8 @@ public class ComposerServiceTest {
     EasyMock.expect(workspace.get(EasyMock.anyObject())).andReturn(sourceImage).anyTimes();
     EasyMock.expect(workspace.putInCollection(EasyMock.anyString(), EasyMock.anyString(), EasyMock.anyObject()))
             .andReturn(sourceImage.toURI()).anyTimes();
+    EasyMock.expect(workspace.moveIntoCollection(EasyMock.anyString(), EasyMock.anyString(), EasyMock.anyObject()))
+            .andReturn(sourceImage.toURI()).anyTimes();
     composerService.setWorkspace(workspace);
     EasyMock.replay(workspace);
 
@@ -594,4 +612,148 @@ public class ComposerServiceTest {
     inspectedTrack.setMimeType(MimeType.mimeType("video", "mp4"));
     Assert.assertEquals(inspectedTrack, imageToVideoTrack);
   }
+
+  /**
+   * Test method for segmented encoding using {@link ComposerServiceImpl#encode(Track, String)}. Compares duration and
+   * audio/video synchronisation of the concatenated chunks with a single pass encoding of the same track.
+   */
+  @Test
+  public void testSegmentedEncode() throws Exception {
+    File workDir = new File(testDir, "segmented-" + System.currentTimeMillis());
+    assertTrue(workDir.mkdirs());
+    try {
+      // Create a source with frequent key frames, so it can be split into all requested chunks
+      File source = new File(workDir, "source.mp4");
+      run(FFMPEG_BINARY, "-y", "-i", getFile("/audiovideo.mov").getAbsolutePath(), "-c:v", "libx264", "-g", "25",
+              "-c:a", "aac", source.getAbsolutePath());
+      Assume.assumeTrue(source.isFile());
+
+      // Files are kept where they are
+      Workspace workspace = EasyMock.createNiceMock(Workspace.class);
+      EasyMock.expect(workspace.rootDirectory()).andReturn(workDir.getAbsolutePath()).anyTimes();
+      EasyMock.expect(workspace.get(EasyMock.anyObject())).andAnswer(
+              () -> new File((URI) EasyMock.getCurrentArguments()[0])).anyTimes();
+      EasyMock.expect(workspace.get(EasyMock.anyObject(), EasyMock.anyBoolean())).andAnswer(
+              () -> new File((URI) EasyMock.getCurrentArguments()[0])).anyTimes();
+      EasyMock.expect(workspace.putInCollection(EasyMock.anyString(), EasyMock.anyString(), EasyMock.anyObject()))
+              .andAnswer(() -> {
+                File f = new File(workDir, (String) EasyMock.getCurrentArguments()[1]);
+                FileUtils.copyInputStreamToFile((InputStream) EasyMock.getCurrentArguments()[2], f);
+                return f.toURI();
+              }).anyTimes();
+      EasyMock.expect(workspace.moveIntoCollection(EasyMock.anyString(), EasyMock.anyString(), EasyMock.anyObject()))
+              .andAnswer(() -> {
+                File f = new File(workDir, (String) EasyMock.getCurrentArguments()[1]);
+                FileUtils.moveFile((File) EasyMock.getCurrentArguments()[2], f);
+                return f.toURI();
+              }).anyTimes();
+      EasyMock.replay(workspace);
+
+      ComposerServiceImpl segmentingService = new ComposerServiceImpl() {
+        @Override
+        protected Track inspect(Job job, URI workspaceURI) throws EncoderException {
+          Track track = (Track) inspectedTrack.clone();
+          track.setURI(workspaceURI);
+          return track;
+        }
+      };
+
+      // Jobs are processed right away and can be looked up by job barriers
+      final Map<Long, Job> jobs = new HashMap<>();
+      ServiceRegistry serviceRegistry = EasyMock.createNiceMock(ServiceRegistry.class);
+      final Capture<String> type = EasyMock.newCapture();
+      final Capture<String> operation = EasyMock.newCapture();
+      final Capture<List<String>> args = EasyMock.newCapture();
+      EasyMock.expect(serviceRegistry.createJob(capture(type), capture(operation), capture(args), EasyMock.anyFloat()))
+              .andAnswer(() -> {
+                Job job = new JobImpl(jobs.size() + 1);
+                job.setJobType(type.getValue());
+                job.setOperation(operation.getValue());
+                job.setArguments(args.getValue());
+                jobs.put(job.getId(), job);
+                job.setPayload(segmentingService.process(job));
+                job.setStatus(Job.Status.FINISHED);
+                return job;
+              }).anyTimes();
+      EasyMock.expect(serviceRegistry.getJob(EasyMock.anyLong())).andAnswer(
+              () -> jobs.get((Long) EasyMock.getCurrentArguments()[0])).anyTimes();
+      EasyMock.expect(serviceRegistry.addJobListener(EasyMock.anyObject())).andReturn(true).anyTimes();
+      EasyMock.replay(serviceRegistry);
+      segmentingService.setServiceRegistry(serviceRegistry);
+      segmentingService.setProfileScanner(profileScanner);
+      segmentingService.setWorkspace(workspace);
+
+      TrackImpl sourceTrack = TrackImpl.fromURI(source.toURI());
+      sourceTrack.setIdentifier("source");
+      sourceTrack.setDuration(Math.round(probe(source).get("format")[1] * 1000));
+
+      Job single = segmentingService.encode(sourceTrack, "single-pass.work");
+      Track singleTrack = (Track) MediaPackageElementParser.getFromXml(single.getPayload());
+      Job segmented = segmentingService.encode(sourceTrack, "segmented.work");
+      Track segmentedTrack = (Track) MediaPackageElementParser.getFromXml(segmented.getPayload());
+      assertEquals(3, jobs.values().stream()
+              .filter(job -> ComposerServiceImpl.Operation.EncodeSegment.toString().equals(job.getOperation()))
+              .count());
+      // The result is named after the encoding profile, not after the profile concatenating the chunks
+      assertTrue(segmentedTrack.getURI().getPath().endsWith("-segmented.mp4"));
+
+      Map<String, double[]> expected = probe(new File(singleTrack.getURI()));
+      Map<String, double[]> actual = probe(new File(segmentedTrack.getURI()));
+      logger.info("Single pass: format {}, video {}, audio {}", expected.get("format"), expected.get("video"),
+              expected.get("audio"));
+      logger.info("Segmented: format {}, video {}, audio {}", actual.get("format"), actual.get("video"),
+              actual.get("audio"));
+
+      // Every chunk boundary may add an audio frame and round to a video frame
+      final double tolerance = 0.15;
+      assertEquals(expected.get("format")[1], actual.get("format")[1], tolerance);
+      assertEquals(offset(expected, 0), offset(actual, 0), tolerance);
+      assertEquals(offset(expected, 1), offset(actual, 1), tolerance);
+    } finally {
+      FileUtils.deleteQuietly(workDir);
+    }
+  }
+
+  /** Returns the offset of audio to video at the start (0) or the end (1) of a probed file. */
+  private static double offset(Map<String, double[]> streams, int end) {
+    final double[] video = streams.get("video");
+    final double[] audio = streams.get("audio");
+    return audio[0] + end * audio[1] - video[0] - end * video[1];
+  }
+
+  /** Returns start time and duration of the format and the first audio and video stream of a file. */
+  private static Map<String, double[]> probe(File file) throws Exception {
+    Map<String, double[]> result = new HashMap<>();
+    String output = run("ffprobe", "-v", "error", "-show_entries", "format=start_time,duration:"
+            + "stream=codec_type,start_time,duration", "-of", "compact", file.getAbsolutePath());
+    for (String line : output.split("\\r?\\n")) {
+      Map<String, String> values = new HashMap<>();
+      for (String field : line.split("\\|")) {
+        String[] pair = field.split("=", 2);
+        if (pair.length == 2)
+          values.put(pair[0], pair[1]);
+      }
+      String key = line.startsWith("format") ? "format" : values.get("codec_type");
+      if (key != null && !result.containsKey(key) && NumberUtils.isCreatable(values.get("duration"))) {
+        result.put(key, new double[] {
+                NumberUtils.toDouble(values.get("start_time")), Double.parseDouble(values.get("duration")) });
+      }
+    }
+    Assume.assumeTrue("ffprobe did not report audio and video of " + file,
+            result.containsKey("format") && result.containsKey("audio") && result.containsKey("video"));
+    return result;
+  }
+
+  private static String run(String... command) throws Exception {
+    Process process;
+    try {
+      process = new ProcessBuilder(command).redirectErrorStream(true).start();
+    } catch (IOException e) {
+      Assume.assumeNoException(e);
+      throw e;
+    }
+    String output = IOUtils.toString(process.getInputStream(), Charset.defaultCharset());
+    Assume.assumeTrue(command[0] + " failed: " + output, process.waitFor() == 0);
+    return output;
+  }
 }
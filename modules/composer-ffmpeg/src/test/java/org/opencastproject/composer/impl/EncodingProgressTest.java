@@ -0,0 +1,92 @@
+/**
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.composer.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests for parsing the progress reports of FFmpeg.
+ */
+public class EncodingProgressTest {
+
+  @Test
+  public void testProgressReport() {
+    EncodingProgress progress = new EncodingProgress(42);
+    progress.processStarted(-1);
+
+    assertFalse(progress.handle("Input #0, mov,mp4,m4a,3gp,3g2,mj2, from 'source.mp4':"));
+    assertFalse(progress.handle("Duration: 00:02:00.50, start: 0.000000, bitrate: 1205 kb/s"));
+    assertEquals(120500, progress.getDuration());
+    // Only the duration of the first input is used
+    assertFalse(progress.handle("Duration: 00:00:10.00, start: 0.000000, bitrate: 64 kb/s"));
+    assertEquals(120500, progress.getDuration());
+    assertEquals(-1, progress.getRemainingTime());
+
+    for (String line : new String[] { "frame=750", "fps=50.00", "stream_0_0_q=28.0", "bitrate= 512.3kbits/s",
+            "total_size=1920000", "out_time_us=30000000", "out_time_ms=30000000", "out_time=00:00:30.000000",
+            "dup_frames=0", "drop_frames=0", "speed=2.00x", "progress=continue" }) {
+      assertTrue(line, progress.handle(line));
+    }
+    assertEquals(750, progress.getFrame());
+    assertEquals(50.0, progress.getFps(), 0.001);
+    assertEquals(2.0, progress.getSpeed(), 0.001);
+    assertEquals(30000, progress.getPosition());
+    assertEquals(45250, progress.getRemainingTime());
+
+    // Values which are not available yet keep the previous ones
+    assertTrue(progress.handle("out_time_us=N/A"));
+    assertTrue(progress.handle("speed=N/A"));
+    assertEquals(30000, progress.getPosition());
+    assertEquals(2.0, progress.getSpeed(), 0.001);
+
+    assertFalse(progress.handle("bench: utime=12.500s stime=0.500s rtime=6.500s"));
+    assertFalse(progress.handle("bench: maxrss=123456kB"));
+    progress.processFinished();
+    assertFalse(progress.isRunning());
+    assertEquals(-1, progress.getRemainingTime());
+    assertEquals(13000, progress.getCpuTime());
+    assertEquals(1, progress.getProcesses());
+  }
+
+  @Test
+  public void testExpectedDuration() {
+    EncodingProgress progress = new EncodingProgress(1);
+    progress.processStarted(10000);
+    progress.handle("Duration: 00:02:00.50, start: 0.000000, bitrate: 1205 kb/s");
+    progress.handle("out_time_ms=4000000");
+    progress.handle("speed=0.5x");
+    assertEquals(10000, progress.getDuration());
+    assertEquals(12000, progress.getRemainingTime());
+
+    // A new process starts from the beginning
+    progress.processFinished();
+    progress.processStarted(-1);
+    assertEquals(0, progress.getPosition());
+    assertEquals(-1, progress.getDuration());
+    assertEquals(2, progress.getProcesses());
+  }
+
+}
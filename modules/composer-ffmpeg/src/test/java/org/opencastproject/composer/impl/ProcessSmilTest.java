@@ -82,6 +82,8 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.InputStream;
 import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
@@ -215,6 +217,17 @@ public class ProcessSmilTest {
                         return (f.toURI());
                       }
                     }).anyTimes();
+    EasyMock.expect(
+            workspace.moveIntoCollection((String) EasyMock.anyObject(), (String) EasyMock.anyObject(),
+                    (File) EasyMock.anyObject())).andAnswer(new IAnswer<URI>() {
+                      @Override
+                      public URI answer() throws Throwable {
+                        File f = new File(workingDirectory, (String) EasyMock.getCurrentArguments()[1]);
+                        File source = (File) EasyMock.getCurrentArguments()[2];
+                        Files.move(source.toPath(), f.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                        return (f.toURI());
+                      }
+                    }).anyTimes();
 
     profileScanner = new EncodingProfileScanner();
     File encodingProfile = new File("src/test/resources/encodingprofiles.properties");
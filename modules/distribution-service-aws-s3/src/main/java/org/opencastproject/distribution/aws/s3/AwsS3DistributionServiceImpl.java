@@ -36,7 +36,12 @@ import org.opencastproject.mediapackage.MediaPackageElementParser;
 import org.opencastproject.mediapackage.MediaPackageException;
 import org.opencastproject.mediapackage.MediaPackageParser;
 import org.opencastproject.mediapackage.Track;
+import org.opencastproject.security.api.Organization;
+import org.opencastproject.security.api.User;
+import org.opencastproject.security.util.SecurityUtil;
 import org.opencastproject.serviceregistry.api.ServiceRegistryException;
+import org.opencastproject.util.Checksum;
+import org.opencastproject.util.ChecksumType;
 import org.opencastproject.util.ConfigurationException;
 import org.opencastproject.util.LoadUtil;
 import org.opencastproject.util.NotFoundException;
@@ -62,6 +67,7 @@ import com.amazonaws.services.s3.model.BucketWebsiteConfiguration;
 import com.amazonaws.services.s3.model.DeleteVersionRequest;
 import com.amazonaws.services.s3.model.GetObjectMetadataRequest;
 import com.amazonaws.services.s3.model.ListVersionsRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.SetBucketWebsiteConfigurationRequest;
 import com.amazonaws.services.s3.model.VersionListing;
 import com.amazonaws.services.s3.transfer.TransferManager;
@@ -97,6 +103,12 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 import javax.servlet.http.HttpServletResponse;
@@ -136,6 +148,8 @@ public class AwsS3DistributionServiceImpl extends AbstractDistributionService
       = "org.opencastproject.distribution.aws.s3.presigned.url";
   public static final String AWS_S3_PRESIGNED_URL_VALID_DURATION_CONFIG
       = "org.opencastproject.distribution.aws.s3.presigned.url.valid.duration";
+  public static final String AWS_S3_UPLOAD_CONCURRENCY_CONFIG
+      = "org.opencastproject.distribution.aws.s3.upload.concurrency";
   // config.properties
   public static final String OPENCAST_DOWNLOAD_URL = "org.opencastproject.download.url";
   public static final String OPENCAST_STORAGE_DIR = "org.opencastproject.storage.dir";
@@ -156,6 +170,9 @@ public class AwsS3DistributionServiceImpl extends AbstractDistributionService
   /** Max expiration time for presigned URL in millis, 7 days */
   private static final int MAXIMUM_PRESIGNED_URL_EXPIRE_MILLIS = 7 * 24 * 60 * 60 * 1000;
 
+  /** Default number of elements of a job that are uploaded at the same time */
+  public static final int DEFAULT_UPLOAD_CONCURRENCY = 1;
+
   /** The keys to look for in the service configuration file to override the defaults */
   public static final String DISTRIBUTE_JOB_LOAD_KEY = "job.load.aws.s3.distribute";
   public static final String RETRACT_JOB_LOAD_KEY = "job.load.aws.s3.retract";
@@ -196,6 +213,9 @@ public class AwsS3DistributionServiceImpl extends AbstractDistributionService
   /** valid duration for presigned URL in milliseconds */
   private int presignedUrlValidDuration = DEFAULT_PRESIGNED_URL_EXPIRE_MILLIS;
 
+  /** The number of elements of a job that are uploaded at the same time */
+  private int uploadConcurrency = DEFAULT_UPLOAD_CONCURRENCY;
+
   /** The opencast download distribution url */
   private String opencastDistributionUrl = null;
 
@@ -272,6 +292,11 @@ public class AwsS3DistributionServiceImpl extends AbstractDistributionService
         presignedUrlValidDuration = MAXIMUM_PRESIGNED_URL_EXPIRE_MILLIS;
       }
 
+      // Number of elements uploaded at the same time
+      uploadConcurrency = Math.max(1, NumberUtils.toInt(OsgiUtil.getComponentContextProperty(cc,
+              AWS_S3_UPLOAD_CONCURRENCY_CONFIG, null), DEFAULT_UPLOAD_CONCURRENCY));
+      logger.info("AWS S3 distribution uploads up to {} elements of a job at the same time", uploadConcurrency);
+
       opencastDistributionUrl = getAWSConfigKey(cc, AWS_S3_DISTRIBUTION_BASE_CONFIG);
       if (!opencastDistributionUrl.endsWith("/")) {
         opencastDistributionUrl = opencastDistributionUrl + "/";
@@ -407,19 +432,93 @@ public class AwsS3DistributionServiceImpl extends AbstractDistributionService
     notNull(channelId, "channelId");
 
     final Set<MediaPackageElement> elements = getElements(mediapackage, elementIds);
-    List<MediaPackageElement> distributedElements = new ArrayList<>();
 
     if (AdaptivePlaylist.hasHLSPlaylist(elements)) {
       return distributeHLSElements(channelId, mediapackage, elements, checkAvailability);
     }
 
+    List<Transfer> transfers = new ArrayList<>();
     for (MediaPackageElement element : elements) {
-      MediaPackageElement distributedElement = distributeElement(channelId, mediapackage, element, checkAvailability);
-      distributedElements.add(distributedElement);
+      transfers.add(new Transfer(element, null));
     }
+    List<MediaPackageElement> distributedElements = distributeAll(channelId, mediapackage, transfers,
+            checkAvailability);
     return distributedElements.toArray(new MediaPackageElement[distributedElements.size()]);
   }
 
+  /**
+   * Distributes the given elements, uploading up to the configured number of elements at the same time.
+   *
+   * @param channelId
+   *          the distribution channel
+   * @param mediaPackage
+   *          the media package that contains the elements
+   * @param transfers
+   *          the elements to distribute along with their sources
+   * @param checkAvailability
+   *          checks if the distributed elements are available
+   * @return the distributed elements, in the order of the transfers
+   * @throws DistributionException
+   *           if distributing any of the elements fails
+   */
+  private List<MediaPackageElement> distributeAll(String channelId, MediaPackage mediaPackage,
+          List<Transfer> transfers, boolean checkAvailability) throws DistributionException {
+    final TransferStatistics statistics = new TransferStatistics();
+    final List<MediaPackageElement> distributedElements = new ArrayList<>();
+    final int concurrency = Math.min(uploadConcurrency, transfers.size());
+    if (concurrency <= 1) {
+      for (Transfer transfer : transfers) {
+        distributedElements.add(distributeElement(channelId, mediaPackage, transfer.element, checkAvailability,
+                transfer.source, statistics));
+      }
+    } else {
+      // The workers need the security context of this job to access the workspace
+      final Organization organization = securityService.getOrganization();
+      final User user = securityService.getUser();
+      final ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+      boolean success = false;
+      try {
+        final List<CompletableFuture<MediaPackageElement>> futures = new ArrayList<>();
+        for (Transfer transfer : transfers) {
+          final CompletableFuture<MediaPackageElement> future = new CompletableFuture<>();
+          workers.execute(() -> SecurityUtil.runAs(securityService, organization, user, () -> {
+            try {
+              future.complete(distributeElement(channelId, mediaPackage, transfer.element, checkAvailability,
+                      transfer.source, statistics));
+            } catch (Throwable t) {
+              future.completeExceptionally(t);
+            }
+          }));
+          futures.add(future);
+        }
+        for (CompletableFuture<MediaPackageElement> future : futures) {
+          distributedElements.add(future.get());
+        }
+        success = true;
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof DistributionException) {
+          throw (DistributionException) e.getCause();
+        }
+        throw new DistributionException(e.getCause());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new DistributionException("Interrupted while distributing " + mediaPackage, e);
+      } finally {
+        if (!success) {
+          // Interrupting the workers does not stop the uploads running in the transfer manager
+          statistics.abort();
+        }
+        workers.shutdownNow();
+      }
+    }
+    final long millis = Math.max(1L, System.currentTimeMillis() - statistics.start);
+    logger.info("Distributed {} elements of media package {} to bucket {} in {} ms: uploaded {} objects with {} bytes "
+            + "({} KB/s), skipped {} unchanged objects", transfers.size(), mediaPackage, bucketName, millis,
+            statistics.uploaded.get(), statistics.bytes.get(), statistics.bytes.get() * 1000 / 1024 / millis,
+            statistics.skipped.get());
+    return distributedElements;
+  }
+
   private Set<MediaPackageElement> getElements(MediaPackage mediapackage, Set<String> elementIds)
           throws IllegalStateException {
     final Set<MediaPackageElement> elements = new HashSet<>();
@@ -453,33 +552,57 @@ public class AwsS3DistributionServiceImpl extends AbstractDistributionService
     notNull(mediaPackage, "mediapackage");
     notNull(element, "element");
 
-    try {
-      return distributeElement(channelId, mediaPackage, element, checkAvailability, workspace.get(element.getURI()));
-    } catch (NotFoundException e) {
-      throw new DistributionException("Unable to find " + element.getURI() + " in the workspace", e);
-    } catch (IOException e) {
-      throw new DistributionException("Error loading " + element.getURI() + " from the workspace", e);
-    }
+    return distributeElement(channelId, mediaPackage, element, checkAvailability, null, new TransferStatistics());
   }
 
+  /**
+   * Distribute a media package element to AWS S3 unless an identical object has been distributed before.
+   *
+   * @param source
+   *          the file to upload, <code>null</code> to get the element from the workspace
+   * @param statistics
+   *          the statistics of the job to update
+   */
   private MediaPackageElement distributeElement(String channelId, final MediaPackage mediaPackage,
-          MediaPackageElement element, boolean checkAvailability, File source) throws DistributionException {
+          MediaPackageElement element, boolean checkAvailability, File source, TransferStatistics statistics)
+          throws DistributionException {
+
+    final boolean fromWorkspace = source == null;
+    if (fromWorkspace) {
+      try {
+        source = workspace.get(element.getURI());
+      } catch (NotFoundException e) {
+        throw new DistributionException("Unable to find " + element.getURI() + " in the workspace", e);
+      } catch (IOException e) {
+        throw new DistributionException("Error loading " + element.getURI() + " from the workspace", e);
+      }
+    }
 
     // Use TransferManager to take advantage of multipart upload.
     // TransferManager processes all transfers asynchronously, so this call will return immediately.
     try {
       String objectName = buildObjectName(channelId, mediaPackage.getIdentifier().toString(), element);
-      logger.info("Uploading {} to bucket {}...", objectName, bucketName);
-      Upload upload = s3TransferManager.upload(bucketName, objectName, source);
-      long start = System.currentTimeMillis();
+      if (isDistributed(objectName, element, source, fromWorkspace)) {
+        logger.info("Object {} in bucket {} is up to date, skipping upload", objectName, bucketName);
+        statistics.skipped.incrementAndGet();
+      } else {
+        logger.info("Uploading {} to bucket {}...", objectName, bucketName);
+        Upload upload = s3TransferManager.upload(bucketName, objectName, source);
+        statistics.started(upload);
+        long start = System.currentTimeMillis();
 
-      try {
-        // Block and wait for the upload to finish
-        upload.waitForCompletion();
-        logger.info("Upload of {} to bucket {} completed in {} seconds", objectName, bucketName,
-                (System.currentTimeMillis() - start) / 1000);
-      } catch (AmazonClientException e) {
-        throw new DistributionException("AWS error: " + e.getMessage(), e);
+        try {
+          // Block and wait for the upload to finish
+          upload.waitForCompletion();
+          logger.info("Upload of {} to bucket {} completed in {} seconds", objectName, bucketName,
+                  (System.currentTimeMillis() - start) / 1000);
+        } catch (AmazonClientException e) {
+          throw new DistributionException("AWS error: " + e.getMessage(), e);
+        } finally {
+          statistics.finished(upload);
+        }
+        statistics.uploaded.incrementAndGet();
+        statistics.bytes.addAndGet(source.length());
       }
 
       // Create a representation of the distributed file in the media package
@@ -545,6 +668,54 @@ public class AwsS3DistributionServiceImpl extends AbstractDistributionService
     }
   }
 
+  /**
+   * Checks whether the object has been distributed with the content of the given file before. Objects uploaded in a
+   * single part have the md5 of their content as entity tag, so only files of the same size as the object are hashed.
+   * The entity tag of objects uploaded in multiple parts is not the md5 of their content, so these are always uploaded
+   * again.
+   *
+   * @param objectName
+   *          the name of the object
+   * @param element
+   *          the element to distribute
+   * @param source
+   *          the file to upload
+   * @param fromWorkspace
+   *          whether the file has been taken from the workspace, which may know its md5 already
+   * @return <code>true</code> if the object exists and its entity tag matches the md5 of the file
+   */
+  private boolean isDistributed(String objectName, MediaPackageElement element, File source, boolean fromWorkspace) {
+    final ObjectMetadata metadata;
+    try {
+      metadata = s3.getObjectMetadata(bucketName, objectName);
+    } catch (AmazonServiceException e) {
+      if (e.getStatusCode() != HttpServletResponse.SC_NOT_FOUND) {
+        logger.debug("Unable to get metadata of object {}: {}", objectName, e.getMessage());
+      }
+      return false;
+    } catch (AmazonClientException e) {
+      logger.debug("Unable to get metadata of object {}: {}", objectName, e.getMessage());
+      return false;
+    }
+    if (metadata == null || metadata.getETag() == null || metadata.getContentLength() != source.length()) {
+      return false;
+    }
+    if (metadata.getETag().contains("-")) {
+      // Multipart upload
+      return false;
+    }
+    try {
+      Checksum md5 = fromWorkspace ? workspace.getChecksum(element.getURI()) : null;
+      if (md5 == null) {
+        md5 = Checksum.create(ChecksumType.DEFAULT_TYPE, source);
+      }
+      return StringUtils.equalsIgnoreCase(StringUtils.strip(metadata.getETag(), "\""), md5.getValue());
+    } catch (IOException e) {
+      logger.debug("Unable to compute md5 of {}", source, e);
+      return false;
+    }
+  }
+
   @Override
   public Job retract(String channelId, MediaPackage mediapackage, String elementId) throws DistributionException {
     Set<String> elementIds = new HashSet<>();
@@ -819,13 +990,12 @@ public class AwsS3DistributionServiceImpl extends AbstractDistributionService
   private MediaPackageElement[] distributeHLSElements(String channelId, MediaPackage mediapackage,
           Set<MediaPackageElement> elements, boolean checkAvailability) throws DistributionException {
 
-    List<MediaPackageElement> distributedElements = new ArrayList<MediaPackageElement>();
+    List<Transfer> transfers = new ArrayList<Transfer>();
     List<MediaPackageElement> nontrackElements = elements.stream()
             .filter(e -> e.getElementType() != MediaPackageElement.Type.Track).collect(Collectors.toList());
     // Distribute non track items
     for (MediaPackageElement element : nontrackElements) {
-      MediaPackageElement distributedElement = distributeElement(channelId, mediapackage, element, checkAvailability);
-      distributedElements.add(distributedElement);
+      transfers.add(new Transfer(element, null));
     }
     // Then get all tracks from mediapackage and sort them by flavor
     // Each flavor is one video with multiple renditions
@@ -842,6 +1012,7 @@ public class AwsS3DistributionServiceImpl extends AbstractDistributionService
       trackElementsMap.put(t.getFlavor(), l);
     }
 
+    List<MediaPackageElement> distributedElements;
     Path tmpDir = null;
     try {
       tmpDir = Files.createTempDirectory(tmpPath, mediapackage.getIdentifier().toString());
@@ -881,14 +1052,11 @@ public class AwsS3DistributionServiceImpl extends AbstractDistributionService
             transformedTracks.addAll(tracks); // not playlists, distribute anyway
           }
           for (Track track : transformedTracks) {
-            MediaPackageElement distributedElement;
             if (AdaptivePlaylist.isPlaylist(track)) {
-              distributedElement = distributeElement(channelId, mediapackage, track, checkAvailability,
-                      new File(track.getURI()));
+              transfers.add(new Transfer(track, new File(track.getURI())));
             } else {
-              distributedElement = distributeElement(channelId, mediapackage, track, checkAvailability);
+              transfers.add(new Transfer(track, null));
             }
-            distributedElements.add(distributedElement);
           }
         } catch (MediaPackageException | NotFoundException | IOException e1) {
           logger.error("HLS Prepare failed for mediapackage {} in {}: {} ", elementSet.getKey(), mediapackage, e1);
@@ -898,6 +1066,8 @@ public class AwsS3DistributionServiceImpl extends AbstractDistributionService
           throw new DistributionException("Cannot distribute - BAD URI syntax " + mediapackage);
         }
       }
+      // The fixed playlists have to be uploaded before the temporary directory is removed
+      distributedElements = distributeAll(channelId, mediapackage, transfers, checkAvailability);
     } catch (IOException e2) {
       throw new DistributionException("Cannot create tmp dir to process HLS:" + mediapackage + e2.getMessage());
     } finally {
@@ -1036,6 +1206,10 @@ public class AwsS3DistributionServiceImpl extends AbstractDistributionService
     opencastDistributionUrl = distributionUrl;
   }
 
+  protected void setUploadConcurrency(int uploadConcurrency) {
+    this.uploadConcurrency = uploadConcurrency;
+  }
+
   // Use by unit test
   protected void setStorageTmp(String path) {
     this.tmpPath = Paths.get(path, DEFAULT_TEMP_DIR);
@@ -1046,4 +1220,57 @@ public class AwsS3DistributionServiceImpl extends AbstractDistributionService
     }
   }
 
+  /** An element to distribute and the file to upload, <code>null</code> to get the element from the workspace */
+  private static final class Transfer {
+    private final MediaPackageElement element;
+    private final File source;
+
+    Transfer(MediaPackageElement element, File source) {
+      this.element = element;
+      this.source = source;
+    }
+  }
+
+  /** The uploads of a single job */
+  private static final class TransferStatistics {
+    private final long start = System.currentTimeMillis();
+    private final AtomicInteger uploaded = new AtomicInteger();
+    private final AtomicInteger skipped = new AtomicInteger();
+    private final AtomicLong bytes = new AtomicLong();
+
+    /** The uploads in progress, <code>null</code> once the job has been aborted */
+    private Set<Upload> running = new HashSet<>();
+
+    /** Registers an upload in progress, which is aborted right away if the job has been aborted already. */
+    synchronized void started(Upload upload) {
+      if (running == null) {
+        abort(upload);
+      } else {
+        running.add(upload);
+      }
+    }
+
+    synchronized void finished(Upload upload) {
+      if (running != null) {
+        running.remove(upload);
+      }
+    }
+
+    /** Aborts all uploads in progress and all uploads started later on. */
+    synchronized void abort() {
+      if (running != null) {
+        running.forEach(TransferStatistics::abort);
+        running = null;
+      }
+    }
+
+    private static void abort(Upload upload) {
+      try {
+        upload.abort();
+      } catch (AmazonClientException e) {
+        logger.warn("Unable to abort upload {}: {}", upload.getDescription(), e.getMessage());
+      }
+    }
+  }
+
 }
@@ -20,19 +20,25 @@
  */
 package org.opencastproject.distribution.aws.s3;
 
+import org.opencastproject.distribution.api.DistributionException;
 import org.opencastproject.mediapackage.MediaPackage;
 import org.opencastproject.mediapackage.MediaPackageBuilder;
 import org.opencastproject.mediapackage.MediaPackageBuilderFactory;
 import org.opencastproject.mediapackage.MediaPackageElement;
 import org.opencastproject.mediapackage.MediaPackageParser;
+import org.opencastproject.security.api.SecurityService;
 import org.opencastproject.serviceregistry.api.ServiceRegistry;
+import org.opencastproject.util.Checksum;
+import org.opencastproject.util.ChecksumType;
 import org.opencastproject.util.FileSupport;
 import org.opencastproject.workspace.api.Workspace;
 
+import com.amazonaws.AmazonClientException;
 import com.amazonaws.AmazonServiceException;
 import com.amazonaws.services.s3.AmazonS3Client;
 import com.amazonaws.services.s3.model.Bucket;
 import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.transfer.TransferManager;
 import com.amazonaws.services.s3.transfer.Upload;
 import com.google.gson.Gson;
@@ -53,6 +59,8 @@ import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 public class AwsS3DistributionServiceImplTest {
   private AmazonS3Client s3;
@@ -69,6 +77,7 @@ public class AwsS3DistributionServiceImplTest {
   private MediaPackage mp = null;
   private MediaPackage distributedMp = null;
   private File storageDir = null;
+  private File baseDir = null;
 
   @Before
   public void setUp() throws Exception {
@@ -76,7 +85,7 @@ public class AwsS3DistributionServiceImplTest {
     s3 = EasyMock.createNiceMock(AmazonS3Client.class);
     tm = EasyMock.createNiceMock(TransferManager.class);
     // Replay will be called in each test
-    File baseDir = FileSupport.getTempDirectory("s3distribution");
+    baseDir = FileSupport.getTempDirectory("s3distribution");
     File srcFile = new File(baseDir, "presenter-m3u8/video-presenter-delivery.m3u8");
     FileUtils.copyURLToFile(this.getClass().getResource("/video-presenter-delivery.m3u8"), srcFile);
     srcFile = new File(baseDir, "presenter-mp4/video-presenter-delivery.mp4");
@@ -106,6 +115,9 @@ public class AwsS3DistributionServiceImplTest {
     service.setS3TransferManager(tm);
     service.setStorageTmp(baseDir.getAbsolutePath());
     service.setWorkspace(workspace);
+    SecurityService securityService = EasyMock.createNiceMock(SecurityService.class);
+    EasyMock.replay(securityService);
+    service.setSecurityService(securityService);
 
     MediaPackageBuilder builder = MediaPackageBuilderFactory.newInstance().newMediaPackageBuilder();
     storageDir = new File(baseDir.getAbsolutePath() + AwsS3DistributionServiceImpl.DEFAULT_TEMP_DIR);
@@ -288,6 +300,129 @@ public class AwsS3DistributionServiceImplTest {
     Assert.assertFalse(Files.exists(tempfile));
   }
 
+  @Test
+  public void testDistributeHLSElementsConcurrently() throws Exception {
+    MediaPackageBuilder builder = MediaPackageBuilderFactory.newInstance().newMediaPackageBuilder();
+    URI mpURI = AwsS3DistributionServiceImpl.class.getResource("/hls_mediapackage.xml").toURI();
+    mp = builder.loadFromXml(mpURI.toURL().openStream());
+    Upload upload = EasyMock.createNiceMock(Upload.class);
+    EasyMock.expect(tm.upload(EasyMock.anyObject(String.class), EasyMock.anyObject(String.class),
+            EasyMock.anyObject(File.class))).andReturn(upload).times(2);
+    EasyMock.replay(upload, tm);
+    service.setUploadConcurrency(4);
+
+    Set<String> mpeIds = new LinkedHashSet<String>();
+    mpeIds.add("presenter-mp4");
+    mpeIds.add("presenter-m3u8");
+
+    MediaPackageElement[] mpes = service.distributeElements("channelId", mp, mpeIds, false);
+    Assert.assertEquals(2, mpes.length);
+    Assert.assertEquals(new URI(
+        "http://XYZ.cloudfront.net/channelId/efd6e4df-63b6-49af-be5f-15f598778877/"
+            + "presenter-mp4/video-presenter-delivery.mp4"),
+        mpes[0].getURI());
+    EasyMock.verify(tm);
+  }
+
+  @Test
+  public void testSkipUnchangedObject() throws Exception {
+    File source = new File(baseDir, "video-presenter-delivery.mp4");
+    ObjectMetadata metadata = new ObjectMetadata();
+    metadata.setContentLength(source.length());
+    metadata.setHeader("ETag", Checksum.create(ChecksumType.DEFAULT_TYPE, source).getValue());
+    EasyMock.expect(s3.getObjectMetadata(BUCKET_NAME,
+            "channelId/efd6e4df-63b6-49af-be5f-15f598778877/presenter-delivery/video-presenter-delivery.mp4"))
+            .andReturn(metadata).once();
+    // the transfer manager must not be used at all
+    tm = EasyMock.createMock(TransferManager.class);
+    service.setS3TransferManager(tm);
+    EasyMock.replay(s3, tm);
+
+    Set<String> mpeIds = new LinkedHashSet<String>();
+    mpeIds.add("presenter-delivery");
+
+    MediaPackageElement[] mpes = service.distributeElements("channelId", mp, mpeIds, false);
+    Assert.assertEquals(new URI(
+        "http://XYZ.cloudfront.net/channelId/efd6e4df-63b6-49af-be5f-15f598778877/"
+            + "presenter-delivery/video-presenter-delivery.mp4"),
+        mpes[0].getURI());
+    EasyMock.verify(s3, tm);
+  }
+
+  @Test
+  public void testUploadMultipartObjectAgain() throws Exception {
+    File source = new File(baseDir, "video-presenter-delivery.mp4");
+    ObjectMetadata metadata = new ObjectMetadata();
+    metadata.setContentLength(source.length());
+    // The entity tag of a multipart upload is not the md5 of the content
+    metadata.setHeader("ETag", Checksum.create(ChecksumType.DEFAULT_TYPE, source).getValue() + "-2");
+    EasyMock.expect(s3.getObjectMetadata(BUCKET_NAME,
+            "channelId/efd6e4df-63b6-49af-be5f-15f598778877/presenter-delivery/video-presenter-delivery.mp4"))
+            .andReturn(metadata).once();
+    Upload upload = EasyMock.createNiceMock(Upload.class);
+    tm = EasyMock.createMock(TransferManager.class);
+    EasyMock.expect(tm.upload(EasyMock.eq(BUCKET_NAME), EasyMock.anyObject(String.class),
+            EasyMock.anyObject(File.class))).andReturn(upload).once();
+    service.setS3TransferManager(tm);
+    EasyMock.replay(s3, tm, upload);
+
+    Set<String> mpeIds = new LinkedHashSet<String>();
+    mpeIds.add("presenter-delivery");
+
+    service.distributeElements("channelId", mp, mpeIds, false);
+    EasyMock.verify(s3, tm);
+  }
+
+  @Test
+  public void testAbortUploadsOnFailure() throws Exception {
+    MediaPackageBuilder builder = MediaPackageBuilderFactory.newInstance().newMediaPackageBuilder();
+    URI mpURI = AwsS3DistributionServiceImpl.class.getResource("/hls_mediapackage.xml").toURI();
+    mp = builder.loadFromXml(mpURI.toURL().openStream());
+
+    final CountDownLatch playlistStarted = new CountDownLatch(1);
+    final CountDownLatch aborted = new CountDownLatch(1);
+    // The upload of the video fails once the upload of the playlist has been started
+    Upload failing = EasyMock.createNiceMock(Upload.class);
+    failing.waitForCompletion();
+    EasyMock.expectLastCall().andAnswer(() -> {
+      playlistStarted.await(10, TimeUnit.SECONDS);
+      throw new AmazonClientException("Upload failed");
+    });
+    // The upload of the playlist only finishes once it has been aborted
+    Upload running = EasyMock.createMock(Upload.class);
+    running.waitForCompletion();
+    EasyMock.expectLastCall().andAnswer(() -> {
+      aborted.await(10, TimeUnit.SECONDS);
+      throw new AmazonClientException("Upload aborted");
+    });
+    running.abort();
+    EasyMock.expectLastCall().andAnswer(() -> {
+      aborted.countDown();
+      return null;
+    }).once();
+    EasyMock.expect(tm.upload(EasyMock.anyObject(String.class), EasyMock.contains("presenter-mp4"),
+            EasyMock.anyObject(File.class))).andReturn(failing);
+    EasyMock.expect(tm.upload(EasyMock.anyObject(String.class), EasyMock.contains("presenter-m3u8"),
+            EasyMock.anyObject(File.class))).andAnswer(() -> {
+              playlistStarted.countDown();
+              return running;
+            });
+    EasyMock.replay(failing, running, tm);
+    service.setUploadConcurrency(2);
+
+    Set<String> mpeIds = new LinkedHashSet<String>();
+    mpeIds.add("presenter-mp4");
+    mpeIds.add("presenter-m3u8");
+
+    try {
+      service.distributeElements("channelId", mp, mpeIds, false);
+      Assert.fail("Distribution should have failed");
+    } catch (DistributionException e) {
+      // expected
+    }
+    EasyMock.verify(running);
+  }
+
   @Test
   public void testBuildObjectName() {
     MediaPackageElement element = mp.getElementById("presenter-delivery");
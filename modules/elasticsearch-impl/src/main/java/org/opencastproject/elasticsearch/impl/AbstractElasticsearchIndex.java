@@ -26,6 +26,7 @@ import org.opencastproject.elasticsearch.api.SearchIndex;
 import org.opencastproject.elasticsearch.api.SearchIndexException;
 import org.opencastproject.elasticsearch.api.SearchQuery;
 import org.opencastproject.elasticsearch.api.SearchQuery.Order;
+import org.opencastproject.util.jmx.JmxUtil;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -35,7 +36,6 @@ import org.elasticsearch.ElasticsearchStatusException;
 import org.elasticsearch.action.DocWriteResponse;
 import org.elasticsearch.action.admin.indices.delete.DeleteIndexRequest;
 import org.elasticsearch.action.bulk.BulkItemResponse;
-import org.elasticsearch.action.bulk.BulkRequest;
 import org.elasticsearch.action.bulk.BulkResponse;
 import org.elasticsearch.action.delete.DeleteRequest;
 import org.elasticsearch.action.delete.DeleteResponse;
@@ -70,12 +70,16 @@ import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
+import javax.management.ObjectInstance;
+
 /**
  * A search index implementation based on ElasticSearch.
  */
@@ -105,6 +109,34 @@ public abstract class AbstractElasticsearchIndex implements SearchIndex {
   /** Default scheme of an external Elasticsearch server */
   private static final String ELASTICSEARCH_SERVER_SCHEME_DEFAULT = "http";
 
+  /** Configuration key defining the maximum number of documents sent to Elasticsearch in one bulk request */
+  public static final String ELASTICSEARCH_BULK_ACTIONS_KEY = "org.opencastproject.elasticsearch.bulk.actions";
+
+  /** Configuration key defining the maximum size in bytes of the documents sent in one bulk request */
+  public static final String ELASTICSEARCH_BULK_SIZE_KEY = "org.opencastproject.elasticsearch.bulk.size";
+
+  /** Configuration key defining how long in milliseconds a document waits for others to be sent with */
+  public static final String ELASTICSEARCH_BULK_FLUSH_INTERVAL_KEY
+          = "org.opencastproject.elasticsearch.bulk.flush.interval";
+
+  /** Configuration key defining how many documents may wait to be sent before indexing blocks */
+  public static final String ELASTICSEARCH_BULK_QUEUE_SIZE_KEY = "org.opencastproject.elasticsearch.bulk.queue.size";
+
+  /** Default maximum number of documents per bulk request */
+  private static final int ELASTICSEARCH_BULK_ACTIONS_DEFAULT = 500;
+
+  /** Default maximum size of the documents per bulk request */
+  private static final long ELASTICSEARCH_BULK_SIZE_DEFAULT = 5L * 1024L * 1024L;
+
+  /** Default time a document waits for others to be sent with */
+  private static final long ELASTICSEARCH_BULK_FLUSH_INTERVAL_DEFAULT = 200L;
+
+  /** Default number of documents that may wait to be sent */
+  private static final int ELASTICSEARCH_BULK_QUEUE_SIZE_DEFAULT = 10000;
+
+  /** JMX type of the bulk indexing statistics, suffixed by the index name */
+  private static final String JMX_BULK_INDEXER_TYPE = "ElasticsearchBulkIndexer-";
+
   /** Identifier of the root entry */
   private static final String ROOT_ID = "root";
 
@@ -135,6 +167,24 @@ public abstract class AbstractElasticsearchIndex implements SearchIndex {
   /** Port of an external Elasticsearch server to connect to */
   private int externalServerPort = ELASTICSEARCH_SERVER_PORT_DEFAULT;
 
+  /** Maximum number of documents per bulk request */
+  private int bulkActions = ELASTICSEARCH_BULK_ACTIONS_DEFAULT;
+
+  /** Maximum size of the documents per bulk request */
+  private long bulkSize = ELASTICSEARCH_BULK_SIZE_DEFAULT;
+
+  /** Time a document waits for others to be sent with */
+  private long bulkFlushInterval = ELASTICSEARCH_BULK_FLUSH_INTERVAL_DEFAULT;
+
+  /** Number of documents that may wait to be sent */
+  private int bulkQueueSize = ELASTICSEARCH_BULK_QUEUE_SIZE_DEFAULT;
+
+  /** The pipeline sending documents to the index */
+  private BulkIndexer bulkIndexer = null;
+
+  /** The registered bulk indexing statistics */
+  private ObjectInstance bulkIndexerMXBean = null;
+
   /**
    * Returns an array of document types for the index. For every one of these, the corresponding document type
    * definition will be loaded.
@@ -165,6 +215,18 @@ public abstract class AbstractElasticsearchIndex implements SearchIndex {
     externalServerPort = Integer.parseInt(StringUtils
             .defaultIfBlank(ctx.getBundleContext().getProperty(ELASTICSEARCH_SERVER_PORT_KEY),
                     ELASTICSEARCH_SERVER_PORT_DEFAULT + ""));
+    bulkActions = Integer.parseInt(StringUtils
+            .defaultIfBlank(ctx.getBundleContext().getProperty(ELASTICSEARCH_BULK_ACTIONS_KEY),
+                    ELASTICSEARCH_BULK_ACTIONS_DEFAULT + ""));
+    bulkSize = Long.parseLong(StringUtils
+            .defaultIfBlank(ctx.getBundleContext().getProperty(ELASTICSEARCH_BULK_SIZE_KEY),
+                    ELASTICSEARCH_BULK_SIZE_DEFAULT + ""));
+    bulkFlushInterval = Long.parseLong(StringUtils
+            .defaultIfBlank(ctx.getBundleContext().getProperty(ELASTICSEARCH_BULK_FLUSH_INTERVAL_KEY),
+                    ELASTICSEARCH_BULK_FLUSH_INTERVAL_DEFAULT + ""));
+    bulkQueueSize = Integer.parseInt(StringUtils
+            .defaultIfBlank(ctx.getBundleContext().getProperty(ELASTICSEARCH_BULK_QUEUE_SIZE_KEY),
+                    ELASTICSEARCH_BULK_QUEUE_SIZE_DEFAULT + ""));
   }
 
   @Override
@@ -224,7 +286,10 @@ public abstract class AbstractElasticsearchIndex implements SearchIndex {
   }
 
   /**
-   * Posts the input document to the search index.
+   * Posts the input document to the search index and waits until the documents are visible to searches.
+   * <p>
+   * The documents become visible with the next periodic refresh of the index rather than forcing a refresh. They are
+   * sent as soon as the bulk indexing pipeline is idle, sharing a bulk request with writes queued concurrently.
    *
    * @param documents
    *          the input documents
@@ -233,29 +298,124 @@ public abstract class AbstractElasticsearchIndex implements SearchIndex {
    *           if posting to the index fails
    */
   protected BulkResponse update(ElasticsearchDocument... documents) throws SearchIndexException {
+    return update(WriteRequest.RefreshPolicy.WAIT_UNTIL, documents);
+  }
 
-    final BulkRequest bulkRequest = new BulkRequest().setRefreshPolicy(WriteRequest.RefreshPolicy.IMMEDIATE);
+  /**
+   * Posts the input documents to the search index and waits until they have been written.
+   * <p>
+   * The documents are sent through the bulk indexing pipeline, so they may share a bulk request with documents posted
+   * concurrently. Use {@link WriteRequest.RefreshPolicy#IMMEDIATE} only if the caller needs to search for the documents
+   * right away.
+   *
+   * @param refresh
+   *          the refresh policy
+   * @param documents
+   *          the input documents
+   * @return the query response
+   * @throws SearchIndexException
+   *           if posting to the index fails
+   */
+  protected BulkResponse update(WriteRequest.RefreshPolicy refresh, ElasticsearchDocument... documents)
+          throws SearchIndexException {
+    final long start = System.currentTimeMillis();
+    final List<CompletableFuture<BulkItemResponse>> futures = new ArrayList<>(documents.length);
     for (ElasticsearchDocument doc : documents) {
-      bulkRequest.add(new IndexRequest(getIndexName(doc.getType())).id(doc.getUID()).source(doc));
+      futures.add(submit(refresh, doc, true));
     }
 
+    final BulkItemResponse[] items = new BulkItemResponse[documents.length];
+    for (int i = 0; i < items.length; i++) {
+      items[i] = BulkIndexer.await(futures.get(i));
+    }
+    return new BulkResponse(items, System.currentTimeMillis() - start);
+  }
+
+  /**
+   * Queues the input document to be posted to the search index without waiting for it to be written.
+   * <p>
+   * Writes are sent in the order they have been queued. If the pipeline is full, this method blocks until there is
+   * room for the document.
+   *
+   * @param refresh
+   *          the refresh policy
+   * @param document
+   *          the input document
+   * @return the result of the write, which completes exceptionally with a {@link SearchIndexException} if posting
+   *         to the index fails
+   */
+  protected CompletableFuture<BulkItemResponse> updateAsync(WriteRequest.RefreshPolicy refresh,
+          ElasticsearchDocument document) {
+    return submit(refresh, document, false);
+  }
+
+  /**
+   * Queues the input document in the bulk indexing pipeline.
+   *
+   * @param awaited
+   *          whether the caller waits for the document to be written
+   */
+  private CompletableFuture<BulkItemResponse> submit(WriteRequest.RefreshPolicy refresh,
+          ElasticsearchDocument document, boolean awaited) {
+    final IndexRequest request;
     try {
-      final BulkResponse bulkResponse = client.bulk(bulkRequest, RequestOptions.DEFAULT);
-
-      // Check for errors
-      if (bulkResponse.hasFailures()) {
-        for (BulkItemResponse item : bulkResponse) {
-          if (item.isFailed()) {
-            logger.warn("Error updating {}: {}", item, item.getFailureMessage());
-            throw new SearchIndexException(item.getFailureMessage());
-          }
+      request = new IndexRequest(getIndexName(document.getType())).id(document.getUID()).source(document);
+    } catch (Exception e) {
+      final CompletableFuture<BulkItemResponse> failed = new CompletableFuture<>();
+      failed.completeExceptionally(new SearchIndexException("Cannot serialize document " + document.getUID(), e));
+      return failed;
+    }
+    return getBulkIndexer().submit(request, refresh, awaited);
+  }
+
+  /**
+   * Waits until all documents queued so far have been written to the index.
+   *
+   * @throws SearchIndexException
+   *           if waiting is interrupted
+   */
+  public void flush() throws SearchIndexException {
+    getBulkIndexer().flush();
+  }
+
+  /**
+   * Waits for the results of queued writes. All writes are waited for, even if some of them failed.
+   *
+   * @param futures
+   *          the results of the writes
+   * @throws SearchIndexException
+   *           if any of the writes failed or waiting is interrupted
+   */
+  public static void awaitAll(Collection<? extends CompletableFuture<?>> futures) throws SearchIndexException {
+    SearchIndexException failure = null;
+    for (CompletableFuture<?> future : futures) {
+      try {
+        BulkIndexer.await(future);
+      } catch (SearchIndexException e) {
+        if (Thread.currentThread().isInterrupted()) {
+          throw e;
+        }
+        if (failure == null) {
+          failure = e;
         }
       }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
 
-      return bulkResponse;
-    } catch (Throwable t) {
-      throw new SearchIndexException("Cannot update documents in index " + getIndexName(), t);
+  /**
+   * Returns the bulk indexing pipeline, creating it if necessary.
+   */
+  private synchronized BulkIndexer getBulkIndexer() {
+    if (bulkIndexer == null) {
+      final String name = index != null ? index : getClass().getSimpleName();
+      bulkIndexer = new BulkIndexer(name, request -> client.bulk(request, RequestOptions.DEFAULT), bulkActions,
+              bulkSize, bulkFlushInterval, bulkQueueSize);
+      bulkIndexerMXBean = JmxUtil.registerMXBean(bulkIndexer, JMX_BULK_INDEXER_TYPE + name);
     }
+    return bulkIndexer;
   }
 
   /**
@@ -296,6 +456,16 @@ public abstract class AbstractElasticsearchIndex implements SearchIndex {
    *           if stopping the Elasticsearch node fails
    */
   protected void close() throws IOException {
+    synchronized (this) {
+      if (bulkIndexer != null) {
+        bulkIndexer.shutdown();
+        bulkIndexer = null;
+      }
+      if (bulkIndexerMXBean != null) {
+        JmxUtil.unregisterMXBean(bulkIndexerMXBean);
+        bulkIndexerMXBean = null;
+      }
+    }
     if (client != null) {
       client.close();
     }
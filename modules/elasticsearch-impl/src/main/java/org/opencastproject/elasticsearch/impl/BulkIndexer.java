@@ -0,0 +1,448 @@
+/**
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.elasticsearch.impl;
+
+import org.opencastproject.elasticsearch.api.SearchIndexException;
+
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.support.WriteRequest.RefreshPolicy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pipeline that coalesces index writes into bulk requests.
+ * <p>
+ * Writes are queued and sent by a single worker thread, so they reach the index in the order they were submitted. A
+ * batch is sent once it reaches the maximum number of actions or bytes, or once its oldest write waited for the flush
+ * interval. Writes asking for {@link RefreshPolicy#IMMEDIATE} are sent right away together with everything queued in
+ * front of them, since their callers wait for the result to read it back. Batches holding a write whose caller waits
+ * for it are sent as soon as no further writes are queued, so synchronous writes don't wait out the flush interval but
+ * still share bulk requests with writes queued while the previous batch was being sent. Several writes to the same
+ * document within one batch are coalesced into the latest one.
+ * <p>
+ * The refresh policy of a bulk request is the strongest one requested by its writes. Callers that don't need to read
+ * their writes should ask for {@link RefreshPolicy#NONE}, which lets Elasticsearch refresh the index at its own pace.
+ * <p>
+ * The queue is bounded: once it is full, submitting further writes blocks until the worker caught up.
+ */
+final class BulkIndexer implements BulkIndexerMXBean {
+
+  /** Logging facility */
+  private static final Logger logger = LoggerFactory.getLogger(BulkIndexer.class);
+
+  /** The time to wait for queued writes to be sent when shutting down */
+  private static final long SHUTDOWN_TIMEOUT_MILLIS = 30000L;
+
+  /** Executes a bulk request against the index. */
+  interface Sender {
+    BulkResponse send(BulkRequest request) throws IOException;
+  }
+
+  /** Name of the index, used for logging */
+  private final String name;
+
+  /** Executes the bulk requests */
+  private final Sender sender;
+
+  /** The maximum number of writes per bulk request */
+  private final int maxActions;
+
+  /** The maximum size of the documents per bulk request in bytes */
+  private final long maxBytes;
+
+  /** The maximum time a write waits for further writes to be batched with */
+  private final long flushIntervalNanos;
+
+  /** The writes waiting to be sent */
+  private final BlockingQueue<Pending> queue;
+
+  /** The worker sending the bulk requests */
+  private final Thread worker;
+
+  /** Whether new writes are accepted */
+  private volatile boolean running = true;
+
+  private final AtomicLong batches = new AtomicLong();
+  private final AtomicLong documents = new AtomicLong();
+  private final AtomicLong coalesced = new AtomicLong();
+  private final AtomicLong failed = new AtomicLong();
+  private final AtomicLong batchedWrites = new AtomicLong();
+  private final AtomicLong totalLatency = new AtomicLong();
+  private final AtomicLong maxLatency = new AtomicLong();
+  private volatile long lastLatency = 0L;
+
+  /**
+   * Creates and starts a bulk indexing pipeline.
+   *
+   * @param name
+   *          the name of the index
+   * @param sender
+   *          executes the bulk requests
+   * @param maxActions
+   *          the maximum number of writes per bulk request
+   * @param maxBytes
+   *          the maximum size of the documents per bulk request in bytes
+   * @param flushIntervalMillis
+   *          the maximum time in milliseconds a write waits for further writes to be batched with
+   * @param queueCapacity
+   *          the maximum number of queued writes before submitting blocks
+   */
+  BulkIndexer(String name, Sender sender, int maxActions, long maxBytes, long flushIntervalMillis,
+          int queueCapacity) {
+    if (maxActions < 1 || maxBytes < 1 || flushIntervalMillis < 0 || queueCapacity < 1) {
+      throw new IllegalArgumentException("Invalid bulk indexer configuration");
+    }
+    this.name = name;
+    this.sender = sender;
+    this.maxActions = maxActions;
+    this.maxBytes = maxBytes;
+    this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+    this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    this.worker = new Thread(this::run, "Elasticsearch bulk indexer (" + name + ")");
+    this.worker.setDaemon(true);
+    this.worker.start();
+    logger.debug("Started bulk indexer for index '{}' with batches of up to {} documents, {} bytes and {} ms", name,
+            maxActions, maxBytes, flushIntervalMillis);
+  }
+
+  /**
+   * Queues a write. Blocks while the queue is full.
+   *
+   * @param request
+   *          the write request
+   * @param refresh
+   *          the refresh policy the caller needs
+   * @return the result of the write, which fails with a {@link SearchIndexException} if the write failed
+   */
+  CompletableFuture<BulkItemResponse> submit(DocWriteRequest<?> request, RefreshPolicy refresh) {
+    return submit(request, refresh, false);
+  }
+
+  /**
+   * Queues a write. Blocks while the queue is full.
+   *
+   * @param request
+   *          the write request
+   * @param refresh
+   *          the refresh policy the caller needs
+   * @param awaited
+   *          whether the caller waits for the result, in which case the write is not held back for further writes
+   * @return the result of the write, which fails with a {@link SearchIndexException} if the write failed
+   */
+  CompletableFuture<BulkItemResponse> submit(DocWriteRequest<?> request, RefreshPolicy refresh, boolean awaited) {
+    return enqueue(new Pending(request, refresh, awaited));
+  }
+
+  /**
+   * Sends all writes queued so far and waits until they have been executed.
+   *
+   * @throws SearchIndexException
+   *           if waiting is interrupted
+   */
+  void flush() throws SearchIndexException {
+    await(enqueue(new Pending(null, RefreshPolicy.NONE, false)));
+  }
+
+  /**
+   * Stops accepting writes and waits for the queued ones to be sent.
+   */
+  void shutdown() {
+    running = false;
+    // Wake up the worker if it is waiting for further writes. If the queue is full, it doesn't wait anyway.
+    queue.offer(new Pending(null, RefreshPolicy.NONE, false));
+    try {
+      worker.join(SHUTDOWN_TIMEOUT_MILLIS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    Pending pending;
+    while ((pending = queue.poll()) != null) {
+      pending.future.completeExceptionally(new SearchIndexException("Bulk indexer of " + name + " has been shut down"));
+    }
+  }
+
+  /**
+   * Waits for the result of a write.
+   *
+   * @param future
+   *          the result of the write
+   * @return the response of the write
+   * @throws SearchIndexException
+   *           if the write failed or waiting is interrupted
+   */
+  static <A> A await(CompletableFuture<A> future) throws SearchIndexException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SearchIndexException("Interrupted while waiting for the index", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof SearchIndexException) {
+        throw (SearchIndexException) e.getCause();
+      }
+      throw new SearchIndexException(e.getCause());
+    }
+  }
+
+  private CompletableFuture<BulkItemResponse> enqueue(Pending pending) {
+    if (!running) {
+      pending.future.completeExceptionally(new SearchIndexException("Bulk indexer of " + name + " has been shut down"));
+      return pending.future;
+    }
+    try {
+      queue.put(pending);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      pending.future.completeExceptionally(new SearchIndexException("Interrupted while queueing index write", e));
+      return pending.future;
+    }
+    // The worker may have terminated while we were waiting for a free slot
+    if (!running && !worker.isAlive() && queue.remove(pending)) {
+      pending.future.completeExceptionally(new SearchIndexException("Bulk indexer of " + name + " has been shut down"));
+    }
+    return pending.future;
+  }
+
+  /** The worker loop collecting and sending the batches. */
+  private void run() {
+    final long pollNanos = Math.max(flushIntervalNanos, TimeUnit.MILLISECONDS.toNanos(100));
+    final List<Pending> batch = new ArrayList<>();
+    while (running || !queue.isEmpty()) {
+      try {
+        Pending first = queue.poll(pollNanos, TimeUnit.NANOSECONDS);
+        if (first == null) {
+          continue;
+        }
+        batch.add(first);
+        long bytes = first.size;
+        boolean urgent = first.isUrgent();
+        boolean awaited = first.awaited;
+        long deadline = first.queued + flushIntervalNanos;
+        while (!urgent && batch.size() < maxActions && bytes < maxBytes) {
+          long remaining = deadline - System.nanoTime();
+          Pending next = remaining > 0 && running && !awaited
+                  ? queue.poll(remaining, TimeUnit.NANOSECONDS)
+                  : queue.poll();
+          if (next == null) {
+            break;
+          }
+          batch.add(next);
+          bytes += next.size;
+          urgent = next.isUrgent();
+          awaited |= next.awaited;
+        }
+        send(batch);
+      } catch (InterruptedException e) {
+        logger.warn("Bulk indexer of index '{}' has been interrupted", name);
+        running = false;
+      } catch (Throwable t) {
+        logger.error("Unexpected error in bulk indexer of index '{}'", name, t);
+        for (Pending pending : batch) {
+          pending.future.completeExceptionally(t);
+        }
+      } finally {
+        batch.clear();
+      }
+    }
+    logger.debug("Bulk indexer of index '{}' stopped", name);
+  }
+
+  /**
+   * Sends a batch of writes as a single bulk request and completes their results.
+   */
+  private void send(List<Pending> batch) {
+    // Coalesce writes to the same document, the latest one wins
+    final Map<String, Pending> writes = new LinkedHashMap<>();
+    final List<Pending> markers = new ArrayList<>();
+    RefreshPolicy refresh = RefreshPolicy.NONE;
+    for (Pending pending : batch) {
+      if (pending.request == null) {
+        markers.add(pending);
+        continue;
+      }
+      if (strength(pending.refresh) > strength(refresh)) {
+        refresh = pending.refresh;
+      }
+      final String key = pending.request.index() + '/' + pending.request.id();
+      final Pending previous = writes.remove(key);
+      if (previous != null) {
+        coalesced.incrementAndGet();
+        pending.future.whenComplete((item, t) -> {
+          if (t != null) {
+            previous.future.completeExceptionally(t);
+          } else {
+            previous.future.complete(item);
+          }
+        });
+      }
+      writes.put(key, pending);
+    }
+
+    if (!writes.isEmpty()) {
+      final BulkRequest request = new BulkRequest().setRefreshPolicy(refresh);
+      for (Pending pending : writes.values()) {
+        request.add(pending.request);
+      }
+
+      final long start = System.nanoTime();
+      try {
+        final BulkItemResponse[] items = sender.send(request).getItems();
+        int i = 0;
+        for (Pending pending : writes.values()) {
+          final BulkItemResponse item = items[i++];
+          if (item.isFailed()) {
+            logger.warn("Error updating {}: {}", item, item.getFailureMessage());
+            failed.incrementAndGet();
+            pending.future.completeExceptionally(new SearchIndexException(item.getFailureMessage()));
+          } else {
+            documents.incrementAndGet();
+            pending.future.complete(item);
+          }
+        }
+      } catch (Exception e) {
+        logger.warn("Error sending {} documents to index '{}': {}", writes.size(), name, e.getMessage());
+        failed.addAndGet(writes.size());
+        final SearchIndexException error = new SearchIndexException("Cannot update documents in index " + name, e);
+        for (Pending pending : writes.values()) {
+          pending.future.completeExceptionally(error);
+        }
+      } finally {
+        final long latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        lastLatency = latency;
+        totalLatency.addAndGet(latency);
+        maxLatency.accumulateAndGet(latency, Math::max);
+        batchedWrites.addAndGet(writes.size());
+        batches.incrementAndGet();
+        logger.trace("Sent {} documents to index '{}' in {} ms with refresh policy {}", writes.size(), name, latency,
+                refresh);
+      }
+    }
+
+    for (Pending marker : markers) {
+      marker.future.complete(null);
+    }
+  }
+
+  /** Orders the refresh policies by how much they ask of the index. */
+  private static int strength(RefreshPolicy refresh) {
+    switch (refresh) {
+      case IMMEDIATE:
+        return 2;
+      case WAIT_UNTIL:
+        return 1;
+      default:
+        return 0;
+    }
+  }
+
+  @Override
+  public int getQueueDepth() {
+    return queue.size();
+  }
+
+  @Override
+  public int getQueueCapacity() {
+    return queue.size() + queue.remainingCapacity();
+  }
+
+  @Override
+  public long getBatches() {
+    return batches.get();
+  }
+
+  @Override
+  public long getDocuments() {
+    return documents.get();
+  }
+
+  @Override
+  public long getCoalescedDocuments() {
+    return coalesced.get();
+  }
+
+  @Override
+  public long getFailedDocuments() {
+    return failed.get();
+  }
+
+  @Override
+  public double getAverageBatchSize() {
+    final long count = batches.get();
+    return count > 0 ? (double) batchedWrites.get() / count : 0;
+  }
+
+  @Override
+  public double getAverageBatchLatency() {
+    final long count = batches.get();
+    return count > 0 ? (double) totalLatency.get() / count : 0;
+  }
+
+  @Override
+  public long getMaxBatchLatency() {
+    return maxLatency.get();
+  }
+
+  @Override
+  public long getLastBatchLatency() {
+    return lastLatency;
+  }
+
+  /** A queued write along with its result. A write without request marks a flush. */
+  private static final class Pending {
+    private final DocWriteRequest<?> request;
+    private final RefreshPolicy refresh;
+    private final boolean awaited;
+    private final long size;
+    private final long queued = System.nanoTime();
+    private final CompletableFuture<BulkItemResponse> future = new CompletableFuture<>();
+
+    private Pending(DocWriteRequest<?> request, RefreshPolicy refresh, boolean awaited) {
+      this.request = request;
+      this.refresh = refresh;
+      this.awaited = awaited;
+      this.size = request instanceof IndexRequest && ((IndexRequest) request).source() != null
+              ? ((IndexRequest) request).source().length()
+              : 0;
+    }
+
+    private boolean isUrgent() {
+      return request == null || refresh == RefreshPolicy.IMMEDIATE;
+    }
+  }
+
+}
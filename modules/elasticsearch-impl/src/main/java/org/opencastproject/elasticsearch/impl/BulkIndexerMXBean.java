@@ -0,0 +1,100 @@
+/**
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.elasticsearch.impl;
+
+/**
+ * JMX Bean interface exposing the statistics of the bulk indexing pipeline of a search index.
+ */
+public interface BulkIndexerMXBean {
+
+  /**
+   * Gets the number of documents waiting to be sent to the index
+   *
+   * @return the queue depth
+   */
+  int getQueueDepth();
+
+  /**
+   * Gets the maximum number of documents that may wait to be sent before callers are blocked
+   *
+   * @return the queue capacity
+   */
+  int getQueueCapacity();
+
+  /**
+   * Gets the number of bulk requests sent to the index
+   *
+   * @return the number of batches
+   */
+  long getBatches();
+
+  /**
+   * Gets the number of documents written to the index
+   *
+   * @return the number of documents
+   */
+  long getDocuments();
+
+  /**
+   * Gets the number of documents that have been superseded by a newer version of the same document before they were
+   * sent to the index
+   *
+   * @return the number of coalesced documents
+   */
+  long getCoalescedDocuments();
+
+  /**
+   * Gets the number of documents that could not be written to the index
+   *
+   * @return the number of failed documents
+   */
+  long getFailedDocuments();
+
+  /**
+   * Gets the average number of documents per bulk request
+   *
+   * @return the average batch size
+   */
+  double getAverageBatchSize();
+
+  /**
+   * Gets the average time it took to execute a bulk request in milliseconds
+   *
+   * @return the average batch latency
+   */
+  double getAverageBatchLatency();
+
+  /**
+   * Gets the longest time it took to execute a bulk request in milliseconds
+   *
+   * @return the maximum batch latency
+   */
+  long getMaxBatchLatency();
+
+  /**
+   * Gets the time the last bulk request took in milliseconds
+   *
+   * @return the latency of the last batch
+   */
+  long getLastBatchLatency();
+
+}
@@ -0,0 +1,204 @@
+/**
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.elasticsearch.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.opencastproject.elasticsearch.api.SearchIndexException;
+
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.DocWriteResponse;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.support.WriteRequest.RefreshPolicy;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test cases for {@link BulkIndexer}
+ */
+public class BulkIndexerTest {
+
+  /** The bulk requests sent to the index */
+  private final List<BulkRequest> requests = new CopyOnWriteArrayList<>();
+
+  /** Identifiers of documents the index fails to write */
+  private Set<String> failing = Collections.emptySet();
+
+  private BulkIndexer indexer;
+
+  @After
+  public void tearDown() {
+    if (indexer != null) {
+      indexer.shutdown();
+    }
+  }
+
+  private BulkIndexer createIndexer(int maxActions, long flushIntervalMillis) {
+    indexer = new BulkIndexer("test", this::send, maxActions, Long.MAX_VALUE, flushIntervalMillis, 100);
+    return indexer;
+  }
+
+  private BulkResponse send(BulkRequest request) {
+    requests.add(request);
+    List<BulkItemResponse> items = new ArrayList<>();
+    int i = 0;
+    for (DocWriteRequest<?> r : request.requests()) {
+      if (failing.contains(r.id())) {
+        items.add(new BulkItemResponse(i++, DocWriteRequest.OpType.INDEX,
+                new BulkItemResponse.Failure(r.index(), "_doc", r.id(), new Exception("failed"))));
+      } else {
+        items.add(new BulkItemResponse(i++, DocWriteRequest.OpType.INDEX, (DocWriteResponse) null));
+      }
+    }
+    return new BulkResponse(items.toArray(new BulkItemResponse[0]), 1);
+  }
+
+  private static IndexRequest doc(String id) {
+    return new IndexRequest("test").id(id).source(Collections.singletonMap("title", "Document " + id));
+  }
+
+  @Test
+  public void testWritesAreBatched() throws Exception {
+    createIndexer(100, 60000);
+    List<CompletableFuture<BulkItemResponse>> futures = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      futures.add(indexer.submit(doc(Integer.toString(i)), RefreshPolicy.NONE));
+    }
+    indexer.flush();
+
+    assertEquals(1, requests.size());
+    assertEquals(5, requests.get(0).numberOfActions());
+    assertEquals(RefreshPolicy.NONE, requests.get(0).getRefreshPolicy());
+    for (CompletableFuture<BulkItemResponse> future : futures) {
+      assertTrue(future.isDone());
+      assertFalse(future.get().isFailed());
+    }
+    assertEquals(5, indexer.getDocuments());
+    assertEquals(0, indexer.getQueueDepth());
+  }
+
+  @Test
+  public void testBatchesAreLimitedInSize() throws Exception {
+    createIndexer(2, 60000);
+    for (int i = 0; i < 5; i++) {
+      indexer.submit(doc(Integer.toString(i)), RefreshPolicy.NONE);
+    }
+    indexer.flush();
+
+    assertEquals(3, requests.size());
+    assertEquals(2, requests.get(0).numberOfActions());
+    assertEquals(2, requests.get(1).numberOfActions());
+    assertEquals(1, requests.get(2).numberOfActions());
+    assertEquals(3, indexer.getBatches());
+  }
+
+  @Test
+  public void testImmediateWriteIsSentRightAway() throws Exception {
+    createIndexer(100, 60000);
+    CompletableFuture<BulkItemResponse> future = indexer.submit(doc("a"), RefreshPolicy.IMMEDIATE);
+    future.get(10, TimeUnit.SECONDS);
+
+    assertEquals(1, requests.size());
+    assertEquals(RefreshPolicy.IMMEDIATE, requests.get(0).getRefreshPolicy());
+  }
+
+  @Test
+  public void testAwaitedWriteDoesNotWaitForFlushInterval() throws Exception {
+    createIndexer(100, 60000);
+    indexer.submit(doc("a"), RefreshPolicy.WAIT_UNTIL, true).get(10, TimeUnit.SECONDS);
+
+    assertEquals(1, requests.size());
+    assertEquals(RefreshPolicy.WAIT_UNTIL, requests.get(0).getRefreshPolicy());
+  }
+
+  @Test
+  public void testFlushIntervalSendsBatch() throws Exception {
+    createIndexer(100, 10);
+    indexer.submit(doc("a"), RefreshPolicy.NONE).get(10, TimeUnit.SECONDS);
+    assertEquals(1, requests.size());
+  }
+
+  @Test
+  public void testWritesToTheSameDocumentAreCoalesced() throws Exception {
+    createIndexer(100, 60000);
+    CompletableFuture<BulkItemResponse> first = indexer.submit(doc("a"), RefreshPolicy.NONE);
+    CompletableFuture<BulkItemResponse> second = indexer.submit(doc("b"), RefreshPolicy.NONE);
+    CompletableFuture<BulkItemResponse> third = indexer.submit(doc("a"), RefreshPolicy.WAIT_UNTIL);
+    indexer.flush();
+
+    assertEquals(1, requests.size());
+    assertEquals(2, requests.get(0).numberOfActions());
+    assertEquals("b", requests.get(0).requests().get(0).id());
+    assertEquals("a", requests.get(0).requests().get(1).id());
+    assertEquals(RefreshPolicy.WAIT_UNTIL, requests.get(0).getRefreshPolicy());
+    assertTrue(first.isDone());
+    assertTrue(second.isDone());
+    assertTrue(third.isDone());
+    assertEquals(1, indexer.getCoalescedDocuments());
+  }
+
+  @Test
+  public void testFailedWriteFailsItsResultOnly() throws Exception {
+    failing = Collections.singleton("b");
+    createIndexer(100, 60000);
+    CompletableFuture<BulkItemResponse> a = indexer.submit(doc("a"), RefreshPolicy.NONE);
+    CompletableFuture<BulkItemResponse> b = indexer.submit(doc("b"), RefreshPolicy.NONE);
+    indexer.flush();
+
+    assertFalse(a.get().isFailed());
+    try {
+      b.get();
+      fail("Failed write should fail its result");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof SearchIndexException);
+    }
+    assertEquals(1, indexer.getDocuments());
+    assertEquals(1, indexer.getFailedDocuments());
+  }
+
+  @Test
+  public void testShutdownSendsQueuedWrites() throws Exception {
+    createIndexer(100, 60000);
+    CompletableFuture<BulkItemResponse> future = indexer.submit(doc("a"), RefreshPolicy.NONE);
+    indexer.shutdown();
+
+    assertTrue(future.isDone());
+    assertFalse(future.get().isFailed());
+    assertTrue(indexer.submit(doc("b"), RefreshPolicy.NONE).isCompletedExceptionally());
+  }
+
+}
@@ -55,6 +55,7 @@ import org.opencastproject.util.NotFoundException;
 import org.opencastproject.util.data.Option;
 
 import org.elasticsearch.action.DocWriteResponse;
+import org.elasticsearch.action.bulk.BulkResponse;
 import org.elasticsearch.action.delete.DeleteRequest;
 import org.elasticsearch.action.delete.DeleteResponse;
 import org.elasticsearch.action.search.SearchRequest;
@@ -72,9 +73,14 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 import java.util.function.Function;
 
 import javax.xml.bind.Unmarshaller;
@@ -83,9 +89,78 @@ public abstract class AbstractSearchIndex extends AbstractElasticsearchIndex {
 
   private static final Logger logger = LoggerFactory.getLogger(AbstractSearchIndex.class);
 
+  /** The handlers writing the payloads of index update messages to this index, by message destination */
+  private final Map<String, Consumer<Serializable>> messageHandlers = new ConcurrentHashMap<>();
+
+  /** Whether writing to this index failed while the current thread handled a message payload */
+  private final ThreadLocal<Boolean> writeFailed = new ThreadLocal<>();
+
   @Override
   public abstract String getIndexName();
 
+  /**
+   * Registers the handler that writes the payloads of the messages sent to a destination to this index. This allows
+   * the index rebuild to write documents right away instead of sending them as messages.
+   *
+   * @param destinationId
+   *          the message destination
+   * @param handler
+   *          writes a message payload to this index and fails if it cannot be written
+   */
+  public void addMessageHandler(String destinationId, Consumer<Serializable> handler) {
+    messageHandlers.put(destinationId, handler);
+  }
+
+  /**
+   * Removes a handler registered with {@link #addMessageHandler(String, Consumer)}.
+   *
+   * @param destinationId
+   *          the message destination
+   * @param handler
+   *          the handler
+   */
+  public void removeMessageHandler(String destinationId, Consumer<Serializable> handler) {
+    messageHandlers.remove(destinationId, handler);
+  }
+
+  /**
+   * Returns the handler writing the payloads of the messages sent to a destination to this index. The handler throws an
+   * {@link IllegalStateException} if writing to the index fails, even if the receiver of the messages just logs the
+   * failure.
+   *
+   * @param destinationId
+   *          the message destination
+   * @return the handler or <code>null</code> if the messages are not handled within this process
+   */
+  public Consumer<Serializable> getMessageHandler(String destinationId) {
+    final Consumer<Serializable> handler = messageHandlers.get(destinationId);
+    if (handler == null) {
+      return null;
+    }
+    return payload -> {
+      writeFailed.remove();
+      try {
+        handler.accept(payload);
+        if (writeFailed.get() != null) {
+          throw new IllegalStateException("Unable to write " + payload + " to index '" + getIndexName() + "'");
+        }
+      } finally {
+        writeFailed.remove();
+      }
+    };
+  }
+
+  @Override
+  protected BulkResponse update(WriteRequest.RefreshPolicy refresh, ElasticsearchDocument... documents)
+          throws SearchIndexException {
+    try {
+      return super.update(refresh, documents);
+    } catch (SearchIndexException | RuntimeException e) {
+      writeFailed.set(true);
+      throw e;
+    }
+  }
+
   /**
    * Adds the recording event to the search index or updates it accordingly if it is there.
    *
@@ -109,6 +184,26 @@ public abstract class AbstractSearchIndex extends AbstractElasticsearchIndex {
     }
   }
 
+  /**
+   * Queues the recording event to be added to the search index or updated accordingly if it is there, without waiting
+   * for it to be written. Use this to update many events at once.
+   *
+   * @param event
+   *          the recording event
+   * @param refresh
+   *          the refresh policy, {@link WriteRequest.RefreshPolicy#WAIT_UNTIL} if the caller needs to search for the
+   *          event once the update completed
+   * @return the result of the update
+   */
+  public CompletableFuture<Void> addOrUpdateAsync(Event event, WriteRequest.RefreshPolicy refresh) {
+    logger.debug("Queueing event {} for search index", event.getIdentifier());
+
+    SearchMetadataCollection inputDocument = EventIndexUtils.toSearchMetadata(event);
+    ElasticsearchDocument doc = new ElasticsearchDocument(inputDocument.getIdentifier(),
+            inputDocument.getDocumentType(), inputDocument.getMetadata());
+    return updateAsync(refresh, doc).thenApply(item -> null);
+  }
+
   /**
    * Adds or updates the group in the search index.
    *
@@ -153,6 +248,26 @@ public abstract class AbstractSearchIndex extends AbstractElasticsearchIndex {
     }
   }
 
+  /**
+   * Queues the series to be added to or updated in the search index, without waiting for it to be written. Use this to
+   * update many series at once.
+   *
+   * @param series
+   *          the series
+   * @param refresh
+   *          the refresh policy, {@link WriteRequest.RefreshPolicy#WAIT_UNTIL} if the caller needs to search for the
+   *          series once the update completed
+   * @return the result of the update
+   */
+  public CompletableFuture<Void> addOrUpdateAsync(Series series, WriteRequest.RefreshPolicy refresh) {
+    logger.debug("Queueing series {} for search index", series.getIdentifier());
+
+    SearchMetadataCollection inputDocument = SeriesIndexUtils.toSearchMetadata(series);
+    ElasticsearchDocument doc = new ElasticsearchDocument(inputDocument.getIdentifier(),
+            inputDocument.getDocumentType(), inputDocument.getMetadata());
+    return updateAsync(refresh, doc).thenApply(item -> null);
+  }
+
   /**
    * Adds or updates the theme in the search index.
    *
@@ -188,6 +303,7 @@ public abstract class AbstractSearchIndex extends AbstractElasticsearchIndex {
         return false;
       }
     } catch (IOException e) {
+      writeFailed.set(true);
       throw new SearchIndexException(e);
     }
 
@@ -48,6 +48,7 @@ import org.opencastproject.util.NotFoundException;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.elasticsearch.action.support.WriteRequest.RefreshPolicy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -61,6 +62,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
 
 import javax.xml.bind.Unmarshaller;
 
@@ -615,17 +617,18 @@ public final class EventIndexUtils {
               organization, currentManagedAcl, e);
     }
     if (result != null && result.getHitCount() > 0) {
+      List<CompletableFuture<Void>> updates = new ArrayList<>();
       for (SearchResultItem<Event> eventItem : result.getItems()) {
         Event event = eventItem.getSource();
         event.setManagedAcl(newManagedAcl);
-        try {
-          searchIndex.addOrUpdate(event);
-        } catch (SearchIndexException e) {
+        updates.add(searchIndex.addOrUpdateAsync(event, RefreshPolicy.WAIT_UNTIL).exceptionally(e -> {
           logger.warn(
                   "Unable to update event '{}' from current managed acl '{}' to new managed acl name '{}'",
                   event, currentManagedAcl, newManagedAcl, e);
-        }
+          return null;
+        }));
       }
+      awaitQuietly(updates);
     }
   }
 
@@ -652,15 +655,27 @@ public final class EventIndexUtils {
               organization, managedAcl, e);
     }
     if (result != null && result.getHitCount() > 0) {
+      List<CompletableFuture<Void>> updates = new ArrayList<>();
       for (SearchResultItem<Event> eventItem : result.getItems()) {
         Event event = eventItem.getSource();
         event.setManagedAcl(null);
-        try {
-          searchIndex.addOrUpdate(event);
-        } catch (SearchIndexException e) {
+        updates.add(searchIndex.addOrUpdateAsync(event, RefreshPolicy.WAIT_UNTIL).exceptionally(e -> {
           logger.warn("Unable to update event '{}' to remove managed acl '{}'", event, managedAcl, e);
-        }
+          return null;
+        }));
       }
+      awaitQuietly(updates);
+    }
+  }
+
+  /**
+   * Waits for queued updates whose failures are handled already.
+   */
+  private static void awaitQuietly(List<CompletableFuture<Void>> updates) {
+    try {
+      AbstractSearchIndex.awaitAll(updates);
+    } catch (SearchIndexException e) {
+      logger.warn("Interrupted while waiting for {} event updates", updates.size());
     }
   }
 
@@ -42,6 +42,7 @@ import org.opencastproject.util.DateTimeSupport;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.elasticsearch.action.support.WriteRequest.RefreshPolicy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -51,6 +52,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import javax.xml.bind.Unmarshaller;
 
@@ -244,11 +246,13 @@ public final class SeriesIndexUtils {
 
     SearchResult<Event> events = searchIndex
             .getByQuery(new EventSearchQuery(organization, user).withoutActions().withSeriesId(series.getIdentifier()));
+    List<CompletableFuture<Void>> updates = new ArrayList<>();
     for (SearchResultItem<Event> searchResultItem : events.getItems()) {
       Event event = searchResultItem.getSource();
       event.setSeriesName(series.getTitle());
-      searchIndex.addOrUpdate(event);
+      updates.add(searchIndex.addOrUpdateAsync(event, RefreshPolicy.WAIT_UNTIL));
     }
+    AbstractSearchIndex.awaitAll(updates);
   }
 
   /**
@@ -276,17 +280,18 @@ public final class SeriesIndexUtils {
               currentManagedAcl, e);
     }
     if (result != null && result.getHitCount() > 0) {
+      List<CompletableFuture<Void>> updates = new ArrayList<>();
       for (SearchResultItem<Series> seriesItem : result.getItems()) {
         Series series = seriesItem.getSource();
         series.setManagedAcl(newManagedAcl);
-        try {
-          searchIndex.addOrUpdate(series);
-        } catch (SearchIndexException e) {
+        updates.add(searchIndex.addOrUpdateAsync(series, RefreshPolicy.WAIT_UNTIL).exceptionally(e -> {
           logger.warn(
                   "Unable to update event '{}' from current managed acl '{}' to new managed acl name '{}'",
                   series, currentManagedAcl, newManagedAcl, e);
-        }
+          return null;
+        }));
       }
+      awaitQuietly(updates);
     }
   }
 
@@ -313,15 +318,27 @@ public final class SeriesIndexUtils {
               managedAcl, e);
     }
     if (result != null && result.getHitCount() > 0) {
+      List<CompletableFuture<Void>> updates = new ArrayList<>();
       for (SearchResultItem<Series> seriesItem : result.getItems()) {
         Series series = seriesItem.getSource();
         series.setManagedAcl(null);
-        try {
-          searchIndex.addOrUpdate(series);
-        } catch (SearchIndexException e) {
+        updates.add(searchIndex.addOrUpdateAsync(series, RefreshPolicy.WAIT_UNTIL).exceptionally(e -> {
           logger.warn("Unable to update series '{}' to remove managed acl '{}'", series, managedAcl, e);
-        }
+          return null;
+        }));
       }
+      awaitQuietly(updates);
+    }
+  }
+
+  /**
+   * Waits for queued updates whose failures are handled already.
+   */
+  private static void awaitQuietly(List<CompletableFuture<Void>> updates) {
+    try {
+      AbstractSearchIndex.awaitAll(updates);
+    } catch (SearchIndexException e) {
+      logger.warn("Interrupted while waiting for {} series updates", updates.size());
     }
   }
 }
@@ -20,10 +20,12 @@
  */
 package org.opencastproject.event.comment.persistence;
 
+import static org.opencastproject.util.data.functions.Misc.chuck;
 import static org.opencastproject.util.persistencefn.Queries.persistOrUpdate;
 
 import org.opencastproject.event.comment.EventComment;
 import org.opencastproject.index.rebuild.AbstractIndexProducer;
+import org.opencastproject.index.rebuild.IndexRebuildContext;
 import org.opencastproject.index.rebuild.IndexRebuildException;
 import org.opencastproject.index.rebuild.IndexRebuildService;
 import org.opencastproject.message.broker.api.MessageReceiver;
@@ -32,6 +34,7 @@ import org.opencastproject.message.broker.api.comments.CommentItem;
 import org.opencastproject.security.api.Organization;
 import org.opencastproject.security.api.OrganizationDirectoryService;
 import org.opencastproject.security.api.SecurityService;
+import org.opencastproject.security.api.User;
 import org.opencastproject.security.api.UserDirectoryService;
 import org.opencastproject.security.util.SecurityUtil;
 import org.opencastproject.util.NotFoundException;
@@ -399,33 +402,39 @@ public class EventCommentDatabaseServiceImpl extends AbstractIndexProducer imple
 
   @Override
   public void repopulate(final String indexName) throws IndexRebuildException {
+    repopulate(IndexRebuildContext.sequential(indexName, getService()));
+  }
+
+  @Override
+  public void repopulate(final IndexRebuildContext context) throws IndexRebuildException {
+    final String indexName = context.getIndexName();
     final String destinationId = CommentItem.COMMENT_QUEUE_PREFIX + WordUtils.capitalize(indexName);
     try {
       final int total = countComments();
-      final int[] current = new int[1];
-      current[0] = 0;
       logIndexRebuildBegin(logger, indexName, total, "events with comment");
       final Map<String, List<String>> eventsWithComments = getEventsWithComments();
+      context.setTotal(eventsWithComments.values().stream().mapToInt(List::size).sum());
       for (String orgId : eventsWithComments.keySet()) {
-        Organization organization = organizationDirectoryService.getOrganization(orgId);
-        SecurityUtil.runAs(securityService, organization, SecurityUtil.createSystemUser(cc, organization),
-                () -> {
-                  for (String eventId : eventsWithComments.get(orgId)) {
-                    try {
-                      List<EventComment> comments = getComments(eventId);
-                      boolean hasOpenComments = !Stream.$(comments).filter(filterOpenComments).toList().isEmpty();
-                      boolean needsCutting = !Stream.$(comments).filter(filterNeedsCuttingComment).toList().isEmpty();
-                      messageSender.sendObjectMessage(destinationId, MessageSender.DestinationType.Queue,
-                              CommentItem.update(eventId, !comments.isEmpty(), hasOpenComments, needsCutting));
-
-                      current[0] += comments.size();
-                      logIndexRebuildProgress(logger, indexName, total, current[0]);
-                    } catch (Throwable t) {
-                      logSkippingElement(logger, "comment of event", eventId, organization, t);
-                    }
-                  }
-                });
+        final Organization organization = organizationDirectoryService.getOrganization(orgId);
+        final User systemUser = SecurityUtil.createSystemUser(cc, organization);
+        for (String eventId : eventsWithComments.get(orgId)) {
+          context.submit(eventId, eventId, () -> SecurityUtil.runAs(securityService, organization, systemUser, () -> {
+            final List<EventComment> comments;
+            try {
+              comments = getComments(eventId);
+            } catch (EventCommentDatabaseException e) {
+              comments = chuck(e);
+            }
+            boolean hasOpenComments = !Stream.$(comments).filter(filterOpenComments).toList().isEmpty();
+            boolean needsCutting = !Stream.$(comments).filter(filterNeedsCuttingComment).toList().isEmpty();
+            final CommentItem update = CommentItem.update(eventId, !comments.isEmpty(), hasOpenComments, needsCutting);
+            context.write(destinationId, update,
+                () -> messageSender.sendObjectMessage(destinationId, MessageSender.DestinationType.Queue, update));
+          }));
+        }
       }
+    } catch (IndexRebuildException e) {
+      throw e;
     } catch (Exception e) {
       logIndexRebuildError(logger, indexName, e);
       throw new IndexRebuildException(indexName, getService(), e);
@@ -61,6 +61,28 @@ public interface FileUploadService {
   FileUploadJob createJob(String filename, long fileSize, int chunkSize, MediaPackage mp,
           MediaPackageElementFlavor flavor) throws FileUploadException;
 
+  /**
+   * Creates a new upload job with the given metadata. The chunks of a parallel upload job may be uploaded in any order
+   * and concurrently, which requires file size and chunk size to be known.
+   *
+   * @param filename
+   *          name of the file to be uploaded
+   * @param fileSize
+   *          size of the file
+   * @param chunkSize
+   *          size of the file parts that will be uploaded
+   * @param mp
+   *          the mediapackage this file should belong to
+   * @param flavor
+   *          the flavor of the track to create
+   * @param parallel
+   *          whether chunks may be uploaded in any order and concurrently
+   * @return FileUploadJob the job object
+   * @throws FileUploadException
+   */
+  FileUploadJob createJob(String filename, long fileSize, int chunkSize, MediaPackage mp,
+          MediaPackageElementFlavor flavor, boolean parallel) throws FileUploadException;
+
   /**
    * Returns the upload job with the given ID, throws <code>FileUploadException</code> if the job can not be found.
    *
@@ -98,6 +120,23 @@ public interface FileUploadService {
    */
   void acceptChunk(FileUploadJob job, long chunk, InputStream content) throws FileUploadException;
 
+  /**
+   * Writes a part to its position in the payload and updates the upload job accordingly. Parts of parallel upload jobs
+   * may be offered in any order and concurrently, while other jobs only accept the next part.
+   *
+   * @param job
+   *          the job object for the upload
+   * @param chunk
+   *          the number of the chunk being transfered
+   * @param content
+   *          the actual payload data
+   * @param checksum
+   *          the hex encoded MD5 checksum of the part, may be <code>null</code>
+   * @throws FileUploadException
+   *           if the part cannot be stored or does not match its checksum
+   */
+  void acceptChunk(FileUploadJob job, long chunk, InputStream content, String checksum) throws FileUploadException;
+
   /**
    * Returns an <code>InputStream</code> containing the data from the payload.
    *
@@ -24,6 +24,8 @@ package org.opencastproject.fileupload.api.job;
 import org.opencastproject.mediapackage.MediaPackage;
 import org.opencastproject.mediapackage.MediaPackageElementFlavor;
 
+import java.util.Base64;
+import java.util.BitSet;
 import java.util.UUID;
 
 import javax.xml.bind.annotation.XmlAccessType;
@@ -66,6 +68,9 @@ public class FileUploadJob {
   private long chunksTotal = 1; // total number of chunks the upload consists of
   @XmlElement(name = "current-chunk")
   private Chunk currentChunk = new Chunk(); // information about the current chunk
+  @XmlElement(name = "parallel")
+  private boolean parallel = false; // chunks may be uploaded in any order and concurrently
+  private BitSet receivedChunks = new BitSet(); // chunks of a parallel upload that have been received
 
   public FileUploadJob() {
     this.id = UUID.randomUUID().toString();
@@ -121,6 +126,54 @@ public class FileUploadJob {
     return chunksTotal;
   }
 
+  public boolean isParallel() {
+    return parallel;
+  }
+
+  public void setParallel(boolean parallel) {
+    this.parallel = parallel;
+  }
+
+  /**
+   * Marks a chunk of a parallel upload as received.
+   *
+   * @param number
+   *          the number of the chunk
+   * @return true if the chunk has not been received before
+   */
+  public synchronized boolean markChunkReceived(int number) {
+    setLastModified(System.currentTimeMillis());
+    if (receivedChunks.get(number)) {
+      return false;
+    }
+    receivedChunks.set(number);
+    return true;
+  }
+
+  public synchronized boolean isChunkReceived(int number) {
+    return receivedChunks.get(number);
+  }
+
+  /** Returns the number of chunks of a parallel upload that have been received. */
+  public synchronized int getChunksReceived() {
+    return receivedChunks.cardinality();
+  }
+
+  /** Returns true if all chunks of a parallel upload have been received. */
+  public synchronized boolean isPayloadComplete() {
+    return receivedChunks.cardinality() == chunksTotal;
+  }
+
+  @XmlElement(name = "chunks-received")
+  private synchronized String getReceivedChunksBitmap() {
+    return receivedChunks.isEmpty() ? null : Base64.getEncoder().encodeToString(receivedChunks.toByteArray());
+  }
+
+  @SuppressWarnings("unused")
+  private synchronized void setReceivedChunksBitmap(String bitmap) {
+    receivedChunks = bitmap == null ? new BitSet() : BitSet.valueOf(Base64.getDecoder().decode(bitmap));
+  }
+
   public Chunk getCurrentChunk() {
     return currentChunk;
   }
@@ -78,6 +78,8 @@ public class FileUploadRestService {
   static final String REQUESTFIELD_DATA = "filedata";
   static final String REQUESTFIELD_CHUNKSIZE = "chunksize";
   static final String REQUESTFIELD_CHUNKNUM = "chunknumber";
+  static final String REQUESTFIELD_CHECKSUM = "checksum";
+  static final String REQUESTFIELD_PARALLEL = "parallel";
   static final String REQUESTFIELD_MEDIAPACKAGE = "mediapackage";
   static final String REQUESTFIELD_FLAVOR = "flavor";
   private static final Logger log = LoggerFactory.getLogger(FileUploadRestService.class);
@@ -114,7 +116,8 @@ public class FileUploadRestService {
     @RestParameter(description = "The size of the file that will be uploaded", isRequired = false, name = REQUESTFIELD_FILESIZE, type = RestParameter.Type.STRING),
     @RestParameter(description = "The size of the chunks that will be uploaded", isRequired = false, name = REQUESTFIELD_CHUNKSIZE, type = RestParameter.Type.STRING),
     @RestParameter(description = "The flavor of this track", isRequired = false, name = REQUESTFIELD_FLAVOR, type = RestParameter.Type.STRING),
-    @RestParameter(description = "The mediapackage the file should belong to", isRequired = false, name = REQUESTFIELD_MEDIAPACKAGE, type = RestParameter.Type.TEXT)},
+    @RestParameter(description = "The mediapackage the file should belong to", isRequired = false, name = REQUESTFIELD_MEDIAPACKAGE, type = RestParameter.Type.TEXT),
+    @RestParameter(description = "Whether chunks may be uploaded in any order and concurrently, requires file size and chunk size", isRequired = false, name = REQUESTFIELD_PARALLEL, type = RestParameter.Type.BOOLEAN, defaultValue = "false")},
   responses = {
     @RestResponse(description = "job was successfully created", responseCode = HttpServletResponse.SC_OK),
     @RestResponse(description = "upload service gave an error", responseCode = HttpServletResponse.SC_NO_CONTENT)
@@ -124,7 +127,8 @@ public class FileUploadRestService {
           @FormParam(REQUESTFIELD_FILESIZE) long filesize,
           @FormParam(REQUESTFIELD_CHUNKSIZE) int chunksize,
           @FormParam(REQUESTFIELD_MEDIAPACKAGE) String mediapackage,
-          @FormParam(REQUESTFIELD_FLAVOR) String flav) {
+          @FormParam(REQUESTFIELD_FLAVOR) String flav,
+          @FormParam(REQUESTFIELD_PARALLEL) boolean parallel) {
     try {
       if (StringUtils.isBlank(filename)) {
         filename = "john.doe";
@@ -145,7 +149,7 @@ public class FileUploadRestService {
         flavor = new MediaPackageElementFlavor(flav.split("/")[0], flav.split("/")[1]);
       }
 
-      FileUploadJob job = uploadService.createJob(filename, filesize, chunksize, mp, flavor);
+      FileUploadJob job = uploadService.createJob(filename, filesize, chunksize, mp, flavor, parallel);
       return Response.ok(job.getId()).build();
     } catch (FileUploadException e) {
       log.error(e.getMessage(), e);
@@ -187,11 +191,13 @@ public class FileUploadRestService {
   @POST
   @Produces(MediaType.APPLICATION_XML)
   @Path("job/{jobID}")
-  @RestQuery(name = "newjob", description = "Appends the next chunk of data to the file on the server.", pathParameters = {
+  @RestQuery(name = "newjob", description = "Appends the next chunk of data to the file on the server. Chunks of parallel "
+          + "upload jobs may be sent in any order and concurrently.", pathParameters = {
     @RestParameter(description = "The ID of the upload job", isRequired = false, name = "jobID", type = RestParameter.Type.STRING)
   },
   restParameters = {
     @RestParameter(description = "The number of the current chunk", isRequired = false, name = "chunknumber", type = RestParameter.Type.STRING),
+    @RestParameter(description = "The hex encoded MD5 checksum of the chunk, has to be sent before the payload", isRequired = false, name = REQUESTFIELD_CHECKSUM, type = RestParameter.Type.STRING),
     @RestParameter(description = "The payload", isRequired = false, name = "filedata", type = RestParameter.Type.FILE)},
   responses = {
     @RestResponse(description = "the chunk data was successfully appended to file on server", responseCode = HttpServletResponse.SC_OK),
@@ -205,6 +211,7 @@ public class FileUploadRestService {
       }
       if (uploadService.hasJob(jobId)) {                                        // testing for existence of job here already so we can generate a 404 early
         long chunkNum = 0;
+        String checksum = null;
         FileUploadJob job = uploadService.getJob(jobId);
         ServletFileUpload upload = new ServletFileUpload();
         for (FileItemIterator iter = upload.getItemIterator(request); iter.hasNext();) {
@@ -213,9 +220,14 @@ public class FileUploadRestService {
             String name = item.getFieldName();
             if (REQUESTFIELD_CHUNKNUM.equalsIgnoreCase(name)) {
               chunkNum = Long.parseLong(Streams.asString(item.openStream()));
+            } else if (REQUESTFIELD_CHECKSUM.equalsIgnoreCase(name)) {
+              checksum = StringUtils.trimToNull(Streams.asString(item.openStream()));
             }
           } else if (REQUESTFIELD_DATA.equalsIgnoreCase(item.getFieldName())) {
-            uploadService.acceptChunk(job, chunkNum, item.openStream());
+            uploadService.acceptChunk(job, chunkNum, item.openStream(), checksum);
+            if (job.isParallel()) {                                               // other requests may have updated the job
+              job = uploadService.getJob(jobId);
+            }
             return Response.ok(job).build();
           }
         }
@@ -29,14 +29,10 @@ import org.opencastproject.fileupload.api.exception.FileUploadException;
 import org.opencastproject.fileupload.api.job.Chunk;
 import org.opencastproject.fileupload.api.job.FileUploadJob;
 import org.opencastproject.fileupload.api.job.Payload;
-import org.opencastproject.ingest.api.IngestService;
 import org.opencastproject.mediapackage.MediaPackage;
+import org.opencastproject.mediapackage.MediaPackageElement;
 import org.opencastproject.mediapackage.MediaPackageElementFlavor;
-import org.opencastproject.mediapackage.Track;
-import org.opencastproject.util.IoSupport;
-import org.opencastproject.util.data.Function2;
-import org.opencastproject.util.data.Option;
-import org.opencastproject.util.data.functions.Functions;
+import org.opencastproject.util.Checksum;
 import org.opencastproject.workspace.api.Workspace;
 
 import org.apache.commons.io.FileUtils;
@@ -54,15 +50,18 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URL;
-import java.util.ArrayList;
-import java.util.Arrays;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Calendar;
 import java.util.Dictionary;
-import java.util.HashMap;
-import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.Marshaller;
@@ -81,14 +80,16 @@ public class FileUploadServiceImpl implements FileUploadService, ManagedService
   static final String FILENAME_CHUNKFILE = "chunk.part";
   static final String FILENAME_JOBFILE = "job.xml";
   static final int READ_BUFFER_LENGTH = 512;
+  static final int PARALLEL_BUFFER_LENGTH = 64 * 1024;
   static final int DEFAULT_CLEANER_MAXTTL = 6;
 
   private File workRoot = null;
-  private IngestService ingestService;
   private Workspace workspace;
   private Marshaller jobMarshaller;
   private Unmarshaller jobUnmarshaller;
-  private HashMap<String, FileUploadJob> jobCache = new HashMap<String, FileUploadJob>();
+  private final Map<String, FileUploadJob> jobCache = new ConcurrentHashMap<String, FileUploadJob>();
+  /** Number of chunks currently being written per parallel upload job, changed while holding the job's monitor */
+  private final Map<String, Integer> parallelWrites = new ConcurrentHashMap<String, Integer>();
   private FileUploadServiceCleaner cleaner;
   private int jobMaxTTL = DEFAULT_CLEANER_MAXTTL;
 
@@ -143,10 +144,6 @@ public class FileUploadServiceImpl implements FileUploadService, ManagedService
     this.workspace = workspace;
   }
 
-  protected void setIngestService(IngestService ingestService) {
-    this.ingestService = ingestService;
-  }
-
   // </editor-fold>
 
   /**
@@ -158,7 +155,24 @@ public class FileUploadServiceImpl implements FileUploadService, ManagedService
   @Override
   public FileUploadJob createJob(String filename, long filesize, int chunksize, MediaPackage mp,
           MediaPackageElementFlavor flavor) throws FileUploadException {
+    return createJob(filename, filesize, chunksize, mp, flavor, false);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @see org.opencastproject.fileupload.api.FileUploadService#createJob(String, long, int,
+   *      org.opencastproject.mediapackage.MediaPackage, org.opencastproject.mediapackage.MediaPackageElementFlavor,
+   *      boolean)
+   */
+  @Override
+  public FileUploadJob createJob(String filename, long filesize, int chunksize, MediaPackage mp,
+          MediaPackageElementFlavor flavor, boolean parallel) throws FileUploadException {
+    if (parallel && (filesize < 1 || chunksize < 1)) {
+      throw fileUploadException(Severity.warn, "Parallel uploads require file size and chunk size to be known.");
+    }
     FileUploadJob job = new FileUploadJob(filename, filesize, chunksize, mp, flavor);
+    job.setParallel(parallel);
     logger.info("Creating new upload job: {}", job);
 
     try {
@@ -278,6 +292,7 @@ public class FileUploadServiceImpl implements FileUploadService, ManagedService
       if (isLocked(id)) {
         jobCache.remove(id);
       }
+      parallelWrites.remove(id);
       File jobDir = getJobDir(id);
       FileUtils.forceDelete(jobDir);
     } catch (Exception e) {
@@ -293,6 +308,23 @@ public class FileUploadServiceImpl implements FileUploadService, ManagedService
    */
   @Override
   public void acceptChunk(FileUploadJob job, long chunkNumber, InputStream content) throws FileUploadException {
+    acceptChunk(job, chunkNumber, content, null);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @see org.opencastproject.fileupload.api.FileUploadService#acceptChunk(org.opencastproject.fileupload.api.job.FileUploadJob
+   *      job, long chunk, InputStream content, String checksum)
+   */
+  @Override
+  public void acceptChunk(FileUploadJob job, long chunkNumber, InputStream content, String checksum)
+          throws FileUploadException {
+    if (job.isParallel()) {
+      acceptParallelChunk(job, chunkNumber, content, checksum);
+      return;
+    }
+
     // job already completed?
     if (job.getState().equals(FileUploadJob.JobState.COMPLETE)) {
       removeFromCache(job);
@@ -325,6 +357,7 @@ public class FileUploadServiceImpl implements FileUploadService, ManagedService
       throw fileUploadException(Severity.error, "Cannot create chunk file", e);
     }
     OutputStream out = null;
+    MessageDigest digest = checksum == null ? null : newDigest();
     try {
       byte[] readBuffer = new byte[READ_BUFFER_LENGTH];
       out = new FileOutputStream(chunkFile, false);
@@ -336,6 +369,9 @@ public class FileUploadServiceImpl implements FileUploadService, ManagedService
         bytesRead = content.read(readBuffer);
         if (bytesRead > 0) {
           out.write(readBuffer, 0, bytesRead);
+          if (digest != null) {
+            digest.update(readBuffer, 0, bytesRead);
+          }
           bytesReadTotal += bytesRead;
           currentChunk.setReceived(bytesReadTotal);
         }
@@ -363,6 +399,11 @@ public class FileUploadServiceImpl implements FileUploadService, ManagedService
     } else {
       supposedSize = job.getChunksize();
     }
+    if (digest != null && !matches(digest, checksum)) {
+      removeFromCache(job);
+      deleteChunkFile(job.getId());
+      throw fileUploadException(Severity.warn, format("Chunk #%d does not match its checksum.", chunkNumber));
+    }
     if (actualSize == supposedSize || (job.getChunksTotal() == 1 && job.getChunksize() == -1)) {
 
       // append chunk to payload file
@@ -402,6 +443,124 @@ public class FileUploadServiceImpl implements FileUploadService, ManagedService
     removeFromCache(job);
   }
 
+  /**
+   * Writes a chunk of a parallel upload job directly to its position in the payload file. Chunks may arrive in any
+   * order and concurrently, chunks that have been received already may be sent again. The job is finalized by the
+   * last request to finish once all chunks have been received.
+   */
+  private void acceptParallelChunk(FileUploadJob offered, long chunkNumber, InputStream content, String checksum)
+          throws FileUploadException {
+    // all requests to a job have to work on the same job object
+    final FileUploadJob job = jobCache.computeIfAbsent(offered.getId(), id -> offered);
+    final long offset;
+    final long supposedSize;
+    synchronized (job) {
+      if (job.getState() == FileUploadJob.JobState.COMPLETE || job.getState() == FileUploadJob.JobState.FINALIZING) {
+        IOUtils.closeQuietly(content);
+        throw fileUploadException(Severity.warn, "Job is already complete.");
+      }
+      if (chunkNumber < 0 || chunkNumber >= job.getChunksTotal()) {
+        IOUtils.closeQuietly(content);
+        throw fileUploadException(Severity.error,
+                format("Wrong chunk number. Awaiting #0 to #%d but #%d was offered.", job.getChunksTotal() - 1,
+                        chunkNumber));
+      }
+      parallelWrites.merge(job.getId(), 1, Integer::sum);
+      job.setState(FileUploadJob.JobState.INPROGRESS);
+      offset = chunkNumber * job.getChunksize();
+      supposedSize = Math.min(job.getChunksize(), job.getPayload().getTotalSize() - offset);
+    }
+    logger.debug("Receiving chunk #{} of job {}", chunkNumber, job);
+
+    FileUploadException failure = null;
+    boolean finish = false;
+    try {
+      final long received = writeChunk(job, chunkNumber, offset, supposedSize, content, checksum);
+      synchronized (job) {
+        if (job.markChunkReceived((int) chunkNumber)) {
+          job.getPayload().setCurrentSize(job.getPayload().getCurrentSize() + received);
+        }
+      }
+    } catch (FileUploadException e) {
+      failure = e;
+    } catch (RuntimeException e) {
+      failure = new FileUploadException("Failed to store chunk data", e);
+    } finally {
+      synchronized (job) {
+        // the last request to finish finalizes the job, even if it failed itself
+        if (parallelWrites.computeIfPresent(job.getId(), (id, n) -> n > 1 ? n - 1 : null) == null) {
+          if (job.isPayloadComplete()) {
+            job.setState(FileUploadJob.JobState.FINALIZING);
+            finish = true;
+          } else {
+            job.setState(FileUploadJob.JobState.READY);
+          }
+        }
+      }
+    }
+
+    if (finish) {
+      try {
+        finalizeJob(job);
+        logger.info("Upload job completed: {}", job);
+      } catch (FileUploadException e) {
+        job.setState(FileUploadJob.JobState.READY);
+        removeFromCache(job);
+        throw e;
+      }
+      storeJob(job);
+      removeFromCache(job);
+    } else {
+      storeJob(job);
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  /**
+   * Writes the content of a chunk to its position in the payload file using positional writes, so concurrent requests
+   * do not interfere with each other.
+   *
+   * @return the number of bytes written
+   */
+  private long writeChunk(FileUploadJob job, long chunkNumber, long offset, long supposedSize, InputStream content,
+          String checksum) throws FileUploadException {
+    final MessageDigest digest = checksum == null ? null : newDigest();
+    long received = 0L;
+    try (FileChannel channel = FileChannel.open(getPayloadFile(job.getId()).toPath(), StandardOpenOption.WRITE)) {
+      final ByteBuffer buffer = ByteBuffer.allocate(PARALLEL_BUFFER_LENGTH);
+      int bytesRead;
+      while ((bytesRead = content.read(buffer.array())) != -1) {
+        if (received + bytesRead > supposedSize) {
+          throw fileUploadException(Severity.warn,
+                  format("Chunk has wrong size. Awaited: %d bytes, received more.", supposedSize));
+        }
+        if (digest != null) {
+          digest.update(buffer.array(), 0, bytesRead);
+        }
+        buffer.clear();
+        buffer.limit(bytesRead);
+        while (buffer.hasRemaining()) {
+          received += channel.write(buffer, offset + received);
+        }
+      }
+    } catch (IOException e) {
+      throw fileUploadException(Severity.error, "Failed to store chunk data", e);
+    } finally {
+      IOUtils.closeQuietly(content);
+    }
+
+    if (received != supposedSize) {
+      throw fileUploadException(Severity.warn,
+              format("Chunk has wrong size. Awaited: %d bytes, received: %d bytes.", supposedSize, received));
+    }
+    if (digest != null && !matches(digest, checksum)) {
+      throw fileUploadException(Severity.warn, format("Chunk #%d does not match its checksum.", chunkNumber));
+    }
+    return received;
+  }
+
   /**
    * {@inheritDoc}
    *
@@ -482,26 +641,22 @@ public class FileUploadServiceImpl implements FileUploadService, ManagedService
     job.setState(FileUploadJob.JobState.COMPLETE);
   }
 
-  /** Function that writes the given file to the uploaded collection. */
-  private Function2<InputStream, File, Option<URI>> putInCollection = new Function2<InputStream, File, Option<URI>>() {
-
-    @Override
-    public Option<URI> apply(InputStream is, File f) {
-      try {
-        URI uri = workspace.putInCollection(UPLOAD_COLLECTION, f.getName(), is); // storing file with jod id as name
-        // instead of original filename to
-        // avoid collisions (original filename
-        // can be obtained from upload job)
-        return Option.some(uri);
-      } catch (IOException e) {
-        logger.error("Could not add file to collection.", e);
-        return Option.none();
-      }
-    }
-  };
+  /**
+   * Moves the payload file of an upload job into the upload collection in the WFR. The file is stored with the job id as
+   * name instead of the original filename to avoid collisions, the original filename can be obtained from the job.
+   *
+   * @param job
+   * @return URI of the file in the WFR
+   * @throws IOException
+   */
+  private URI movePayloadIntoCollection(FileUploadJob job) throws IOException {
+    final File payloadFile = getPayloadFile(job.getId());
+    return workspace.moveIntoCollection(UPLOAD_COLLECTION, payloadFile.getName(), payloadFile);
+  }
 
   /**
    * Puts the payload of an upload job into the upload collection in the WFR and returns the URL to the file in the WFR.
+   * The payload file is moved, so it is not copied if it is located on the same file system as the WFR.
    *
    * @param job
    * @return URL of the file in the WFR
@@ -509,22 +664,17 @@ public class FileUploadServiceImpl implements FileUploadService, ManagedService
    */
   private URL putPayloadIntoCollection(FileUploadJob job) throws FileUploadException {
     logger.info("Moving payload of job " + job.getId() + " to collection " + UPLOAD_COLLECTION);
-    Option<URI> result = IoSupport.withFile(getPayloadFile(job.getId()), putInCollection).flatMap(
-            Functions.<Option<URI>> identity());
-    if (result.isSome()) {
-      try {
-        return result.get().toURL();
-      } catch (MalformedURLException e) {
-        throw fileUploadException(Severity.error, "Unable to return URL of payloads final destination.", e);
-      }
-    } else {
-      throw fileUploadException(Severity.error, "Failed to put payload in collection.");
+    try {
+      return movePayloadIntoCollection(job).toURL();
+    } catch (Exception e) {
+      throw fileUploadException(Severity.error, "Failed to put payload in collection.", e);
     }
   }
 
   /**
    * Puts the payload of an upload job into a MediaPackage in the WFR, adds the files as a track to the MediaPackage and
-   * returns the files URL in the WFR.
+   * returns the files URL in the WFR. The payload file is moved into the upload collection and from there into the
+   * MediaPackage, so it is not copied if it is located on the same file system as the WFR.
    *
    * @param job
    * @return URL of the file in the WFR
@@ -532,26 +682,16 @@ public class FileUploadServiceImpl implements FileUploadService, ManagedService
    */
   private URL putPayloadIntoMediaPackage(FileUploadJob job) throws FileUploadException {
     MediaPackage mediaPackage = job.getPayload().getMediaPackage();
-    MediaPackageElementFlavor flavor = job.getPayload().getFlavor();
-    List<Track> excludeTracks = Arrays.asList(mediaPackage.getTracks(flavor));
-
-    FileInputStream fileInputStream = null;
+    String elementId = UUID.randomUUID().toString();
+    logger.info("Moving payload of job {} to element {} of media package {}", job.getId(), elementId, mediaPackage);
     try {
-      fileInputStream = new FileInputStream(getPayloadFile(job.getId()));
-      MediaPackage mp = ingestService.addTrack(fileInputStream, job.getPayload().getFilename(), job.getPayload()
-              .getFlavor(), mediaPackage);
-
-      List<Track> tracks = new ArrayList<Track>(Arrays.asList(mp.getTracks(flavor)));
-      tracks.removeAll(excludeTracks);
-      if (tracks.size() != 1) {
-        throw new FileUploadException("Ingested track not found");
-      }
-
-      return tracks.get(0).getURI().toURL();
+      URI uri = workspace.moveTo(movePayloadIntoCollection(job), mediaPackage.getIdentifier().toString(), elementId,
+              job.getPayload().getFilename());
+      MediaPackageElement track = mediaPackage.add(uri, MediaPackageElement.Type.Track, job.getPayload().getFlavor());
+      track.setIdentifier(elementId);
+      return uri.toURL();
     } catch (Exception e) {
       throw fileUploadException(Severity.error, "Failed to add payload to MediaPackage.", e);
-    } finally {
-      IOUtils.closeQuietly(fileInputStream);
     }
   }
 
@@ -578,11 +718,25 @@ public class FileUploadServiceImpl implements FileUploadService, ManagedService
   private void deletePayloadFile(String id) {
     final File payloadFile = getPayloadFile(id);
     logger.debug("Attempting to delete payload file of job " + id);
-    if (!payloadFile.delete()) {
+    // the payload file has usually been moved into the WFR already
+    if (payloadFile.exists() && !payloadFile.delete()) {
       logger.warn("Could not delete payload file " + payloadFile.getAbsolutePath());
     }
   }
 
+  private MessageDigest newDigest() throws FileUploadException {
+    try {
+      return MessageDigest.getInstance("MD5");
+    } catch (NoSuchAlgorithmException e) {
+      throw fileUploadException(Severity.error, "MD5 is not supported", e);
+    }
+  }
+
+  /** Returns true if the digest matches the given hex encoded checksum. */
+  private boolean matches(MessageDigest digest, String checksum) {
+    return Checksum.convertToHex(digest.digest()).equalsIgnoreCase(checksum.trim());
+  }
+
   /** Ensures the existence of a given file. */
   private File ensureExists(File file) throws IOException {
     file.createNewFile();
@@ -0,0 +1,228 @@
+/**
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.fileupload.service;
+
+import static org.easymock.EasyMock.anyString;
+import static org.easymock.EasyMock.capture;
+import static org.easymock.EasyMock.eq;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.opencastproject.fileupload.api.exception.FileUploadException;
+import org.opencastproject.fileupload.api.job.FileUploadJob;
+import org.opencastproject.util.Checksum;
+import org.opencastproject.workspace.api.Workspace;
+
+import org.easymock.Capture;
+import org.easymock.EasyMock;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.osgi.framework.BundleContext;
+import org.osgi.service.component.ComponentContext;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+/** Tests the parallel upload of chunks to the {@link FileUploadServiceImpl}. */
+public class FileUploadServiceImplTest {
+
+  /** Ten bytes of payload, uploaded in chunks of four bytes */
+  private static final byte[] PAYLOAD = "0123456789".getBytes();
+  private static final int CHUNK_SIZE = 4;
+
+  @Rule
+  public TemporaryFolder testFolder = new TemporaryFolder();
+
+  private FileUploadServiceImpl service;
+  private ComponentContext cc;
+  private ByteArrayOutputStream uploaded;
+
+  @Before
+  public void setUp() throws Exception {
+    final String workDir = testFolder.newFolder().getAbsolutePath();
+    BundleContext bc = EasyMock.createNiceMock(BundleContext.class);
+    EasyMock.expect(bc.getProperty(FileUploadServiceImpl.PROPKEY_KARAF_DATA)).andReturn(workDir).anyTimes();
+    cc = EasyMock.createNiceMock(ComponentContext.class);
+    EasyMock.expect(cc.getBundleContext()).andReturn(bc).anyTimes();
+
+    // the finished payload is moved into the upload collection
+    uploaded = new ByteArrayOutputStream();
+    final Capture<File> payload = EasyMock.newCapture();
+    Workspace workspace = EasyMock.createMock(Workspace.class);
+    EasyMock.expect(workspace.moveIntoCollection(eq(FileUploadServiceImpl.UPLOAD_COLLECTION), anyString(),
+            capture(payload))).andAnswer(() -> {
+              uploaded.write(Files.readAllBytes(payload.getValue().toPath()));
+              Files.delete(payload.getValue().toPath());
+              return new URI("http://localhost/files/collection/uploaded/payload");
+            }).anyTimes();
+    EasyMock.replay(bc, cc, workspace);
+
+    service = new FileUploadServiceImpl();
+    service.setWorkspace(workspace);
+    service.activate(cc);
+  }
+
+  @After
+  public void tearDown() {
+    service.deactivate(cc);
+  }
+
+  @Test
+  public void testOutOfOrderChunks() throws Exception {
+    FileUploadJob job = createJob();
+    assertEquals(3, job.getChunksTotal());
+
+    service.acceptChunk(job, 2, chunk(2));
+    service.acceptChunk(job, 0, chunk(0));
+    job = service.getJob(job.getId());
+    assertEquals(FileUploadJob.JobState.READY, job.getState());
+    assertTrue(job.isChunkReceived(0));
+    assertFalse(job.isChunkReceived(1));
+    assertTrue(job.isChunkReceived(2));
+    assertEquals(CHUNK_SIZE + 2, job.getPayload().getCurrentSize());
+
+    service.acceptChunk(job, 1, chunk(1));
+    assertComplete(job.getId());
+  }
+
+  @Test
+  public void testDuplicateChunks() throws Exception {
+    FileUploadJob job = createJob();
+
+    service.acceptChunk(job, 1, chunk(1));
+    service.acceptChunk(job, 1, chunk(1));
+    job = service.getJob(job.getId());
+    assertEquals(FileUploadJob.JobState.READY, job.getState());
+    assertEquals(CHUNK_SIZE, job.getPayload().getCurrentSize());
+
+    service.acceptChunk(job, 0, chunk(0));
+    service.acceptChunk(job, 2, chunk(2));
+    assertComplete(job.getId());
+
+    // chunks sent again after the upload has been finished are rejected
+    try {
+      service.acceptChunk(service.getJob(job.getId()), 2, chunk(2));
+      fail("Chunk of a completed job accepted");
+    } catch (FileUploadException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testChecksumMismatch() throws Exception {
+    FileUploadJob job = createJob();
+
+    try {
+      service.acceptChunk(job, 1, chunk(1), md5(chunkData(0)));
+      fail("Chunk with wrong checksum accepted");
+    } catch (FileUploadException e) {
+      // expected
+    }
+    job = service.getJob(job.getId());
+    assertEquals(FileUploadJob.JobState.READY, job.getState());
+    assertFalse(job.isChunkReceived(1));
+    assertEquals(0, job.getPayload().getCurrentSize());
+
+    // the chunk can be sent again
+    service.acceptChunk(job, 1, chunk(1), md5(chunkData(1)));
+    assertTrue(service.getJob(job.getId()).isChunkReceived(1));
+    assertEquals(CHUNK_SIZE, service.getJob(job.getId()).getPayload().getCurrentSize());
+  }
+
+  @Test
+  public void testWrongChunkSizeAndNumber() throws Exception {
+    FileUploadJob job = createJob();
+
+    try {
+      service.acceptChunk(job, 0, new ByteArrayInputStream(chunkData(2)));
+      fail("Chunk with wrong size accepted");
+    } catch (FileUploadException e) {
+      // expected
+    }
+    try {
+      service.acceptChunk(job, 3, chunk(2));
+      fail("Chunk with wrong number accepted");
+    } catch (FileUploadException e) {
+      // expected
+    }
+    job = service.getJob(job.getId());
+    assertEquals(FileUploadJob.JobState.READY, job.getState());
+    assertFalse(job.isChunkReceived(0));
+    assertFalse(job.isPayloadComplete());
+  }
+
+  @Test
+  public void testCompletionAfterFailedChunk() throws Exception {
+    FileUploadJob job = createJob();
+
+    service.acceptChunk(job, 0, chunk(0));
+    service.acceptChunk(job, 1, chunk(1));
+    try {
+      service.acceptChunk(job, 2, chunk(2), "invalid");
+      fail("Chunk with wrong checksum accepted");
+    } catch (FileUploadException e) {
+      // expected
+    }
+    assertEquals(FileUploadJob.JobState.READY, service.getJob(job.getId()).getState());
+    assertEquals(0, uploaded.size());
+
+    service.acceptChunk(job, 2, chunk(2), md5(chunkData(2)));
+    assertComplete(job.getId());
+  }
+
+  private FileUploadJob createJob() throws FileUploadException {
+    return service.createJob("payload.txt", PAYLOAD.length, CHUNK_SIZE, null, null, true);
+  }
+
+  private void assertComplete(String id) throws FileUploadException {
+    FileUploadJob job = service.getJob(id);
+    assertEquals(FileUploadJob.JobState.COMPLETE, job.getState());
+    assertTrue(job.isPayloadComplete());
+    assertEquals(PAYLOAD.length, job.getPayload().getCurrentSize());
+    assertArrayEquals(PAYLOAD, uploaded.toByteArray());
+  }
+
+  private static byte[] chunkData(int number) {
+    final int offset = number * CHUNK_SIZE;
+    return Arrays.copyOfRange(PAYLOAD, offset, Math.min(offset + CHUNK_SIZE, PAYLOAD.length));
+  }
+
+  private static InputStream chunk(int number) {
+    return new ByteArrayInputStream(chunkData(number));
+  }
+
+  private static String md5(byte[] data) throws Exception {
+    return Checksum.convertToHex(MessageDigest.getInstance("MD5").digest(data));
+  }
+}
@@ -34,6 +34,22 @@ public interface IndexProducer {
    */
   void repopulate(String indexName) throws IndexRebuildException;
 
+  /**
+   * Re-add all data of this service to the index, handing every single element to the given context. The context
+   * re-adds elements of different partitions concurrently and skips elements that have been written to the index by an
+   * interrupted rebuild already. Index updates should be handed to {@link IndexRebuildContext#write}.
+   * <p>
+   * The default implementation ignores the context and calls {@link #repopulate(String)}. Since the elements are sent
+   * as messages then, the service is re-added completely if the rebuild is interrupted.
+   *
+   * @param context
+   *           The context of the index rebuild.
+   */
+  default void repopulate(IndexRebuildContext context) throws IndexRebuildException {
+    context.sentAsMessages();
+    repopulate(context.getIndexName());
+  }
+
   /**
    * Get the service that implements IndexProducer.
    *
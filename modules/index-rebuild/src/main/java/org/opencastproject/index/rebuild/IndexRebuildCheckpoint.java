@@ -0,0 +1,248 @@
+/**
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.index.rebuild;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Records the progress of an index rebuild so an interrupted rebuild can be resumed.
+ * <p>
+ * The checkpoint is persisted as an append-only journal listing the elements that have been re-added and the services
+ * that have been completed. Entries are flushed in batches, so a few elements may be re-added again when resuming after
+ * a crash, which is harmless. Once a service has been completed, the journal is compacted so that it does not keep the
+ * elements of completed services.
+ */
+final class IndexRebuildCheckpoint {
+
+  /** The logging facility */
+  private static final Logger logger = LoggerFactory.getLogger(IndexRebuildCheckpoint.class);
+
+  /** The number of entries after which the journal is flushed */
+  private static final int FLUSH_INTERVAL = 500;
+
+  /** Journal record marking a re-added element */
+  private static final String ELEMENT = "E";
+
+  /** Journal record marking a completed service */
+  private static final String SERVICE = "S";
+
+  private static final char SEPARATOR = '\t';
+
+  private final File file;
+  private final Map<IndexRebuildService.Service, Set<String>> indexed
+          = new EnumMap<>(IndexRebuildService.Service.class);
+  private final Set<IndexRebuildService.Service> completed = EnumSet.noneOf(IndexRebuildService.Service.class);
+  private Writer writer = null;
+  private int unflushed = 0;
+
+  private IndexRebuildCheckpoint(File file) {
+    this.file = file;
+  }
+
+  /**
+   * Starts a new checkpoint, discarding an existing one.
+   *
+   * @param file
+   *          the journal file
+   * @return the checkpoint
+   * @throws IOException
+   *           if the journal cannot be created
+   */
+  static IndexRebuildCheckpoint create(File file) throws IOException {
+    Files.createDirectories(file.getParentFile().toPath());
+    Files.deleteIfExists(file.toPath());
+    IndexRebuildCheckpoint checkpoint = new IndexRebuildCheckpoint(file);
+    checkpoint.open();
+    return checkpoint;
+  }
+
+  /**
+   * Loads the checkpoint of an interrupted rebuild.
+   *
+   * @param file
+   *          the journal file
+   * @return the checkpoint or <code>null</code> if there is none
+   * @throws IOException
+   *           if the journal cannot be read
+   */
+  static IndexRebuildCheckpoint load(File file) throws IOException {
+    if (!file.isFile()) {
+      return null;
+    }
+    IndexRebuildCheckpoint checkpoint = new IndexRebuildCheckpoint(file);
+    try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        String[] fields = line.split(String.valueOf(SEPARATOR), 3);
+        try {
+          if (SERVICE.equals(fields[0]) && fields.length == 2) {
+            checkpoint.completed.add(IndexRebuildService.Service.valueOf(fields[1]));
+          } else if (ELEMENT.equals(fields[0]) && fields.length == 3) {
+            checkpoint.elements(IndexRebuildService.Service.valueOf(fields[1])).add(fields[2]);
+          }
+        } catch (IllegalArgumentException e) {
+          logger.debug("Skipping invalid index rebuild checkpoint record {}", line);
+        }
+      }
+    }
+    checkpoint.compact();
+    return checkpoint;
+  }
+
+  /**
+   * @return whether the rebuild from the given service has been completed
+   */
+  synchronized boolean isCompleted(IndexRebuildService.Service service) {
+    return completed.contains(service);
+  }
+
+  /**
+   * @return whether the given element of the given service has been re-added
+   */
+  synchronized boolean isIndexed(IndexRebuildService.Service service, String id) {
+    Set<String> ids = indexed.get(service);
+    return ids != null && ids.contains(id);
+  }
+
+  /**
+   * Records that an element has been re-added.
+   */
+  synchronized void indexed(IndexRebuildService.Service service, String id) {
+    if (id.indexOf(SEPARATOR) > -1 || id.indexOf('\n') > -1 || id.indexOf('\r') > -1) {
+      return;
+    }
+    if (elements(service).add(id)) {
+      append(ELEMENT + SEPARATOR + service.name() + SEPARATOR + id, false);
+    }
+  }
+
+  /**
+   * Records that the rebuild from a service has been completed. The re-added elements of the service are no longer
+   * tracked individually.
+   */
+  synchronized void completed(IndexRebuildService.Service service) {
+    completed.add(service);
+    indexed.remove(service);
+    if (writer == null) {
+      return;
+    }
+    try {
+      compact();
+    } catch (IOException e) {
+      logger.warn("Unable to compact index rebuild checkpoint {}, further progress is not recorded: {}", file,
+              e.getMessage());
+      close();
+    }
+  }
+
+  /**
+   * Closes the journal, keeping it for a later resume.
+   */
+  synchronized void close() {
+    if (writer != null) {
+      try {
+        writer.close();
+      } catch (IOException e) {
+        logger.warn("Unable to close index rebuild checkpoint {}: {}", file, e.getMessage());
+      }
+      writer = null;
+    }
+  }
+
+  /**
+   * Removes the journal once the rebuild has been finished.
+   */
+  synchronized void delete() {
+    close();
+    try {
+      Files.deleteIfExists(file.toPath());
+    } catch (IOException e) {
+      logger.warn("Unable to remove index rebuild checkpoint {}: {}", file, e.getMessage());
+    }
+  }
+
+  private Set<String> elements(IndexRebuildService.Service service) {
+    return indexed.computeIfAbsent(service, s -> new HashSet<>());
+  }
+
+  private void open() throws IOException {
+    writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+            StandardOpenOption.APPEND);
+  }
+
+  /**
+   * Replaces the journal with one containing only the completed services and the elements of the services that are
+   * still in progress, and opens it for appending.
+   */
+  private void compact() throws IOException {
+    close();
+    final File compacted = new File(file.getParentFile(), file.getName() + ".tmp");
+    try (Writer out = Files.newBufferedWriter(compacted.toPath(), StandardCharsets.UTF_8)) {
+      for (IndexRebuildService.Service service : completed) {
+        out.write(SERVICE + SEPARATOR + service.name() + '\n');
+      }
+      for (Map.Entry<IndexRebuildService.Service, Set<String>> entry : indexed.entrySet()) {
+        for (String id : entry.getValue()) {
+          out.write(ELEMENT + SEPARATOR + entry.getKey().name() + SEPARATOR + id + '\n');
+        }
+      }
+    }
+    Files.move(compacted.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+    unflushed = 0;
+    open();
+  }
+
+  private void append(String record, boolean flush) {
+    if (writer == null) {
+      return;
+    }
+    try {
+      writer.write(record);
+      writer.write('\n');
+      if (flush || ++unflushed >= FLUSH_INTERVAL) {
+        writer.flush();
+        unflushed = 0;
+      }
+    } catch (IOException e) {
+      logger.warn("Unable to write index rebuild checkpoint {}, further progress is not recorded: {}", file,
+              e.getMessage());
+      close();
+    }
+  }
+
+}
@@ -0,0 +1,325 @@
+/**
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.index.rebuild;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Serializable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Hands the elements an {@link IndexProducer} re-adds to the index to the index rebuild.
+ * <p>
+ * Elements are assigned to partitions by a key, usually the identifier of the media package or series they belong to.
+ * The partitions are processed concurrently, while the elements of one partition are re-added one after another in the
+ * order they have been submitted. This keeps the order of all elements belonging to the same entity.
+ * <p>
+ * Producers hand the index updates of an element to {@link #write(String, Serializable, Runnable)}. If the receiver of
+ * the updates runs within this process, they are written to the index right away by the thread of the partition, so
+ * the writes of all partitions share bulk requests. Otherwise, they are sent as messages.
+ * <p>
+ * Elements that have been written to the index by an interrupted rebuild already are skipped when the rebuild is
+ * resumed. Elements whose updates have been sent as messages are not recorded, since they may not have been written
+ * yet if the rebuild is interrupted.
+ */
+public final class IndexRebuildContext {
+
+  /** The logging facility */
+  private static final Logger logger = LoggerFactory.getLogger(IndexRebuildContext.class);
+
+  /** The number of elements per partition that may wait to be processed before submitting blocks */
+  static final int PENDING_PER_PARTITION = 64;
+
+  /** Re-adds a single element to the index. */
+  @FunctionalInterface
+  public interface Task {
+    void run() throws Exception;
+  }
+
+  private final String indexName;
+  private final IndexRebuildService.Service service;
+  private final IndexRebuildCheckpoint checkpoint;
+  private final IndexRebuildProgress.ServiceProgress progress;
+
+  /** Looks up the handler writing the messages sent to a destination to the index, may be <code>null</code> */
+  private final Function<String, Consumer<Serializable>> messageHandlers;
+
+  /** Whether the element processed by the current thread has been sent as message */
+  private final ThreadLocal<Boolean> sentAsMessage = new ThreadLocal<>();
+
+  /** Whether any element has been sent as message */
+  private final AtomicBoolean unconfirmed = new AtomicBoolean(false);
+
+  /** The partitions, <code>null</code> if elements are processed on the calling thread */
+  private final ExecutorService[] partitions;
+
+  /** Limits the number of elements waiting to be processed */
+  private final Semaphore pending;
+
+  /**
+   * Creates an index rebuild context.
+   *
+   * @param indexName
+   *          the name of the index
+   * @param service
+   *          the service the index is rebuilt from
+   * @param parallelism
+   *          the number of partitions processed concurrently
+   * @param checkpoint
+   *          the checkpoint of the rebuild, may be <code>null</code>
+   * @param progress
+   *          the progress of the service
+   */
+  IndexRebuildContext(String indexName, IndexRebuildService.Service service, int parallelism,
+          IndexRebuildCheckpoint checkpoint, IndexRebuildProgress.ServiceProgress progress) {
+    this(indexName, null, service, parallelism, checkpoint, progress);
+  }
+
+  /**
+   * Creates an index rebuild context.
+   *
+   * @param indexName
+   *          the name of the index
+   * @param messageHandlers
+   *          looks up the handler writing the messages sent to a destination to the index, may be <code>null</code>
+   * @param service
+   *          the service the index is rebuilt from
+   * @param parallelism
+   *          the number of partitions processed concurrently
+   * @param checkpoint
+   *          the checkpoint of the rebuild, may be <code>null</code>
+   * @param progress
+   *          the progress of the service
+   */
+  IndexRebuildContext(String indexName, Function<String, Consumer<Serializable>> messageHandlers,
+          IndexRebuildService.Service service, int parallelism, IndexRebuildCheckpoint checkpoint,
+          IndexRebuildProgress.ServiceProgress progress) {
+    this.indexName = indexName;
+    this.messageHandlers = messageHandlers;
+    this.service = service;
+    this.checkpoint = checkpoint;
+    this.progress = progress;
+    if (parallelism > 1) {
+      partitions = new ExecutorService[parallelism];
+      for (int i = 0; i < parallelism; i++) {
+        final String name = "Index rebuild " + indexName + "/" + service + " #" + i;
+        partitions[i] = Executors.newSingleThreadExecutor(r -> new Thread(r, name));
+      }
+      pending = new Semaphore(parallelism * PENDING_PER_PARTITION);
+    } else {
+      partitions = null;
+      pending = null;
+    }
+  }
+
+  /**
+   * Creates a context that processes all elements on the calling thread without recording a checkpoint.
+   *
+   * @param indexName
+   *          the name of the index
+   * @param service
+   *          the service the index is rebuilt from
+   * @return the context
+   */
+  public static IndexRebuildContext sequential(String indexName, IndexRebuildService.Service service) {
+    return new IndexRebuildContext(indexName, service, 1, null, new IndexRebuildProgress.ServiceProgress(service));
+  }
+
+  /**
+   * @return the name of the index to repopulate
+   */
+  public String getIndexName() {
+    return indexName;
+  }
+
+  /**
+   * Sets the total number of elements to re-add, used for progress reporting.
+   *
+   * @param total
+   *          the number of elements
+   */
+  public void setTotal(int total) {
+    progress.setTotal(total);
+  }
+
+  /**
+   * Returns whether an element has been re-added by an interrupted rebuild already. Producers may use this to avoid
+   * loading data of elements that will be skipped anyway.
+   *
+   * @param id
+   *          the element identifier
+   * @return <code>true</code> if the element can be skipped
+   */
+  public boolean isIndexed(String id) {
+    return checkpoint != null && checkpoint.isIndexed(service, id);
+  }
+
+  /**
+   * Re-adds an element to the index. The task is run in the partition of the given key, unless the element has been
+   * re-added already. Errors of the task are logged and the element is skipped.
+   * <p>
+   * The task is run on a different thread, so it has to set up the security context it needs itself.
+   *
+   * @param key
+   *          the partition key, elements with the same key are re-added in order
+   * @param id
+   *          the element identifier, unique within the service
+   * @param task
+   *          re-adds the element
+   * @throws IndexRebuildException
+   *           if the thread is interrupted while waiting for the partition to accept the element
+   */
+  public void submit(String key, String id, Task task) throws IndexRebuildException {
+    if (isIndexed(id)) {
+      progress.skipped();
+      return;
+    }
+    if (partitions == null) {
+      run(id, task);
+      return;
+    }
+    try {
+      pending.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IndexRebuildException(indexName, service, e);
+    }
+    try {
+      partitions[Math.floorMod(key.hashCode(), partitions.length)].execute(() -> {
+        try {
+          run(id, task);
+        } finally {
+          pending.release();
+        }
+      });
+    } catch (RuntimeException e) {
+      pending.release();
+      throw e;
+    }
+  }
+
+  /**
+   * Writes an index update of the element currently re-added. The update is handed to the receiver of the destination
+   * if it runs within this process, so it has been written once this method returns. Otherwise, it is sent as message
+   * and the element is not recorded as re-added.
+   *
+   * @param destinationId
+   *          the destination the update would be sent to as message
+   * @param update
+   *          the index update
+   * @param send
+   *          sends the update as message
+   */
+  public void write(String destinationId, Serializable update, Runnable send) {
+    final Consumer<Serializable> handler = messageHandlers != null ? messageHandlers.apply(destinationId) : null;
+    if (handler != null) {
+      handler.accept(update);
+    } else {
+      send.run();
+      sentAsMessage.set(true);
+      unconfirmed.set(true);
+    }
+  }
+
+  /**
+   * Marks the elements of the service as sent as messages, which means that they may not have been written to the
+   * index when the rebuild is interrupted.
+   */
+  void sentAsMessages() {
+    unconfirmed.set(true);
+  }
+
+  /**
+   * @return whether all elements have been written to the index, and none has been sent as message only
+   */
+  boolean isConfirmed() {
+    return !unconfirmed.get();
+  }
+
+  /**
+   * Waits for all submitted elements to be processed and releases the partitions.
+   *
+   * @throws IndexRebuildException
+   *           if waiting is interrupted
+   */
+  void await() throws IndexRebuildException {
+    if (partitions == null) {
+      return;
+    }
+    for (ExecutorService partition : partitions) {
+      partition.shutdown();
+    }
+    try {
+      for (ExecutorService partition : partitions) {
+        while (!partition.awaitTermination(1, TimeUnit.MINUTES)) {
+          logger.debug("Waiting for partitions of index '{}' and service '{}' to finish", indexName, service);
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      for (ExecutorService partition : partitions) {
+        partition.shutdownNow();
+      }
+      throw new IndexRebuildException(indexName, service, e);
+    }
+  }
+
+  private void run(String id, Task task) {
+    final int processed;
+    try {
+      sentAsMessage.remove();
+      task.run();
+      // Elements sent as messages may not have been written yet, so they are re-added if the rebuild is resumed
+      if (checkpoint != null && sentAsMessage.get() == null) {
+        checkpoint.indexed(service, id);
+      }
+      processed = progress.indexed();
+    } catch (Throwable t) {
+      logger.error("Unable to re-index element '{}' of service '{}', skipping.", id, service, t);
+      progress.failed();
+      return;
+    } finally {
+      sentAsMessage.remove();
+    }
+    logProgress(processed);
+  }
+
+  private void logProgress(int processed) {
+    final int total = progress.getTotal();
+    if (total <= 0) {
+      return;
+    }
+    final int responseInterval = Math.max(1, total / 100);
+    if (processed % responseInterval == 0 || processed == total) {
+      logger.info("Updating index '{}' for service '{}': {}/{} finished, {}% complete.", indexName, service,
+              processed, total, processed * 100L / total);
+    }
+  }
+
+}
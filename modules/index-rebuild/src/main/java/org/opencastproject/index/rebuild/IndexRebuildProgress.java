@@ -0,0 +1,189 @@
+/**
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.index.rebuild;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The progress of an index rebuild, broken down by the services the index is rebuilt from.
+ */
+public final class IndexRebuildProgress {
+
+  /** The state of an index rebuild or of one of its services. */
+  public enum State {
+    Pending, Running, Finished, Failed
+  }
+
+  private final String indexName;
+  private final boolean resumed;
+  private final Date started = new Date();
+  private final Map<IndexRebuildService.Service, ServiceProgress> services = new LinkedHashMap<>();
+  private volatile Date finished = null;
+  private volatile State state = State.Running;
+
+  /**
+   * Creates the progress of a starting index rebuild.
+   *
+   * @param indexName
+   *          the name of the index
+   * @param services
+   *          the services the index is rebuilt from, in order
+   * @param resumed
+   *          whether an interrupted rebuild is resumed
+   */
+  IndexRebuildProgress(String indexName, List<IndexRebuildService.Service> services, boolean resumed) {
+    this.indexName = indexName;
+    this.resumed = resumed;
+    for (IndexRebuildService.Service service : services) {
+      this.services.put(service, new ServiceProgress(service));
+    }
+  }
+
+  public String getIndexName() {
+    return indexName;
+  }
+
+  /**
+   * @return whether this rebuild continues an interrupted one
+   */
+  public boolean isResumed() {
+    return resumed;
+  }
+
+  public Date getStarted() {
+    return started;
+  }
+
+  /**
+   * @return the date the rebuild finished or failed, <code>null</code> while it is running
+   */
+  public Date getFinished() {
+    return finished;
+  }
+
+  public State getState() {
+    return state;
+  }
+
+  /**
+   * @return the progress of the single services, in the order they are rebuilt
+   */
+  public List<ServiceProgress> getServices() {
+    return Collections.unmodifiableList(new ArrayList<>(services.values()));
+  }
+
+  ServiceProgress getService(IndexRebuildService.Service service) {
+    return services.get(service);
+  }
+
+  void finish(State state) {
+    this.state = state;
+    this.finished = new Date();
+  }
+
+  /**
+   * The progress of rebuilding the index from a single service.
+   */
+  public static final class ServiceProgress {
+
+    private final IndexRebuildService.Service service;
+    private final AtomicInteger indexed = new AtomicInteger();
+    private final AtomicInteger skipped = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private volatile int total = -1;
+    private volatile State state = State.Pending;
+
+    ServiceProgress(IndexRebuildService.Service service) {
+      this.service = service;
+    }
+
+    public IndexRebuildService.Service getService() {
+      return service;
+    }
+
+    public State getState() {
+      return state;
+    }
+
+    /**
+     * @return the number of elements to re-add or -1 if unknown
+     */
+    public int getTotal() {
+      return total;
+    }
+
+    /**
+     * @return the number of elements re-added so far
+     */
+    public int getIndexed() {
+      return indexed.get();
+    }
+
+    /**
+     * @return the number of elements skipped since they have been re-added by an interrupted rebuild already
+     */
+    public int getSkipped() {
+      return skipped.get();
+    }
+
+    /**
+     * @return the number of elements that could not be re-added
+     */
+    public int getFailed() {
+      return failed.get();
+    }
+
+    /**
+     * @return the number of elements done, no matter whether they have been re-added, skipped or failed
+     */
+    public int getProcessed() {
+      return indexed.get() + skipped.get() + failed.get();
+    }
+
+    void setState(State state) {
+      this.state = state;
+    }
+
+    void setTotal(int total) {
+      this.total = total;
+    }
+
+    int indexed() {
+      return indexed.incrementAndGet() + skipped.get() + failed.get();
+    }
+
+    void skipped() {
+      skipped.incrementAndGet();
+    }
+
+    int failed() {
+      return indexed.get() + skipped.get() + failed.incrementAndGet();
+    }
+  }
+
+}
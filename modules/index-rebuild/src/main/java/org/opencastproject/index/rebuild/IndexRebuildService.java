@@ -34,7 +34,12 @@ import org.osgi.framework.ServiceRegistration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -67,9 +72,18 @@ public class IndexRebuildService implements BundleActivator {
     Groups, Acl, Themes, Series, Scheduler, Workflow, AssetManager, Comments
   }
 
+  /** Configuration key defining the number of partitions of a service that are re-added concurrently */
+  public static final String PARALLELISM_KEY = "org.opencastproject.index.rebuild.parallelism";
+
+  /** The name of the directory in the bundle's data area containing the checkpoints of running rebuilds */
+  private static final String CHECKPOINT_DIRECTORY = "checkpoints";
+
   private static final Logger logger = LoggerFactory.getLogger(IndexRebuildService.class);
   private final Map<IndexRebuildService.Service, IndexProducer> indexProducers = new ConcurrentHashMap<>();
+  private final Map<String, IndexRebuildProgress> progress = new ConcurrentHashMap<>();
   private ServiceRegistration<?> serviceRegistration = null;
+  private int parallelism = 1;
+  private File checkpointDirectory = null;
 
   /**
    * Called by OSGI when this bundle is started.
@@ -81,6 +95,20 @@ public class IndexRebuildService implements BundleActivator {
    */
   @Override
   public void start(BundleContext bundleContext) throws Exception {
+    String parallelismValue = bundleContext.getProperty(PARALLELISM_KEY);
+    if (parallelismValue != null) {
+      try {
+        parallelism = Math.max(1, Integer.parseInt(parallelismValue.trim()));
+      } catch (NumberFormatException e) {
+        logger.warn("Invalid value '{}' for {}, rebuilding sequentially", parallelismValue, PARALLELISM_KEY);
+      }
+    }
+    logger.info("Index rebuilds re-add {} partition(s) of each service concurrently", parallelism);
+    checkpointDirectory = bundleContext.getDataFile(CHECKPOINT_DIRECTORY);
+    if (checkpointDirectory == null) {
+      logger.warn("No persistent storage available, interrupted index rebuilds cannot be resumed");
+    }
+
     // check if there are already IndexProducers available
     ServiceReference<?>[] serviceReferences = bundleContext.getAllServiceReferences(IndexProducer.class.getName(),
             null);
@@ -122,11 +150,50 @@ public class IndexRebuildService implements BundleActivator {
    */
   public synchronized void rebuildIndex(AbstractSearchIndex index)
           throws IOException, IndexRebuildException {
+    IndexRebuildCheckpoint checkpoint = null;
+    if (checkpointDirectory != null) {
+      try {
+        checkpoint = IndexRebuildCheckpoint.create(getCheckpointFile(index));
+      } catch (IOException e) {
+        logger.warn("Unable to create checkpoint, the rebuild of index '{}' cannot be resumed", index.getIndexName(),
+                e);
+      }
+    }
     index.clear();
     logger.info("Index '{}' cleared, starting complete rebuild.", index.getIndexName());
-    for (IndexRebuildService.Service service: IndexRebuildService.Service.values()) {
-      rebuildIndex(index, service);
+    rebuildIndex(index, Arrays.asList(IndexRebuildService.Service.values()), checkpoint, false);
+  }
+
+  /**
+   * Resume an interrupted rebuild of the index. Services that have been completed are skipped, as well as the elements
+   * of the interrupted service that have been re-added already.
+   *
+   * @param index
+   *           The index to rebuild.
+   *
+   * @throws IOException
+   *           Thrown if the checkpoint of the interrupted rebuild cannot be read.
+   * @throws IllegalStateException
+   *           Thrown if there is no interrupted rebuild of the index.
+   * @throws IndexRebuildException
+   *           Thrown if the index rebuild failed.
+   */
+  public synchronized void resumeIndexRebuild(AbstractSearchIndex index)
+          throws IOException, IllegalStateException, IndexRebuildException {
+    final IndexRebuildCheckpoint checkpoint = checkpointDirectory != null
+            ? IndexRebuildCheckpoint.load(getCheckpointFile(index))
+            : null;
+    if (checkpoint == null) {
+      throw new IllegalStateException(format("There is no interrupted rebuild of index %s", index.getIndexName()));
     }
+    final List<IndexRebuildService.Service> services = new ArrayList<>();
+    for (IndexRebuildService.Service service : IndexRebuildService.Service.values()) {
+      if (!checkpoint.isCompleted(service)) {
+        services.add(service);
+      }
+    }
+    logger.info("Resuming rebuild of index '{}' from services {}.", index.getIndexName(), services);
+    rebuildIndex(index, services, checkpoint, true);
   }
 
   /**
@@ -146,7 +213,61 @@ public class IndexRebuildService implements BundleActivator {
           throws IllegalArgumentException, IndexRebuildException {
     IndexRebuildService.Service service = IndexRebuildService.Service.valueOf(serviceName);
     logger.info("Starting partial rebuild of index '{}' from service '{}'.", index.getIndexName(), service);
-    rebuildIndex(index, service);
+    rebuildIndex(index, Collections.singletonList(service), null, false);
+  }
+
+  /**
+   * Returns the progress of the running or last rebuild of an index.
+   *
+   * @param indexName
+   *           The name of the index.
+   *
+   * @return the progress or <code>null</code> if the index hasn't been rebuilt since startup
+   */
+  public IndexRebuildProgress getProgress(String indexName) {
+    return progress.get(indexName);
+  }
+
+  /**
+   * Returns whether there is an interrupted rebuild of an index that can be resumed.
+   *
+   * @param index
+   *           The index.
+   *
+   * @return <code>true</code> if the rebuild can be resumed
+   */
+  public boolean isResumable(AbstractSearchIndex index) {
+    final IndexRebuildProgress current = progress.get(index.getIndexName());
+    return checkpointDirectory != null && getCheckpointFile(index).isFile()
+            && (current == null || current.getState() != IndexRebuildProgress.State.Running);
+  }
+
+  /**
+   * Rebuild the index from the given services in order, recording the progress.
+   */
+  private void rebuildIndex(AbstractSearchIndex index, List<IndexRebuildService.Service> services,
+          IndexRebuildCheckpoint checkpoint, boolean resumed) throws IndexRebuildException {
+    final IndexRebuildProgress rebuild = new IndexRebuildProgress(index.getIndexName(), services, resumed);
+    progress.put(index.getIndexName(), rebuild);
+    try {
+      for (IndexRebuildService.Service service : services) {
+        rebuildIndex(index, service, checkpoint, rebuild.getService(service));
+      }
+      index.flush();
+      rebuild.finish(IndexRebuildProgress.State.Finished);
+      if (checkpoint != null) {
+        checkpoint.delete();
+      }
+    } catch (Throwable t) {
+      rebuild.finish(IndexRebuildProgress.State.Failed);
+      if (checkpoint != null) {
+        checkpoint.close();
+      }
+      if (t instanceof IndexRebuildException) {
+        throw (IndexRebuildException) t;
+      }
+      throw new IndexRebuildException(format("Rebuilding index %s failed", index.getIndexName()), t);
+    }
   }
 
   /**
@@ -156,11 +277,16 @@ public class IndexRebuildService implements BundleActivator {
    *           The index to rebuild.
    * @param service
    *          The {@link IndexRebuildService.Service} to re-add data from.
+   * @param checkpoint
+   *          The checkpoint of the rebuild, may be <code>null</code>.
+   * @param serviceProgress
+   *          The progress of the service.
    *
    * @throws IndexRebuildException
    *           Thrown if the index rebuild failed.
    */
-  private void rebuildIndex(AbstractSearchIndex index, IndexRebuildService.Service service)
+  private void rebuildIndex(AbstractSearchIndex index, IndexRebuildService.Service service,
+          IndexRebuildCheckpoint checkpoint, IndexRebuildProgress.ServiceProgress serviceProgress)
           throws IndexRebuildException {
 
     if (!indexProducers.containsKey(service)) {
@@ -169,10 +295,34 @@ public class IndexRebuildService implements BundleActivator {
 
     IndexProducer indexProducer = indexProducers.get(service);
     logger.info("Starting to rebuild index '{}' from service '{}'", index.getIndexName(), service);
-    indexProducer.repopulate(index.getIndexName());
+    serviceProgress.setState(IndexRebuildProgress.State.Running);
+    IndexRebuildContext context = new IndexRebuildContext(index.getIndexName(), index::getMessageHandler, service,
+            parallelism, checkpoint, serviceProgress);
+    try {
+      try {
+        indexProducer.repopulate(context);
+      } finally {
+        context.await();
+      }
+    } catch (IndexRebuildException | RuntimeException e) {
+      serviceProgress.setState(IndexRebuildProgress.State.Failed);
+      throw e;
+    }
+    // Updates sent as messages may still be lost if the rebuild is interrupted, so the service is re-added then
+    if (checkpoint != null && context.isConfirmed()) {
+      checkpoint.completed(service);
+    }
+    serviceProgress.setState(IndexRebuildProgress.State.Finished);
     logger.info("Finished to rebuild index '{}' from service '{}'", index.getIndexName(), service);
   }
 
+  /**
+   * Returns the checkpoint file of an index.
+   */
+  private File getCheckpointFile(AbstractSearchIndex index) {
+    return new File(checkpointDirectory, index.getIndexName() + ".journal");
+  }
+
   /**
    * Add IndexProducer service to internal map.
    *
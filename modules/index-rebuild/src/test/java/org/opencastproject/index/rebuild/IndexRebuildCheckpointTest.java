@@ -0,0 +1,118 @@
+/**
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+
+package org.opencastproject.index.rebuild;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.opencastproject.index.rebuild.IndexRebuildService.Service;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+public class IndexRebuildCheckpointTest {
+
+  @Rule
+  public TemporaryFolder testFolder = new TemporaryFolder();
+
+  @Test
+  public void testLoadWithoutJournal() throws Exception {
+    assertNull(IndexRebuildCheckpoint.load(new File(testFolder.getRoot(), "missing")));
+  }
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    final File file = new File(testFolder.getRoot(), "checkpoint");
+    final IndexRebuildCheckpoint checkpoint = IndexRebuildCheckpoint.create(file);
+    checkpoint.completed(Service.Groups);
+    checkpoint.indexed(Service.Series, "series-1");
+    checkpoint.indexed(Service.Series, "series-2");
+    checkpoint.indexed(Service.Series, "invalid\tid");
+    checkpoint.close();
+
+    final IndexRebuildCheckpoint loaded = IndexRebuildCheckpoint.load(file);
+    assertTrue(loaded.isCompleted(Service.Groups));
+    assertFalse(loaded.isCompleted(Service.Series));
+    assertTrue(loaded.isIndexed(Service.Series, "series-1"));
+    assertTrue(loaded.isIndexed(Service.Series, "series-2"));
+    assertFalse(loaded.isIndexed(Service.Series, "series-3"));
+    assertFalse(loaded.isIndexed(Service.Series, "invalid\tid"));
+    assertFalse(loaded.isIndexed(Service.Workflow, "series-1"));
+
+    // Progress recorded after resuming is appended to the same journal
+    loaded.indexed(Service.Series, "series-3");
+    loaded.close();
+    assertTrue(IndexRebuildCheckpoint.load(file).isIndexed(Service.Series, "series-3"));
+  }
+
+  @Test
+  public void testCompaction() throws Exception {
+    final File file = new File(testFolder.getRoot(), "checkpoint");
+    final IndexRebuildCheckpoint checkpoint = IndexRebuildCheckpoint.create(file);
+    for (int i = 0; i < 10; i++) {
+      checkpoint.indexed(Service.Series, "series-" + i);
+    }
+    checkpoint.indexed(Service.Workflow, "workflow-1");
+    checkpoint.completed(Service.Series);
+    checkpoint.close();
+
+    final List<String> records = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+    assertEquals(Arrays.asList("S\tSeries", "E\tWorkflow\tworkflow-1"), records);
+
+    final IndexRebuildCheckpoint loaded = IndexRebuildCheckpoint.load(file);
+    assertTrue(loaded.isCompleted(Service.Series));
+    assertFalse(loaded.isIndexed(Service.Series, "series-1"));
+    assertTrue(loaded.isIndexed(Service.Workflow, "workflow-1"));
+    loaded.close();
+  }
+
+  @Test
+  public void testCreateDiscardsExistingJournal() throws Exception {
+    final File file = new File(testFolder.getRoot(), "checkpoint");
+    final IndexRebuildCheckpoint checkpoint = IndexRebuildCheckpoint.create(file);
+    checkpoint.completed(Service.Acl);
+    checkpoint.close();
+
+    IndexRebuildCheckpoint.create(file).close();
+    assertFalse(IndexRebuildCheckpoint.load(file).isCompleted(Service.Acl));
+  }
+
+  @Test
+  public void testDelete() throws Exception {
+    final File file = new File(testFolder.getRoot(), "checkpoint");
+    final IndexRebuildCheckpoint checkpoint = IndexRebuildCheckpoint.create(file);
+    checkpoint.indexed(Service.Themes, "theme-1");
+    checkpoint.delete();
+    assertFalse(file.exists());
+  }
+
+}
@@ -0,0 +1,182 @@
+/**
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+
+package org.opencastproject.index.rebuild;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.opencastproject.index.rebuild.IndexRebuildService.Service;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+public class IndexRebuildContextTest {
+
+  @Rule
+  public TemporaryFolder testFolder = new TemporaryFolder();
+
+  @Test
+  public void testResumeSkipsIndexedElements() throws Exception {
+    final File file = new File(testFolder.getRoot(), "checkpoint");
+    final IndexRebuildCheckpoint interrupted = IndexRebuildCheckpoint.create(file);
+    interrupted.indexed(Service.Series, "series-1");
+    interrupted.indexed(Service.Series, "series-2");
+    interrupted.close();
+
+    final IndexRebuildCheckpoint checkpoint = IndexRebuildCheckpoint.load(file);
+    final IndexRebuildProgress.ServiceProgress progress = new IndexRebuildProgress.ServiceProgress(Service.Series);
+    final IndexRebuildContext context = new IndexRebuildContext("index", Service.Series, 2, checkpoint, progress);
+    assertTrue(context.isIndexed("series-1"));
+    assertFalse(context.isIndexed("series-3"));
+
+    final List<String> run = Collections.synchronizedList(new ArrayList<>());
+    for (int i = 1; i <= 4; i++) {
+      final String id = "series-" + i;
+      context.submit(id, id, () -> run.add(id));
+    }
+    context.submit("series-5", "series-5", () -> {
+      throw new IllegalStateException("Failing on purpose");
+    });
+    context.await();
+
+    Collections.sort(run);
+    assertEquals(2, run.size());
+    assertEquals("series-3", run.get(0));
+    assertEquals("series-4", run.get(1));
+    assertEquals(2, progress.getSkipped());
+    assertEquals(2, progress.getIndexed());
+    assertEquals(1, progress.getFailed());
+    assertTrue(checkpoint.isIndexed(Service.Series, "series-3"));
+    assertFalse(checkpoint.isIndexed(Service.Series, "series-5"));
+    checkpoint.close();
+  }
+
+  @Test
+  public void testOnlyWrittenElementsAreRecorded() throws Exception {
+    final File file = new File(testFolder.getRoot(), "checkpoint");
+    final IndexRebuildCheckpoint checkpoint = IndexRebuildCheckpoint.create(file);
+    final List<Serializable> written = Collections.synchronizedList(new ArrayList<>());
+    final List<Serializable> sent = Collections.synchronizedList(new ArrayList<>());
+    final Consumer<Serializable> handler = written::add;
+    final IndexRebuildContext context = new IndexRebuildContext("index",
+            destinationId -> "local".equals(destinationId) ? handler : null, Service.Comments, 2, checkpoint,
+            new IndexRebuildProgress.ServiceProgress(Service.Comments));
+
+    context.submit("event-1", "event-1", () -> context.write("local", "update-1", () -> sent.add("update-1")));
+    context.submit("event-2", "event-2", () -> context.write("remote", "update-2", () -> sent.add("update-2")));
+    context.await();
+
+    assertEquals(Collections.singletonList("update-1"), written);
+    assertEquals(Collections.singletonList("update-2"), sent);
+    // Updates sent as messages may be lost if the rebuild is interrupted, so these elements have to be re-added
+    assertTrue(checkpoint.isIndexed(Service.Comments, "event-1"));
+    assertFalse(checkpoint.isIndexed(Service.Comments, "event-2"));
+    assertFalse(context.isConfirmed());
+    checkpoint.close();
+  }
+
+  @Test
+  public void testElementsOfAPartitionAreProcessedInOrder() throws Exception {
+    final IndexRebuildContext context = new IndexRebuildContext("index", Service.Workflow, 4, null,
+            new IndexRebuildProgress.ServiceProgress(Service.Workflow));
+    final Map<String, List<Integer>> processed = new ConcurrentHashMap<>();
+    for (int i = 0; i < 1000; i++) {
+      final String key = "mediapackage-" + (i % 10);
+      final int sequence = i;
+      context.submit(key, Integer.toString(i), () -> {
+        processed.computeIfAbsent(key, k -> Collections.synchronizedList(new ArrayList<>())).add(sequence);
+      });
+    }
+    context.await();
+
+    assertEquals(10, processed.size());
+    for (List<Integer> sequences : processed.values()) {
+      assertEquals(100, sequences.size());
+      for (int i = 1; i < sequences.size(); i++) {
+        assertTrue(sequences.get(i - 1) < sequences.get(i));
+      }
+    }
+  }
+
+  @Test
+  public void testSubmitBlocksWhenPartitionsAreFull() throws Exception {
+    final int parallelism = 2;
+    final int capacity = parallelism * IndexRebuildContext.PENDING_PER_PARTITION;
+    final IndexRebuildContext context = new IndexRebuildContext("index", Service.Scheduler, parallelism, null,
+            new IndexRebuildProgress.ServiceProgress(Service.Scheduler));
+    final CountDownLatch release = new CountDownLatch(1);
+    final AtomicInteger submitted = new AtomicInteger();
+    final AtomicInteger processed = new AtomicInteger();
+    final AtomicReference<Exception> failure = new AtomicReference<>();
+
+    final Thread producer = new Thread(() -> {
+      try {
+        for (int i = 0; i < capacity * 2; i++) {
+          context.submit(Integer.toString(i), Integer.toString(i), () -> {
+            release.await();
+            processed.incrementAndGet();
+          });
+          submitted.incrementAndGet();
+        }
+      } catch (Exception e) {
+        failure.set(e);
+      }
+    });
+    producer.start();
+
+    // The producer has to block once all partitions are full
+    final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (!(submitted.get() == capacity && producer.getState() == Thread.State.WAITING)
+            && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals(Thread.State.WAITING, producer.getState());
+    assertEquals(capacity, submitted.get());
+    assertEquals(0, processed.get());
+
+    release.countDown();
+    producer.join(TimeUnit.SECONDS.toMillis(10));
+    assertFalse(producer.isAlive());
+    context.await();
+    assertNull(failure.get());
+    assertEquals(capacity * 2, submitted.get());
+    assertEquals(capacity * 2, processed.get());
+  }
+
+}
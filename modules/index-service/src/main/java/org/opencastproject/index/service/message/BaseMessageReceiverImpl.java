@@ -23,6 +23,7 @@ package org.opencastproject.index.service.message;
 
 import org.opencastproject.elasticsearch.index.AbstractSearchIndex;
 import org.opencastproject.message.broker.api.BaseMessage;
+import org.opencastproject.message.broker.api.MessageItem;
 import org.opencastproject.message.broker.api.MessageReceiver;
 import org.opencastproject.message.broker.api.MessageSender;
 import org.opencastproject.message.broker.api.MessageSender.DestinationType;
@@ -40,6 +41,7 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.FutureTask;
+import java.util.function.Consumer;
 
 public abstract class BaseMessageReceiverImpl<T extends Serializable> {
 
@@ -55,6 +57,9 @@ public abstract class BaseMessageReceiverImpl<T extends Serializable> {
   private String destinationId;
   private MessageSender.DestinationType destinationType;
 
+  /** Writes message payloads to the index on the calling thread, which is used by the index rebuild */
+  private final Consumer<Serializable> handler = this::handle;
+
   public BaseMessageReceiverImpl(MessageSender.DestinationType destinationType) {
     this.destinationType = destinationType;
   }
@@ -65,10 +70,14 @@ public abstract class BaseMessageReceiverImpl<T extends Serializable> {
     logger.info("The {} for this message receiver is '{}'", DESTINATION_ID_KEY, destinationId);
     messageWatcher = new MessageWatcher(lockService);
     singleThreadExecutor.execute(messageWatcher);
+    if (index != null)
+      index.addMessageHandler(destinationId, handler);
   }
 
   public void deactivate(ComponentContext cc) {
     logger.info("Deactivating {}", this.getClass().getName());
+    if (index != null)
+      index.removeMessageHandler(destinationId, handler);
     if (messageWatcher != null)
       messageWatcher.stopListening();
 
@@ -77,6 +86,19 @@ public abstract class BaseMessageReceiverImpl<T extends Serializable> {
 
   protected abstract void execute(T messageContent);
 
+  /**
+   * Writes a message payload to the index on the calling thread. The organization and user the payload belongs to have
+   * to be set up by the caller.
+   */
+  @SuppressWarnings("unchecked")
+  private void handle(Serializable messageContent) {
+    if (messageContent instanceof MessageItem) {
+      lockService.synchronize(((MessageItem) messageContent).getId(), execute.curry(messageContent).toFn());
+    } else {
+      execute((T) messageContent);
+    }
+  }
+
   protected String getDestinationId() {
     return destinationId;
   }
@@ -72,6 +72,7 @@ import org.opencastproject.util.ProgressInputStream;
 import org.opencastproject.util.XmlUtil;
 import org.opencastproject.util.data.Function;
 import org.opencastproject.util.data.Option;
+import org.opencastproject.util.data.Tuple;
 import org.opencastproject.util.data.functions.Misc;
 import org.opencastproject.util.jmx.JmxUtil;
 import org.opencastproject.workflow.api.WorkflowDatabaseException;
@@ -120,7 +121,9 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.Dictionary;
 import java.util.HashMap;
@@ -131,6 +134,8 @@ import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 import javax.management.ObjectInstance;
@@ -237,6 +242,18 @@ public class IngestServiceImpl extends AbstractJobProducer implements IngestServ
   /** Control if attachments sent by capture agents for scheduled events are skipped. */
   public static final String SKIP_ATTACHMENTS_KEY = "skip.attachments.for.existing.events";
 
+  /** The number of workers processing the elements of zipped media packages */
+  public static final String ZIP_WORKERS_KEY = "zip.element.workers";
+
+  /** Processes the elements of zipped media packages one after another, as before the workers were introduced */
+  public static final int DEFAULT_ZIP_WORKERS = 1;
+
+  /** Control if tracks of zipped media packages are inspected as soon as they have been stored. */
+  public static final String ZIP_INSPECT_TRACKS_KEY = "zip.inspect.tracks";
+
+  /** The default is to leave the inspection of tracks to the workflow */
+  public static final boolean DEFAULT_ZIP_INSPECT_TRACKS = false;
+
   /** The approximate load placed on the system by ingesting a file */
   private float ingestFileJobLoad = DEFAULT_INGEST_FILE_JOB_LOAD;
 
@@ -258,6 +275,15 @@ public class IngestServiceImpl extends AbstractJobProducer implements IngestServ
   /** The JMX bean object instance */
   private ObjectInstance registerMXBean;
 
+  /** The workers processing the elements of zipped media packages, <code>null</code> to process them on ingest */
+  private ExecutorService zipWorkers = null;
+
+  /** The number of zip workers */
+  private int zipWorkerCount = 0;
+
+  /** Whether tracks of zipped media packages are inspected on ingest */
+  private boolean inspectZipTracks = DEFAULT_ZIP_INSPECT_TRACKS;
+
   /** The workflow service */
   private WorkflowService workflowService;
 
@@ -337,6 +363,7 @@ public class IngestServiceImpl extends AbstractJobProducer implements IngestServ
   @Deactivate
   public void deactivate() {
     JmxUtil.unregisterMXBean(registerMXBean);
+    setZipWorkers(0);
   }
 
   /**
@@ -375,6 +402,38 @@ public class IngestServiceImpl extends AbstractJobProducer implements IngestServ
             BooleanUtils.toStringTrueFalse(DEFAULT_ALLOW_ONLY_NEW_FLAVORS)));
     logger.info("Only allow new flavored catalogs and attachments on ingest:'{}'", isAddOnlyNew);
     logger.info("Allowing series modification:'{}'", isAllowModifySeries);
+
+    try {
+      setZipWorkers(Integer.parseInt(Objects.toString(properties.get(ZIP_WORKERS_KEY),
+              Integer.toString(DEFAULT_ZIP_WORKERS)).trim()));
+    } catch (NumberFormatException e) {
+      throw new ConfigurationException("Number of zip element workers is not a number", e);
+    }
+    inspectZipTracks = BooleanUtils.toBoolean(Objects.toString(properties.get(ZIP_INSPECT_TRACKS_KEY),
+            BooleanUtils.toStringTrueFalse(DEFAULT_ZIP_INSPECT_TRACKS)));
+    logger.info("Processing up to {} elements of zipped media packages at once, inspecting tracks on ingest: {}",
+            Math.max(zipWorkerCount, 1), inspectZipTracks);
+  }
+
+  /**
+   * Replaces the workers processing the elements of zipped media packages. Running ingests finish their work on the
+   * previous workers.
+   *
+   * @param count
+   *          the number of workers, up to one processes elements on the ingesting thread
+   */
+  private synchronized void setZipWorkers(int count) {
+    final int workers = count > 1 ? count : 0;
+    if (workers == zipWorkerCount)
+      return;
+    if (zipWorkers != null)
+      zipWorkers.shutdown();
+    zipWorkers = workers > 0 ? Executors.newFixedThreadPool(workers, r -> {
+      final Thread thread = new Thread(r, "Zip ingest worker");
+      thread.setDaemon(true);
+      return thread;
+    }) : null;
+    zipWorkerCount = workers;
   }
 
   /**
@@ -462,6 +521,10 @@ public class IngestServiceImpl extends AbstractJobProducer implements IngestServ
 
     ZipArchiveInputStream zis = null;
     Set<String> collectionFilenames = new HashSet<>();
+    // Elements moved into their media package, to be removed again if the ingest fails
+    final List<Tuple<String, String>> movedElements = Collections.synchronizedList(new ArrayList<>());
+    boolean ingested = false;
+    ZipIngestPipeline pipeline = null;
     try {
       // We don't need anybody to do the dispatching for us. Therefore we need to make sure that the job is never in
       // QUEUED state but set it to INSTANTIATED in the beginning and then manually switch it to RUNNING.
@@ -470,12 +533,32 @@ public class IngestServiceImpl extends AbstractJobProducer implements IngestServ
       job = serviceRegistry.updateJob(job);
 
       // Create the working file target collection for this ingest operation
-      String wfrCollectionId = Long.toString(job.getId());
+      final String wfrCollectionId = Long.toString(job.getId());
+
+      // Elements are moved into place, and tracks inspected, while the remaining entries are still being read
+      final List<Job> inspectionJobs = Collections.synchronizedList(new ArrayList<>());
+      pipeline = new ZipIngestPipeline(zipWorkers, securityService, (mediaPackage, element, uri) -> {
+        final String mediaPackageId = mediaPackage.getIdentifier().toString();
+        logger.info("Ingested mediapackage element {}/{} located at {}", mediaPackageId, element.getIdentifier(), uri);
+        URI dest = workingFileRepository.moveTo(wfrCollectionId, FilenameUtils.getName(uri.toString()), mediaPackageId,
+                element.getIdentifier(), FilenameUtils.getName(element.getURI().toString()));
+        movedElements.add(Tuple.tuple(mediaPackageId, element.getIdentifier()));
+        element.setURI(dest);
+
+        // TODO: This should be triggered somehow instead of being handled here
+        if (MediaPackageElements.SERIES.equals(element.getFlavor())) {
+          logger.info("Ingested mediapackage {} contains updated series information", mediaPackageId);
+          updateSeries(element.getURI());
+        }
+
+        if (inspectZipTracks && element instanceof Track) {
+          inspectionJobs.add(mediaInspectionService.enrich(element, true));
+        }
+      });
 
       zis = new ZipArchiveInputStream(zipStream);
       ZipArchiveEntry entry;
       MediaPackage mp = null;
-      Map<String, URI> uris = new HashMap<>();
       // Sequential number to append to file names so that, if two files have the same
       // name, one does not overwrite the other (see MH-9688)
       int seq = 1;
@@ -493,6 +576,11 @@ public class IngestServiceImpl extends AbstractJobProducer implements IngestServ
             // Build the media package
             final InputStream is = new ZipEntryInputStream(zis, entry.getSize());
             mp = MediaPackageParser.getFromXml(IOUtils.toString(is, StandardCharsets.UTF_8));
+
+            // Determine the mediapackage identifier
+            if (mp.getIdentifier() == null || isBlank(mp.getIdentifier().toString()))
+              mp.setIdentifier(IdImpl.fromUUID());
+            pipeline.manifestRead(entry.getName(), mp);
           } else {
             logger.info("Storing zip entry {}/{} in working file repository collection '{}'", job.getId(),
                     entry.getName(), wfrCollectionId);
@@ -503,11 +591,10 @@ public class IngestServiceImpl extends AbstractJobProducer implements IngestServ
             URI contentUri = workingFileRepository.putInCollection(wfrCollectionId, fileName,
                     new ZipEntryInputStream(zis, entry.getSize()));
             collectionFilenames.add(fileName);
-            // Key is the zip entry name as it is
-            String key = entry.getName();
-            uris.put(key, contentUri);
             ingestStatistics.add(entry.getSize());
             logger.info("Zip entry {}/{} stored at {}", job.getId(), entry.getName(), contentUri);
+            // Key is the zip entry name as it is
+            pipeline.entryStored(entry.getName(), contentUri);
             // Figures out if there's a root folder. Does entry name starts with a folder?
             int pos = entry.getName().indexOf('/');
             if (pos == -1) {
@@ -530,10 +617,6 @@ public class IngestServiceImpl extends AbstractJobProducer implements IngestServ
       if (mp == null)
         throw new MediaPackageException("No manifest found in this zip");
 
-      // Determine the mediapackage identifier
-      if (mp.getIdentifier() == null || isBlank(mp.getIdentifier().toString()))
-        mp.setIdentifier(IdImpl.fromUUID());
-
       String mediaPackageId = mp.getIdentifier().toString();
 
       logger.info("Ingesting mediapackage {} is named '{}'", mediaPackageId, mp.getTitle());
@@ -543,28 +626,20 @@ public class IngestServiceImpl extends AbstractJobProducer implements IngestServ
         logger.warn("Mediapackage {} has no media tracks", mediaPackageId);
       }
 
-      // Update the element uris to point to their working file repository location
-      for (MediaPackageElement element : mp.elements()) {
-        // Key has root folder name if there is one
-        URI uri = uris.get((hasRootFolder ? folderName + "/" : "") + element.getURI().toString());
+      // Update the element uris to point to their working file repository location. Elements that have not been
+      // found relative to the manifest are looked up in the root folder if there is one.
+      final String rootFolder = hasRootFolder ? folderName + "/" : "";
+      pipeline.finish(element -> rootFolder + element.getURI().toString());
 
-        if (uri == null)
-          throw new MediaPackageException("Unable to map element name '" + element.getURI() + "' to workspace uri");
-        logger.info("Ingested mediapackage element {}/{} located at {}", mediaPackageId, element.getIdentifier(), uri);
-        URI dest = workingFileRepository.moveTo(wfrCollectionId, FilenameUtils.getName(uri.toString()), mediaPackageId,
-                element.getIdentifier(), FilenameUtils.getName(element.getURI().toString()));
-        element.setURI(dest);
-
-        // TODO: This should be triggered somehow instead of being handled here
-        if (MediaPackageElements.SERIES.equals(element.getFlavor())) {
-          logger.info("Ingested mediapackage {} contains updated series information", mediaPackageId);
-          updateSeries(element.getURI());
-        }
+      // Add the results of the track inspections
+      for (Job inspectionJob : inspectionJobs) {
+        MediaPackageSupport.updateElement(mp, payloadAsTrack(serviceRegistry).apply(inspectionJob));
       }
 
       // Now that all elements are in place, start with ingest
       logger.info("Initiating processing of ingested mediapackage {}", mediaPackageId);
       WorkflowInstance workflowInstance = ingest(mp, workflowDefinitionId, workflowConfig, workflowInstanceId);
+      ingested = true;
       logger.info("Ingest of mediapackage {} done", mediaPackageId);
       job.setStatus(Job.Status.FINISHED);
       return workflowInstance;
@@ -579,6 +654,19 @@ public class IngestServiceImpl extends AbstractJobProducer implements IngestServ
       throw new IngestException(e);
     } finally {
       IOUtils.closeQuietly(zis);
+      if (pipeline != null)
+        pipeline.await();
+      if (!ingested) {
+        synchronized (movedElements) {
+          for (Tuple<String, String> element : movedElements) {
+            try {
+              workingFileRepository.delete(element.getA(), element.getB());
+            } catch (IOException e) {
+              logger.warn("Unable to remove element {}/{} of failed ingest", element.getA(), element.getB(), e);
+            }
+          }
+        }
+      }
       finallyUpdateJob(job);
       for (String filename : collectionFilenames) {
         workingFileRepository.deleteFromCollection(Long.toString(job.getId()), filename, true);
@@ -0,0 +1,221 @@
+/**
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.ingest.impl;
+
+import org.opencastproject.mediapackage.MediaPackage;
+import org.opencastproject.mediapackage.MediaPackageElement;
+import org.opencastproject.mediapackage.MediaPackageException;
+import org.opencastproject.security.api.Organization;
+import org.opencastproject.security.api.SecurityService;
+import org.opencastproject.security.api.User;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+
+/**
+ * Processes the elements of a zipped media package while the archive is still being read.
+ * <p>
+ * The entries of a zip stream can only be read one after another. As soon as both the manifest and the entry of an
+ * element have been stored, the element is handed to a pool of workers, so processing it overlaps with reading the
+ * remaining entries. Elements are looked up relative to the location of the manifest. Elements that cannot be found
+ * that way are processed once the whole archive has been read.
+ */
+final class ZipIngestPipeline {
+
+  /** Processes an element whose zip entry has been stored in the working file repository. */
+  @FunctionalInterface
+  interface ElementTask {
+    void run(MediaPackage mp, MediaPackageElement element, URI collectionUri) throws Exception;
+  }
+
+  /** The workers, <code>null</code> to process elements on the calling thread */
+  private final ExecutorService workers;
+  private final ElementTask task;
+  private final SecurityService securityService;
+  private final Organization organization;
+  private final User user;
+
+  /** The stored entries by their name in the archive */
+  private final Map<String, URI> entries = new HashMap<>();
+
+  /** The elements that have been handed to the workers */
+  private final Map<MediaPackageElement, CompletableFuture<Void>> processing = new IdentityHashMap<>();
+
+  private MediaPackage mediaPackage;
+
+  /** The directory of the manifest within the archive, including the trailing slash */
+  private String manifestDirectory;
+
+  /**
+   * Creates a pipeline running tasks in the security context of the current user.
+   *
+   * @param workers
+   *          the workers, <code>null</code> to process elements on the calling thread
+   * @param securityService
+   *          the security service
+   * @param task
+   *          processes a single element
+   */
+  ZipIngestPipeline(ExecutorService workers, SecurityService securityService, ElementTask task) {
+    this.workers = workers;
+    this.task = task;
+    this.securityService = securityService;
+    this.organization = securityService.getOrganization();
+    this.user = securityService.getUser();
+  }
+
+  /**
+   * Records the media package read from the manifest and processes the elements whose entries have been stored.
+   *
+   * @param entryName
+   *          the name of the manifest entry
+   * @param mp
+   *          the media package with its identifier set
+   * @throws MediaPackageException
+   *           if another manifest has been read and its elements are being processed
+   */
+  void manifestRead(String entryName, MediaPackage mp) throws MediaPackageException {
+    if (!processing.isEmpty())
+      throw new MediaPackageException("Zip contains more than one manifest");
+    mediaPackage = mp;
+    final int pos = entryName.lastIndexOf('/');
+    manifestDirectory = pos < 0 ? "" : entryName.substring(0, pos + 1);
+    for (MediaPackageElement element : mp.elements()) {
+      final URI uri = entries.get(manifestDirectory + element.getURI());
+      if (uri != null)
+        dispatch(element, uri);
+    }
+  }
+
+  /**
+   * Records a stored entry and processes its element if the manifest has been read already.
+   *
+   * @param entryName
+   *          the name of the entry in the archive
+   * @param uri
+   *          the location of the entry in the working file repository
+   */
+  void entryStored(String entryName, URI uri) {
+    entries.put(entryName, uri);
+    if (mediaPackage == null)
+      return;
+    for (MediaPackageElement element : mediaPackage.elements()) {
+      if (!processing.containsKey(element) && entryName.equals(manifestDirectory + element.getURI()))
+        dispatch(element, uri);
+    }
+  }
+
+  /**
+   * Processes the remaining elements and waits for all elements to be processed.
+   *
+   * @param entryName
+   *          returns the name of the entry of an element that could not be found relative to the manifest
+   * @throws MediaPackageException
+   *           if the entry of an element cannot be found
+   * @throws Exception
+   *           the first error of processing an element
+   */
+  void finish(Function<MediaPackageElement, String> entryName) throws Exception {
+    MediaPackageException missing = null;
+    for (MediaPackageElement element : mediaPackage.elements()) {
+      if (processing.containsKey(element))
+        continue;
+      final URI uri = entries.get(entryName.apply(element));
+      if (uri == null) {
+        missing = new MediaPackageException("Unable to map element name '" + element.getURI()
+                + "' to workspace uri");
+        break;
+      }
+      dispatch(element, uri);
+    }
+    final Exception failure = await();
+    if (missing != null)
+      throw missing;
+    if (failure != null)
+      throw failure;
+  }
+
+  /**
+   * Waits for all elements handed to the workers so far, without failing.
+   *
+   * @return the first error of processing an element, <code>null</code> if there is none
+   */
+  Exception await() {
+    Exception failure = null;
+    for (CompletableFuture<Void> future : new ArrayList<>(processing.values())) {
+      try {
+        future.get();
+      } catch (ExecutionException e) {
+        if (failure == null)
+          failure = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        if (failure == null)
+          failure = e;
+      }
+    }
+    return failure;
+  }
+
+  private void dispatch(MediaPackageElement element, URI uri) {
+    final MediaPackage mp = mediaPackage;
+    final CompletableFuture<Void> future = new CompletableFuture<>();
+    processing.put(element, future);
+    final Runnable run = () -> {
+      try {
+        task.run(mp, element, uri);
+        future.complete(null);
+      } catch (Throwable t) {
+        future.completeExceptionally(t);
+      }
+    };
+    if (workers != null) {
+      try {
+        workers.execute(() -> runAsUser(run));
+        return;
+      } catch (RejectedExecutionException e) {
+        // the workers are being reconfigured, fall back to the calling thread
+      }
+    }
+    run.run();
+  }
+
+  private void runAsUser(Runnable run) {
+    securityService.setOrganization(organization);
+    securityService.setUser(user);
+    try {
+      run.run();
+    } finally {
+      securityService.setOrganization(null);
+      securityService.setUser(null);
+    }
+  }
+
+}
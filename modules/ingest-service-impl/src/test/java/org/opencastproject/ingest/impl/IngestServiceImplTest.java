@@ -22,6 +22,7 @@
 package org.opencastproject.ingest.impl;
 
 import org.opencastproject.capture.CaptureParameters;
+import org.opencastproject.ingest.api.IngestException;
 import org.opencastproject.inspection.api.MediaInspectionService;
 import org.opencastproject.job.api.Job;
 import org.opencastproject.job.api.Job.Status;
@@ -93,10 +94,14 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Dictionary;
 import java.util.HashMap;
 import java.util.Hashtable;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class IngestServiceImplTest {
   private IngestServiceImpl service = null;
@@ -376,6 +381,80 @@ public class IngestServiceImplTest {
 
   }
 
+  @Test
+  public void testThickClientConcurrentElements() throws Exception {
+    WorkingFileRepository wfr = EasyMock.createNiceMock(WorkingFileRepository.class);
+    EasyMock.expect(wfr.putInCollection(EasyMock.anyString(), EasyMock.anyString(),
+            EasyMock.anyObject(InputStream.class))).andAnswer(() -> URI.create("http://localhost/files/collection/" + EasyMock.getCurrentArguments()[1]))
+            .anyTimes();
+    EasyMock.expect(wfr.moveTo(EasyMock.anyString(), EasyMock.anyString(), EasyMock.anyString(), EasyMock.anyString(),
+            EasyMock.anyString())).andAnswer(() -> {
+              Object[] args = EasyMock.getCurrentArguments();
+              return URI.create("http://localhost/files/mediapackage/" + args[2] + "/" + args[3] + "/" + args[4]);
+            }).anyTimes();
+    EasyMock.replay(wfr);
+    service.setWorkingFileRepository(wfr);
+
+    Dictionary<String, String> properties = new Hashtable<>();
+    properties.put(IngestServiceImpl.ZIP_WORKERS_KEY, "4");
+    properties.put(IngestServiceImpl.ZIP_INSPECT_TRACKS_KEY, "true");
+    service.updated(properties);
+
+    try (InputStream packageStream = urlPackage.toURL().openStream()) {
+      WorkflowInstance instance = service.addZippedMediaPackage(packageStream);
+      Assert.assertEquals(workflowInstanceID, instance.getId());
+
+      // All elements have been moved and the tracks have been inspected
+      MediaPackage mediaPackage = instance.getMediaPackage();
+      Assert.assertEquals(2, mediaPackage.getTracks().length);
+      for (MediaPackageElement element : mediaPackage.getElements()) {
+        Assert.assertTrue(element.getURI().toString().startsWith("http://localhost/files/mediapackage/"));
+      }
+      for (Track track : mediaPackage.getTracks()) {
+        Assert.assertEquals(Long.valueOf(20000L), track.getDuration());
+      }
+    } finally {
+      properties.put(IngestServiceImpl.ZIP_WORKERS_KEY, "1");
+      service.updated(properties);
+    }
+  }
+
+  @Test
+  public void testThickClientRemovesMovedElementsOnFailure() throws Exception {
+    final AtomicInteger moved = new AtomicInteger();
+    final List<String> movedElements = Collections.synchronizedList(new ArrayList<>());
+    final List<String> deletedElements = Collections.synchronizedList(new ArrayList<>());
+    WorkingFileRepository wfr = EasyMock.createNiceMock(WorkingFileRepository.class);
+    EasyMock.expect(wfr.putInCollection(EasyMock.anyString(), EasyMock.anyString(),
+            EasyMock.anyObject(InputStream.class))).andAnswer(() -> URI.create("http://localhost/files/collection/"
+            + EasyMock.getCurrentArguments()[1])).anyTimes();
+    EasyMock.expect(wfr.moveTo(EasyMock.anyString(), EasyMock.anyString(), EasyMock.anyString(), EasyMock.anyString(),
+            EasyMock.anyString())).andAnswer(() -> {
+              Object[] args = EasyMock.getCurrentArguments();
+              // Fail after the first element has been moved
+              if (moved.incrementAndGet() > 1)
+                throw new IOException("Unable to move " + args[1]);
+              movedElements.add(args[2] + "/" + args[3]);
+              return URI.create("http://localhost/files/mediapackage/" + args[2] + "/" + args[3] + "/" + args[4]);
+            }).anyTimes();
+    EasyMock.expect(wfr.delete(EasyMock.anyString(), EasyMock.anyString())).andAnswer(() -> {
+      Object[] args = EasyMock.getCurrentArguments();
+      deletedElements.add(args[0] + "/" + args[1]);
+      return true;
+    }).anyTimes();
+    EasyMock.replay(wfr);
+    service.setWorkingFileRepository(wfr);
+
+    try (InputStream packageStream = urlPackage.toURL().openStream()) {
+      service.addZippedMediaPackage(packageStream);
+      Assert.fail("The ingest should fail if an element cannot be moved");
+    } catch (IngestException | IOException e) {
+      // expected
+    }
+    Assert.assertEquals(1, movedElements.size());
+    Assert.assertEquals(movedElements, deletedElements);
+  }
+
   @Test
   public void testContentDisposition() throws Exception {
     MediaPackage mediaPackage = null;
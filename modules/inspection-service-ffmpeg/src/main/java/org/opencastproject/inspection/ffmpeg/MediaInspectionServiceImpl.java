@@ -37,6 +37,7 @@ import org.opencastproject.serviceregistry.api.ServiceRegistryException;
 import org.opencastproject.util.LoadUtil;
 import org.opencastproject.workspace.api.Workspace;
 
+import org.apache.commons.lang3.StringUtils;
 import org.osgi.service.cm.ConfigurationException;
 import org.osgi.service.cm.ManagedService;
 import org.osgi.service.component.ComponentContext;
@@ -75,6 +76,12 @@ public class MediaInspectionServiceImpl extends AbstractJobProducer implements M
   /** The key to look for in the service configuration file to override the {@link DEFAULT_ENRICH_JOB_LOAD} */
   public static final String ENRICH_JOB_LOAD_KEY = "job.load.enrich";
 
+  /** The default number of inspection results which are cached by content checksum */
+  public static final int DEFAULT_CACHE_SIZE = 100;
+
+  /** The key to look for in the service configuration file to override the {@link DEFAULT_CACHE_SIZE} */
+  public static final String CACHE_SIZE_KEY = "inspection.cache.size";
+
   /** The load introduced on the system by creating an inspect job */
   private float inspectJobLoad = DEFAULT_INSPECT_JOB_LOAD;
 
@@ -96,6 +103,12 @@ public class MediaInspectionServiceImpl extends AbstractJobProducer implements M
 
   private volatile MediaInspector inspector;
 
+  /** The path to the ffprobe binary */
+  private String ffprobeBinary;
+
+  /** The number of inspection results which are cached by content checksum */
+  private int cacheSize = DEFAULT_CACHE_SIZE;
+
   /** Creates a new media inspection service instance. */
   public MediaInspectionServiceImpl() {
     super(JOB_TYPE);
@@ -107,7 +120,6 @@ public class MediaInspectionServiceImpl extends AbstractJobProducer implements M
     super.activate(cc);
     /* Configure analyzer */
     final String path = cc.getBundleContext().getProperty(FFmpegAnalyzer.FFPROBE_BINARY_CONFIG);
-    final String ffprobeBinary;
     if (path == null) {
       logger.debug("DEFAULT " + FFmpegAnalyzer.FFPROBE_BINARY_CONFIG + ": " + FFmpegAnalyzer.FFPROBE_BINARY_DEFAULT);
       ffprobeBinary = FFmpegAnalyzer.FFPROBE_BINARY_DEFAULT;
@@ -115,7 +127,7 @@ public class MediaInspectionServiceImpl extends AbstractJobProducer implements M
       logger.debug("FFprobe config binary: {}", path);
       ffprobeBinary = path;
     }
-    inspector = new MediaInspector(workspace, ffprobeBinary);
+    inspector = new MediaInspector(workspace, ffprobeBinary, cacheSize);
   }
 
   @Override
@@ -128,6 +140,20 @@ public class MediaInspectionServiceImpl extends AbstractJobProducer implements M
             serviceRegistry);
     enrichJobLoad = LoadUtil.getConfiguredLoadValue(properties, ENRICH_JOB_LOAD_KEY, DEFAULT_ENRICH_JOB_LOAD,
             serviceRegistry);
+
+    final String cacheSizeValue = StringUtils.trimToNull((String) properties.get(CACHE_SIZE_KEY));
+    final int newCacheSize;
+    try {
+      newCacheSize = cacheSizeValue == null ? DEFAULT_CACHE_SIZE : Integer.parseInt(cacheSizeValue);
+    } catch (NumberFormatException e) {
+      throw new ConfigurationException(CACHE_SIZE_KEY, "Not an integer: " + cacheSizeValue);
+    }
+    if (newCacheSize != cacheSize) {
+      logger.info("Caching the results of up to {} inspections", newCacheSize);
+      cacheSize = newCacheSize;
+      if (ffprobeBinary != null)
+        inspector = new MediaInspector(workspace, ffprobeBinary, cacheSize);
+    }
   }
 
   /**
@@ -58,8 +58,10 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.io.IOException;
 import java.net.URI;
+import java.util.Collections;
 import java.util.Dictionary;
 import java.util.Hashtable;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -75,9 +77,37 @@ public class MediaInspector {
   private final Workspace workspace;
   private final String ffprobePath;
 
+  /** Metadata of recently inspected media, by content digest */
+  private final Map<String, MediaContainerMetadata> metadataCache;
+
   public MediaInspector(Workspace workspace, String ffprobePath) {
+    this(workspace, ffprobePath, 0);
+  }
+
+  /**
+   * Creates a media inspector which caches the metadata of the most recently inspected media by their checksum, so that
+   * inspecting identical files again does not need to analyze them.
+   *
+   * @param workspace
+   *          the workspace
+   * @param ffprobePath
+   *          the path to the ffprobe binary
+   * @param cacheSize
+   *          the maximum number of cached results, <code>0</code> to disable the cache
+   */
+  public MediaInspector(Workspace workspace, String ffprobePath, final int cacheSize) {
     this.workspace = workspace;
     this.ffprobePath = ffprobePath;
+    if (cacheSize > 0) {
+      metadataCache = Collections.synchronizedMap(new LinkedHashMap<String, MediaContainerMetadata>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, MediaContainerMetadata> eldest) {
+          return size() > cacheSize;
+        }
+      });
+    } else {
+      metadataCache = null;
+    }
   }
 
   /**
@@ -110,7 +140,15 @@ public class MediaInspector {
         throw new MediaInspectionException("Can not inspect files without a filename extension");
       }
 
-      MediaContainerMetadata metadata = getFileMetadata(file, getAccurateFrameCount(options));
+      // Checksum
+      final Checksum checksum;
+      try {
+        checksum = getChecksum(trackURI, file);
+      } catch (IOException e) {
+        throw new MediaInspectionException("Unable to read " + file, e);
+      }
+
+      MediaContainerMetadata metadata = getFileMetadata(file, checksum, getAccurateFrameCount(options));
       if (metadata == null) {
         throw new MediaInspectionException("Media analyzer returned no metadata from " + file);
       } else {
@@ -128,12 +166,7 @@ public class MediaInspector {
         if (metadata.getDuration() != null && metadata.getDuration() > 0)
           track.setDuration(metadata.getDuration());
 
-        // Checksum
-        try {
-          track.setChecksum(Checksum.create(ChecksumType.DEFAULT_TYPE, file));
-        } catch (IOException e) {
-          throw new MediaInspectionException("Unable to read " + file, e);
-        }
+        track.setChecksum(checksum);
 
         // Mimetype
         track.setMimeType(metadata.getMimeType());
@@ -224,7 +257,18 @@ public class MediaInspector {
         throw new MediaInspectionException("Can not inspect files without a filename extension");
       }
 
-      MediaContainerMetadata metadata = getFileMetadata(file, getAccurateFrameCount(options));
+      // Checksum known to the workspace or computed from the file. The checksum the track already has may not match the
+      // file, so it is not used as cache key. Without cache, it is only needed if the track needs a new checksum.
+      Checksum checksum = null;
+      if (originalTrack.getChecksum() == null || override || metadataCache != null) {
+        try {
+          checksum = getChecksum(originalTrackUrl, file);
+        } catch (IOException e) {
+          throw new MediaInspectionException("Unable to read " + file, e);
+        }
+      }
+
+      MediaContainerMetadata metadata = getFileMetadata(file, checksum, getAccurateFrameCount(options));
       if (metadata == null) {
         throw new MediaInspectionException("Unable to acquire media metadata for " + originalTrackUrl);
       } else {
@@ -258,13 +302,8 @@ public class MediaInspector {
         // enrich the new track with basic info
         if (track.getDuration() == null || override)
           track.setDuration(metadata.getDuration());
-        if (track.getChecksum() == null || override) {
-          try {
-            track.setChecksum(Checksum.create(ChecksumType.DEFAULT_TYPE, file));
-          } catch (IOException e) {
-            throw new MediaInspectionException("Unable to read " + file, e);
-          }
-        }
+        if (track.getChecksum() == null || override)
+          track.setChecksum(checksum);
 
         // Add the mime type if it's not already present
         if (track.getMimeType() == null || override) {
@@ -331,7 +370,7 @@ public class MediaInspector {
       // Checksum
       if (element.getChecksum() == null || override) {
         try {
-          element.setChecksum(Checksum.create(ChecksumType.DEFAULT_TYPE, file));
+          element.setChecksum(getChecksum(element.getURI(), file));
         } catch (IOException e) {
           throw new MediaInspectionException("Error generating checksum for " + element.getURI(), e);
         }
@@ -359,6 +398,58 @@ public class MediaInspector {
     }
   }
 
+  /**
+   * Returns the checksum of a file. The checksum known to the workspace, e.g. from the working file repository or from
+   * downloading the file, is used if there is one. Otherwise, the file is read to compute it.
+   *
+   * @param uri
+   *          the URI of the file
+   * @param file
+   *          the local copy of the file
+   * @return the checksum
+   * @throws IOException
+   *           if the file cannot be read
+   */
+  private Checksum getChecksum(URI uri, File file) throws IOException {
+    final Checksum checksum = workspace.getChecksum(uri);
+    if (checksum != null && checksum.getType().equals(ChecksumType.DEFAULT_TYPE)) {
+      logger.debug("Using known checksum {} of {}", checksum, uri);
+      return checksum;
+    }
+    return Checksum.create(ChecksumType.DEFAULT_TYPE, file);
+  }
+
+  /**
+   * Returns the file's metadata from the cache or asks the media analyzer to extract it.
+   *
+   * @param file
+   *          the file
+   * @param checksum
+   *          the checksum of the file or <code>null</code> if it is unknown, in which case the cache is not used
+   * @return the file container metadata
+   * @throws MediaInspectionException
+   *           if metadata extraction fails
+   */
+  private MediaContainerMetadata getFileMetadata(File file, Checksum checksum, boolean accurateFrameCount)
+          throws MediaInspectionException {
+    // Playlists reference other files, so identical playlists do not necessarily describe identical media
+    if (metadataCache == null || checksum == null || AdaptivePlaylist.isPlaylist(file))
+      return getFileMetadata(file, accurateFrameCount);
+
+    // The mime type depends on the file extension
+    final String key = checksum.getType() + ":" + checksum.getValue() + ";"
+            + FilenameUtils.getExtension(file.getName()).toLowerCase() + ";" + accurateFrameCount;
+    MediaContainerMetadata metadata = metadataCache.get(key);
+    if (metadata != null) {
+      logger.debug("Reusing metadata of media with checksum {} for {}", checksum, file);
+      return metadata;
+    }
+    metadata = getFileMetadata(file, accurateFrameCount);
+    if (metadata != null)
+      metadataCache.put(key, metadata);
+    return metadata;
+  }
+
   /**
    * Asks the media analyzer to extract the file's metadata.
    *
@@ -110,6 +110,62 @@ public class MediaInspectionServiceImplTest {
     }
   }
 
+  @Test
+  public void testInspectionWithKnownChecksum() throws Exception {
+    final URI trackUri = getResource("/test.mp4");
+    final URI emptyTrackUri = getResource("/nostreams.mp4");
+    for (String binary : ffprobePath) {
+      // The workspace reports the same checksum for both files, which makes the inspector reuse the cached result
+      final Checksum cs = Checksum.create(ChecksumType.DEFAULT_TYPE, "0123456789abcdef0123456789abcdef");
+      Workspace workspace = EasyMock.createNiceMock(Workspace.class);
+      EasyMock.expect(workspace.get(trackUri)).andReturn(new File(trackUri)).anyTimes();
+      EasyMock.expect(workspace.get(emptyTrackUri)).andReturn(new File(emptyTrackUri)).anyTimes();
+      EasyMock.expect(workspace.getChecksum(EasyMock.anyObject(URI.class))).andReturn(cs).anyTimes();
+      EasyMock.replay(workspace);
+
+      MediaInspector mi = new MediaInspector(workspace, binary, 10);
+      final Track track = mi.inspectTrack(trackUri, Options.NO_OPTION);
+      assertEquals(cs, track.getChecksum());
+      assertTrue(track.getStreams().length > 0);
+
+      final Track cached = mi.inspectTrack(emptyTrackUri, Options.NO_OPTION);
+      assertEquals(cs, cached.getChecksum());
+      assertEquals(track.getStreams().length, cached.getStreams().length);
+      assertEquals(track.getDuration(), cached.getDuration());
+    }
+  }
+
+  @Test
+  public void testEnrichmentIgnoresStaleChecksum() throws Exception {
+    final URI trackUri = getResource("/test.mp4");
+    final URI emptyTrackUri = getResource("/nostreams.mp4");
+    for (String binary : ffprobePath) {
+      // The workspace does not know any checksums, so the inspector has to compute them from the files
+      Workspace workspace = EasyMock.createNiceMock(Workspace.class);
+      EasyMock.expect(workspace.get(trackUri)).andReturn(new File(trackUri)).anyTimes();
+      EasyMock.expect(workspace.get(emptyTrackUri)).andReturn(new File(emptyTrackUri)).anyTimes();
+      EasyMock.replay(workspace);
+
+      final MediaInspector inspector = new MediaInspector(workspace, binary);
+      final Track track = inspector.inspectTrack(trackUri, Options.NO_OPTION);
+      final Track emptyTrack = inspector.inspectTrack(emptyTrackUri, Options.NO_OPTION);
+
+      // Both tracks claim the same checksum, which matches neither of the files
+      final Checksum stale = Checksum.create(ChecksumType.DEFAULT_TYPE, "0123456789abcdef0123456789abcdef");
+      track.setChecksum(stale);
+      emptyTrack.setChecksum(stale);
+
+      MediaInspector mi = new MediaInspector(workspace, binary, 10);
+      final Track enriched = (Track) mi.enrich(track, false, Options.NO_OPTION);
+      assertTrue(enriched.getStreams().length > 0);
+      assertEquals(stale, enriched.getChecksum());
+
+      final Track enrichedEmpty = (Track) mi.enrich(emptyTrack, false, Options.NO_OPTION);
+      assertEquals(0, enrichedEmpty.getStreams().length);
+      assertEquals(stale, enrichedEmpty.getChecksum());
+    }
+  }
+
   @Test
   public void testInspectionEmptyContainer() throws Exception {
     final URI trackUri = getResource("/nostreams.mp4");
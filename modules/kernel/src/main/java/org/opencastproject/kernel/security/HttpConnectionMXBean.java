@@ -22,9 +22,31 @@
 package org.opencastproject.kernel.security;
 
 /**
- * An MxBean that exposes the number of open http connections to a JXM agent
+ * An MxBean that exposes the number of open http connections, the state of the connection pool and the digest nonce
+ * reuse to a JXM agent
  */
 public interface HttpConnectionMXBean {
   /** Gets the number of open http connections */
   int getOpenConnections();
+
+  /** Gets the number of pooled connections currently in use */
+  int getLeasedConnections();
+
+  /** Gets the number of idle pooled connections */
+  int getAvailableConnections();
+
+  /** Gets the number of requests waiting for a pooled connection */
+  int getPendingConnectionRequests();
+
+  /** Gets the maximum number of pooled connections */
+  int getMaxConnections();
+
+  /** Gets the number of requests made to obtain a digest nonce */
+  long getDigestHandshakes();
+
+  /** Gets the number of requests authenticated using a cached digest nonce */
+  long getNonceReuses();
+
+  /** Gets the number of cached digest nonces rejected by the server */
+  long getNonceRejections();
 }
@@ -41,21 +41,32 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.math.NumberUtils;
 import org.apache.http.Header;
 import org.apache.http.HeaderElement;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequestInterceptor;
 import org.apache.http.HttpResponse;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.AuthCache;
 import org.apache.http.client.ClientProtocolException;
 import org.apache.http.client.CredentialsProvider;
 import org.apache.http.client.config.AuthSchemes;
 import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpHead;
 import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.client.utils.URIUtils;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
 import org.apache.http.impl.auth.DigestScheme;
+import org.apache.http.impl.client.BasicAuthCache;
 import org.apache.http.impl.client.BasicCredentialsProvider;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.osgi.service.component.ComponentContext;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
@@ -68,15 +79,22 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.lang.management.ManagementFactory;
+import java.net.URI;
 import java.util.Map;
 import java.util.Random;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.management.MBeanServer;
 import javax.management.ObjectName;
 
 /**
  * An http client that executes secure (though not necessarily encrypted) http requests.
+ * <p>
+ * All requests share a pool of persistent connections. The digest nonce handed out by a server is cached per host and
+ * reused for subsequent requests to that host until the server rejects it, which saves the additional round trip
+ * needed to obtain a nonce for every request that is not a GET or HEAD.
  */
 @Component(
   property = {
@@ -118,6 +136,30 @@ public class TrustedHttpClientImpl implements TrustedHttpClient, HttpConnectionM
   public static final String NONCE_TIMEOUT_RETRY_MAXIMUM_VARIABLE_TIME_KEY =
     "org.opencastproject.security.digest.nonce.variable.time";
 
+  /** The configuration property specifying the maximum number of pooled connections */
+  public static final String CONNECTION_POOL_MAX_TOTAL_KEY = "org.opencastproject.security.http.pool.max";
+
+  /** The configuration property specifying the maximum number of pooled connections to a single host */
+  public static final String CONNECTION_POOL_MAX_PER_ROUTE_KEY = "org.opencastproject.security.http.pool.max.per.host";
+
+  /**
+   * The configuration property specifying the time in seconds an idle connection is kept open, unless the server asks
+   * for a shorter time.
+   */
+  public static final String CONNECTION_KEEP_ALIVE_KEY = "org.opencastproject.security.http.pool.keepalive";
+
+  /** The default maximum number of pooled connections */
+  public static final int DEFAULT_CONNECTION_POOL_MAX_TOTAL = 200;
+
+  /** The default maximum number of pooled connections to a single host */
+  public static final int DEFAULT_CONNECTION_POOL_MAX_PER_ROUTE = 50;
+
+  /** The default time in seconds an idle connection is kept open */
+  public static final int DEFAULT_CONNECTION_KEEP_ALIVE = 60;
+
+  /** Time in milliseconds after which an idle pooled connection is checked before it is used again */
+  private static final int CONNECTION_VALIDATE_AFTER_INACTIVITY = 2000;
+
   /** The default time until a connection attempt fails */
   public static final int DEFAULT_CONNECTION_TIMEOUT = 60 * 1000;
 
@@ -154,6 +196,41 @@ public class TrustedHttpClientImpl implements TrustedHttpClient, HttpConnectionM
   /** The map of open responses to their http clients, which need to be closed after we are finished with the response */
   protected Map<HttpResponse, CloseableHttpClient> responseMap = new ConcurrentHashMap<>();
 
+  /** The map of open responses to the responses holding their pooled connections */
+  private final Map<HttpResponse, CloseableHttpResponse> pooledResponses = new ConcurrentHashMap<>();
+
+  /** The pool of persistent connections shared by all requests */
+  protected final PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+
+  /** The time in milliseconds an idle connection is kept open */
+  private long keepAlive = TimeUnit.SECONDS.toMillis(DEFAULT_CONNECTION_KEEP_ALIVE);
+
+  /** Keeps connections open as long as the server allows, but no longer than the configured keep alive time */
+  private final ConnectionKeepAliveStrategy keepAliveStrategy = (response, context) -> {
+    long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+    return duration > 0 ? Math.min(duration, keepAlive) : keepAlive;
+  };
+
+  /** Digest authentication state of GET and HEAD requests, allowing them to authenticate without a challenge */
+  private final AuthCache authCache = new BasicAuthCache();
+
+  /** Makes the shared digest authentication state available to GET and HEAD requests */
+  private final HttpRequestInterceptor authCacheInterceptor = (request, context) -> {
+    context.setAttribute(HttpClientContext.AUTH_CACHE, authCache);
+  };
+
+  /** The realm and the last nonce handed out by a host, by host */
+  private final Map<String, String[]> nonceCache = new ConcurrentHashMap<>();
+
+  /** The number of requests made to obtain a nonce */
+  private final AtomicLong digestHandshakes = new AtomicLong();
+
+  /** The number of requests authenticated using a cached nonce */
+  private final AtomicLong nonceReuses = new AtomicLong();
+
+  /** The number of cached nonces rejected by the server */
+  private final AtomicLong nonceRejections = new AtomicLong();
+
   /** Used to add a random amount of time up to retryMaximumVariableTime to retry a request after a nonce timeout. */
   private final Random generator = new Random();
 
@@ -186,6 +263,7 @@ public class TrustedHttpClientImpl implements TrustedHttpClient, HttpConnectionM
     getRetryNumber(cc);
     getRetryBaseTime(cc);
     getRetryMaximumVariableTime(cc);
+    configureConnectionPool(cc);
 
     // register with jmx
     try {
@@ -288,6 +366,25 @@ public class TrustedHttpClientImpl implements TrustedHttpClient, HttpConnectionM
                                                           DEFAULT_RETRY_MAXIMUM_VARIABLE_TIME);
   }
 
+  /**
+   * Configures the size of the connection pool and the keep alive time of idle connections.
+   *
+   * @param cc
+   *         The ComponentContent to extract the properties from.
+   */
+  private void configureConnectionPool(ComponentContext cc) {
+    int maxTotal = getIntFromComponentContext(cc, CONNECTION_POOL_MAX_TOTAL_KEY, DEFAULT_CONNECTION_POOL_MAX_TOTAL);
+    int maxPerRoute = getIntFromComponentContext(cc, CONNECTION_POOL_MAX_PER_ROUTE_KEY,
+                                                 DEFAULT_CONNECTION_POOL_MAX_PER_ROUTE);
+    int keepAliveSeconds = getIntFromComponentContext(cc, CONNECTION_KEEP_ALIVE_KEY, DEFAULT_CONNECTION_KEEP_ALIVE);
+    connectionManager.setMaxTotal(Math.max(maxTotal, 1));
+    connectionManager.setDefaultMaxPerRoute(Math.max(Math.min(maxPerRoute, maxTotal), 1));
+    connectionManager.setValidateAfterInactivity(CONNECTION_VALIDATE_AFTER_INACTIVITY);
+    keepAlive = TimeUnit.SECONDS.toMillis(Math.max(keepAliveSeconds, 0));
+    logger.debug("Pooling up to {} connections, {} per host, kept alive for {} seconds",
+            connectionManager.getMaxTotal(), connectionManager.getDefaultMaxPerRoute(), keepAliveSeconds);
+  }
+
   /**
    * Gets a property from the ComponentContext that is the base type int.
    *
@@ -321,6 +418,8 @@ public class TrustedHttpClientImpl implements TrustedHttpClient, HttpConnectionM
   @Deactivate
   public void deactivate() {
     logger.debug("deactivate");
+    connectionManager.shutdown();
+    nonceCache.clear();
   }
 
   public TrustedHttpClientImpl() {
@@ -331,12 +430,20 @@ public class TrustedHttpClientImpl implements TrustedHttpClient, HttpConnectionM
     this.pass = pass;
   }
 
-  /** Creates a new HttpClientBuilder to use for making requests. */
+  /**
+   * Creates a new HttpClientBuilder to use for making requests. The clients share the pooled connections of this
+   * trusted http client, closing them does not close the pool.
+   */
   public HttpClientBuilder makeHttpClientBuilder(int connectionTimeout, int socketTimeout) {
     RequestConfig config = RequestConfig.custom()
         .setConnectionRequestTimeout(connectionTimeout)
+        .setConnectTimeout(connectionTimeout)
         .setSocketTimeout(socketTimeout).build();
-    return HttpClientBuilder.create().setDefaultRequestConfig(config);
+    return HttpClientBuilder.create()
+        .setDefaultRequestConfig(config)
+        .setConnectionManager(connectionManager)
+        .setConnectionManagerShared(true)
+        .setKeepAliveStrategy(keepAliveStrategy);
   }
 
   /**
@@ -377,11 +484,12 @@ public class TrustedHttpClientImpl implements TrustedHttpClient, HttpConnectionM
       provider.setCredentials(
           new AuthScope(AuthScope.ANY_HOST, AuthScope.ANY_PORT, AuthScope.ANY_REALM, AuthSchemes.DIGEST),
           new UsernamePasswordCredentials(user, pass));
-      final CloseableHttpClient httpClient = clientBuilder.setDefaultCredentialsProvider(provider).build();
+      final CloseableHttpClient httpClient = clientBuilder.setDefaultCredentialsProvider(provider)
+          .addInterceptorFirst(authCacheInterceptor).build();
       // Run the request (the http client handles the multiple back-and-forth requests)
       try {
         httpUriRequest = getSignedUrl(httpUriRequest);
-        HttpResponse response = new HttpResponseWrapper(httpClient.execute(httpUriRequest));
+        HttpResponse response = execute(httpClient, httpUriRequest);
         responseMap.put(response, httpClient);
         return response;
       } catch (IOException e) {
@@ -395,12 +503,24 @@ public class TrustedHttpClientImpl implements TrustedHttpClient, HttpConnectionM
     } else {
       final CloseableHttpClient httpClient = clientBuilder.build();
       // HttpClient doesn't handle the request dynamics for other verbs (especially when sending a streamed multipart
-      // request), so we need to handle the details of the digest auth back-and-forth manually
-      manuallyHandleDigestAuthentication(httpUriRequest, httpClient);
+      // request), so we need to handle the details of the digest auth back-and-forth manually. A cached nonce is only
+      // used if the request can be sent again in case the server rejects the nonce.
+      final boolean repeatable = isRepeatable(httpUriRequest);
+      boolean cachedNonce = manuallyHandleDigestAuthentication(httpUriRequest, httpClient, repeatable);
       HttpResponse response = null;
       try {
-        response = new HttpResponseWrapper(httpClient.execute(httpUriRequest));
+        response = execute(httpClient, httpUriRequest);
+        if (cachedNonce && 401 == response.getStatusLine().getStatusCode()) {
+          // The cached nonce is not accepted (anymore), get a fresh one and try again right away
+          logger.debug("Cached nonce rejected by {}", httpUriRequest.getURI().getHost());
+          nonceRejections.incrementAndGet();
+          nonceCache.remove(getNonceCacheKey(httpUriRequest.getURI()));
+          release(response);
+          manuallyHandleDigestAuthentication(httpUriRequest, httpClient, false);
+          response = execute(httpClient, httpUriRequest);
+        }
         if (nonceTimeoutRetries > 0 && hadNonceTimeoutResponse(response)) {
+          release(response);
           httpClient.close();
           response = retryAuthAndRequestAfterNonceTimeout(httpUriRequest, response);
         }
@@ -410,6 +530,7 @@ public class TrustedHttpClientImpl implements TrustedHttpClient, HttpConnectionM
         // if we have a response, remove it from the map
         if (response != null) {
           responseMap.remove(response);
+          release(response);
         }
         // close the http connection(s)
         try {
@@ -493,12 +614,15 @@ public class TrustedHttpClientImpl implements TrustedHttpClient, HttpConnectionM
           logger.error("Suffered InteruptedException while trying to sleep until next retry.", e);
         }
       }
-      manuallyHandleDigestAuthentication(httpUriRequest, httpClient);
-      response = new HttpResponseWrapper(httpClient.execute(httpUriRequest));
+      manuallyHandleDigestAuthentication(httpUriRequest, httpClient, false);
+      response = execute(httpClient, httpUriRequest);
       if (!hadNonceTimeoutResponse(response)) {
         responseMap.put(response, httpClient);
         break;
       }
+      if (i < nonceTimeoutRetries - 1) {
+        release(response);
+      }
       httpClient.close();
     }
     return response;
@@ -523,20 +647,34 @@ public class TrustedHttpClientImpl implements TrustedHttpClient, HttpConnectionM
    *         The request location to get the digest authentication for.
    * @param httpClient
    *         The client to send the request through.
+   * @param useCachedNonce
+   *         Whether a nonce cached for the host may be used instead of asking the server for a new one.
+   * @return true if the request has been authenticated with a cached nonce
    * @throws TrustedHttpClientException
    *         Thrown if the client cannot be shutdown.
    */
-  private void manuallyHandleDigestAuthentication(HttpUriRequest httpUriRequest, CloseableHttpClient httpClient)
-          throws TrustedHttpClientException {
-    HttpRequestBase digestRequest;
-    try {
-      digestRequest = (HttpRequestBase) httpUriRequest.getClass().newInstance();
-    } catch (Exception e) {
-      throw new IllegalStateException("Can not create a new " + httpUriRequest.getClass().getName());
+  private boolean manuallyHandleDigestAuthentication(HttpUriRequest httpUriRequest, CloseableHttpClient httpClient,
+          boolean useCachedNonce) throws TrustedHttpClientException {
+    final String cacheKey = getNonceCacheKey(httpUriRequest.getURI());
+    String[] realmAndNonce = useCachedNonce && cacheKey != null ? nonceCache.get(cacheKey) : null;
+    final boolean cached = realmAndNonce != null;
+    if (cached) {
+      nonceReuses.incrementAndGet();
+    } else {
+      HttpRequestBase digestRequest;
+      try {
+        digestRequest = (HttpRequestBase) httpUriRequest.getClass().newInstance();
+      } catch (Exception e) {
+        throw new IllegalStateException("Can not create a new " + httpUriRequest.getClass().getName());
+      }
+      digestRequest.setURI(httpUriRequest.getURI());
+      digestRequest.setHeader(REQUESTED_AUTH_HEADER, DIGEST_AUTH);
+      digestHandshakes.incrementAndGet();
+      realmAndNonce = getRealmAndNonce(digestRequest);
+      if (cacheKey != null && realmAndNonce != null && realmAndNonce[1] != null) {
+        nonceCache.put(cacheKey, realmAndNonce);
+      }
     }
-    digestRequest.setURI(httpUriRequest.getURI());
-    digestRequest.setHeader(REQUESTED_AUTH_HEADER, DIGEST_AUTH);
-    String[] realmAndNonce = getRealmAndNonce(digestRequest);
 
     if (realmAndNonce != null) {
       // Set the user/pass
@@ -560,6 +698,68 @@ public class TrustedHttpClientImpl implements TrustedHttpClient, HttpConnectionM
         throw new TrustedHttpClientException(e);
       }
     }
+    return cached;
+  }
+
+  /**
+   * Returns the key of the nonce cache for the host of the given URI.
+   *
+   * @param uri
+   *         The request URI.
+   * @return The scheme, host and port of the URI or null if the URI is not absolute.
+   */
+  private String getNonceCacheKey(URI uri) {
+    final HttpHost host = URIUtils.extractHost(uri);
+    return host != null ? host.toURI() : null;
+  }
+
+  /**
+   * Determines if a request can be sent again, i.e. if it has no body or a body which can be read more than once.
+   *
+   * @param httpUriRequest
+   *         The request.
+   * @return true if the request can be sent again.
+   */
+  private boolean isRepeatable(HttpUriRequest httpUriRequest) {
+    if (!(httpUriRequest instanceof HttpEntityEnclosingRequest))
+      return true;
+    final HttpEntityEnclosingRequest request = (HttpEntityEnclosingRequest) httpUriRequest;
+    return request.getEntity() == null || request.getEntity().isRepeatable();
+  }
+
+  /**
+   * Executes a request and keeps track of the response holding the pooled connection.
+   *
+   * @param httpClient
+   *         The client to send the request through.
+   * @param httpUriRequest
+   *         The request.
+   * @return The wrapped response.
+   */
+  private HttpResponse execute(CloseableHttpClient httpClient, HttpUriRequest httpUriRequest) throws IOException {
+    final CloseableHttpResponse pooledResponse = httpClient.execute(httpUriRequest);
+    final HttpResponse response = new HttpResponseWrapper(pooledResponse);
+    if (pooledResponse != null) {
+      pooledResponses.put(response, pooledResponse);
+    }
+    return response;
+  }
+
+  /**
+   * Releases the connection of a response, returning it to the pool if the response has been consumed completely.
+   *
+   * @param response
+   *         The wrapped response.
+   */
+  private void release(HttpResponse response) {
+    final CloseableHttpResponse pooledResponse = pooledResponses.remove(response);
+    if (pooledResponse != null) {
+      try {
+        pooledResponse.close();
+      } catch (IOException e) {
+        logger.debug("Unable to release connection: {}", e.getMessage());
+      }
+    }
   }
 
   /**
@@ -570,6 +770,7 @@ public class TrustedHttpClientImpl implements TrustedHttpClient, HttpConnectionM
   @Override
   public void close(HttpResponse response) throws IOException {
     if (response != null) {
+      release(response);
       CloseableHttpClient httpClient = responseMap.remove(response);
       if (httpClient != null) {
         httpClient.close();
@@ -588,10 +789,10 @@ public class TrustedHttpClientImpl implements TrustedHttpClient, HttpConnectionM
    */
   protected String[] getRealmAndNonce(HttpRequestBase request) throws TrustedHttpClientException {
     CloseableHttpClient httpClient = makeHttpClientBuilder(DEFAULT_CONNECTION_TIMEOUT, DEFAULT_SOCKET_TIMEOUT).build();
-    HttpResponse response;
+    HttpResponse response = null;
     try {
       try {
-        response = new HttpResponseWrapper(httpClient.execute(request));
+        response = execute(httpClient, request);
         Header[] headers = response.getHeaders("WWW-Authenticate");
         if (headers == null || headers.length == 0) {
           logger.warn("URI {} does not support digest authentication", request.getURI());
@@ -609,6 +810,9 @@ public class TrustedHttpClientImpl implements TrustedHttpClient, HttpConnectionM
         }
         return new String[]{realm, nonce};
       } finally {
+        if (response != null) {
+          release(response);
+        }
         httpClient.close();
       }
     } catch (IOException e) {
@@ -621,6 +825,41 @@ public class TrustedHttpClientImpl implements TrustedHttpClient, HttpConnectionM
     return responseMap.size();
   }
 
+  @Override
+  public int getLeasedConnections() {
+    return connectionManager.getTotalStats().getLeased();
+  }
+
+  @Override
+  public int getAvailableConnections() {
+    return connectionManager.getTotalStats().getAvailable();
+  }
+
+  @Override
+  public int getPendingConnectionRequests() {
+    return connectionManager.getTotalStats().getPending();
+  }
+
+  @Override
+  public int getMaxConnections() {
+    return connectionManager.getTotalStats().getMax();
+  }
+
+  @Override
+  public long getDigestHandshakes() {
+    return digestHandshakes.get();
+  }
+
+  @Override
+  public long getNonceReuses() {
+    return nonceReuses.get();
+  }
+
+  @Override
+  public long getNonceRejections() {
+    return nonceRejections.get();
+  }
+
   /**
    * @return Returns the number of times the TrustedHttpClient will retry a request if nonce timeouts are occuring.
    */
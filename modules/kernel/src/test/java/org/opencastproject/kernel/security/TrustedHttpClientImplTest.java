@@ -131,6 +131,11 @@ public class TrustedHttpClientImplTest {
         .andReturn(new BasicStatusLine(new ProtocolVersion("Http", 1, 1), 401, "Nonce has expired/timed out"))
         .anyTimes();
     expect(nonceResponse.getHeaders("WWW-Authenticate")).andReturn(new Header[] {}).anyTimes();
+    // Responses are closed to return their connections to the pool
+    for (CloseableHttpResponse response : new CloseableHttpResponse[] { okResponse, digestResponse, nonceResponse }) {
+      response.close();
+      EasyMock.expectLastCall().anyTimes();
+    }
     replay(okResponse, digestResponse, nonceResponse);
   }
 
@@ -534,6 +539,101 @@ public class TrustedHttpClientImplTest {
     Assert.assertEquals(200, response.getStatusLine().getStatusCode());
   }
 
+  @Test
+  public void cachedNonceIsReused() throws ClientProtocolException, IOException {
+    // Setup bundle context for TrustedHttpClientImpl
+    bundleContextMock = createNiceMock(BundleContext.class);
+    expect(bundleContextMock.getProperty(TrustedHttpClientImpl.DIGEST_AUTH_USER_KEY)).andReturn("u");
+    expect(bundleContextMock.getProperty(TrustedHttpClientImpl.DIGEST_AUTH_PASS_KEY)).andReturn("p");
+    expect(bundleContextMock.getProperty(TrustedHttpClientImpl.NONCE_TIMEOUT_RETRY_KEY)).andReturn("0");
+    replay(bundleContextMock);
+
+    componentContextMock = createNiceMock(ComponentContext.class);
+    expect(componentContextMock.getBundleContext()).andReturn(bundleContextMock).anyTimes();
+    replay(componentContextMock);
+
+    CloseableHttpClient httpClient = createMock(CloseableHttpClient.class);
+    // Digest handshake and first request
+    expect(httpClient.execute(isA(HttpUriRequest.class))).andReturn(digestResponse);
+    expect(httpClient.execute(isA(HttpUriRequest.class))).andReturn(okResponse);
+    // Second request using the cached nonce
+    expect(httpClient.execute(isA(HttpUriRequest.class))).andReturn(okResponse);
+    httpClient.close();
+    EasyMock.expectLastCall().anyTimes();
+    HttpClientBuilder httpClientBuilder = createNiceMock(HttpClientBuilder.class);
+    expect(httpClientBuilder.build()).andReturn(httpClient).anyTimes();
+    replay(httpClientBuilder, httpClient);
+    client = new TrustedHttpClientImpl("u", "p") {
+      @Override
+      public HttpClientBuilder makeHttpClientBuilder(int connectionTimeout, int socketTimeout) {
+        return httpClientBuilder;
+      }
+    };
+    client.setServiceRegistry(serviceRegistry);
+    client.setSecurityService(securityService);
+    client.activate(componentContextMock);
+
+    HttpResponse response = client.execute(new HttpPost("http://localhost:8080/fake"));
+    Assert.assertEquals(200, response.getStatusLine().getStatusCode());
+    client.close(response);
+    response = client.execute(new HttpPost("http://localhost:8080/other"));
+    Assert.assertEquals(200, response.getStatusLine().getStatusCode());
+    client.close(response);
+
+    verify(httpClient);
+    assertEquals(1, client.getDigestHandshakes());
+    assertEquals(1, client.getNonceReuses());
+    assertEquals(0, client.getNonceRejections());
+    assertEquals(0, client.getOpenConnections());
+  }
+
+  @Test
+  public void rejectedCachedNonceIsRenewed() throws ClientProtocolException, IOException {
+    // Setup bundle context for TrustedHttpClientImpl
+    bundleContextMock = createNiceMock(BundleContext.class);
+    expect(bundleContextMock.getProperty(TrustedHttpClientImpl.DIGEST_AUTH_USER_KEY)).andReturn("u");
+    expect(bundleContextMock.getProperty(TrustedHttpClientImpl.DIGEST_AUTH_PASS_KEY)).andReturn("p");
+    expect(bundleContextMock.getProperty(TrustedHttpClientImpl.NONCE_TIMEOUT_RETRY_KEY)).andReturn("0");
+    replay(bundleContextMock);
+
+    componentContextMock = createNiceMock(ComponentContext.class);
+    expect(componentContextMock.getBundleContext()).andReturn(bundleContextMock).anyTimes();
+    replay(componentContextMock);
+
+    CloseableHttpClient httpClient = createMock(CloseableHttpClient.class);
+    // Digest handshake and first request
+    expect(httpClient.execute(isA(HttpUriRequest.class))).andReturn(digestResponse);
+    expect(httpClient.execute(isA(HttpUriRequest.class))).andReturn(okResponse);
+    // Second request using the cached nonce, which is rejected
+    expect(httpClient.execute(isA(HttpUriRequest.class))).andReturn(digestResponse);
+    // New digest handshake and successful request
+    expect(httpClient.execute(isA(HttpUriRequest.class))).andReturn(digestResponse);
+    expect(httpClient.execute(isA(HttpUriRequest.class))).andReturn(okResponse);
+    httpClient.close();
+    EasyMock.expectLastCall().anyTimes();
+    HttpClientBuilder httpClientBuilder = createNiceMock(HttpClientBuilder.class);
+    expect(httpClientBuilder.build()).andReturn(httpClient).anyTimes();
+    replay(httpClientBuilder, httpClient);
+    client = new TrustedHttpClientImpl("u", "p") {
+      @Override
+      public HttpClientBuilder makeHttpClientBuilder(int connectionTimeout, int socketTimeout) {
+        return httpClientBuilder;
+      }
+    };
+    client.setServiceRegistry(serviceRegistry);
+    client.setSecurityService(securityService);
+    client.activate(componentContextMock);
+
+    client.close(client.execute(new HttpPost("http://localhost:8080/fake")));
+    HttpResponse response = client.execute(new HttpPost("http://localhost:8080/fake"));
+    Assert.assertEquals(200, response.getStatusLine().getStatusCode());
+
+    verify(httpClient);
+    assertEquals(2, client.getDigestHandshakes());
+    assertEquals(1, client.getNonceReuses());
+    assertEquals(1, client.getNonceRejections());
+  }
+
   @Test
   public void testNotAcceptsUrlSigningService() throws IOException {
     bundleContextMock = createNiceMock(BundleContext.class);
@@ -46,6 +46,28 @@ public class BaseMessage implements Serializable {
     this.object = object;
   }
 
+  private BaseMessage(String organization, String user, Serializable object) {
+    this.organization = organization;
+    this.user = user;
+    this.object = object;
+  }
+
+  /**
+   * Creates a message from the XML representations of organization and user, which allows senders to reuse them for
+   * several messages.
+   *
+   * @param organization
+   *          the organization as serialized by {@link OrganizationParser#toXml(Organization)}
+   * @param user
+   *          the user as serialized by {@link UserParser#toXml(User)}
+   * @param object
+   *          the payload
+   * @return the message
+   */
+  public static BaseMessage fromXml(String organization, String user, Serializable object) {
+    return new BaseMessage(organization, user, object);
+  }
+
   public Opt<String> getId() {
     if (object instanceof MessageItem)
       return Opt.some(((MessageItem) object).getId());
@@ -61,6 +83,20 @@ public class BaseMessage implements Serializable {
     return UserParser.fromXml(user);
   }
 
+  /**
+   * @return the organization as XML
+   */
+  public String getOrganizationXml() {
+    return organization;
+  }
+
+  /**
+   * @return the user as XML
+   */
+  public String getUserXml() {
+    return user;
+  }
+
   public Serializable getObject() {
     return object;
   }
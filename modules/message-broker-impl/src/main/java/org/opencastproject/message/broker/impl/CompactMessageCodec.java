@@ -0,0 +1,176 @@
+/**
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.message.broker.impl;
+
+import org.opencastproject.message.broker.api.BaseMessage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encodes a {@link BaseMessage} as a compact binary frame sent as the body of a JMS bytes message.
+ * <p>
+ * Organization and user are written as plain UTF-8 instead of being wrapped into the serialized message, and the frame
+ * is written into a single buffer that is handed to the broker as is. Only the payload is serialized using Java
+ * serialization. Decoding restricts the classes of the payload to the packages the broker trusts for object messages.
+ */
+final class CompactMessageCodec {
+
+  /** Marks the frame, "OCM" followed by the format version */
+  private static final int MAGIC = 0x4F434D01;
+
+  /** Packages payload classes may be loaded from */
+  private static final String[] TRUSTED_PACKAGES = {
+          "java.lang", "java.util", "org.opencastproject.message.broker.api" };
+
+  private CompactMessageCodec() {
+  }
+
+  /**
+   * Encodes a message.
+   *
+   * @param message
+   *          the message
+   * @return the frame
+   * @throws IOException
+   *           if the payload cannot be serialized
+   */
+  static byte[] encode(BaseMessage message) throws IOException {
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream(1024);
+    try (DataOutputStream out = new DataOutputStream(buffer)) {
+      out.writeInt(MAGIC);
+      writeString(out, message.getOrganizationXml());
+      writeString(out, message.getUserXml());
+      if (message.getObject() == null) {
+        out.writeBoolean(false);
+      } else {
+        out.writeBoolean(true);
+        ObjectOutputStream payload = new ObjectOutputStream(out);
+        payload.writeObject(message.getObject());
+        payload.flush();
+      }
+    }
+    return buffer.toByteArray();
+  }
+
+  /**
+   * Returns whether the given bytes start with a compact frame.
+   *
+   * @param frame
+   *          the bytes to check
+   * @return <code>true</code> if the bytes can be decoded
+   */
+  static boolean isFrame(byte[] frame) {
+    return frame.length >= 4
+            && ((frame[0] & 0xff) << 24 | (frame[1] & 0xff) << 16 | (frame[2] & 0xff) << 8 | frame[3] & 0xff) == MAGIC;
+  }
+
+  /**
+   * Decodes a message.
+   *
+   * @param frame
+   *          the frame
+   * @return the message
+   * @throws IOException
+   *           if the frame is invalid or contains untrusted classes
+   */
+  static BaseMessage decode(byte[] frame) throws IOException {
+    if (!isFrame(frame))
+      throw new IOException("Not a compact message frame");
+    try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(frame))) {
+      in.readInt();
+      final String organization = readString(in);
+      final String user = readString(in);
+      Serializable object = null;
+      if (in.readBoolean()) {
+        try (ObjectInputStream payload = new TrustedObjectInputStream(in)) {
+          object = (Serializable) payload.readObject();
+        } catch (ClassNotFoundException | ClassCastException e) {
+          throw new IOException("Unable to read message payload", e);
+        }
+      }
+      return BaseMessage.fromXml(organization, user, object);
+    }
+  }
+
+  private static void writeString(DataOutputStream out, String value) throws IOException {
+    if (value == null) {
+      out.writeInt(-1);
+      return;
+    }
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    final int length = in.readInt();
+    if (length < 0)
+      return null;
+    byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Object input stream refusing classes outside of the trusted packages.
+   */
+  private static final class TrustedObjectInputStream extends ObjectInputStream {
+
+    TrustedObjectInputStream(InputStream in) throws IOException {
+      super(in);
+    }
+
+    @Override
+    protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+      final Class<?> clazz = super.resolveClass(desc);
+      Class<?> type = clazz;
+      while (type.isArray()) {
+        type = type.getComponentType();
+      }
+      if (type.isPrimitive() || isTrusted(type.getName()))
+        return clazz;
+      throw new InvalidClassException(desc.getName(), "Class is not trusted for message payloads");
+    }
+
+    private static boolean isTrusted(String className) {
+      final int index = className.lastIndexOf('.');
+      final String packageName = index < 0 ? "" : className.substring(0, index);
+      for (String trusted : TRUSTED_PACKAGES) {
+        if (packageName.equals(trusted) || packageName.startsWith(trusted + "."))
+          return true;
+      }
+      return false;
+    }
+  }
+
+}
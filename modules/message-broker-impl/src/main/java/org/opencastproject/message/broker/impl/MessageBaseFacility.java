@@ -206,6 +206,13 @@ public class MessageBaseFacility {
     enable(false);
   }
 
+  /**
+   * Returns the connection to the message broker or {@code null} if the facility is not yet connected.
+   */
+  protected Connection getConnection() {
+    return connection;
+  }
+
   /**
    * Returns an open session or {@code null} if the facility is not yet connected.
    */
@@ -31,10 +31,12 @@ import org.osgi.service.component.annotations.Deactivate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.concurrent.Callable;
 import java.util.concurrent.FutureTask;
 
+import javax.jms.BytesMessage;
 import javax.jms.Destination;
 import javax.jms.JMSException;
 import javax.jms.Message;
@@ -144,6 +146,20 @@ public class MessageReceiverImpl extends MessageBaseFacility implements MessageR
         ObjectMessage objectMessage = (ObjectMessage) message;
         return objectMessage.getObject();
       }
+      if (message instanceof BytesMessage) {
+        // Messages sent in the compact format
+        BytesMessage bytesMessage = (BytesMessage) message;
+        byte[] frame = new byte[(int) bytesMessage.getBodyLength()];
+        bytesMessage.readBytes(frame);
+        if (CompactMessageCodec.isFrame(frame)) {
+          try {
+            return CompactMessageCodec.decode(frame);
+          } catch (IOException e) {
+            logger.warn("Skipping message that cannot be decoded: {}", e.getMessage());
+            continue;
+          }
+        }
+      }
 
       logger.debug("Skipping invalid message: {}", message);
     }
@@ -23,8 +23,17 @@ package org.opencastproject.message.broker.impl;
 
 import org.opencastproject.message.broker.api.BaseMessage;
 import org.opencastproject.message.broker.api.MessageSender;
+import org.opencastproject.security.api.JaxbOrganization;
+import org.opencastproject.security.api.JaxbUser;
+import org.opencastproject.security.api.Organization;
+import org.opencastproject.security.api.OrganizationParser;
 import org.opencastproject.security.api.SecurityService;
+import org.opencastproject.security.api.User;
+import org.opencastproject.security.api.UserParser;
+import org.opencastproject.util.jmx.JmxUtil;
 
+import org.apache.commons.lang3.BooleanUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.osgi.framework.BundleContext;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
@@ -33,15 +42,37 @@ import org.osgi.service.component.annotations.Reference;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
+import javax.jms.BytesMessage;
+import javax.jms.Connection;
+import javax.jms.DeliveryMode;
 import javax.jms.Destination;
 import javax.jms.JMSException;
 import javax.jms.Message;
+import javax.jms.MessageProducer;
 import javax.jms.Session;
+import javax.management.ObjectInstance;
 
 /**
  * A class built to send JMS messages through ActiveMQ.
+ * <p>
+ * Messages are sent through a pool of sessions, so threads sending messages concurrently don't wait for each other.
+ * All sessions share one connection, which keeps the order of the messages sent by a single thread. Optionally,
+ * messages are queued and sent asynchronously in batches. Messages with the same destination and identifier are always
+ * sent in the order they have been queued in.
  */
 @Component(
   property = {
@@ -59,52 +90,234 @@ public class MessageSenderImpl extends MessageBaseFacility implements MessageSen
   /** The OSGi service PID */
   private static final String SERVICE_PID = "org.opencastproject.message.broker.impl.MessageSenderImpl";
 
+  /** The key to find the number of sessions used to send messages concurrently */
+  static final String SESSIONS_KEY = "org.opencastproject.message.broker.sender.sessions";
+
+  /** The key to find whether messages are sent asynchronously */
+  static final String ASYNC_KEY = "org.opencastproject.message.broker.sender.async";
+
+  /** The key to find the number of messages that may wait to be sent asynchronously */
+  static final String QUEUE_SIZE_KEY = "org.opencastproject.message.broker.sender.queue.size";
+
+  /** The key to find the maximum number of messages sent asynchronously in one go */
+  static final String BATCH_SIZE_KEY = "org.opencastproject.message.broker.sender.batch.size";
+
+  /** The key to find the format messages are sent in, either {@link #FORMAT_OBJECT} or {@link #FORMAT_COMPACT} */
+  static final String FORMAT_KEY = "org.opencastproject.message.broker.sender.format";
+
+  /** Messages are sent as serialized objects */
+  static final String FORMAT_OBJECT = "object";
+
+  /** Messages are sent as compact frames, see {@link CompactMessageCodec} */
+  static final String FORMAT_COMPACT = "compact";
+
+  static final int DEFAULT_SESSIONS = 4;
+  static final int DEFAULT_QUEUE_SIZE = 10000;
+  static final int DEFAULT_BATCH_SIZE = 100;
+
+  /** The time to wait for queued messages to be sent when shutting down */
+  private static final long SHUTDOWN_TIMEOUT_MILLIS = 30000L;
+
+  /** The number of organization and user pairs whose XML representation is cached */
+  private static final int SECURITY_CACHE_SIZE = 64;
+
   /** The security service */
   private SecurityService securityService;
 
+  /** The number of sessions messages are sent through */
+  private int sessions = DEFAULT_SESSIONS;
+
+  /** Whether messages are sent as compact frames */
+  private boolean compact = false;
+
+  /** The sessions, created on demand once connected */
+  private volatile SessionPool sessionPool = null;
+
+  /** The asynchronous senders, <code>null</code> if messages are sent synchronously */
+  private volatile AsyncSender[] asyncSenders = null;
+
+  /** The maximum number of messages waiting to be sent asynchronously */
+  private int queueCapacity = 0;
+
+  /** The XML representation of recently used organizations and users, indexed by the identity of the user */
+  private final AtomicReferenceArray<SecurityXml> securityXml = new AtomicReferenceArray<>(SECURITY_CACHE_SIZE);
+
+  /** The statistics */
+  private final MessageSenderStatistics statistics = new MessageSenderStatistics(() -> sessions,
+          this::getQueueDepth, () -> queueCapacity);
+
+  /** The registered statistics bean */
+  private ObjectInstance registeredMXBean = null;
+
   @Activate
   public void activate(BundleContext bc) throws Exception {
+    final String format = StringUtils.trimToNull(bc.getProperty(FORMAT_KEY));
+    if (format != null && !FORMAT_OBJECT.equalsIgnoreCase(format) && !FORMAT_COMPACT.equalsIgnoreCase(format)) {
+      logger.warn("Unknown message format '{}', sending messages as objects", format);
+    }
+    configure(getIntProperty(bc, SESSIONS_KEY, DEFAULT_SESSIONS),
+            BooleanUtils.toBoolean(StringUtils.trimToNull(bc.getProperty(ASYNC_KEY))),
+            getIntProperty(bc, QUEUE_SIZE_KEY, DEFAULT_QUEUE_SIZE),
+            getIntProperty(bc, BATCH_SIZE_KEY, DEFAULT_BATCH_SIZE),
+            FORMAT_COMPACT.equalsIgnoreCase(format));
+    logger.info("Sending messages {} as {} through {} session(s)", asyncSenders != null ? "asynchronously"
+            : "synchronously", compact ? FORMAT_COMPACT : FORMAT_OBJECT, sessions);
     super.activate(bc);
+    registeredMXBean = JmxUtil.registerMXBean(statistics, "MessageSender");
+  }
+
+  /**
+   * Configures how messages are sent.
+   *
+   * @param sessions
+   *          the number of sessions messages are sent through concurrently
+   * @param async
+   *          whether messages are queued and sent asynchronously
+   * @param queueSize
+   *          the number of messages that may wait to be sent asynchronously
+   * @param batchSize
+   *          the maximum number of messages sent asynchronously in one go
+   * @param compact
+   *          whether messages are sent as compact frames instead of serialized objects
+   */
+  void configure(int sessions, boolean async, int queueSize, int batchSize, boolean compact) {
+    this.sessions = sessions;
+    this.compact = compact;
+    if (async) {
+      final int perSender = Math.max(1, queueSize / sessions);
+      final AsyncSender[] senders = new AsyncSender[sessions];
+      for (int i = 0; i < sessions; i++) {
+        senders[i] = new AsyncSender(i, perSender, batchSize);
+      }
+      queueCapacity = perSender * sessions;
+      asyncSenders = senders;
+    }
   }
 
   @Deactivate
   public void deactivate() {
+    final AsyncSender[] senders = asyncSenders;
+    if (senders != null) {
+      for (AsyncSender sender : senders) {
+        sender.shutdown();
+      }
+      for (AsyncSender sender : senders) {
+        sender.await();
+      }
+    }
     super.deactivate();
+    if (registeredMXBean != null) {
+      JmxUtil.unregisterMXBean(registeredMXBean);
+      registeredMXBean = null;
+    }
   }
 
   @Override
   public void sendObjectMessage(String destinationId, DestinationType type, Serializable object) {
     if (!isConnected()) {
       logger.error("Could not send message. No connection to message broker.");
+      statistics.failed();
       return;
     }
+    final long start = System.nanoTime();
+    final BaseMessage message = createMessage(object);
+    final AsyncSender[] senders = asyncSenders;
+    if (senders != null) {
+      final String key = message.getId().getOr("");
+      senders[Math.floorMod(Objects.hash(destinationId, key), senders.length)]
+              .enqueue(new Outgoing(destinationId, type, message, start));
+      return;
+    }
+
+    final SessionPool pool = getSessionPool();
+    // This shouldn't happen after a connection has been successfully
+    // established at least once, but better be safe than sorry.
+    if (pool == null) {
+      statistics.failed();
+      return;
+    }
+    PooledSession session = null;
     try {
-      synchronized (this) {
-        Session session = getSession();
-        // This shouldn't happen after a connection has been successfully
-        // established at least once, but better be safe than sorry.
-        if (session == null)
-          return;
-        // Create a message or use the provided one.
-        Message message = session.createObjectMessage(
-                new BaseMessage(securityService.getOrganization(), securityService.getUser(), object));
-
-        Destination destination;
-        // Create the destination (Topic or Queue)
-        if (type.equals(DestinationType.Queue)) {
-          destination = session.createQueue(destinationId);
-        } else {
-          destination = session.createTopic(destinationId);
-        }
+      session = pool.borrow();
+      session.send(destinationId, type, message);
+      statistics.sent(System.nanoTime() - start);
+    } catch (JMSException | IOException e) {
+      statistics.failed();
+      logger.error("Had an exception while trying to send a message", e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      statistics.failed();
+      logger.error("Interrupted while waiting to send a message to {}", destinationId);
+    } finally {
+      if (session != null)
+        pool.release(session);
+    }
+  }
 
-        // Tell the producer to send the message
-        logger.trace("Sent message: " + message.hashCode() + " : " + Thread.currentThread().getName());
+  @Override
+  protected synchronized void disconnectMessageBroker(final boolean verbose) {
+    final SessionPool pool = sessionPool;
+    sessionPool = null;
+    if (pool != null)
+      pool.close();
+    super.disconnectMessageBroker(verbose);
+  }
 
-        // Send the message
-        getMessageProducer().send(destination, message);
+  /**
+   * Wraps an object into a message, reusing the XML representation of the current organization and user if they have
+   * been used recently.
+   */
+  private BaseMessage createMessage(Serializable object) {
+    final Organization organization = securityService.getOrganization();
+    final User user = securityService.getUser();
+    final int slot = System.identityHashCode(user) & (SECURITY_CACHE_SIZE - 1);
+    SecurityXml xml = securityXml.get(slot);
+    if (xml == null || xml.organization != organization || xml.user != user) {
+      xml = new SecurityXml(organization, user);
+      securityXml.set(slot, xml);
+    }
+    return BaseMessage.fromXml(xml.organizationXml, xml.userXml, object);
+  }
+
+  /**
+   * Returns the pool of sessions of the current connection or <code>null</code> if the facility is not yet connected.
+   */
+  private SessionPool getSessionPool() {
+    SessionPool pool = sessionPool;
+    if (pool != null)
+      return pool;
+    synchronized (this) {
+      if (sessionPool == null) {
+        final Session session = getSession();
+        if (session == null)
+          return null;
+        final Connection connection = getConnection();
+        sessionPool = new SessionPool(connection, session, getMessageProducer(), connection != null ? sessions : 1);
       }
-    } catch (JMSException e) {
-      logger.error("Had an exception while trying to send a message", e);
+      return sessionPool;
+    }
+  }
+
+  private int getQueueDepth() {
+    final AsyncSender[] senders = asyncSenders;
+    if (senders == null)
+      return 0;
+    int depth = 0;
+    for (AsyncSender sender : senders) {
+      depth += sender.queue.size();
+    }
+    return depth;
+  }
+
+  private static int getIntProperty(BundleContext bc, String key, int defaultValue) {
+    final String value = StringUtils.trimToNull(bc.getProperty(key));
+    if (value == null)
+      return defaultValue;
+    try {
+      return Math.max(1, Integer.parseInt(value));
+    } catch (NumberFormatException e) {
+      logger.warn("Invalid value '{}' for {}, using {}", value, key, defaultValue);
+      return defaultValue;
     }
   }
 
@@ -114,4 +327,245 @@ public class MessageSenderImpl extends MessageBaseFacility implements MessageSen
     this.securityService = securityService;
   }
 
+  /**
+   * The XML representation of an organization and a user.
+   */
+  private static final class SecurityXml {
+    private final Organization organization;
+    private final User user;
+    private final String organizationXml;
+    private final String userXml;
+
+    SecurityXml(Organization organization, User user) {
+      this.organization = organization;
+      this.user = user;
+      this.organizationXml = OrganizationParser.toXml(JaxbOrganization.fromOrganization(organization));
+      this.userXml = UserParser.toXml(JaxbUser.fromUser(user));
+    }
+  }
+
+  /**
+   * A message waiting to be sent asynchronously.
+   */
+  private static final class Outgoing {
+    private final String destinationId;
+    private final DestinationType type;
+    private final BaseMessage message;
+    private final long created;
+
+    Outgoing(String destinationId, DestinationType type, BaseMessage message, long created) {
+      this.destinationId = destinationId;
+      this.type = type;
+      this.message = message;
+      this.created = created;
+    }
+  }
+
+  /**
+   * A session with its message producer and the destinations it has used. A session must only be used by one thread at
+   * a time.
+   */
+  private final class PooledSession {
+    private final Session session;
+    private final MessageProducer producer;
+    private final boolean owned;
+    private final Map<String, Destination> queues = new HashMap<>();
+    private final Map<String, Destination> topics = new HashMap<>();
+
+    PooledSession(Session session, MessageProducer producer, boolean owned) {
+      this.session = session;
+      this.producer = producer;
+      this.owned = owned;
+    }
+
+    void send(String destinationId, DestinationType type, BaseMessage message) throws JMSException, IOException {
+      final Message jmsMessage;
+      if (compact) {
+        final BytesMessage bytesMessage = session.createBytesMessage();
+        bytesMessage.writeBytes(CompactMessageCodec.encode(message));
+        jmsMessage = bytesMessage;
+      } else {
+        jmsMessage = session.createObjectMessage(message);
+      }
+      logger.trace("Sent message: {} : {}", jmsMessage.hashCode(), Thread.currentThread().getName());
+      producer.send(getDestination(destinationId, type), jmsMessage);
+    }
+
+    private Destination getDestination(String destinationId, DestinationType type) throws JMSException {
+      final boolean queue = DestinationType.Queue.equals(type);
+      final Map<String, Destination> destinations = queue ? queues : topics;
+      Destination destination = destinations.get(destinationId);
+      if (destination == null) {
+        destination = queue ? session.createQueue(destinationId) : session.createTopic(destinationId);
+        destinations.put(destinationId, destination);
+      }
+      return destination;
+    }
+
+    void close() {
+      if (!owned)
+        return;
+      try {
+        session.close();
+      } catch (JMSException e) {
+        logger.debug("Unable to close session: {}", e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * The sessions of one connection. The first session is the one of the facility, further ones are opened on demand.
+   */
+  private final class SessionPool {
+    private final Connection connection;
+    private final ConcurrentLinkedQueue<PooledSession> idle = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<PooledSession> opened = new ConcurrentLinkedQueue<>();
+    private final Semaphore available;
+    private volatile boolean closed = false;
+
+    SessionPool(Connection connection, Session session, MessageProducer producer, int size) {
+      this.connection = connection;
+      this.available = new Semaphore(size);
+      final PooledSession first = new PooledSession(session, producer, false);
+      idle.add(first);
+      opened.add(first);
+    }
+
+    PooledSession borrow() throws JMSException, InterruptedException {
+      available.acquire();
+      final PooledSession session = idle.poll();
+      if (session != null)
+        return session;
+      // All opened sessions are in use, but there is a permit left, so we may open another one
+      try {
+        final Session jmsSession = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        final MessageProducer producer = jmsSession.createProducer(null);
+        producer.setDeliveryMode(DeliveryMode.NON_PERSISTENT);
+        final PooledSession pooled = new PooledSession(jmsSession, producer, true);
+        opened.add(pooled);
+        if (closed)
+          pooled.close();
+        return pooled;
+      } catch (JMSException | RuntimeException e) {
+        available.release();
+        throw e;
+      }
+    }
+
+    void release(PooledSession session) {
+      idle.add(session);
+      available.release();
+    }
+
+    void close() {
+      closed = true;
+      for (PooledSession session : opened) {
+        session.close();
+      }
+    }
+  }
+
+  /**
+   * Sends queued messages in batches on a thread of its own.
+   */
+  private final class AsyncSender implements Runnable {
+    private final BlockingQueue<Outgoing> queue;
+    private final int batchSize;
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    AsyncSender(int index, int capacity, int batchSize) {
+      this.queue = new ArrayBlockingQueue<>(capacity);
+      this.batchSize = batchSize;
+      this.thread = new Thread(this, "Message sender #" + index);
+      this.thread.setDaemon(true);
+      this.thread.start();
+    }
+
+    void enqueue(Outgoing outgoing) {
+      if (!running) {
+        statistics.failed();
+        logger.error("Could not send message to {}. Message sender is stopping.", outgoing.destinationId);
+        return;
+      }
+      try {
+        queue.put(outgoing);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        statistics.failed();
+        logger.error("Interrupted while waiting to queue a message to {}", outgoing.destinationId);
+      }
+    }
+
+    @Override
+    public void run() {
+      final List<Outgoing> batch = new ArrayList<>(batchSize);
+      while (running || !queue.isEmpty()) {
+        try {
+          final Outgoing first = queue.poll(1, TimeUnit.SECONDS);
+          if (first == null)
+            continue;
+          batch.add(first);
+          queue.drainTo(batch, batchSize - 1);
+          send(batch);
+        } catch (InterruptedException e) {
+          statistics.failed(batch.size());
+          logger.debug("Message sender interrupted, dropping {} message(s)", batch.size());
+        } catch (Throwable t) {
+          logger.error("Unexpected error while sending messages", t);
+        } finally {
+          batch.clear();
+        }
+      }
+    }
+
+    private void send(List<Outgoing> batch) throws InterruptedException {
+      statistics.batch(batch.size());
+      final SessionPool pool = isConnected() ? getSessionPool() : null;
+      if (pool == null) {
+        statistics.failed(batch.size());
+        logger.error("Could not send {} message(s). No connection to message broker.", batch.size());
+        return;
+      }
+      PooledSession session = null;
+      try {
+        session = pool.borrow();
+        for (Outgoing outgoing : batch) {
+          try {
+            session.send(outgoing.destinationId, outgoing.type, outgoing.message);
+            statistics.sent(System.nanoTime() - outgoing.created);
+          } catch (JMSException | IOException e) {
+            statistics.failed();
+            logger.error("Had an exception while trying to send a message", e);
+          }
+        }
+      } catch (JMSException e) {
+        statistics.failed(batch.size());
+        logger.error("Could not send {} message(s)", batch.size(), e);
+      } finally {
+        if (session != null)
+          pool.release(session);
+      }
+    }
+
+    void shutdown() {
+      running = false;
+    }
+
+    void await() {
+      try {
+        thread.join(SHUTDOWN_TIMEOUT_MILLIS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      if (thread.isAlive()) {
+        final int dropped = queue.size();
+        queue.clear();
+        statistics.failed(dropped);
+        logger.warn("Dropping {} message(s) that could not be sent in time", dropped);
+        thread.interrupt();
+      }
+    }
+  }
+
 }
@@ -0,0 +1,93 @@
+/**
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.message.broker.impl;
+
+/**
+ * JMX Bean interface exposing the statistics of the message sender.
+ */
+public interface MessageSenderMXBean {
+
+  /**
+   * Gets the number of messages sent to the message broker
+   *
+   * @return the number of messages
+   */
+  long getMessages();
+
+  /**
+   * Gets the number of messages that could not be sent
+   *
+   * @return the number of failed messages
+   */
+  long getFailedMessages();
+
+  /**
+   * Gets the number of messages sent per second, measured over the last ten seconds at least
+   *
+   * @return the throughput
+   */
+  double getMessagesPerSecond();
+
+  /**
+   * Gets the average time in milliseconds from handing a message to the sender until it has been sent
+   *
+   * @return the average latency
+   */
+  double getAverageLatency();
+
+  /**
+   * Gets the maximum time in milliseconds from handing a message to the sender until it has been sent
+   *
+   * @return the maximum latency
+   */
+  double getMaxLatency();
+
+  /**
+   * Gets the number of sessions the sender may use concurrently
+   *
+   * @return the number of sessions
+   */
+  int getSessions();
+
+  /**
+   * Gets the number of messages waiting to be sent asynchronously
+   *
+   * @return the queue depth
+   */
+  int getQueueDepth();
+
+  /**
+   * Gets the maximum number of messages that may wait to be sent before callers are blocked, 0 if messages are sent
+   * synchronously
+   *
+   * @return the queue capacity
+   */
+  int getQueueCapacity();
+
+  /**
+   * Gets the average number of messages sent in one go by the asynchronous sender
+   *
+   * @return the average batch size
+   */
+  double getAverageBatchSize();
+
+}
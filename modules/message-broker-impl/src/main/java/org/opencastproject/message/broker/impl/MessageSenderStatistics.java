@@ -0,0 +1,147 @@
+/**
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.message.broker.impl;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * Collects the statistics of a {@link MessageSenderImpl}.
+ */
+final class MessageSenderStatistics implements MessageSenderMXBean {
+
+  /** The minimum time throughput is measured over */
+  private static final long RATE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+  private final LongAdder messages = new LongAdder();
+  private final LongAdder failedMessages = new LongAdder();
+  private final LongAdder batches = new LongAdder();
+  private final LongAdder batchedMessages = new LongAdder();
+  private final LongAdder latencyNanos = new LongAdder();
+  private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+  private final IntSupplier sessions;
+  private final IntSupplier queueDepth;
+  private final IntSupplier queueCapacity;
+
+  /** The start of the current throughput measurement and the number of messages sent until then */
+  private long rateStart = System.nanoTime();
+  private long rateMessages = 0;
+  private double rate = 0;
+
+  MessageSenderStatistics(IntSupplier sessions, IntSupplier queueDepth, IntSupplier queueCapacity) {
+    this.sessions = sessions;
+    this.queueDepth = queueDepth;
+    this.queueCapacity = queueCapacity;
+  }
+
+  /**
+   * Records a sent message.
+   *
+   * @param latency
+   *          the time in nanoseconds since the message has been handed to the sender
+   */
+  void sent(long latency) {
+    messages.increment();
+    latencyNanos.add(latency);
+    maxLatencyNanos.accumulateAndGet(latency, Math::max);
+  }
+
+  /**
+   * Records a message that could not be sent.
+   */
+  void failed() {
+    failedMessages.increment();
+  }
+
+  /**
+   * Records a number of messages that could not be sent.
+   */
+  void failed(int count) {
+    failedMessages.add(count);
+  }
+
+  /**
+   * Records a batch of asynchronously sent messages.
+   */
+  void batch(int size) {
+    batches.increment();
+    batchedMessages.add(size);
+  }
+
+  @Override
+  public long getMessages() {
+    return messages.sum();
+  }
+
+  @Override
+  public long getFailedMessages() {
+    return failedMessages.sum();
+  }
+
+  @Override
+  public synchronized double getMessagesPerSecond() {
+    final long now = System.nanoTime();
+    if (now - rateStart >= RATE_INTERVAL_NANOS) {
+      final long sent = messages.sum();
+      rate = (sent - rateMessages) * (double) TimeUnit.SECONDS.toNanos(1) / (now - rateStart);
+      rateStart = now;
+      rateMessages = sent;
+    }
+    return rate;
+  }
+
+  @Override
+  public double getAverageLatency() {
+    final long sent = messages.sum();
+    return sent == 0 ? 0 : latencyNanos.sum() / (double) sent / TimeUnit.MILLISECONDS.toNanos(1);
+  }
+
+  @Override
+  public double getMaxLatency() {
+    return maxLatencyNanos.get() / (double) TimeUnit.MILLISECONDS.toNanos(1);
+  }
+
+  @Override
+  public int getSessions() {
+    return sessions.getAsInt();
+  }
+
+  @Override
+  public int getQueueDepth() {
+    return queueDepth.getAsInt();
+  }
+
+  @Override
+  public int getQueueCapacity() {
+    return queueCapacity.getAsInt();
+  }
+
+  @Override
+  public double getAverageBatchSize() {
+    final long count = batches.sum();
+    return count == 0 ? 0 : batchedMessages.sum() / (double) count;
+  }
+
+}
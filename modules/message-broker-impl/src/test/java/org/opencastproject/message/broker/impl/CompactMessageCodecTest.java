@@ -0,0 +1,137 @@
+/**
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.message.broker.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.opencastproject.message.broker.api.BaseMessage;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class CompactMessageCodecTest {
+
+  /** The logging facility */
+  private static final Logger logger = LoggerFactory.getLogger(CompactMessageCodecTest.class);
+
+  private static final String ORGANIZATION = "<organization id=\"mh_default_org\"><name>Opencast Project</name>"
+          + StringUtils.repeat("<property key=\"org.opencastproject.key\">value</property>", 20) + "</organization>";
+
+  private static final String USER = "<user><username>opencast_system_account</username>"
+          + "<roles><role><name>ROLE_ADMIN</name></role></roles></user>";
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    ArrayList<String> payload = new ArrayList<>(Arrays.asList("a", "b", "\u00f6"));
+    BaseMessage message = BaseMessage.fromXml(ORGANIZATION, USER, payload);
+
+    byte[] frame = CompactMessageCodec.encode(message);
+    assertTrue(CompactMessageCodec.isFrame(frame));
+
+    BaseMessage decoded = CompactMessageCodec.decode(frame);
+    assertEquals(ORGANIZATION, decoded.getOrganizationXml());
+    assertEquals(USER, decoded.getUserXml());
+    assertEquals(payload, decoded.getObject());
+  }
+
+  @Test
+  public void testRoundTripWithoutPayload() throws Exception {
+    BaseMessage decoded = CompactMessageCodec.decode(CompactMessageCodec.encode(
+            BaseMessage.fromXml(ORGANIZATION, null, null)));
+    assertEquals(ORGANIZATION, decoded.getOrganizationXml());
+    assertNull(decoded.getUserXml());
+    assertNull(decoded.getObject());
+  }
+
+  @Test
+  public void testOtherBytesAreNoFrame() {
+    assertFalse(CompactMessageCodec.isFrame(new byte[0]));
+    assertFalse(CompactMessageCodec.isFrame("Hello".getBytes()));
+  }
+
+  @Test
+  public void testUntrustedClassesAreRejected() throws Exception {
+    byte[] frame = CompactMessageCodec.encode(BaseMessage.fromXml(ORGANIZATION, USER, new Untrusted()));
+    try {
+      CompactMessageCodec.decode(frame);
+      fail("Untrusted payload classes must not be deserialized");
+    } catch (IOException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testCompactFrameSizeAndSpeed() throws Exception {
+    final int rounds = 2000;
+    final BaseMessage message = BaseMessage.fromXml(ORGANIZATION, USER, new ArrayList<>(Arrays.asList("a", "b")));
+    byte[] serialized = serialize(message);
+    byte[] frame = CompactMessageCodec.encode(message);
+
+    // warm up
+    for (int i = 0; i < rounds; i++) {
+      serialize(message);
+      CompactMessageCodec.encode(message);
+    }
+    long start = System.nanoTime();
+    for (int i = 0; i < rounds; i++) {
+      serialize(message);
+    }
+    long objectNanos = System.nanoTime() - start;
+    start = System.nanoTime();
+    for (int i = 0; i < rounds; i++) {
+      CompactMessageCodec.encode(message);
+    }
+    long compactNanos = System.nanoTime() - start;
+    logger.info("Message encoding: object {} bytes / {} us per message, compact {} bytes / {} us per message",
+            serialized.length, objectNanos / rounds / 1000.0, frame.length, compactNanos / rounds / 1000.0);
+
+    assertTrue(frame.length < serialized.length);
+    assertArrayEquals(frame, CompactMessageCodec.encode(message));
+  }
+
+  private static byte[] serialize(Serializable object) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (ObjectOutputStream objectOut = new ObjectOutputStream(out)) {
+      objectOut.writeObject(object);
+    }
+    return out.toByteArray();
+  }
+
+  private static final class Untrusted implements Serializable {
+    private static final long serialVersionUID = 1L;
+  }
+
+}
@@ -21,18 +21,37 @@
 
 package org.opencastproject.message.broker.impl;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.opencastproject.message.broker.api.BaseMessage;
+import org.opencastproject.message.broker.api.MessageItem;
 import org.opencastproject.message.broker.api.MessageSender.DestinationType;
 import org.opencastproject.security.api.DefaultOrganization;
 import org.opencastproject.security.api.JaxbUser;
+import org.opencastproject.security.api.Organization;
 import org.opencastproject.security.api.SecurityService;
+import org.opencastproject.security.api.User;
 
 import org.easymock.EasyMock;
 import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import javax.jms.Connection;
 import javax.jms.Destination;
 import javax.jms.JMSException;
+import javax.jms.Message;
 import javax.jms.MessageProducer;
 import javax.jms.ObjectMessage;
 import javax.jms.Queue;
@@ -43,6 +62,15 @@ import javax.jms.Session;
  */
 public class MessageSenderImplTest {
 
+  /** The logging facility */
+  private static final Logger logger = LoggerFactory.getLogger(MessageSenderImplTest.class);
+
+  /** The time a simulated broker takes to accept a message */
+  private static final long SEND_MILLIS = 2;
+
+  /** The maximum time in seconds a simulated broker waits for overlapping sends */
+  private static final long SEND_TIMEOUT = 10;
+
   private String destinationId = "Destination.Queue";
 
   @Test
@@ -78,4 +106,172 @@ public class MessageSenderImplTest {
     messageSenderImpl.sendObjectMessage(destinationId, DestinationType.Queue, serailizableObject);
   }
 
+  @Test
+  public void testConcurrentSendsUsePooledSessions() throws Exception {
+    final int threads = 8;
+    final int messages = 25;
+
+    // A single session serializes all senders like the former implementation did
+    FakeBroker single = new FakeBroker(1);
+    long singleNanos = sendConcurrently(single.createSender(1, false), threads, messages);
+    // The first send is held back until a second one is in progress, which requires another pooled session
+    FakeBroker pooled = new FakeBroker(2);
+    long pooledNanos = sendConcurrently(pooled.createSender(4, false), threads, messages);
+
+    logger.info("Sending {} messages from {} threads: 1 session {} msg/s, 4 sessions {} msg/s", threads * messages,
+            threads, threads * messages * 1e9 / singleNanos, threads * messages * 1e9 / pooledNanos);
+    assertEquals(threads * messages, single.sent.get());
+    assertEquals(threads * messages, pooled.sent.get());
+    assertEquals(1, single.maxConcurrentSends.get());
+    assertTrue(pooled.maxConcurrentSends.get() > 1);
+    assertTrue(pooled.maxConcurrentSends.get() <= 4);
+  }
+
+  @Test
+  public void testAsyncSendsKeepOrderPerItem() throws Exception {
+    final int items = 10;
+    final int updates = 20;
+    FakeBroker broker = new FakeBroker(1);
+    MessageSenderImpl sender = broker.createSender(4, true);
+    for (int update = 0; update < updates; update++) {
+      for (int item = 0; item < items; item++) {
+        sender.sendObjectMessage(destinationId, DestinationType.Queue, new Item("item-" + item, update));
+      }
+    }
+    sender.deactivate();
+
+    assertEquals(items * updates, broker.sent.get());
+    assertEquals(items, broker.received.size());
+    for (List<Integer> received : broker.received.values()) {
+      assertEquals(updates, received.size());
+      for (int update = 0; update < updates; update++) {
+        assertEquals(update, (int) received.get(update));
+      }
+    }
+  }
+
+  private long sendConcurrently(final MessageSenderImpl sender, int threads, final int messages) throws Exception {
+    final CountDownLatch start = new CountDownLatch(1);
+    final List<Thread> senders = new ArrayList<>();
+    for (int i = 0; i < threads; i++) {
+      final String id = "item-" + i;
+      Thread thread = new Thread(() -> {
+        try {
+          start.await();
+        } catch (InterruptedException e) {
+          return;
+        }
+        for (int j = 0; j < messages; j++) {
+          sender.sendObjectMessage(destinationId, DestinationType.Queue, new Item(id, j));
+        }
+      });
+      thread.start();
+      senders.add(thread);
+    }
+    final long begin = System.nanoTime();
+    start.countDown();
+    for (Thread thread : senders) {
+      thread.join();
+    }
+    return System.nanoTime() - begin;
+  }
+
+  /**
+   * Simulates a message broker taking some time to accept each message.
+   */
+  private static final class FakeBroker {
+    private final AtomicInteger sent = new AtomicInteger();
+    private final AtomicInteger concurrentSends = new AtomicInteger();
+    private final AtomicInteger maxConcurrentSends = new AtomicInteger();
+    private final Map<String, List<Integer>> received = new ConcurrentHashMap<>();
+    private final CountDownLatch overlapping;
+
+    /**
+     * @param overlap
+     *          the number of sends which have to be in progress at the same time before the first message is accepted
+     */
+    FakeBroker(int overlap) {
+      this.overlapping = new CountDownLatch(overlap);
+    }
+
+    MessageSenderImpl createSender(int sessions, boolean async) throws JMSException {
+      Connection connection = EasyMock.createNiceMock(Connection.class);
+      EasyMock.expect(connection.createSession(EasyMock.anyBoolean(), EasyMock.anyInt()))
+              .andAnswer(this::createSession).anyTimes();
+      EasyMock.replay(connection);
+
+      Organization organization = new DefaultOrganization();
+      User user = new JaxbUser();
+      SecurityService securityService = EasyMock.createNiceMock(SecurityService.class);
+      EasyMock.expect(securityService.getOrganization()).andReturn(organization).anyTimes();
+      EasyMock.expect(securityService.getUser()).andReturn(user).anyTimes();
+      EasyMock.replay(securityService);
+
+      Session session = createSession();
+      MockMessageSender sender = new MockMessageSender(connection, session, session.createProducer(null));
+      sender.setSecurityService(securityService);
+      sender.configure(sessions, async, 1000, 10, false);
+      sender.enable(true);
+      return sender;
+    }
+
+    private Session createSession() throws JMSException {
+      Session session = EasyMock.createNiceMock(Session.class);
+      EasyMock.expect(session.createQueue(EasyMock.anyString())).andReturn(EasyMock.createNiceMock(Queue.class))
+              .anyTimes();
+      EasyMock.expect(session.createObjectMessage(EasyMock.anyObject(Serializable.class))).andAnswer(() -> {
+        BaseMessage message = (BaseMessage) EasyMock.getCurrentArguments()[0];
+        ObjectMessage objectMessage = EasyMock.createNiceMock(ObjectMessage.class);
+        EasyMock.expect(objectMessage.getObject()).andReturn(message).anyTimes();
+        EasyMock.replay(objectMessage);
+        return objectMessage;
+      }).anyTimes();
+      EasyMock.expect(session.createProducer(EasyMock.anyObject())).andAnswer(this::createProducer).anyTimes();
+      EasyMock.replay(session);
+      return session;
+    }
+
+    private MessageProducer createProducer() throws JMSException {
+      MessageProducer producer = EasyMock.createNiceMock(MessageProducer.class);
+      producer.send(EasyMock.anyObject(Destination.class), EasyMock.anyObject(Message.class));
+      EasyMock.expectLastCall().andAnswer(() -> {
+        ObjectMessage message = (ObjectMessage) EasyMock.getCurrentArguments()[1];
+        maxConcurrentSends.accumulateAndGet(concurrentSends.incrementAndGet(), Math::max);
+        try {
+          overlapping.countDown();
+          overlapping.await(SEND_TIMEOUT, TimeUnit.SECONDS);
+          Thread.sleep(SEND_MILLIS);
+          Item item = (Item) ((BaseMessage) message.getObject()).getObject();
+          received.computeIfAbsent(item.getId(), id -> Collections.synchronizedList(new ArrayList<>()))
+                  .add(item.sequence);
+          sent.incrementAndGet();
+        } finally {
+          concurrentSends.decrementAndGet();
+        }
+        return null;
+      }).anyTimes();
+      EasyMock.replay(producer);
+      return producer;
+    }
+  }
+
+  /**
+   * A message payload identifying an item and its version.
+   */
+  private static final class Item implements MessageItem {
+    private static final long serialVersionUID = 1L;
+    private final String id;
+    private final int sequence;
+
+    Item(String id, int sequence) {
+      this.id = id;
+      this.sequence = sequence;
+    }
+
+    @Override
+    public String getId() {
+      return id;
+    }
+  }
+
 }
@@ -21,6 +21,7 @@
 
 package org.opencastproject.message.broker.impl;
 
+import javax.jms.Connection;
 import javax.jms.MessageProducer;
 import javax.jms.Session;
 
@@ -29,10 +30,16 @@ import javax.jms.Session;
  */
 public class MockMessageSender extends MessageSenderImpl {
 
+  private final Connection connection;
   private final Session session;
   private final MessageProducer producer;
 
   MockMessageSender(Session session, MessageProducer producer) {
+    this(null, session, producer);
+  }
+
+  MockMessageSender(Connection connection, Session session, MessageProducer producer) {
+    this.connection = connection;
     this.session = session;
     this.producer = producer;
   }
@@ -42,6 +49,11 @@ public class MockMessageSender extends MessageSenderImpl {
     return true;
   }
 
+  @Override
+  protected Connection getConnection() {
+    return connection;
+  }
+
   @Override
   protected Session getSession() {
     return session;
@@ -23,6 +23,8 @@ package org.opencastproject.oaipmh.persistence;
 import org.opencastproject.mediapackage.MediaPackage;
 import org.opencastproject.util.NotFoundException;
 
+import java.util.function.Consumer;
+
 /**
  * API that defines persistent storage of OAI-PMH.
  */
@@ -61,4 +63,19 @@ public interface OaiPmhDatabase {
    * @return a search result
    */
   SearchResult search(Query q);
+
+  /**
+   * Searches mediapackages from the OAI-PMH persistence storage and passes them to the given consumer one by one while
+   * they are read, so a large result never needs to be held in memory at once. Items are passed in the order of
+   * their modification date.
+   *
+   * @param q
+   *          the query
+   * @param consumer
+   *          receives the found items
+   */
+  default void search(Query q, Consumer<SearchResultItem> consumer) {
+    for (SearchResultItem item : search(q).getItems())
+      consumer.accept(item);
+  }
 }
@@ -34,6 +34,7 @@ import org.opencastproject.security.api.SecurityService;
 import org.opencastproject.util.MimeTypes;
 import org.opencastproject.util.NotFoundException;
 import org.opencastproject.util.XmlUtil;
+import org.opencastproject.util.data.Option;
 import org.opencastproject.workspace.api.Workspace;
 
 import org.apache.commons.io.IOUtils;
@@ -47,6 +48,7 @@ import java.util.Date;
 import java.util.List;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
 
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
@@ -62,6 +64,9 @@ public abstract class AbstractOaiPmhDatabase implements OaiPmhDatabase {
   /** Logging utilities */
   private static final Logger logger = LoggerFactory.getLogger(AbstractOaiPmhDatabase.class);
 
+  /** The number of entities read at once by {@link #search(Query, Consumer)} */
+  private static final int CURSOR_CHUNK_SIZE = 20;
+
   private ReadWriteLock dbAccessLock = new ReentrantReadWriteLock();
 
   public abstract EntityManagerFactory getEmf();
@@ -248,37 +253,8 @@ public abstract class AbstractOaiPmhDatabase implements OaiPmhDatabase {
     EntityManager em = null;
     try {
       em = getEmf().createEntityManager();
-      CriteriaBuilder cb = em.getCriteriaBuilder();
-      CriteriaQuery<OaiPmhEntity> q = cb.createQuery(OaiPmhEntity.class);
-      Root<OaiPmhEntity> c = q.from(OaiPmhEntity.class);
-      q.select(c);
-
-      // create predicates joined in an "and" expression
-      final List<Predicate> predicates = new ArrayList<Predicate>();
-      predicates.add(cb.equal(c.get("organization"), getSecurityService().getOrganization().getId()));
-
-      for (String p : query.getMediaPackageId())
-        predicates.add(cb.equal(c.get("mediaPackageId"), p));
-      for (String p : query.getRepositoryId())
-        predicates.add(cb.equal(c.get("repositoryId"), p));
-      for (String p : query.getSeriesId())
-        predicates.add(cb.equal(c.get("series"), p));
-      for (Boolean p : query.isDeleted())
-        predicates.add(cb.equal(c.get("deleted"), p));
-      if (!query.isSubsequentRequest()) {
-        for (Date p : query.getModifiedAfter())
-          predicates.add(cb.greaterThanOrEqualTo(c.get("modificationDate").as(Date.class), p));
-      } else {
-        for (Date p : query.getModifiedAfter())
-          predicates.add(cb.greaterThan(c.get("modificationDate").as(Date.class), p));
-      }
-      for (Date p : query.getModifiedBefore())
-        predicates.add(cb.lessThanOrEqualTo(c.get("modificationDate").as(Date.class), p));
-
-      q.where(cb.and(predicates.toArray(new Predicate[predicates.size()])));
-      q.orderBy(cb.asc(c.get("modificationDate")));
-
-      TypedQuery<OaiPmhEntity> typedQuery = em.createQuery(q);
+      TypedQuery<OaiPmhEntity> typedQuery = createQuery(em, query, query.getModifiedAfter(),
+              query.isSubsequentRequest());
       for (int maxResult : query.getLimit())
         typedQuery.setMaxResults(maxResult);
       for (int startPosition : query.getOffset())
@@ -290,6 +266,100 @@ public abstract class AbstractOaiPmhDatabase implements OaiPmhDatabase {
     }
   }
 
+  /**
+   * Reads the matching entities in chunks of {@link #CURSOR_CHUNK_SIZE}. The modification date of an entity is unique,
+   * so each chunk continues after the modification date of the previous one. The database lock is only held while a
+   * chunk is read, not while its items are being consumed.
+   */
+  @Override
+  public void search(Query query, Consumer<SearchResultItem> consumer) {
+    int remaining = query.getLimit().getOrElse(Integer.MAX_VALUE);
+    Option<Integer> offset = query.getOffset();
+    Option<Date> modifiedAfter = query.getModifiedAfter();
+    boolean exclusive = query.isSubsequentRequest();
+    while (remaining > 0) {
+      final int chunkSize = Math.min(remaining, CURSOR_CHUNK_SIZE);
+      final List<OaiPmhEntity> chunk;
+      try {
+        dbAccessLock.readLock().lock();
+        chunk = searchChunk(query, modifiedAfter, exclusive, offset, chunkSize);
+      } finally {
+        dbAccessLock.readLock().unlock();
+      }
+      for (OaiPmhEntity entity : chunk)
+        consumer.accept(SearchResultItemImpl.lazy(entity));
+      if (chunk.size() < chunkSize)
+        return;
+      remaining -= chunkSize;
+      offset = Option.none();
+      modifiedAfter = Option.some(chunk.get(chunk.size() - 1).getModificationDate());
+      exclusive = true;
+    }
+  }
+
+  private List<OaiPmhEntity> searchChunk(Query query, Option<Date> modifiedAfter, boolean exclusive,
+          Option<Integer> offset, int chunkSize) {
+    EntityManager em = null;
+    try {
+      em = getEmf().createEntityManager();
+      TypedQuery<OaiPmhEntity> typedQuery = createQuery(em, query, modifiedAfter, exclusive);
+      typedQuery.setMaxResults(chunkSize);
+      for (int startPosition : offset)
+        typedQuery.setFirstResult(startPosition);
+      return typedQuery.getResultList();
+    } finally {
+      if (em != null)
+        em.close();
+    }
+  }
+
+  /**
+   * Creates a JPA query for the given query, ordered by modification date.
+   *
+   * @param em
+   *          an open entity manager
+   * @param query
+   *          the query
+   * @param modifiedAfter
+   *          the modification date to start at, overriding the one of the query
+   * @param exclusive
+   *          whether entities modified exactly at <code>modifiedAfter</code> are excluded
+   * @return the JPA query
+   */
+  private TypedQuery<OaiPmhEntity> createQuery(EntityManager em, Query query, Option<Date> modifiedAfter,
+          boolean exclusive) {
+    CriteriaBuilder cb = em.getCriteriaBuilder();
+    CriteriaQuery<OaiPmhEntity> q = cb.createQuery(OaiPmhEntity.class);
+    Root<OaiPmhEntity> c = q.from(OaiPmhEntity.class);
+    q.select(c);
+
+    // create predicates joined in an "and" expression
+    final List<Predicate> predicates = new ArrayList<Predicate>();
+    predicates.add(cb.equal(c.get("organization"), getSecurityService().getOrganization().getId()));
+
+    for (String p : query.getMediaPackageId())
+      predicates.add(cb.equal(c.get("mediaPackageId"), p));
+    for (String p : query.getRepositoryId())
+      predicates.add(cb.equal(c.get("repositoryId"), p));
+    for (String p : query.getSeriesId())
+      predicates.add(cb.equal(c.get("series"), p));
+    for (Boolean p : query.isDeleted())
+      predicates.add(cb.equal(c.get("deleted"), p));
+    if (!exclusive) {
+      for (Date p : modifiedAfter)
+        predicates.add(cb.greaterThanOrEqualTo(c.get("modificationDate").as(Date.class), p));
+    } else {
+      for (Date p : modifiedAfter)
+        predicates.add(cb.greaterThan(c.get("modificationDate").as(Date.class), p));
+    }
+    for (Date p : query.getModifiedBefore())
+      predicates.add(cb.lessThanOrEqualTo(c.get("modificationDate").as(Date.class), p));
+
+    q.where(cb.and(predicates.toArray(new Predicate[predicates.size()])));
+    q.orderBy(cb.asc(c.get("modificationDate")));
+    return em.createQuery(q);
+  }
+
   /**
    * Gets a OAI-PMH entity by it's id, using the current organizational context.
    *
@@ -37,7 +37,7 @@ import java.util.List;
 public class SearchResultItemImpl implements SearchResultItem {
 
   private final String mediaPackageId;
-  private final MediaPackage mediaPackage;
+  private MediaPackage mediaPackage;
   private final String mediaPackageXml;
   private final String organization;
   private final String repoId;
@@ -46,13 +46,17 @@ public class SearchResultItemImpl implements SearchResultItem {
   private final List<SearchResultElementItem> mediaPackageElements;
 
   public SearchResultItemImpl(final OaiPmhEntity entity) throws MediaPackageException {
+    this(entity, MediaPackageParser.getFromXml(entity.getMediaPackageXML()));
+  }
+
+  private SearchResultItemImpl(final OaiPmhEntity entity, final MediaPackage mediaPackage) {
     this.mediaPackageId = entity.getMediaPackageId();
     this.mediaPackageXml = entity.getMediaPackageXML();
     this.organization = entity.getOrganization();
     this.repoId = entity.getRepositoryId();
     this.modificationDate = entity.getModificationDate();
     this.isDeleted = entity.isDeleted();
-    this.mediaPackage = MediaPackageParser.getFromXml(mediaPackageXml);
+    this.mediaPackage = mediaPackage;
     this.mediaPackageElements = new ArrayList<>();
     for (OaiPmhElementEntity elementEntity : entity.getMediaPackageElements()) {
       SearchResultElementItemImpl searchResultElementItem = new SearchResultElementItemImpl(elementEntity);
@@ -65,8 +69,32 @@ public class SearchResultItemImpl implements SearchResultItem {
     return mediaPackageId;
   }
 
+  /**
+   * Creates an item that parses the serialized media package only when it is requested for the first time.
+   *
+   * @param entity
+   *          the OAI-PMH entity
+   * @return the item
+   */
+  static SearchResultItemImpl lazy(final OaiPmhEntity entity) {
+    return new SearchResultItemImpl(entity, null);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @throws IllegalStateException
+   *           if the item has been created lazily and the serialized media package cannot be parsed
+   */
   @Override
-  public MediaPackage getMediaPackage() {
+  public synchronized MediaPackage getMediaPackage() {
+    if (mediaPackage == null) {
+      try {
+        mediaPackage = MediaPackageParser.getFromXml(mediaPackageXml);
+      } catch (MediaPackageException e) {
+        throw new IllegalStateException("Unable to parse media package " + mediaPackageId, e);
+      }
+    }
     return mediaPackage;
   }
 
@@ -0,0 +1,116 @@
+/**
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.oaipmh.server;
+
+import org.opencastproject.oaipmh.persistence.SearchResultItem;
+import org.opencastproject.util.data.Option;
+
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Caches the serialized metadata of records per metadata prefix, so unchanged records do not need to be rendered again
+ * for every list request. A cached fragment is only used as long as the modification date of its record does not
+ * change. The least recently used fragments are evicted once the cache exceeds its size.
+ */
+final class MetadataFragmentCache {
+
+  /** The maximum number of characters of all cached fragments */
+  private final long maxSize;
+
+  /** The number of characters of all cached fragments */
+  private long size = 0;
+
+  private final LinkedHashMap<String, Fragment> fragments = new LinkedHashMap<>(256, 0.75f, true);
+
+  /**
+   * Creates an empty cache.
+   *
+   * @param maxSize
+   *          the maximum number of characters of all cached fragments
+   */
+  MetadataFragmentCache(long maxSize) {
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * Returns the cached fragment of a record if the record has not been modified since.
+   *
+   * @param metadataPrefix
+   *          the metadata prefix the fragment has been rendered for
+   * @param set
+   *          the set the fragment has been rendered for
+   * @param item
+   *          the record
+   * @return the fragment or none
+   */
+  synchronized Option<String> get(String metadataPrefix, Option<String> set, SearchResultItem item) {
+    final Fragment fragment = fragments.get(key(metadataPrefix, set, item));
+    if (fragment == null || !fragment.modificationDate.equals(item.getModificationDate()))
+      return Option.none();
+    return Option.some(fragment.xml);
+  }
+
+  /**
+   * Caches the fragment of a record, replacing the one of an earlier modification.
+   *
+   * @param metadataPrefix
+   *          the metadata prefix the fragment has been rendered for
+   * @param set
+   *          the set the fragment has been rendered for
+   * @param item
+   *          the record
+   * @param xml
+   *          the fragment
+   */
+  synchronized void put(String metadataPrefix, Option<String> set, SearchResultItem item, String xml) {
+    if (item.getModificationDate() == null || xml.length() > maxSize)
+      return;
+    final Fragment replaced = fragments.put(key(metadataPrefix, set, item),
+            new Fragment(item.getModificationDate(), xml));
+    if (replaced != null)
+      size -= replaced.xml.length();
+    size += xml.length();
+    final Iterator<Map.Entry<String, Fragment>> eldest = fragments.entrySet().iterator();
+    while (size > maxSize && eldest.hasNext()) {
+      size -= eldest.next().getValue().xml.length();
+      eldest.remove();
+    }
+  }
+
+  private static String key(String metadataPrefix, Option<String> set, SearchResultItem item) {
+    return metadataPrefix + '\n' + set.getOrElse("") + '\n' + item.getId();
+  }
+
+  private static final class Fragment {
+    private final Date modificationDate;
+    private final String xml;
+
+    Fragment(Date modificationDate, String xml) {
+      this.modificationDate = modificationDate;
+      this.xml = xml;
+    }
+  }
+
+}
@@ -37,6 +37,7 @@ import org.opencastproject.oaipmh.OaiPmhConstants;
 import org.opencastproject.oaipmh.OaiPmhUtil;
 import org.opencastproject.oaipmh.persistence.OaiPmhDatabase;
 import org.opencastproject.oaipmh.persistence.OaiPmhDatabaseException;
+import org.opencastproject.oaipmh.persistence.Query;
 import org.opencastproject.oaipmh.persistence.SearchResult;
 import org.opencastproject.oaipmh.persistence.SearchResultItem;
 import org.opencastproject.oaipmh.util.XmlGen;
@@ -49,11 +50,14 @@ import org.opencastproject.util.data.Tuple;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
 
+import javax.xml.stream.XMLStreamException;
+
 /**
  * An OAI-PMH protocol compliant repository.
  * <p>
@@ -76,9 +80,15 @@ import java.util.List;
 // todo - malformed date parameter must produce a BadArgument error - if a date parameter has a finer granularity than
 //        supported by the repository this must produce a BadArgument error
 public abstract class OaiPmhRepository {
+
   private static final OaiDcMetadataProvider OAI_DC_METADATA_PROVIDER = new OaiDcMetadataProvider();
   private static final String OAI_NS = OaiPmhConstants.OAI_2_0_XML_NS;
 
+  /** The maximum number of characters of the cached metadata of all records. */
+  private static final long METADATA_CACHE_SIZE = 8 * 1024 * 1024;
+
+  private final MetadataFragmentCache metadataCache = new MetadataFragmentCache(METADATA_CACHE_SIZE);
+
   public abstract Granularity getRepositoryTimeGranularity();
 
   /** Display name of the OAI-PMH repository. */
@@ -162,6 +172,26 @@ public abstract class OaiPmhRepository {
     });
   }
 
+  /**
+   * Return the serialized <code>metadata</code> element of a record. The metadata is only rendered again if the record
+   * has been modified since it has last been rendered for the same metadata prefix.
+   */
+  String getMetadataFragment(final MetadataProvider metadataProvider, final SearchResultItem item,
+          final Option<String> set) {
+    final String metadataPrefix = metadataProvider.getMetadataFormat().getPrefix();
+    for (String cached : metadataCache.get(metadataPrefix, set, item))
+      return cached;
+    final Element metadata = new OaiXmlGen(this) {
+      @Override
+      public Element create() {
+        return $e("metadata", metadataProvider.createMetadata(OaiPmhRepository.this, item, set));
+      }
+    }.create();
+    final String fragment = OaiStreamWriter.serialize(metadata);
+    metadataCache.put(metadataPrefix, set, item, fragment);
+    return fragment;
+  }
+
   /** {@link #getMetadataProvider(String)} as a function. */
   private final Function<String, Option<MetadataProvider>> getMetadataProvider = new Function<String, Option<MetadataProvider>>() {
     @Override public Option<MetadataProvider> apply(String metadataPrefix) {
@@ -255,8 +285,8 @@ public abstract class OaiPmhRepository {
       protected ListXmlGen respond(ListGenParams listParams) {
         return new ListXmlGen(listParams) {
           @Override
-          protected List<Node> createContent(final Option<String> set) {
-            return mlist(params.getResult().getItems()).map(new Function<SearchResultItem, Node>() {
+          protected List<Node> createContent(SearchResult result, final Option<String> set) {
+            return mlist(result.getItems()).map(new Function<SearchResultItem, Node>() {
               @Override
               public Node apply(SearchResultItem item) {
                 final Element metadata = params.getMetadataProvider().createMetadata(OaiPmhRepository.this, item, set);
@@ -264,6 +294,19 @@ public abstract class OaiPmhRepository {
               }
             }).value();
           }
+
+          @Override
+          protected void writeContent(OaiStreamWriter xml, SearchResultItem item, Option<String> set)
+                  throws XMLStreamException {
+            final Option<String> metadata = item.isDeleted()
+                    ? Option.<String>none()
+                    : some(getMetadataFragment(params.getMetadataProvider(), item, set));
+            xml.startElement("record");
+            xml.header(item.getId(), toSupportedGranularity(item.getModificationDate()), item.isDeleted());
+            for (String fragment : metadata)
+              xml.fragment(fragment);
+            xml.endElement();
+          }
         };
       }
     };
@@ -277,14 +320,20 @@ public abstract class OaiPmhRepository {
         // create XML response
         return new ListXmlGen(listParams) {
           @Override
-          protected List<Node> createContent(Option<String> set) {
-            return mlist(params.getResult().getItems()).map(new Function<SearchResultItem, Node>() {
+          protected List<Node> createContent(SearchResult result, Option<String> set) {
+            return mlist(result.getItems()).map(new Function<SearchResultItem, Node>() {
               @Override
               public Node apply(SearchResultItem item) {
                 return header(item);
               }
             }).value();
           }
+
+          @Override
+          protected void writeContent(OaiStreamWriter xml, SearchResultItem item, Option<String> set)
+                  throws XMLStreamException {
+            xml.header(item.getId(), toSupportedGranularity(item.getModificationDate()), item.isDeleted());
+          }
         };
       }
     };
@@ -465,49 +514,44 @@ public abstract class OaiPmhRepository {
               .flatMap(getMetadataProviderFromToken)
               .orElse(getMetadataProvider.curry(metadataPrefix))) {
         try {
-          final SearchResult result;
+          final Query query;
           @SuppressWarnings("unchecked")
           final Option<String>[] set = new Option[]{p.getSet()};
           if (!resumptionTokenExists) {
             // start a new query
-            result = getPersistence().search(
-                    queryRepo(getRepositoryId())
-                            .modifiedAfter(from)
-                            .modifiedBefore(until)
-                            .limit(getResultLimit()).build());
+            query = queryRepo(getRepositoryId())
+                    .modifiedAfter(from)
+                    .modifiedBefore(until)
+                    .limit(getResultLimit()).build();
           } else {
             // resume query
-            result = getSavedQuery(p.getResumptionToken().get()).fold(new Option.Match<ResumableQuery, SearchResult>() {
+            query = getSavedQuery(p.getResumptionToken().get()).fold(new Option.Match<ResumableQuery, Query>() {
               @Override
-              public SearchResult some(ResumableQuery rq) {
+              public Query some(ResumableQuery rq) {
                 set[0] = rq.getSet();
-                return getPersistence().search(
-                        queryRepo(getRepositoryId())
-                                .modifiedAfter(rq.getLastResult())
-                                .modifiedBefore(rq.getUntil())
-                                .limit(getResultLimit())
-                                .subsequentRequest(true).build());
+                return queryRepo(getRepositoryId())
+                        .modifiedAfter(rq.getLastResult())
+                        .modifiedBefore(rq.getUntil())
+                        .limit(getResultLimit())
+                        .subsequentRequest(true).build();
               }
 
               @Override
-              public SearchResult none() {
+              public Query none() {
                 // no resumable query found
                 throw new BadResumptionTokenException();
               }
             });
           }
-          if (result.size() > 0) {
-            return respond(new ListGenParams(OaiPmhRepository.this,
-                                             result,
-                                             metadataProvider,
-                                             metadataPrefix,
-                                             p.getResumptionToken(),
-                                             from, until.get(),
-                                             set[0],
-                                             p));
-          } else {
-            return createNoRecordsMatchResponse(p);
-          }
+          // the query is run when the response is generated
+          return respond(new ListGenParams(OaiPmhRepository.this,
+                                           query,
+                                           metadataProvider,
+                                           metadataPrefix,
+                                           p.getResumptionToken(),
+                                           from, until.get(),
+                                           set[0],
+                                           p));
         } catch (BadResumptionTokenException e) {
           return createBadResumptionTokenResponse(p);
         }
@@ -563,14 +607,22 @@ public abstract class OaiPmhRepository {
       }
 
       /** Implement to create your content. Gets placed as children of the verb node. */
-      protected abstract List<Node> createContent(Option<String> set);
+      protected abstract List<Node> createContent(SearchResult result, Option<String> set);
+
+      /**
+       * Implement to write the content for a single item to a streamed response. Failures must not be swallowed: the
+       * resumption token is based on the last item written, so a skipped item would never be harvested.
+       */
+      protected abstract void writeContent(OaiStreamWriter xml, SearchResultItem item, Option<String> set)
+              throws XMLStreamException;
 
       @Override
       public Element create() {
-        final List<Node> content = new ArrayList<Node>(createContent(params.getSet()));
+        final SearchResult result = getPersistence().search(params.getQuery());
+        final List<Node> content = new ArrayList<Node>(createContent(result, params.getSet()));
         if (content.size() == 0)
           return createNoRecordsMatchResponse(params.getParams()).create();
-        content.add(resumptionToken(params.getResumptionToken(), params.getMetadataPrefix(), params.getResult(),
+        content.add(resumptionToken(params.getResumptionToken(), params.getMetadataPrefix(), result,
                                     params.getUntil(), params.getSet()));
         return oai(
                 request($a("metadataPrefix", params.getMetadataPrefix()),
@@ -578,6 +630,64 @@ public abstract class OaiPmhRepository {
                         $aSome("until", some(toSupportedGranularity(params.getUntil()))),
                         $aSome("set", params.getSet())), verb(content));
       }
+
+      /**
+       * Stream the response to <code>out</code>. The items are written while they are read from the database, so
+       * neither the items of a page nor the response document are held in memory at once.
+       */
+      @Override
+      public void generate(OutputStream out) {
+        try {
+          final OaiStreamWriter xml = new OaiStreamWriter(out);
+          final int[] count = {0};
+          final Date[] lastModified = {null};
+          getPersistence().search(params.getQuery(), item -> {
+            try {
+              if (count[0] == 0)
+                startResponse(xml);
+              writeContent(xml, item, params.getSet());
+              count[0]++;
+              lastModified[0] = item.getModificationDate();
+            } catch (XMLStreamException e) {
+              chuck(e);
+            }
+          });
+          if (count[0] == 0) {
+            createNoRecordsMatchResponse(params.getParams()).generate(out);
+            return;
+          }
+          writeResumptionToken(xml, count[0], lastModified[0]);
+          xml.endResponse();
+        } catch (XMLStreamException e) {
+          chuck(e);
+        }
+      }
+
+      private void startResponse(OaiStreamWriter xml) throws XMLStreamException {
+        xml.startResponse();
+        xml.startElement("request");
+        xml.attribute("metadataPrefix", params.getMetadataPrefix());
+        xml.attribute("from", params.getFrom().map(toSupportedGranularity));
+        xml.attribute("until", toSupportedGranularity(params.getUntil()));
+        xml.attribute("set", params.getSet());
+        xml.attribute("verb", p.getVerb());
+        xml.text(p.getRepositoryUrl());
+        xml.endElement();
+        xml.startElement(p.getVerb().getOrElse("NOVERB"));
+      }
+
+      /** Streaming counterpart of {@link OaiXmlGen#resumptionToken}. */
+      private void writeResumptionToken(OaiStreamWriter xml, int count, Date lastModified) throws XMLStreamException {
+        if (count == getResultLimit()) {
+          // more to come...
+          xml.element("resumptionToken", saveQuery(new ResumableQuery(params.getMetadataPrefix(), lastModified,
+                                                                       params.getUntil(), params.getSet())));
+        } else if (params.getResumptionToken().isSome()) {
+          // last page reached
+          xml.startElement("resumptionToken");
+          xml.endElement();
+        }
+      }
     }
 
     private class BadResumptionTokenException extends RuntimeException {
@@ -588,7 +698,7 @@ public abstract class OaiPmhRepository {
 /** Parameter holder for the list generator. */
 final class ListGenParams {
   private final OaiPmhRepository repository;
-  private final SearchResult result;
+  private final Query query;
   private final MetadataProvider metadataProvider;
   private final String metadataPrefix;
   private final Option<String> resumptionToken;
@@ -599,13 +709,13 @@ final class ListGenParams {
 
   // CHECKSTYLE:OFF
   ListGenParams(OaiPmhRepository repository,
-                SearchResult result, MetadataProvider metadataProvider,
+                Query query, MetadataProvider metadataProvider,
                 String metadataPrefix, Option<String> resumptionToken,
                 Option<Date> from, Date until,
                 Option<String> set,
                 Params params) {
     this.repository = repository;
-    this.result = result;
+    this.query = query;
     this.metadataProvider = metadataProvider;
     this.resumptionToken = resumptionToken;
     this.metadataPrefix = metadataPrefix;
@@ -620,8 +730,9 @@ final class ListGenParams {
     return repository;
   }
 
-  public SearchResult getResult() {
-    return result;
+  /** The query for the items of the requested page. */
+  public Query getQuery() {
+    return query;
   }
 
   public MetadataProvider getMetadataProvider() {
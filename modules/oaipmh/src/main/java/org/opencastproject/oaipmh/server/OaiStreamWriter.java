@@ -0,0 +1,174 @@
+/**
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.oaipmh.server;
+
+import static org.opencastproject.oaipmh.OaiPmhConstants.OAI_2_0_SCHEMA_LOCATION;
+import static org.opencastproject.oaipmh.OaiPmhConstants.OAI_2_0_XML_NS;
+import static org.opencastproject.oaipmh.OaiPmhUtil.toUtcSecond;
+
+import org.opencastproject.util.data.Option;
+
+import org.w3c.dom.Element;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+/**
+ * StAX based writer for OAI-PMH responses that are too large to be built as a DOM first. Produces the same elements as
+ * {@link OaiXmlGen} but writes them to the output as they are generated. Pre-rendered fragments are copied to the
+ * output verbatim.
+ */
+final class OaiStreamWriter {
+
+  private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+
+  private final Writer out;
+  private final XMLStreamWriter xml;
+
+  /**
+   * Creates a writer for a response.
+   *
+   * @param out
+   *          the stream to write the response to, it is not closed
+   */
+  OaiStreamWriter(OutputStream out) throws XMLStreamException {
+    this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    this.xml = OUTPUT_FACTORY.createXMLStreamWriter(this.out);
+  }
+
+  /**
+   * Writes the document prolog, the <code>OAI-PMH</code> tag and the response date.
+   */
+  void startResponse() throws XMLStreamException {
+    xml.writeStartDocument("UTF-8", "1.0");
+    xml.writeStartElement("OAI-PMH");
+    xml.writeDefaultNamespace(OAI_2_0_XML_NS);
+    xml.writeNamespace("xsi", XMLConstants.W3C_XML_SCHEMA_INSTANCE_NS_URI);
+    xml.writeAttribute("xsi", XMLConstants.W3C_XML_SCHEMA_INSTANCE_NS_URI, "schemaLocation", OAI_2_0_SCHEMA_LOCATION);
+    element("responseDate", toUtcSecond(new Date()));
+  }
+
+  /**
+   * Closes all open tags and flushes the response.
+   */
+  void endResponse() throws XMLStreamException {
+    xml.writeEndDocument();
+    xml.flush();
+  }
+
+  void startElement(String name) throws XMLStreamException {
+    xml.writeStartElement(name);
+  }
+
+  void endElement() throws XMLStreamException {
+    xml.writeEndElement();
+  }
+
+  void attribute(String name, String value) throws XMLStreamException {
+    xml.writeAttribute(name, value);
+  }
+
+  void attribute(String name, Option<String> value) throws XMLStreamException {
+    for (String a : value)
+      xml.writeAttribute(name, a);
+  }
+
+  void text(String text) throws XMLStreamException {
+    xml.writeCharacters(text);
+  }
+
+  /**
+   * Writes an element containing text only.
+   */
+  void element(String name, String text) throws XMLStreamException {
+    xml.writeStartElement(name);
+    xml.writeCharacters(text);
+    xml.writeEndElement();
+  }
+
+  /**
+   * Writes the header of a record.
+   *
+   * @param identifier
+   *          the identifier of the record
+   * @param datestamp
+   *          the modification date in the granularity of the repository
+   * @param deleted
+   *          whether the record has been deleted
+   */
+  void header(String identifier, String datestamp, boolean deleted) throws XMLStreamException {
+    xml.writeStartElement("header");
+    if (deleted)
+      xml.writeAttribute("status", "deleted");
+    element("identifier", identifier);
+    element("datestamp", datestamp);
+    xml.writeEndElement();
+  }
+
+  /**
+   * Copies a serialized, well-formed element to the output as is. The fragment has to declare all namespaces it uses.
+   */
+  void fragment(String fragment) throws XMLStreamException {
+    // close a pending start tag before bypassing the stream writer
+    xml.writeCharacters("");
+    xml.flush();
+    try {
+      out.write(fragment);
+    } catch (IOException e) {
+      throw new XMLStreamException(e);
+    }
+  }
+
+  /**
+   * Serializes a DOM element without XML declaration, declaring the namespaces it uses.
+   */
+  static String serialize(Element element) {
+    try {
+      final Transformer transformer = TransformerFactory.newInstance().newTransformer();
+      transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+      transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
+      final StringWriter fragment = new StringWriter();
+      transformer.transform(new DOMSource(element), new StreamResult(fragment));
+      return fragment.toString();
+    } catch (TransformerException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+}
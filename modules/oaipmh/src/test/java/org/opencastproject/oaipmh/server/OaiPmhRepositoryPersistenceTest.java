@@ -27,11 +27,13 @@ import static org.easymock.EasyMock.getCurrentArguments;
 import static org.hamcrest.CoreMatchers.allOf;
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 import static org.opencastproject.metadata.dublincore.EncodingSchemeUtils.encodeDate;
 import static org.opencastproject.security.util.SecurityUtil.createSystemUser;
 import static org.opencastproject.util.data.Collections.nil;
 import static org.opencastproject.util.data.functions.Misc.chuck;
 import static org.xmlmatchers.XmlMatchers.hasXPath;
+import static org.xmlmatchers.transform.XmlConverters.the;
 import static org.xmlmatchers.xpath.XpathReturnType.returningANumber;
 
 import org.opencastproject.mediapackage.MediaPackage;
@@ -41,6 +43,7 @@ import org.opencastproject.oaipmh.Granularity;
 import org.opencastproject.oaipmh.OaiPmhConstants;
 import org.opencastproject.oaipmh.harvester.OaiPmhNamespaceContext;
 import org.opencastproject.oaipmh.persistence.OaiPmhDatabase;
+import org.opencastproject.oaipmh.persistence.SearchResultItem;
 import org.opencastproject.oaipmh.persistence.impl.AbstractOaiPmhDatabase;
 import org.opencastproject.oaipmh.persistence.impl.OaiPmhDatabaseImpl;
 import org.opencastproject.oaipmh.util.XmlGen;
@@ -58,9 +61,13 @@ import org.opencastproject.workspace.api.Workspace;
 import org.apache.commons.io.IOUtils;
 import org.easymock.EasyMock;
 import org.junit.Test;
+import org.w3c.dom.Element;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.net.URI;
+import java.net.URL;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
@@ -109,6 +116,77 @@ public class OaiPmhRepositoryPersistenceTest {
             hasXPath("count(//oai20:ListRecords/oai20:record/oai20:header)", NS_CTX, returningANumber(), equalTo(0.0)));
   }
 
+  @Test
+  public void testStreamedListRecordsFailsOnMetadataError() throws Exception {
+    final MediaPackage mp1 = MediaPackageSupport.loadFromClassPath("/mp1.xml");
+    final MediaPackage mp2 = MediaPackageSupport.loadFromClassPath("/mp2.xml");
+    final MediaPackage mp3 = MediaPackageSupport.loadFromClassPath("/mp3.xml");
+    final MetadataFormat format = new MetadataFormat() {
+      @Override
+      public String getPrefix() {
+        return "failing";
+      }
+
+      @Override
+      public URL getSchema() {
+        return OaiPmhConstants.OAI_DC_METADATA_FORMAT.getSchema();
+      }
+
+      @Override
+      public URI getNamespace() {
+        return OaiPmhConstants.OAI_DC_METADATA_FORMAT.getNamespace();
+      }
+    };
+    final MetadataProvider failing = new OaiDcMetadataProvider() {
+      @Override
+      public MetadataFormat getMetadataFormat() {
+        return format;
+      }
+
+      @Override
+      public Element createMetadata(OaiPmhRepository repository, SearchResultItem item, Option<String> set) {
+        if (mp2.getIdentifier().toString().equals(item.getId()))
+          throw new IllegalStateException("Failing on purpose");
+        return super.createMetadata(repository, item, set);
+      }
+    };
+    final OaiPmhRepository repo = repo(oaiPmhDatabase(mp1, mp2, mp3), Granularity.SECOND,
+            Collections.singletonList(failing));
+    // A record must not be skipped, since the resumption token would continue after it
+    try {
+      repo.selectVerb(params("ListRecords", null, "failing", null, null, null)).generateAsString();
+      fail("Creating the metadata of a record failed, so the response must fail as well");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testStreamedListRecords() throws Exception {
+    final MediaPackage mp1 = MediaPackageSupport.loadFromClassPath("/mp1.xml");
+    final MediaPackage mp2 = MediaPackageSupport.loadFromClassPath("/mp2.xml");
+    final MediaPackage mp3 = MediaPackageSupport.loadFromClassPath("/mp3.xml");
+    final OaiPmhRepository repo = repo(oaiPmhDatabase(mp1, mp2, mp3), Granularity.SECOND);
+    // run twice, the second response is created from cached metadata
+    for (int i = 0; i < 2; i++) {
+      assertThat("Streamed list of all records yields 3 records and a resumption token",
+              the(repo.selectVerb(params("ListRecords", null, FORMAT_PREFIX, null, null, null)).generateAsString()),
+              allOf(hasXPath("count(//oai20:ListRecords/oai20:record/oai20:metadata/*)", NS_CTX,
+                      returningANumber(), equalTo(3.0)),
+                      hasXPath("//oai20:ListRecords/oai20:record/oai20:header[oai20:identifier='10.0000/12']", NS_CTX),
+                      hasXPath("//oai20:request[@verb='ListRecords'][@metadataPrefix='oai_dc']", NS_CTX),
+                      hasXPath("//oai20:ListRecords/oai20:resumptionToken[.='r-token']", NS_CTX)));
+    }
+    assertThat("Streamed list of identifiers yields 3 headers",
+            the(repo.selectVerb(params("ListIdentifiers", null, FORMAT_PREFIX, null, null, null)).generateAsString()),
+            hasXPath("count(//oai20:ListIdentifiers/oai20:header)", NS_CTX, returningANumber(), equalTo(3.0)));
+    final Date future = new Date(System.currentTimeMillis() + 1000);
+    assertThat("Streamed list of records from time in the future yields an error",
+            the(repo.selectVerb(params("ListRecords", null, FORMAT_PREFIX, enc(future), null, null))
+                    .generateAsString()),
+            hasXPath("//oai20:error[@code='noRecordsMatch']", NS_CTX));
+  }
+
   @Test
   public void testInsertRepoDay() throws Exception {
     final Date ref = new Date();
@@ -295,6 +373,11 @@ public class OaiPmhRepositoryPersistenceTest {
   }
 
   private static OaiPmhRepository repo(final AbstractOaiPmhDatabase persistence, final Granularity granularity) {
+    return repo(persistence, granularity, nil(MetadataProvider.class));
+  }
+
+  private static OaiPmhRepository repo(final AbstractOaiPmhDatabase persistence, final Granularity granularity,
+          final List<MetadataProvider> metadataProviders) {
     return new OaiPmhRepository() {
       @Override
       public Granularity getRepositoryTimeGranularity() {
@@ -338,7 +421,7 @@ public class OaiPmhRepositoryPersistenceTest {
 
       @Override
       public List<MetadataProvider> getRepositoryMetadataProviders() {
-        return nil();
+        return metadataProviders;
       }
 
       @Override
@@ -0,0 +1,126 @@
+/**
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.scheduler.impl;
+
+import org.opencastproject.scheduler.impl.persistence.ExtendedEventDto;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Read-only interval index over the scheduled events of a capture agent, used to check many periods for conflicts
+ * without querying the database for every single one.
+ * <p>
+ * Events are sorted by start date. In addition, the index keeps the maximum end date of all events up to each position,
+ * which allows to stop searching backwards from a period's end as soon as no earlier event can reach into the period.
+ */
+final class EventIntervalIndex {
+
+  private final String[] ids;
+  private final long[] starts;
+  private final long[] ends;
+
+  /** The maximum end date of the events up to and including the respective position */
+  private final long[] maxEnds;
+
+  /**
+   * Creates an index of the given events. Events without start or end date are ignored.
+   *
+   * @param events
+   *          the events of a single capture agent
+   */
+  EventIntervalIndex(Collection<ExtendedEventDto> events) {
+    final List<ExtendedEventDto> sorted = new ArrayList<>(events.size());
+    for (ExtendedEventDto event : events) {
+      if (event.getStartDate() != null && event.getEndDate() != null) {
+        sorted.add(event);
+      }
+    }
+    sorted.sort(Comparator.comparing(ExtendedEventDto::getStartDate));
+    final int size = sorted.size();
+    ids = new String[size];
+    starts = new long[size];
+    ends = new long[size];
+    maxEnds = new long[size];
+    long maxEnd = Long.MIN_VALUE;
+    for (int i = 0; i < size; i++) {
+      final ExtendedEventDto event = sorted.get(i);
+      ids[i] = event.getMediaPackageId();
+      starts[i] = event.getStartDate().getTime();
+      ends[i] = event.getEndDate().getTime();
+      maxEnd = Math.max(maxEnd, ends[i]);
+      maxEnds[i] = maxEnd;
+    }
+  }
+
+  /**
+   * @return the number of indexed events
+   */
+  int size() {
+    return ids.length;
+  }
+
+  /**
+   * Adds the identifiers of all events overlapping the given period, extended by the given separation on both ends, to
+   * the given collection. This matches what {@link SchedulerServiceDatabase#getEvents(String, java.util.Date,
+   * java.util.Date, int)} returns for a period.
+   *
+   * @param start
+   *          the start of the period in milliseconds
+   * @param end
+   *          the end of the period in milliseconds
+   * @param separationMillis
+   *          the minimum time between two events
+   * @param result
+   *          the collection to add the media package identifiers of conflicting events to
+   */
+  void findOverlapping(long start, long end, long separationMillis, Collection<String> result) {
+    final long extendedStart = start - separationMillis;
+    final long extendedEnd = end + separationMillis;
+    // events starting at or after the extended end cannot overlap
+    for (int i = lowerBound(extendedEnd) - 1; i >= 0 && maxEnds[i] > extendedStart; i--) {
+      if (ends[i] > extendedStart) {
+        result.add(ids[i]);
+      }
+    }
+  }
+
+  /**
+   * @return the first position of an event starting at or after the given time
+   */
+  private int lowerBound(long time) {
+    int low = 0;
+    int high = starts.length;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (starts[mid] < time) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+}
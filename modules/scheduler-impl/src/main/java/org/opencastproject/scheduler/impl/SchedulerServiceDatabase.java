@@ -135,6 +135,23 @@ public interface SchedulerServiceDatabase {
    */
   List<String> getEvents(String captureAgentId, Date start, Date end, int separationMillis) throws SchedulerServiceDatabaseException;
 
+  /**
+   * Get all events scheduled on the given capture agent that overlap the given interval. This allows to load the events
+   * relevant for many intervals at once. The results are ordered by start date ascending.
+   *
+   * @param captureAgentId
+   *          the capture agent ID of the capture agent to check
+   * @param start
+   *          the start date of the interval
+   * @param end
+   *          the end date of the interval
+   * @return The events overlapping the interval scheduled on the given capture agent.
+   * @throws SchedulerServiceDatabaseException
+   *           If the database cannot be queried.
+   */
+  List<ExtendedEventDto> getOverlappingEvents(String captureAgentId, Date start, Date end)
+          throws SchedulerServiceDatabaseException;
+
   /**
    * Retrieve all events matching given filter ordered by start time ascending.
    *
@@ -46,6 +46,7 @@ import org.opencastproject.assetmanager.api.query.AResult;
 import org.opencastproject.assetmanager.api.query.ASelectQuery;
 import org.opencastproject.assetmanager.api.query.Predicate;
 import org.opencastproject.index.rebuild.AbstractIndexProducer;
+import org.opencastproject.index.rebuild.IndexRebuildContext;
 import org.opencastproject.index.rebuild.IndexRebuildException;
 import org.opencastproject.index.rebuild.IndexRebuildService;
 import org.opencastproject.mediapackage.Catalog;
@@ -137,6 +138,7 @@ import java.util.Date;
 import java.util.Dictionary;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -1074,17 +1076,40 @@ public class SchedulerServiceImpl extends AbstractIndexProducer implements Sched
     try {
       TimeZoneRegistry registry = TimeZoneRegistryFactory.getInstance().createRegistry();
 
-      Set<MediaPackage> events = new HashSet<>();
-
+      long rangeStart = Long.MAX_VALUE;
+      long rangeEnd = Long.MIN_VALUE;
       for (Period event : periods) {
         event.setTimeZone(registry.getTimeZone(tz.getID()));
-        final Date startDate = event.getStart();
-        final Date endDate = event.getEnd();
+        rangeStart = Math.min(rangeStart, event.getStart().getTime());
+        rangeEnd = Math.max(rangeEnd, event.getEnd().getTime());
+      }
 
-        events.addAll(findConflictingEvents(captureAgentId, startDate, endDate));
+      // Load all events of the capture agent within the range covered by the periods at once and check the single
+      // periods in memory instead of querying the database for every occurrence of a recurring event.
+      final long separation = Util.EVENT_MINIMUM_SEPARATION_MILLISECONDS;
+      final EventIntervalIndex index = new EventIntervalIndex(persistence.getOverlappingEvents(captureAgentId,
+          new Date(rangeStart - separation), new Date(rangeEnd + separation)));
+
+      final Set<String> conflictingIds = new LinkedHashSet<>();
+      for (Period event : periods) {
+        index.findOverlapping(event.getStart().getTime(), event.getEnd().getTime(), separation, conflictingIds);
       }
+      logger.debug("Checked {} periods against {} events of capture agent {}, found {} conflicts", periods.size(),
+          index.size(), captureAgentId, conflictingIds.size());
 
-      return new ArrayList<>(events);
+      if (conflictingIds.isEmpty()) {
+        return Collections.emptyList();
+      }
+
+      final Organization organization = securityService.getOrganization();
+      final User user = SecurityUtil.createSystemUser(systemUserName, organization);
+      final List<MediaPackage> events = new ArrayList<>(conflictingIds.size());
+      SecurityUtil.runAs(securityService, organization, user, () -> {
+        for (String mpId : conflictingIds) {
+          events.add(getEventMediaPackage(mpId));
+        }
+      });
+      return events;
     } catch (Exception e) {
       throw new SchedulerException(e);
     }
@@ -1530,9 +1555,14 @@ public class SchedulerServiceImpl extends AbstractIndexProducer implements Sched
 
   @Override
   public void repopulate(final String indexName) throws IndexRebuildException {
+    repopulate(IndexRebuildContext.sequential(indexName, getService()));
+  }
+
+  @Override
+  public void repopulate(final IndexRebuildContext context) throws IndexRebuildException {
+    final String indexName = context.getIndexName();
     final String destinationId = SchedulerItem.SCHEDULER_QUEUE_PREFIX + indexName.substring(0, 1).toUpperCase()
             + indexName.substring(1);
-    final int[] current = {0};
     final int total;
     try {
        total = persistence.countEvents();
@@ -1541,52 +1571,63 @@ public class SchedulerServiceImpl extends AbstractIndexProducer implements Sched
       throw new IndexRebuildException(indexName, getService(), e);
     }
     logIndexRebuildBegin(logger, indexName, total, "scheduled events");
+    context.setTotal(total);
 
     for (Organization organization: orgDirectoryService.getOrganizations()) {
       final User user = SecurityUtil.createSystemUser(systemUserName, organization);
+      final List<ExtendedEventDto> events = new ArrayList<>();
       SecurityUtil.runAs(securityService, organization, user, () -> {
-        final List<ExtendedEventDto> events;
         try {
-          events = persistence.getEvents();
+          events.addAll(persistence.getEvents());
         } catch (SchedulerServiceDatabaseException e) {
           logIndexRebuildError(logger, indexName, e, organization);
-          return;
         }
+      });
 
-        for (ExtendedEventDto event : events) {
-          current[0] = current[0] + 1;
+      for (ExtendedEventDto event : events) {
+        final String mpId = event.getMediaPackageId();
+        context.submit(mpId, mpId, () -> SecurityUtil.runAs(securityService, organization, user, () -> {
+          final Serializable message;
           try {
-            final String agentId = event.getCaptureAgentId();
-            final Date start = event.getStartDate();
-            final Date end = event.getEndDate();
-            final Set<String> presenters = getPresenters(Opt.nul(event.getPresenters()).getOr(""));
-            final Map<String, String> caMetadata = deserializeExtendedEventProperties(event.getCaptureAgentProperties());
-            final Opt<String> recordingStatus = Opt.nul(event.getRecordingState());
-            final Opt<Long> lastHeard = Opt.nul(event.getRecordingLastHeard());
-
-            AQueryBuilder query = assetManager.createQuery();
-            final AResult result = query.select(query.snapshot())
-                    .where(query.mediaPackageId(event.getMediaPackageId()).and(query.version().isLatest())).run();
-            final Snapshot snapshot = result.getRecords().head().get().getSnapshot().get();
-            final Opt<AccessControlList> acl = Opt.some(authorizationService.getActiveAcl(snapshot.getMediaPackage()).getA());
-
-            final Opt<DublinCoreCatalog> dublinCore = loadEpisodeDublinCoreFromAsset(snapshot);
-
-            final List<SchedulerItem> schedulerItems = new ArrayList<>(
-                    updateAddEventItems(acl, dublinCore, Opt.some(start), Opt.some(end), Opt.some(presenters), Opt.some(agentId), Opt.some(caMetadata)));
-            if (recordingStatus.isSome() && lastHeard.isSome()) {
-              schedulerItems.addAll(recordingUpdateMessages(
-                      new RecordingImpl(event.getMediaPackageId(), recordingStatus.get(), lastHeard.get())));
-            }
-            final Serializable message = new SchedulerItemList(event.getMediaPackageId(), schedulerItems);
-            messageSender.sendObjectMessage(destinationId, MessageSender.DestinationType.Queue, message);
-            logIndexRebuildProgress(logger, indexName, total, current[0]);
+            message = createSchedulerItems(event);
           } catch (Exception e) {
-            logSkippingElement(logger, "scheduled event", event.getMediaPackageId(), e);
+            Misc.chuck(e);
+            return;
           }
-        }
-      });
+          context.write(destinationId, message,
+              () -> messageSender.sendObjectMessage(destinationId, MessageSender.DestinationType.Queue, message));
+        }));
+      }
+    }
+  }
+
+  /**
+   * Create the scheduler message re-adding a scheduled event to the index.
+   */
+  private Serializable createSchedulerItems(ExtendedEventDto event) throws Exception {
+    final String agentId = event.getCaptureAgentId();
+    final Date start = event.getStartDate();
+    final Date end = event.getEndDate();
+    final Set<String> presenters = getPresenters(Opt.nul(event.getPresenters()).getOr(""));
+    final Map<String, String> caMetadata = deserializeExtendedEventProperties(event.getCaptureAgentProperties());
+    final Opt<String> recordingStatus = Opt.nul(event.getRecordingState());
+    final Opt<Long> lastHeard = Opt.nul(event.getRecordingLastHeard());
+
+    AQueryBuilder query = assetManager.createQuery();
+    final AResult result = query.select(query.snapshot())
+            .where(query.mediaPackageId(event.getMediaPackageId()).and(query.version().isLatest())).run();
+    final Snapshot snapshot = result.getRecords().head().get().getSnapshot().get();
+    final Opt<AccessControlList> acl = Opt.some(authorizationService.getActiveAcl(snapshot.getMediaPackage()).getA());
+
+    final Opt<DublinCoreCatalog> dublinCore = loadEpisodeDublinCoreFromAsset(snapshot);
+
+    final List<SchedulerItem> schedulerItems = new ArrayList<>(
+            updateAddEventItems(acl, dublinCore, Opt.some(start), Opt.some(end), Opt.some(presenters), Opt.some(agentId), Opt.some(caMetadata)));
+    if (recordingStatus.isSome() && lastHeard.isSome()) {
+      schedulerItems.addAll(recordingUpdateMessages(
+              new RecordingImpl(event.getMediaPackageId(), recordingStatus.get(), lastHeard.get())));
     }
+    return new SchedulerItemList(event.getMediaPackageId(), schedulerItems);
   }
 
   @Override
@@ -242,6 +242,25 @@ public class SchedulerServiceDatabaseImpl implements SchedulerServiceDatabase {
     }
   }
 
+  @Override
+  public List<ExtendedEventDto> getOverlappingEvents(String captureAgentId, Date start, Date end)
+          throws SchedulerServiceDatabaseException {
+    final EntityManager em = emf.createEntityManager();
+    final TypedQuery<ExtendedEventDto> query = em
+        .createNamedQuery("ExtendedEvent.findOverlappingEvents", ExtendedEventDto.class)
+        .setParameter("org", securityService.getOrganization().getId())
+        .setParameter("ca", captureAgentId)
+        .setParameter("start", start)
+        .setParameter("end", end);
+    try {
+      return query.getResultList();
+    } catch (Exception e) {
+      throw new SchedulerServiceDatabaseException(e);
+    } finally {
+      em.close();
+    }
+  }
+
   @Override
   @SuppressWarnings("unchecked")
   public List<ExtendedEventDto> search(
@@ -0,0 +1,146 @@
+/**
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+package org.opencastproject.scheduler.impl;
+
+import org.opencastproject.scheduler.impl.persistence.ExtendedEventDto;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+public class EventIntervalIndexTest {
+
+  private static final Logger logger = LoggerFactory.getLogger(EventIntervalIndexTest.class);
+
+  private static final long MINUTE = 60 * 1000L;
+  private static final long HOUR = 60 * MINUTE;
+  private static final long DAY = 24 * HOUR;
+
+  private static ExtendedEventDto event(String id, long start, long end) {
+    ExtendedEventDto event = new ExtendedEventDto();
+    event.setMediaPackageId(id);
+    event.setStartDate(new Date(start));
+    event.setEndDate(new Date(end));
+    return event;
+  }
+
+  /** Mirrors the condition of the database query used for single periods */
+  private static Set<String> bruteForce(List<ExtendedEventDto> events, long start, long end, long separation) {
+    Set<String> result = new HashSet<>();
+    for (ExtendedEventDto event : events) {
+      if (event.getStartDate().getTime() < end + separation && event.getEndDate().getTime() > start - separation) {
+        result.add(event.getMediaPackageId());
+      }
+    }
+    return result;
+  }
+
+  @Test
+  public void testFindOverlapping() {
+    List<ExtendedEventDto> events = new ArrayList<>();
+    events.add(event("long", 0, 10 * HOUR));
+    events.add(event("a", HOUR, 2 * HOUR));
+    events.add(event("b", 3 * HOUR, 4 * HOUR));
+    events.add(event("c", 4 * HOUR + 2 * MINUTE, 5 * HOUR));
+    events.add(event("late", 20 * HOUR, 21 * HOUR));
+    EventIntervalIndex index = new EventIntervalIndex(events);
+    Assert.assertEquals(5, index.size());
+
+    Set<String> result = new HashSet<>();
+    index.findOverlapping(11 * HOUR, 12 * HOUR, MINUTE, result);
+    Assert.assertTrue(result.isEmpty());
+
+    // the long event reaches into the period even though it starts much earlier
+    index.findOverlapping(9 * HOUR, 9 * HOUR + 30 * MINUTE, MINUTE, result);
+    Assert.assertEquals(Collections.singleton("long"), result);
+
+    // events touching the period within the separation conflict
+    result.clear();
+    index.findOverlapping(4 * HOUR + MINUTE / 2, 4 * HOUR + 3 * MINUTE / 2, MINUTE, result);
+    Assert.assertEquals(new HashSet<>(Arrays.asList("long", "b", "c")), result);
+
+    result.clear();
+    index.findOverlapping(20 * HOUR + 30 * MINUTE, 22 * HOUR, 0, result);
+    Assert.assertEquals(Collections.singleton("late"), result);
+  }
+
+  @Test
+  public void testMatchesBruteForce() {
+    Random random = new Random(42);
+    List<ExtendedEventDto> events = new ArrayList<>();
+    for (int i = 0; i < 2000; i++) {
+      long start = random.nextInt(1000) * HOUR + random.nextInt(60) * MINUTE;
+      events.add(event("e" + i, start, start + (1 + random.nextInt(6 * 60)) * MINUTE));
+    }
+    EventIntervalIndex index = new EventIntervalIndex(events);
+    for (int i = 0; i < 500; i++) {
+      long start = random.nextInt(1000) * HOUR;
+      long end = start + (1 + random.nextInt(3 * 60)) * MINUTE;
+      Set<String> result = new HashSet<>();
+      index.findOverlapping(start, end, MINUTE, result);
+      Assert.assertEquals(bruteForce(events, start, end, MINUTE), result);
+    }
+  }
+
+  /**
+   * Checks the weekly lectures of a semester against a capture agent with 10k scheduled events. This used to take one
+   * database query per lecture.
+   */
+  @Test
+  public void testRecurrenceAgainstLargeAgent() {
+    List<ExtendedEventDto> events = new ArrayList<>();
+    for (int i = 0; i < 10000; i++) {
+      long start = (i / 8) * DAY + 8 * HOUR + (i % 8) * 90 * MINUTE;
+      events.add(event("e" + i, start, start + 80 * MINUTE));
+    }
+
+    long begin = System.nanoTime();
+    EventIntervalIndex index = new EventIntervalIndex(events);
+    long built = System.nanoTime();
+
+    int iterations = 1000;
+    int conflicts = 0;
+    for (int n = 0; n < iterations; n++) {
+      Set<String> result = new HashSet<>();
+      for (int week = 0; week < 15; week++) {
+        long start = (n % 100 + week * 7) * DAY + 10 * HOUR;
+        index.findOverlapping(start, start + 90 * MINUTE, MINUTE, result);
+      }
+      conflicts += result.size();
+    }
+    long checked = System.nanoTime();
+
+    Assert.assertEquals(iterations * 15 * 2, conflicts);
+    logger.info("Indexing 10000 events took {} ms, checking {} recurrences of 15 periods took {} us each",
+        (built - begin) / 1000000, iterations, (checked - built) / 1000 / iterations);
+  }
+
+}
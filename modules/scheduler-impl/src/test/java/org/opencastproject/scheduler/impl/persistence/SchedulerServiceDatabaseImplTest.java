@@ -41,6 +41,7 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 /**
  * Tests persistent storage.
@@ -261,6 +262,12 @@ public class SchedulerServiceDatabaseImplTest {
     Assert.assertTrue(eventIds.contains(mpId + 1));
     Assert.assertTrue(eventIds.contains(mpId + 2));
     Assert.assertTrue(eventIds.contains(mpId + 3));
+
+    // Loading the events overlapping the extended interval yields the same events
+    final List<ExtendedEventDto> events = schedulerDatabase.getOverlappingEvents(agentId,
+        new Date(intervalStart.getTime() - separationMillis), new Date(intervalEnd.getTime() + separationMillis));
+    Assert.assertEquals(eventIds,
+        events.stream().map(ExtendedEventDto::getMediaPackageId).collect(Collectors.toList()));
   }
 
   @Test
@@ -55,6 +55,7 @@ import org.opencastproject.serviceregistry.api.ServiceRegistryException;
 import org.opencastproject.solr.SolrServerFactory;
 import org.opencastproject.util.LoadUtil;
 import org.opencastproject.util.NotFoundException;
+import org.opencastproject.util.OsgiUtil;
 import org.opencastproject.util.data.Tuple;
 import org.opencastproject.workspace.api.Workspace;
 
@@ -68,6 +69,7 @@ import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.solr.client.solrj.SolrServer;
 import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.common.SolrInputDocument;
 import org.osgi.framework.ServiceException;
 import org.osgi.service.cm.ConfigurationException;
 import org.osgi.service.cm.ManagedService;
@@ -122,12 +124,30 @@ public final class SearchServiceImpl extends AbstractJobProducer implements Sear
   /** The key to look for in the service configuration file to override the {@link DEFAULT_DELETE_JOB_LOAD} */
   public static final String DELETE_JOB_LOAD_KEY = "job.load.delete";
 
+  /** The key to look for in the service configuration file to configure the time until updates become visible */
+  public static final String COMMIT_WITHIN_KEY = "index.commit.within";
+
+  /** The key to look for in the service configuration file to configure the number of documents posted at once */
+  public static final String BATCH_SIZE_KEY = "index.batch.size";
+
+  /** By default, every update of the index is committed immediately */
+  public static final int DEFAULT_COMMIT_WITHIN = 0;
+
+  /** The default number of documents posted at once */
+  public static final int DEFAULT_BATCH_SIZE = 100;
+
   /** The load introduced on the system by creating an add job */
   private float addJobLoad = DEFAULT_ADD_JOB_LOAD;
 
   /** The load introduced on the system by creating a delete job */
   private float deleteJobLoad = DEFAULT_DELETE_JOB_LOAD;
 
+  /** The time in milliseconds within which updates of the index have to become visible, zero to commit every update */
+  private int commitWithin = DEFAULT_COMMIT_WITHIN;
+
+  /** The maximum number of documents posted to the index at once */
+  private int batchSize = DEFAULT_BATCH_SIZE;
+
   /** counter how often the index has already been tried to populate */
   private int retriesToPopulateIndex = 0;
 
@@ -254,6 +274,7 @@ public final class SearchServiceImpl extends AbstractJobProducer implements Sear
     solrRequester = new SolrRequester(solrServer, securityService, serializer);
     indexManager = new SolrIndexManager(solrServer, workspace, mdServices, seriesService, mpeg7CatalogService,
             securityService);
+    indexManager.setCommitWithin(commitWithin, batchSize);
 
     String systemUserName = cc.getBundleContext().getProperty(SecurityUtil.PROPERTY_KEY_SYS_USER);
     populateIndex(systemUserName);
@@ -437,6 +458,8 @@ public final class SearchServiceImpl extends AbstractJobProducer implements Sear
   public boolean deleteSynchronously(final String mediaPackageId) throws SearchException {
     SearchResult result;
     try {
+      // The media package may have been added just before
+      indexManager.commit();
       result = solrRequester.getForWrite(new SearchQuery().withId(mediaPackageId));
       if (result.getItems().length == 0) {
         logger.warn("Can not delete mediapackage {}, which is not available for the current user to delete from the "
@@ -557,6 +580,9 @@ public final class SearchServiceImpl extends AbstractJobProducer implements Sear
       }
       int errors = 0;
       int current = 0;
+      // Posting many documents at once saves a commit per media package
+      List<SolrInputDocument> documents = new ArrayList<>(batchSize * 2);
+      int pending = 0;
       while (mediaPackages.hasNext()) {
         current++;
         try {
@@ -572,7 +598,8 @@ public final class SearchServiceImpl extends AbstractJobProducer implements Sear
           Date modificationDate = persistence.getModificationDate(mediaPackageId);
           Date deletionDate = persistence.getDeletionDate(mediaPackageId);
 
-          indexManager.add(mediaPackage.getA(), acl, deletionDate, modificationDate);
+          documents.addAll(indexManager.createDocuments(mediaPackage.getA(), acl, deletionDate, modificationDate));
+          pending++;
         } catch (Exception e) {
           logger.error("Unable to index search instances:", e);
           if (retryToPopulateIndex(systemUserName)) {
@@ -585,6 +612,17 @@ public final class SearchServiceImpl extends AbstractJobProducer implements Sear
           securityService.setUser(null);
         }
 
+        if (documents.size() >= batchSize || !mediaPackages.hasNext()) {
+          try {
+            indexManager.addAll(documents);
+          } catch (SolrServerException e) {
+            logger.error("Unable to index search instances:", e);
+            errors += pending;
+          }
+          documents.clear();
+          pending = 0;
+        }
+
         // log progress
         if (current % 100 == 0) {
           logger.info("Indexing search {}/{} ({} percent done)", current, total, current * 100 / total);
@@ -664,6 +702,7 @@ public final class SearchServiceImpl extends AbstractJobProducer implements Sear
     this.solrServer = server;
     this.solrRequester = requester;
     this.indexManager = manager;
+    manager.setCommitWithin(commitWithin, batchSize);
   }
 
   /** Dynamic reference. */
@@ -781,6 +820,16 @@ public final class SearchServiceImpl extends AbstractJobProducer implements Sear
   public void updated(@SuppressWarnings("rawtypes") Dictionary properties) throws ConfigurationException {
     addJobLoad = LoadUtil.getConfiguredLoadValue(properties, ADD_JOB_LOAD_KEY, DEFAULT_ADD_JOB_LOAD, serviceRegistry);
     deleteJobLoad = LoadUtil.getConfiguredLoadValue(properties, DELETE_JOB_LOAD_KEY, DEFAULT_DELETE_JOB_LOAD, serviceRegistry);
+    commitWithin = OsgiUtil.getOptCfgAsInt(properties, COMMIT_WITHIN_KEY).getOrElse(DEFAULT_COMMIT_WITHIN);
+    batchSize = OsgiUtil.getOptCfgAsInt(properties, BATCH_SIZE_KEY).getOrElse(DEFAULT_BATCH_SIZE);
+    if (commitWithin < 0 || batchSize < 1)
+      throw new ConfigurationException(COMMIT_WITHIN_KEY, "Commit interval must not be negative, batch size positive");
+    if (commitWithin > 0) {
+      logger.info("Posting up to {} documents at once to the search index, committing within {} ms", batchSize,
+              commitWithin);
+    }
+    if (indexManager != null)
+      indexManager.setCommitWithin(commitWithin, batchSize);
   }
 
   @Override
@@ -139,6 +139,9 @@ public class SolrIndexManager {
 
   private SecurityService securityService;
 
+  /** Posts documents in bulk, <code>null</code> if every update is committed immediately */
+  private volatile SolrUpdateBatcher batcher = null;
+
   /** Convert a DublinCoreValue into a date. */
   private static Function<DublinCoreValue, Option<Date>> toDateF = new Function<DublinCoreValue, Option<Date>>() {
     @Override
@@ -198,6 +201,66 @@ public class SolrIndexManager {
     setStaticMetadataServices(notNull(mdServices, "metadata service"));
   }
 
+  /**
+   * Configures how updates are committed. By default, every update is committed immediately, which makes it visible
+   * to subsequent searches but is expensive. Alternatively, updates of concurrent callers are posted in bulk and Solr
+   * is asked to make them visible within the given time.
+   *
+   * @param commitWithin
+   *          the time in milliseconds within which updates have to become visible, or zero to commit every update
+   * @param batchSize
+   *          the maximum number of documents posted with a single request
+   */
+  public void setCommitWithin(int commitWithin, int batchSize) {
+    batcher = commitWithin > 0 ? new SolrUpdateBatcher(solrServer, batchSize, commitWithin) : null;
+  }
+
+  /**
+   * Makes all updates visible to searches. This is only needed by callers that have to read their own updates if
+   * updates are not committed immediately.
+   *
+   * @throws SolrServerException
+   *           if an errors occurs while talking to solr
+   */
+  public void commit() throws SolrServerException {
+    final SolrUpdateBatcher batcher = this.batcher;
+    if (batcher != null)
+      batcher.commit();
+  }
+
+  /**
+   * Posts documents to the index and commits them, unless updates are posted in bulk.
+   */
+  private void post(List<SolrInputDocument> documents) throws SolrServerException, IOException {
+    final SolrUpdateBatcher batcher = this.batcher;
+    if (batcher != null) {
+      batcher.add(documents);
+    } else {
+      solrServer.add(documents);
+      solrServer.commit();
+    }
+  }
+
+  /**
+   * Posts documents to the index in a single request and commits them. Used to populate the index, when it is
+   * more efficient to commit many documents at once.
+   *
+   * @param documents
+   *          the documents created by {@link #createDocuments(MediaPackage, AccessControlList, Date, Date)}
+   * @throws SolrServerException
+   *           if an errors occurs while talking to solr
+   */
+  public void addAll(List<SolrInputDocument> documents) throws SolrServerException {
+    if (documents.isEmpty())
+      return;
+    try {
+      solrServer.add(documents);
+      solrServer.commit();
+    } catch (IOException e) {
+      throw new SolrServerException(e);
+    }
+  }
+
   /**
    * Clears the search index. Make sure you know what you are doing.
    *
@@ -225,6 +288,9 @@ public class SolrIndexManager {
    */
   public boolean delete(String id, Date deletionDate) throws SolrServerException {
     try {
+      // Make sure an episode added just before is found
+      commit();
+
       // Load the existing episode
       QueryResponse solrResponse = null;
       try {
@@ -250,8 +316,7 @@ public class SolrIndexManager {
 
       // Set the oc_deleted field to the current date, then update
       Schema.setOcDeleted(inputDocument, deletionDate);
-      solrServer.add(inputDocument);
-      solrServer.commit();
+      post(Collections.singletonList(inputDocument));
       return true;
     } catch (IOException e) {
       throw new SolrServerException(e);
@@ -284,10 +349,10 @@ public class SolrIndexManager {
         Schema.enrich(episodeDocument, seriesDocument);
 
       // Post everything to the search index
-      solrServer.add(episodeDocument);
       if (seriesDocument != null)
-        solrServer.add(seriesDocument);
-      solrServer.commit();
+        post(Arrays.asList(episodeDocument, seriesDocument));
+      else
+        post(Collections.singletonList(episodeDocument));
       return true;
     } catch (Exception e) {
       throw new SolrServerException(
@@ -309,8 +374,7 @@ public class SolrIndexManager {
     try {
       SolrInputDocument seriesDocument = createSeriesInputDocument(seriesId, acl);
       if (seriesDocument != null) {
-        solrServer.add(seriesDocument);
-        solrServer.commit();
+        post(Collections.singletonList(seriesDocument));
       }
     } catch (Exception e) {
       throw new SolrServerException(String.format("Unable to add series %s to index", seriesId), e);
@@ -337,6 +401,39 @@ public class SolrIndexManager {
    */
   public boolean add(MediaPackage sourceMediaPackage, AccessControlList acl, Date deletionDate, Date modificationDate)
           throws SolrServerException {
+    try {
+      solrServer.add(createDocuments(sourceMediaPackage, acl, deletionDate, modificationDate));
+      solrServer.commit();
+      return true;
+    } catch (Exception e) {
+      logger.error("Unable to add mediapackage {} to index", sourceMediaPackage.getIdentifier());
+      try {
+        solrServer.rollback();
+      } catch (IOException e1) {
+        throw new SolrServerException(e1);
+      }
+      throw new SolrServerException(e);
+    }
+  }
+
+  /**
+   * Creates the documents to post for a media package: one for the episode and, if the media package belongs to a
+   * series, one for the series.
+   *
+   * @param sourceMediaPackage
+   *          the media package
+   * @param acl
+   *          the access control list for this mediapackage
+   * @param deletionDate
+   *          the deletion date
+   * @param modificationDate
+   *          the modification date
+   * @return the documents
+   * @throws SolrServerException
+   *           if the documents cannot be created
+   */
+  public List<SolrInputDocument> createDocuments(MediaPackage sourceMediaPackage, AccessControlList acl,
+          Date deletionDate, Date modificationDate) throws SolrServerException {
     try {
       SolrInputDocument episodeDocument = createEpisodeInputDocument(sourceMediaPackage, acl);
 
@@ -348,18 +445,14 @@ public class SolrIndexManager {
       if (deletionDate != null)
         Schema.setOcDeleted(episodeDocument, deletionDate);
 
-      solrServer.add(episodeDocument);
-      solrServer.add(seriesDocument);
-      solrServer.commit();
-      return true;
+      List<SolrInputDocument> documents = new ArrayList<>(2);
+      documents.add(episodeDocument);
+      if (seriesDocument != null)
+        documents.add(seriesDocument);
+      return documents;
     } catch (Exception e) {
-      logger.error("Unable to add mediapackage {} to index", sourceMediaPackage.getIdentifier());
-      try {
-        solrServer.rollback();
-      } catch (IOException e1) {
-        throw new SolrServerException(e1);
-      }
-      throw new SolrServerException(e);
+      throw new SolrServerException(
+          String.format("Unable to create documents for media package %s", sourceMediaPackage.getIdentifier()), e);
     }
   }
 
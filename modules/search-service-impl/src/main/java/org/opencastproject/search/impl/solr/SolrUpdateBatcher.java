@@ -0,0 +1,212 @@
+/**
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.search.impl.solr;
+
+import org.apache.solr.client.solrj.SolrServer;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.request.UpdateRequest;
+import org.apache.solr.common.SolrInputDocument;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Posts documents to Solr in bulk, relying on <code>commitWithin</code> instead of committing every update.
+ * <p>
+ * Callers block until their documents have been posted, so errors are still reported to the job that caused them. While
+ * one update request is on its way, the documents of concurrent callers are collected and posted together with the next
+ * request. A single caller therefore does not wait any longer than before, while many concurrent publish jobs result in
+ * few large requests.
+ */
+final class SolrUpdateBatcher {
+
+  /** The logging facility */
+  private static final Logger logger = LoggerFactory.getLogger(SolrUpdateBatcher.class);
+
+  /** The documents of a single caller */
+  private static final class Pending {
+    private final Collection<SolrInputDocument> documents;
+    private boolean done = false;
+    private Exception error = null;
+
+    Pending(Collection<SolrInputDocument> documents) {
+      this.documents = documents;
+    }
+  }
+
+  private final SolrServer solrServer;
+  private final int maxBatchSize;
+  private final int commitWithin;
+
+  /** Guards the fields below */
+  private final Object lock = new Object();
+
+  /** The documents waiting to be posted */
+  private final List<Pending> queue = new ArrayList<>();
+
+  /** Whether an update request is on its way */
+  private boolean posting = false;
+
+  /** Whether documents have been posted since the last explicit commit */
+  private boolean uncommitted = false;
+
+  /**
+   * Creates a batcher.
+   *
+   * @param solrServer
+   *          the Solr server to post to
+   * @param maxBatchSize
+   *          the maximum number of documents posted with a single request, unless a single caller posts more
+   * @param commitWithin
+   *          the time in milliseconds within which Solr has to make posted documents visible
+   */
+  SolrUpdateBatcher(SolrServer solrServer, int maxBatchSize, int commitWithin) {
+    if (maxBatchSize < 1 || commitWithin < 1)
+      throw new IllegalArgumentException("Batch size and commit interval must be positive");
+    this.solrServer = solrServer;
+    this.maxBatchSize = maxBatchSize;
+    this.commitWithin = commitWithin;
+  }
+
+  /**
+   * Posts documents and waits for the request to finish. The documents become visible within the commit interval.
+   *
+   * @param documents
+   *          the documents
+   * @throws SolrServerException
+   *           if posting the documents fails
+   */
+  void add(Collection<SolrInputDocument> documents) throws SolrServerException {
+    final Pending pending = new Pending(documents);
+    synchronized (lock) {
+      queue.add(pending);
+    }
+    while (true) {
+      final List<Pending> batch;
+      synchronized (lock) {
+        try {
+          while (posting && !pending.done) {
+            lock.wait();
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new SolrServerException("Interrupted while waiting for documents to be posted");
+        }
+        if (pending.done) {
+          if (pending.error != null)
+            throw new SolrServerException("Unable to post documents to the search index", pending.error);
+          return;
+        }
+        // Take over posting the oldest documents, which may or may not include our own
+        batch = take();
+        posting = true;
+      }
+      Exception error = null;
+      try {
+        post(batch);
+      } catch (Exception e) {
+        error = e;
+      }
+      synchronized (lock) {
+        for (Pending p : batch) {
+          p.done = true;
+          p.error = error;
+        }
+        if (error == null)
+          uncommitted = true;
+        posting = false;
+        lock.notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Commits the documents posted so far, if there are any. Callers use this to read their own writes.
+   *
+   * @throws SolrServerException
+   *           if committing fails
+   */
+  void commit() throws SolrServerException {
+    synchronized (lock) {
+      if (!uncommitted)
+        return;
+      uncommitted = false;
+    }
+    try {
+      solrServer.commit();
+    } catch (IOException e) {
+      synchronized (lock) {
+        uncommitted = true;
+      }
+      throw new SolrServerException(e);
+    }
+  }
+
+  /** Removes the oldest pending documents from the queue, up to the maximum batch size. */
+  private List<Pending> take() {
+    final List<Pending> batch = new ArrayList<>();
+    int size = 0;
+    for (Iterator<Pending> i = queue.iterator(); i.hasNext();) {
+      final Pending pending = i.next();
+      if (!batch.isEmpty() && size + pending.documents.size() > maxBatchSize)
+        break;
+      batch.add(pending);
+      size += pending.documents.size();
+      i.remove();
+    }
+    return batch;
+  }
+
+  private void post(List<Pending> batch) throws SolrServerException, IOException {
+    // Episodes of the same series carry the same series document, only the latest one needs to be posted
+    final Map<Object, SolrInputDocument> documents = new LinkedHashMap<>();
+    final List<SolrInputDocument> withoutId = new ArrayList<>();
+    int total = 0;
+    for (Pending pending : batch) {
+      for (SolrInputDocument document : pending.documents) {
+        final Object id = document.getFieldValue(Schema.ID);
+        if (id == null) {
+          withoutId.add(document);
+        } else {
+          documents.remove(id);
+          documents.put(id, document);
+        }
+        total++;
+      }
+    }
+    final UpdateRequest request = new UpdateRequest();
+    request.add(documents.values());
+    request.add(withoutId);
+    request.setCommitWithin(commitWithin);
+    request.process(solrServer);
+    logger.debug("Posted {} documents of {} callers, {} superseded", documents.size() + withoutId.size(),
+            batch.size(), total - documents.size() - withoutId.size());
+  }
+
+}
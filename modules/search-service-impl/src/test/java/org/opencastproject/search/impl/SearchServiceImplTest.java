@@ -24,6 +24,7 @@ package org.opencastproject.search.impl;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import static org.opencastproject.security.api.Permissions.Action.READ;
 import static org.opencastproject.security.api.Permissions.Action.WRITE;
 import static org.opencastproject.util.persistence.PersistenceUtil.newTestEntityManagerFactory;
@@ -78,8 +79,11 @@ import org.apache.solr.client.solrj.SolrServer;
 import org.easymock.EasyMock;
 import org.easymock.IAnswer;
 import org.junit.After;
+import org.junit.Assume;
 import org.junit.Before;
 import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.FileInputStream;
@@ -90,6 +94,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
 
@@ -104,6 +109,8 @@ import javax.persistence.EntityManagerFactory;
  */
 public class SearchServiceImplTest {
 
+  private static final Logger logger = LoggerFactory.getLogger(SearchServiceImplTest.class);
+
   /** The search service */
   private SearchServiceImpl service = null;
 
@@ -707,4 +714,57 @@ public class SearchServiceImplTest {
     // This time we should have 10 results
     assertEquals(10, service.getByQuery(new SearchQuery()).size());
   }
+
+  @Test
+  public void testBatchedIndexing() throws Exception {
+    Hashtable<String, String> properties = new Hashtable<>();
+    properties.put(SearchServiceImpl.COMMIT_WITHIN_KEY, "60000");
+    properties.put(SearchServiceImpl.BATCH_SIZE_KEY, "10");
+    service.updated(properties);
+
+    MediaPackage mediaPackage = getMediaPackage("/manifest-simple.xml");
+    service.addSynchronously(mediaPackage);
+
+    // The media package is posted but not committed yet
+    SearchQuery q = new SearchQuery().withId(mediaPackage.getIdentifier().toString());
+    assertEquals(0, service.getByQuery(q).size());
+
+    // Deleting commits before looking the media package up
+    User adminUser = new JaxbUser("admin", "test", defaultOrganization,
+            new JaxbRole(defaultOrganization.getAdminRole(), defaultOrganization));
+    userResponder.setResponse(adminUser);
+    assertTrue(service.deleteSynchronously(mediaPackage.getIdentifier().toString()));
+
+    service.getSolrIndexManager().commit();
+    assertEquals(0, service.getByQuery(q).size());
+  }
+
+  /**
+   * Repopulates the index from 10k media packages and logs the number of documents indexed per second. This takes a
+   * while and is therefore only run if the system property <code>searchThroughputTest</code> is set to true.
+   */
+  @Test
+  public void testPopulateIndexThroughput() throws Exception {
+    Assume.assumeTrue(Boolean.getBoolean("searchThroughputTest"));
+    final int count = 10000;
+    for (int i = 0; i < count; i++) {
+      MediaPackage mediaPackage = MediaPackageBuilderFactory.newInstance().newMediaPackageBuilder().createNew();
+      mediaPackage.setIdentifier(IdImpl.fromUUID());
+      searchDatabase.storeMediaPackage(mediaPackage, acl, new Date());
+    }
+
+    OrganizationDirectoryService orgDirectory = EasyMock.createNiceMock(OrganizationDirectoryService.class);
+    EasyMock.expect(orgDirectory.getOrganization((String) EasyMock.anyObject())).andReturn(new DefaultOrganization())
+    .anyTimes();
+    EasyMock.replay(orgDirectory);
+    service.setOrganizationDirectoryService(orgDirectory);
+
+    long start = System.nanoTime();
+    service.populateIndex("System Admin");
+    long millis = Math.max(1, (System.nanoTime() - start) / 1000000);
+
+    assertEquals(count, service.getByQuery(new SearchQuery().withLimit(1)).getTotalSize());
+    logger.info("Repopulating the search index from {} media packages took {} ms ({} documents/s)", count, millis,
+            count * 1000L / millis);
+  }
 }
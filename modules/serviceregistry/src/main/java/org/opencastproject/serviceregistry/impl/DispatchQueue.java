@@ -0,0 +1,399 @@
+/**
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.serviceregistry.impl;
+
+import static org.opencastproject.serviceregistry.impl.ServiceRegistryJpaImpl.TYPE_WORKFLOW;
+
+import org.opencastproject.job.api.Job.Status;
+import org.opencastproject.job.jpa.JpaJob;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory index of the jobs that are waiting to be dispatched, i.e. dispatchable jobs in state {@link Status#RESTART}
+ * or {@link Status#QUEUED}.
+ * <p>
+ * The queue keeps the jobs in dispatching order (regular jobs before workflow jobs, restarted jobs before queued ones,
+ * older jobs first) and allows to look up, update and remove single jobs by their identifier. Changes that may allow
+ * further jobs to be dispatched wake up a dispatcher waiting in {@link #awaitChange(long, TimeUnit)}.
+ */
+class DispatchQueue {
+
+  /** Orders the queue entries the same way the periodic dispatcher processes the jobs */
+  static final Comparator<Entry> DISPATCH_ORDER = new Comparator<Entry>() {
+    @Override
+    public int compare(Entry a, Entry b) {
+      // Regular jobs should be processed prior to workflow and workflow operation jobs
+      if (a.workflow != b.workflow)
+        return a.workflow ? 1 : -1;
+      // Jobs that are in "restart" mode should be handled first
+      if (a.restart != b.restart)
+        return a.restart ? -1 : 1;
+      if (a.dateCreated != b.dateCreated)
+        return Long.compare(a.dateCreated, b.dateCreated);
+      return Long.compare(a.id, b.id);
+    }
+  };
+
+  /** The entries in dispatching order */
+  private final TreeSet<Entry> ordered = new TreeSet<>(DISPATCH_ORDER);
+
+  /** The entries by job identifier */
+  private final Map<Long, Entry> index = new HashMap<>();
+
+  private final ReentrantLock lock = new ReentrantLock();
+
+  private final Condition changed = lock.newCondition();
+
+  /** Whether there was a relevant change since the last call to {@link #awaitChange(long, TimeUnit)} */
+  private boolean dirty = true;
+
+  /** Whether the queue should be rebuilt from the database, e.g. after jobs have been rescheduled by a failover */
+  private boolean rebuildRequested = true;
+
+  /** Sequence number handed out to entries, used to detect entries added while the queue is being rebuilt */
+  private long sequence = 0;
+
+  /**
+   * Returns <code>true</code> if the given job belongs into the dispatch queue.
+   *
+   * @param job
+   *          the job
+   * @return whether the job is waiting to be dispatched
+   */
+  static boolean isDispatchable(JpaJob job) {
+    return job.isDispatchable() && (Status.QUEUED.equals(job.getStatus()) || Status.RESTART.equals(job.getStatus()));
+  }
+
+  /**
+   * Records a change of the given job. Jobs that are waiting to be dispatched are added to (or updated in) the queue,
+   * all other jobs are removed from it.
+   * <p>
+   * The dispatcher is woken up if a new job arrived, if a queued job was restarted or if the job reached a state that
+   * frees processing capacity.
+   *
+   * @param job
+   *          the changed job
+   */
+  void update(JpaJob job) {
+    lock.lock();
+    try {
+      Entry existing = index.get(job.getId());
+      if (isDispatchable(job)) {
+        Entry entry = new Entry(job.getId(), job.getJobType(), job.getStatus(), job.getDateCreated(), ++sequence);
+        if (existing != null)
+          ordered.remove(existing);
+        index.put(entry.id, entry);
+        ordered.add(entry);
+        if (existing == null || existing.restart != entry.restart)
+          signal();
+      } else {
+        if (existing != null) {
+          ordered.remove(existing);
+          index.remove(existing.id);
+        }
+        if (job.getStatus() != null && (job.getStatus().isTerminated() || Status.WAITING.equals(job.getStatus())))
+          signal();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Removes the job with the given identifier from the queue.
+   *
+   * @param id
+   *          the job identifier
+   * @return <code>true</code> if the job was queued
+   */
+  boolean remove(long id) {
+    lock.lock();
+    try {
+      Entry existing = index.remove(id);
+      if (existing == null)
+        return false;
+      ordered.remove(existing);
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Returns <code>true</code> if the job with the given identifier is waiting to be dispatched.
+   *
+   * @param id
+   *          the job identifier
+   * @return whether the job is queued
+   */
+  boolean contains(long id) {
+    lock.lock();
+    try {
+      return index.containsKey(id);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Returns the identifiers of all queued jobs in dispatching order.
+   *
+   * @return the job identifiers
+   */
+  List<Long> snapshot() {
+    lock.lock();
+    try {
+      List<Long> ids = new ArrayList<>(ordered.size());
+      for (Entry entry : ordered) {
+        ids.add(entry.id);
+      }
+      return ids;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Returns the current sequence number. Pass it to {@link #rebuild(Collection, long)} after loading the dispatchable
+   * jobs from the database so changes that happened in the meantime are not lost.
+   *
+   * @return the sequence number
+   */
+  long mark() {
+    lock.lock();
+    try {
+      return sequence;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Replaces the content of the queue with the given entries. Entries that have been added or updated after
+   * <code>mark</code> was taken are kept, since they are more recent than the given database state.
+   *
+   * @param entries
+   *          the dispatchable jobs as found in the database, see {@link #entry(long, String, Status, Date)}
+   * @param mark
+   *          the sequence number taken before the jobs were loaded
+   */
+  void rebuild(Collection<Entry> entries, long mark) {
+    lock.lock();
+    try {
+      Set<Long> found = new HashSet<>();
+      for (Entry loaded : entries) {
+        found.add(loaded.id);
+        put(loaded, mark);
+      }
+      for (Entry entry : new ArrayList<>(ordered)) {
+        if (entry.sequence <= mark && !found.contains(entry.id)) {
+          ordered.remove(entry);
+          index.remove(entry.id);
+        }
+      }
+      signal();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Adds the given entries to the queue without removing any of the queued jobs, e.g. jobs recently created through
+   * other nodes of the cluster. Entries that have been added or updated after <code>mark</code> was taken are kept.
+   *
+   * @param entries
+   *          dispatchable jobs as found in the database, see {@link #entry(long, String, Status, Date)}
+   * @param mark
+   *          the sequence number taken before the jobs were loaded
+   */
+  void merge(Collection<Entry> entries, long mark) {
+    lock.lock();
+    try {
+      boolean added = false;
+      for (Entry loaded : entries) {
+        added |= put(loaded, mark);
+      }
+      if (added)
+        signal();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Adds or updates an entry loaded from the database unless the queued entry changed after <code>mark</code> was
+   * taken. Must be called while holding the lock.
+   *
+   * @return <code>true</code> if the job has not been queued before
+   */
+  private boolean put(Entry loaded, long mark) {
+    Entry existing = index.get(loaded.id);
+    if (existing != null && existing.sequence > mark)
+      return false;
+    if (existing != null)
+      ordered.remove(existing);
+    Entry entry = new Entry(loaded.id, loaded.workflow, loaded.restart, loaded.dateCreated,
+            existing != null ? existing.sequence : ++sequence);
+    index.put(entry.id, entry);
+    ordered.add(entry);
+    return existing == null;
+  }
+
+  /**
+   * Asks the dispatcher to rebuild the queue from the database before the next round of dispatching.
+   */
+  void requestRebuild() {
+    lock.lock();
+    try {
+      rebuildRequested = true;
+      signal();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Returns whether a rebuild has been requested and resets the request.
+   *
+   * @return <code>true</code> if the queue should be rebuilt
+   */
+  boolean takeRebuildRequest() {
+    lock.lock();
+    try {
+      boolean requested = rebuildRequested;
+      rebuildRequested = false;
+      return requested;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Returns the number of queued jobs.
+   *
+   * @return the queue size
+   */
+  int size() {
+    lock.lock();
+    try {
+      return index.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Wakes up the dispatcher. */
+  void signal() {
+    lock.lock();
+    try {
+      dirty = true;
+      changed.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Waits until a change was signalled or the timeout elapsed, whatever comes first. Changes signalled while the
+   * caller was not waiting are not lost, the next call returns immediately.
+   *
+   * @param timeout
+   *          the maximum time to wait
+   * @param unit
+   *          the time unit of the timeout
+   * @return <code>true</code> if a change was signalled, <code>false</code> if the timeout elapsed
+   * @throws InterruptedException
+   *           if the current thread was interrupted while waiting
+   */
+  boolean awaitChange(long timeout, TimeUnit unit) throws InterruptedException {
+    long nanos = unit.toNanos(timeout);
+    lock.lockInterruptibly();
+    try {
+      while (!dirty) {
+        if (nanos <= 0)
+          return false;
+        nanos = changed.awaitNanos(nanos);
+      }
+      dirty = false;
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Creates a queue entry for a dispatchable job loaded from the database, to be passed to
+   * {@link #rebuild(Collection, long)}.
+   *
+   * @param id
+   *          the job identifier
+   * @param jobType
+   *          the job type
+   * @param status
+   *          the job status, either {@link Status#RESTART} or {@link Status#QUEUED}
+   * @param dateCreated
+   *          the creation date, may be <code>null</code>
+   * @return the entry
+   */
+  static Entry entry(long id, String jobType, Status status, Date dateCreated) {
+    return new Entry(id, jobType, status, dateCreated, 0);
+  }
+
+  /** The information needed to order a job within the queue. */
+  static final class Entry {
+
+    private final long id;
+    private final boolean workflow;
+    private final boolean restart;
+    private final long dateCreated;
+    private final long sequence;
+
+    private Entry(long id, String jobType, Status status, Date dateCreated, long sequence) {
+      // Jobs that have never been updated don't have a creation date yet, they have just been created
+      this(id, TYPE_WORKFLOW.equals(jobType), Status.RESTART.equals(status),
+              dateCreated != null ? dateCreated.getTime() : System.currentTimeMillis(), sequence);
+    }
+
+    private Entry(long id, boolean workflow, boolean restart, long dateCreated, long sequence) {
+      this.id = id;
+      this.workflow = workflow;
+      this.restart = restart;
+      this.dateCreated = dateCreated;
+      this.sequence = sequence;
+    }
+
+  }
+
+}
@@ -0,0 +1,157 @@
+/**
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.serviceregistry.impl;
+
+import org.opencastproject.job.api.Job.Status;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A bounded log of the jobs that reached a terminal state through this node's service registry. Other nodes of the
+ * cluster long-poll this log to learn about terminated jobs without polling every single job.
+ * <p>
+ * Every entry gets a sequence number. Readers pass the last sequence number they have seen and receive the entries
+ * appended since. If entries have been overwritten in the meantime, or if this node has been restarted, the returned
+ * {@link Page} is marked as incomplete.
+ */
+public class JobTerminationFeed {
+
+  /** Default number of entries kept in the feed */
+  public static final int DEFAULT_CAPACITY = 10000;
+
+  /** The identifiers of the terminated jobs, used as a ring buffer */
+  private final long[] jobIds;
+
+  /** The terminal states of the jobs, same indexes as {@link #jobIds} */
+  private final Status[] statuses;
+
+  /** The sequence number of the most recent entry, 0 if there is none */
+  private long sequence = 0;
+
+  /** Creates a feed with the default capacity. */
+  public JobTerminationFeed() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Creates a feed keeping the given number of entries.
+   *
+   * @param capacity
+   *          the number of entries to keep
+   */
+  public JobTerminationFeed(int capacity) {
+    if (capacity < 1)
+      throw new IllegalArgumentException("Capacity must be a positive number");
+    this.jobIds = new long[capacity];
+    this.statuses = new Status[capacity];
+  }
+
+  /**
+   * Appends a terminated job to the feed and wakes up waiting readers.
+   *
+   * @param jobId
+   *          the job identifier
+   * @param status
+   *          the terminal status
+   */
+  public synchronized void append(long jobId, Status status) {
+    sequence++;
+    int index = (int) (sequence % jobIds.length);
+    jobIds[index] = jobId;
+    statuses[index] = status;
+    notifyAll();
+  }
+
+  /**
+   * Returns the entries appended after the given sequence number, waiting up to <code>timeout</code> milliseconds for
+   * new entries if there are none yet. A negative sequence number returns the current sequence number right away.
+   *
+   * @param since
+   *          the last sequence number the reader has seen
+   * @param timeout
+   *          the maximum time to wait for new entries, in milliseconds
+   * @return the entries appended since the given sequence number
+   * @throws InterruptedException
+   *           if the thread was interrupted while waiting
+   */
+  public synchronized Page read(long since, long timeout) throws InterruptedException {
+    if (since < 0 || since > sequence)
+      return new Page(sequence, since < 0, Collections.<Long> emptyList(), Collections.<Status> emptyList());
+
+    long deadline = System.currentTimeMillis() + timeout;
+    long remaining = timeout;
+    while (since == sequence && remaining > 0) {
+      wait(remaining);
+      remaining = deadline - System.currentTimeMillis();
+    }
+
+    long first = Math.max(since + 1, sequence - jobIds.length + 1);
+    List<Long> ids = new ArrayList<>((int) (sequence - first + 1));
+    List<Status> states = new ArrayList<>((int) (sequence - first + 1));
+    for (long s = first; s <= sequence; s++) {
+      int index = (int) (s % jobIds.length);
+      ids.add(jobIds[index]);
+      states.add(statuses[index]);
+    }
+    return new Page(sequence, first == since + 1, ids, states);
+  }
+
+  /** A page of the feed. */
+  public static final class Page {
+
+    private final long sequence;
+    private final boolean complete;
+    private final List<Long> jobIds;
+    private final List<Status> statuses;
+
+    Page(long sequence, boolean complete, List<Long> jobIds, List<Status> statuses) {
+      this.sequence = sequence;
+      this.complete = complete;
+      this.jobIds = jobIds;
+      this.statuses = statuses;
+    }
+
+    /** Returns the sequence number to pass to the next read. */
+    public long getSequence() {
+      return sequence;
+    }
+
+    /** Returns <code>false</code> if entries the reader has not seen are no longer available. */
+    public boolean isComplete() {
+      return complete;
+    }
+
+    /** Returns the identifiers of the terminated jobs, oldest first. */
+    public List<Long> getJobIds() {
+      return jobIds;
+    }
+
+    /** Returns the terminal states of the jobs, same order as {@link #getJobIds()}. */
+    public List<Status> getStatuses() {
+      return statuses;
+    }
+
+  }
+
+}
@@ -51,6 +51,7 @@ import org.opencastproject.security.api.UserDirectoryService;
 import org.opencastproject.serviceregistry.api.HostRegistration;
 import org.opencastproject.serviceregistry.api.IncidentService;
 import org.opencastproject.serviceregistry.api.Incidents;
+import org.opencastproject.serviceregistry.api.JobListener;
 import org.opencastproject.serviceregistry.api.JaxbServiceStatistics;
 import org.opencastproject.serviceregistry.api.ServiceRegistration;
 import org.opencastproject.serviceregistry.api.ServiceRegistry;
@@ -73,14 +74,21 @@ import com.entwinemedia.fn.Fn;
 import com.entwinemedia.fn.Fn2;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.BooleanUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.time.DateUtils;
 import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
+import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpHead;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.util.EntityUtils;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.InvalidSyntaxException;
 import org.osgi.framework.ServiceReference;
@@ -104,6 +112,7 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
@@ -114,6 +123,9 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -194,6 +206,12 @@ public class ServiceRegistryJpaImpl implements ServiceRegistry, ManagedService {
   /** Configuration key for the collection of job statistics */
   protected static final String OPT_JOBSTATISTICS = "jobstats.collect";
 
+  /** Configuration key for enabling the in-memory dispatch queue */
+  protected static final String OPT_DISPATCHQUEUE = "dispatch.queue.enabled";
+
+  /** Configuration key for the interval to resynchronize the dispatch queue with the database, in seconds */
+  protected static final String OPT_DISPATCHQUEUE_RESYNCINTERVAL = "dispatch.queue.resync.interval";
+
   /** Configuration key for the retrieval of service statistics: Do not consider jobs older than max_job_age (in days) */
   protected static final String OPT_SERVICE_STATISTICS_MAX_JOB_AGE = "org.opencastproject.statistics.services.max_job_age";
 
@@ -209,6 +227,15 @@ public class ServiceRegistryJpaImpl implements ServiceRegistry, ManagedService {
   /** Default delay before starting job dispatching, in seconds */
   static final long DEFAULT_DISPATCH_START_DELAY = 60;
 
+  /** Default delay between two full resynchronizations of the dispatch queue with the database, in seconds */
+  static final long DEFAULT_DISPATCH_QUEUE_RESYNC_INTERVAL = 300;
+
+  /**
+   * Jobs created within this period before the last look-up of new jobs are looked up again, to tolerate clock
+   * differences between the nodes and transactions committed late, in seconds
+   */
+  static final long DISPATCH_QUEUE_REFRESH_OVERLAP = 60;
+
   /** Default jobs limit during dispatching
    * (larger value will fetch more entries from the database at the same time and increase RAM usage) */
   static final int DEFAULT_DISPATCH_JOBS_LIMIT = 100;
@@ -285,6 +312,33 @@ public class ServiceRegistryJpaImpl implements ServiceRegistry, ManagedService {
   /** The dispatcher priority list */
   protected final Map<Long, String> dispatchPriorityList = new HashMap<>();
 
+  /** The in-memory queue of jobs waiting to be dispatched, <code>null</code> if jobs are polled from the database */
+  protected volatile DispatchQueue dispatchQueue = null;
+
+  /** Maximum time a request for terminated jobs waits for new jobs, in milliseconds */
+  static final long JOB_TERMINATION_MAX_WAIT = 30000L;
+
+  /** Delay before asking an unreachable host for terminated jobs again, in milliseconds */
+  static final long JOB_TERMINATION_RETRY_DELAY = 30000L;
+
+  /** Minimum delay between two checks for hosts to watch for terminated jobs, in milliseconds */
+  static final long JOB_TERMINATION_HOST_CHECK_INTERVAL = 60000L;
+
+  /** The jobs that reached a terminal state through this service registry, read by the other nodes */
+  protected final JobTerminationFeed jobTerminationFeed = new JobTerminationFeed();
+
+  /** The listeners to notify about terminated jobs */
+  protected final List<JobListener> jobListeners = new CopyOnWriteArrayList<>();
+
+  /** The hosts currently watched for terminated jobs */
+  private final Set<String> watchedHosts = ConcurrentHashMap.newKeySet();
+
+  /** The thread pool watching other hosts for terminated jobs */
+  private ExecutorService remoteJobWatchers = null;
+
+  /** The last time the hosts to watch for terminated jobs have been checked */
+  private volatile long lastWatchedHostsCheck = 0;
+
   /** Whether to accept a job whose load exceeds the host’s max load */
   protected Boolean acceptJobLoadsExeedingMaxLoad = true;
 
@@ -403,6 +457,13 @@ public class ServiceRegistryJpaImpl implements ServiceRegistry, ManagedService {
   public void deactivate() {
     logger.info("deactivate service registry");
 
+    synchronized (watchedHosts) {
+      if (remoteJobWatchers != null) {
+        remoteJobWatchers.shutdownNow();
+        remoteJobWatchers = null;
+      }
+    }
+
     // Wait for job dispatcher to stop before unregistering hosts and requeuing jobs
     if (scheduledExecutor != null) {
       try {
@@ -593,6 +654,10 @@ public class ServiceRegistryJpaImpl implements ServiceRegistry, ManagedService {
       em.persist(jpaJob);
       tx.commit();
 
+      if (dispatchQueue != null) {
+        dispatchQueue.update(jpaJob);
+      }
+
       setJobUri(jpaJob);
       Job job = jpaJob.toJob();
       return job;
@@ -635,6 +700,9 @@ public class ServiceRegistryJpaImpl implements ServiceRegistry, ManagedService {
         deleteChildJobs(em, tx, jobId);
         em.remove(job);
         removeFromLoadCache(jobId);
+        if (dispatchQueue != null) {
+          dispatchQueue.remove(jobId);
+        }
       }
 
       tx.commit();
@@ -802,6 +870,24 @@ public class ServiceRegistryJpaImpl implements ServiceRegistry, ManagedService {
       }
     }
 
+    boolean dispatchQueueEnabled = BooleanUtils.toBoolean(StringUtils.trimToNull(
+            (String) properties.get(OPT_DISPATCHQUEUE)));
+
+    // Jobs created by other nodes are picked up with each dispatch interval, the full resynchronization is only needed
+    // for jobs rescheduled by other nodes
+    long dispatchQueueResyncInterval = Math.max(DEFAULT_DISPATCH_QUEUE_RESYNC_INTERVAL, dispatchInterval);
+    String dispatchQueueResyncString = StringUtils.trimToNull(
+            (String) properties.get(OPT_DISPATCHQUEUE_RESYNCINTERVAL));
+    if (dispatchQueueEnabled && dispatchQueueResyncString != null) {
+      try {
+        dispatchQueueResyncInterval = Math.max(Long.parseLong(dispatchQueueResyncString), dispatchInterval);
+        logger.info("Dispatch queue resynchronization interval set to {} seconds", dispatchQueueResyncInterval);
+      } catch (NumberFormatException e) {
+        logger.warn("Dispatch queue resynchronization interval '{}' is malformed, setting to {}",
+                dispatchQueueResyncString, dispatchQueueResyncInterval);
+      }
+    }
+
     long dispatchDelay = DEFAULT_DISPATCH_START_DELAY;
 
     // Stop the current scheduled executors so we can configure new ones
@@ -810,6 +896,11 @@ public class ServiceRegistryJpaImpl implements ServiceRegistry, ManagedService {
       dispatchDelay = dispatchInterval;
     }
 
+    // Wake up a queued dispatcher waiting for changes so it notices the shutdown
+    if (dispatchQueue != null) {
+      dispatchQueue.signal();
+    }
+
     scheduledExecutor = Executors.newScheduledThreadPool(2);
 
     // Schedule the service heartbeat if the interval is > 0
@@ -820,10 +911,18 @@ public class ServiceRegistryJpaImpl implements ServiceRegistry, ManagedService {
     }
 
     // Schedule the job dispatching.
-    if (dispatchInterval > 0) {
+    if (dispatchInterval > 0 && dispatchQueueEnabled) {
+      logger.info("Starting queued job dispatching, falling back to an interval of {}s", dispatchInterval);
+      dispatchQueue = new DispatchQueue();
+      scheduledExecutor.schedule(new QueuedJobDispatcher(scheduledExecutor, dispatchQueue, dispatchInterval,
+              dispatchQueueResyncInterval), dispatchDelay, TimeUnit.SECONDS);
+    } else if (dispatchInterval > 0) {
+      dispatchQueue = null;
       logger.debug("Starting job dispatching at a custom interval of {}s", dispatchInterval);
       scheduledExecutor.scheduleWithFixedDelay(new JobDispatcher(), dispatchDelay, dispatchInterval,
               TimeUnit.SECONDS);
+    } else {
+      dispatchQueue = null;
     }
   }
 
@@ -894,6 +993,9 @@ public class ServiceRegistryJpaImpl implements ServiceRegistry, ManagedService {
       em = emf.createEntityManager();
       Job oldJob = getJob(job.getId());
       JpaJob jpaJob = updateInternal(em, job);
+      if (dispatchQueue != null) {
+        dispatchQueue.update(job);
+      }
       if (!TYPE_WORKFLOW.equals(job.getJobType()) && job.getJobLoad() > 0.0f
               && job.getProcessorServiceRegistration() != null
               && job.getProcessorServiceRegistration().getHost().equals(getRegistryHostname())) {
@@ -905,6 +1007,10 @@ public class ServiceRegistryJpaImpl implements ServiceRegistry, ManagedService {
         updateServiceForFailover(em, job);
       }
 
+      if (oldJob.getStatus() != job.getStatus() && job.getStatus().isTerminated()) {
+        jobTerminated(job.getId(), job.getStatus());
+      }
+
       return jpaJob;
     } catch (PersistenceException e) {
       throw new ServiceRegistryException(e);
@@ -1512,6 +1618,7 @@ public class ServiceRegistryJpaImpl implements ServiceRegistry, ManagedService {
       query.setParameter("serviceType", serviceType);
 
       List<JpaJob> unregisteredJobs = query.getResultList();
+      List<Long> failedJobs = new ArrayList<>();
       if (unregisteredJobs.size() > 0) {
         logger.info("Found {} jobs to clean for {}@{}", unregisteredJobs.size(), serviceType, baseUrl);
       }
@@ -1538,10 +1645,20 @@ public class ServiceRegistryJpaImpl implements ServiceRegistry, ManagedService {
         } else {
           logger.info("Marking lost {} as failed", job);
           job.setStatus(Status.FAILED);
+          failedJobs.add(job.getId());
         }
         em.merge(job);
       }
       tx.commit();
+
+      for (Long failedJob : failedJobs) {
+        jobTerminated(failedJob, Status.FAILED);
+      }
+
+      // Rescheduled jobs and their root jobs have been modified directly, let the dispatcher pick them up
+      if (dispatchQueue != null && !unregisteredJobs.isEmpty()) {
+        dispatchQueue.requestRebuild();
+      }
     } catch (Exception e) {
       if (tx != null && tx.isActive()) {
         tx.rollback();
@@ -1940,6 +2057,65 @@ public class ServiceRegistryJpaImpl implements ServiceRegistry, ManagedService {
     }
   }
 
+  /**
+   * Return identifier, job type, status ordinal and creation date of all dispatchable jobs with status RESTART or
+   * QUEUED.
+   *
+   * @param em the entity manager
+   * @return list with one row per dispatchable job
+   * @throws ServiceRegistryException if there is a problem communicating with the jobs database
+   */
+  protected List<Object[]> getDispatchableJobEntries(EntityManager em) throws ServiceRegistryException {
+    return getDispatchableJobEntries(em, null);
+  }
+
+  /**
+   * Return identifier, job type, status ordinal and creation date of the dispatchable jobs with status RESTART or
+   * QUEUED which have been created since the given date.
+   *
+   * @param em the entity manager
+   * @param since the minimum creation date, or <code>null</code> to return all dispatchable jobs
+   * @return list with one row per dispatchable job
+   * @throws ServiceRegistryException if there is a problem communicating with the jobs database
+   */
+  @SuppressWarnings("unchecked")
+  protected List<Object[]> getDispatchableJobEntries(EntityManager em, Date since) throws ServiceRegistryException {
+    try {
+      Query query;
+      if (since == null) {
+        query = em.createNamedQuery("Job.dispatchable.status.entries");
+      } else {
+        query = em.createNamedQuery("Job.dispatchable.status.entries.since");
+        query.setParameter("since", since, TemporalType.TIMESTAMP);
+      }
+      query.setParameter("statuses", Arrays.asList(Status.RESTART.ordinal(), Status.QUEUED.ordinal()));
+      return query.getResultList();
+    } catch (Exception e) {
+      throw new ServiceRegistryException(e);
+    }
+  }
+
+  /**
+   * Return the jobs with the given identifiers.
+   *
+   * @param em the entity manager
+   * @param jobIds the job identifiers
+   * @return the jobs found, in no particular order
+   * @throws ServiceRegistryException if there is a problem communicating with the jobs database
+   */
+  protected List<JpaJob> getJobsById(EntityManager em, Collection<Long> jobIds) throws ServiceRegistryException {
+    if (jobIds == null || jobIds.isEmpty())
+      return Collections.EMPTY_LIST;
+
+    try {
+      TypedQuery<JpaJob> query = em.createNamedQuery("Job.ids", JpaJob.class);
+      query.setParameter("jobids", jobIds);
+      return query.getResultList();
+    } catch (Exception e) {
+      throw new ServiceRegistryException(e);
+    }
+  }
+
   @SuppressWarnings("unchecked")
   protected List<Object[]> getAvgOperations(EntityManager em) throws ServiceRegistryException {
     Query query = null;
@@ -2573,6 +2749,166 @@ public class ServiceRegistryJpaImpl implements ServiceRegistry, ManagedService {
     }
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * Listeners are notified about jobs terminating through this service registry right away. Jobs terminating through
+   * the service registries of other nodes are reported by long-polling those nodes for terminated jobs while there are
+   * listeners registered.
+   *
+   * @see org.opencastproject.serviceregistry.api.ServiceRegistry#addJobListener(JobListener)
+   */
+  @Override
+  public boolean addJobListener(JobListener listener) {
+    jobListeners.add(listener);
+    watchRemoteHosts();
+    return true;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @see org.opencastproject.serviceregistry.api.ServiceRegistry#removeJobListener(JobListener)
+   */
+  @Override
+  public void removeJobListener(JobListener listener) {
+    jobListeners.remove(listener);
+  }
+
+  /**
+   * Returns the jobs that reached a terminal state through this service registry after the given sequence number,
+   * waiting for such jobs if there are none yet.
+   *
+   * @param since
+   *          the last sequence number seen by the caller, or a negative number to get the current sequence number
+   * @param timeout
+   *          the maximum time to wait in milliseconds, limited to {@link #JOB_TERMINATION_MAX_WAIT}
+   * @return the terminated jobs
+   * @throws InterruptedException
+   *           if the thread was interrupted while waiting
+   */
+  public JobTerminationFeed.Page getTerminatedJobs(long since, long timeout) throws InterruptedException {
+    return jobTerminationFeed.read(since, Math.min(Math.max(timeout, 0), JOB_TERMINATION_MAX_WAIT));
+  }
+
+  /**
+   * Records a job which reached a terminal state through this service registry and notifies the listeners.
+   *
+   * @param jobId
+   *          the job identifier
+   * @param status
+   *          the terminal status
+   */
+  private void jobTerminated(long jobId, Status status) {
+    jobTerminationFeed.append(jobId, status);
+    notifyJobListeners(jobId, status);
+  }
+
+  private void notifyJobListeners(long jobId, Status status) {
+    for (JobListener listener : jobListeners) {
+      try {
+        listener.jobTerminated(jobId, status);
+      } catch (Exception e) {
+        logger.warn("Job listener {} failed handling terminated job {}", listener, jobId, e);
+      }
+    }
+  }
+
+  /**
+   * Starts watching the active hosts of the cluster which are not watched yet for terminated jobs.
+   */
+  private void watchRemoteHosts() {
+    long now = System.currentTimeMillis();
+    if (client == null || now - lastWatchedHostsCheck < JOB_TERMINATION_HOST_CHECK_INTERVAL)
+      return;
+    lastWatchedHostsCheck = now;
+
+    List<HostRegistration> hosts;
+    try {
+      hosts = getHostRegistrations();
+    } catch (Exception e) {
+      logger.warn("Unable to look up hosts to watch for terminated jobs", e);
+      return;
+    }
+
+    synchronized (watchedHosts) {
+      if (remoteJobWatchers == null)
+        remoteJobWatchers = Executors.newCachedThreadPool();
+      for (HostRegistration host : hosts) {
+        if (host.getBaseUrl().equals(hostName) || !host.isActive() || !host.isOnline())
+          continue;
+        if (watchedHosts.add(host.getBaseUrl())) {
+          logger.debug("Watching {} for terminated jobs", host.getBaseUrl());
+          remoteJobWatchers.submit(new RemoteJobWatcher(host.getBaseUrl()));
+        }
+      }
+    }
+  }
+
+  /**
+   * Long-polls the service registry of another node for terminated jobs and notifies the local listeners, as long as
+   * there are listeners registered.
+   */
+  class RemoteJobWatcher implements Runnable {
+
+    /** The base URL of the watched host */
+    private final String host;
+
+    RemoteJobWatcher(String host) {
+      this.host = host;
+    }
+
+    @Override
+    public void run() {
+      long since = -1;
+      try {
+        while (!jobListeners.isEmpty() && !Thread.currentThread().isInterrupted()) {
+          String url = UrlSupport.concat(host, "services", "jobs", "terminated.json") + "?since=" + since
+                  + "&timeout=" + JOB_TERMINATION_MAX_WAIT;
+          HttpResponse response = null;
+          try {
+            response = client.execute(new HttpGet(url), (int) JOB_TERMINATION_RETRY_DELAY,
+                    (int) (2 * JOB_TERMINATION_MAX_WAIT));
+            int status = response.getStatusLine().getStatusCode();
+            if (status == HttpStatus.SC_OK) {
+              JSONObject json = (JSONObject) new JSONParser().parse(EntityUtils.toString(response.getEntity(), UTF_8));
+              if (since >= 0) {
+                for (Object entry : (JSONArray) json.get("jobs")) {
+                  JSONObject job = (JSONObject) entry;
+                  notifyJobListeners((Long) job.get("id"), Status.valueOf((String) job.get("status")));
+                }
+              }
+              since = (Long) json.get("sequence");
+              continue;
+            } else if (status == HttpStatus.SC_NOT_FOUND) {
+              logger.info("{} does not report terminated jobs, relying on polling", host);
+              return;
+            }
+            logger.debug("Unexpected response {} asking {} for terminated jobs", status, host);
+          } catch (TrustedHttpClientException | IOException | ParseException e) {
+            logger.debug("Unable to ask {} for terminated jobs: {}", host, e.getMessage());
+          } finally {
+            try {
+              client.close(response);
+            } catch (IOException e) {
+              // ignore
+            }
+          }
+          Thread.sleep(JOB_TERMINATION_RETRY_DELAY);
+        }
+      } catch (InterruptedException e) {
+        logger.debug("Watching {} for terminated jobs interrupted", host);
+      } catch (Exception e) {
+        logger.warn("Error watching {} for terminated jobs", host, e);
+      } finally {
+        watchedHosts.remove(host);
+        // Allow the next listener to resume watching right away
+        lastWatchedHostsCheck = 0;
+      }
+    }
+
+  }
+
   /**
    * Gets the failed jobs history for the given service registration
    *
@@ -2862,6 +3198,17 @@ public class ServiceRegistryJpaImpl implements ServiceRegistry, ManagedService {
     /** A list with job types that cannot be dispatched in each interation */
     private List<String> undispatchableJobTypes = null;
 
+    /** The queue to take the jobs from, or <code>null</code> to page through the dispatchable jobs in the database */
+    private final DispatchQueue queue;
+
+    JobDispatcher() {
+      this(null);
+    }
+
+    JobDispatcher(DispatchQueue queue) {
+      this.queue = queue;
+    }
+
     /**
      * {@inheritDoc}
      *
@@ -2887,60 +3234,28 @@ public class ServiceRegistryJpaImpl implements ServiceRegistry, ManagedService {
         if (!dispatchPriorityList.isEmpty()) {
           logger.trace("Checking for outdated jobs in dispatchPriorityList's '{}' jobs", dispatchPriorityList.size());
           // Remove outdated jobs from priority list
-          List<Long> jobIds = getDispatchableJobsWithIdFilter(em, dispatchPriorityList.keySet());
           for (Long jobId : new HashSet<>(dispatchPriorityList.keySet())) {
-            if (!jobIds.contains(jobId)) {
+            if (queue != null && !queue.contains(jobId)) {
               logger.debug("Removing outdated dispatchPriorityList job '{}'", jobId);
               dispatchPriorityList.remove(jobId);
             }
           }
-        }
-
-        int jobsOffset = 0;
-        List<JpaJob> dispatchableJobs = null;
-        List<JpaJob> workflowJobs = new ArrayList();
-        boolean jobsFound = false;
-        do {
-          // dispatch all dispatchable jobs with status restarted
-          dispatchableJobs = getDispatchableJobsWithStatus(em, jobsOffset, DEFAULT_DISPATCH_JOBS_LIMIT, Status.RESTART);
-          jobsOffset += DEFAULT_DISPATCH_JOBS_LIMIT;
-          jobsFound = !dispatchableJobs.isEmpty();
-
-          // skip all jobs of type workflow, we will handle them next
-          for (JpaJob job : dispatchableJobs) {
-            if (TYPE_WORKFLOW.equals(job.getJobType())) {
-              workflowJobs.add(job);
-            }
-          }
-          if (dispatchableJobs.removeAll(workflowJobs) && dispatchableJobs.isEmpty())
-            continue;
-
-          dispatchDispatchableJobs(em, dispatchableJobs);
-        } while (jobsFound);
-
-        jobsOffset = 0;
-        jobsFound = false;
-        do {
-          // dispatch all dispatchable jobs with status queued
-          dispatchableJobs = getDispatchableJobsWithStatus(em, jobsOffset, DEFAULT_DISPATCH_JOBS_LIMIT, Status.QUEUED);
-          jobsOffset += DEFAULT_DISPATCH_JOBS_LIMIT;
-          jobsFound = !dispatchableJobs.isEmpty();
-
-          // skip all jobs of type workflow, we will handle them next
-          for (JpaJob job : dispatchableJobs) {
-            if (TYPE_WORKFLOW.equals(job.getJobType())) {
-              workflowJobs.add(job);
+          if (queue == null && !dispatchPriorityList.isEmpty()) {
+            List<Long> jobIds = getDispatchableJobsWithIdFilter(em, dispatchPriorityList.keySet());
+            for (Long jobId : new HashSet<>(dispatchPriorityList.keySet())) {
+              if (!jobIds.contains(jobId)) {
+                logger.debug("Removing outdated dispatchPriorityList job '{}'", jobId);
+                dispatchPriorityList.remove(jobId);
+              }
             }
           }
-          if (dispatchableJobs.removeAll(workflowJobs) && dispatchableJobs.isEmpty())
-            continue;
-
-          dispatchDispatchableJobs(em, dispatchableJobs);
-        } while (jobsFound);
-
-        if (!workflowJobs.isEmpty())
-          dispatchDispatchableJobs(em, workflowJobs);
+        }
 
+        if (queue != null) {
+          dispatchQueuedJobs(em);
+        } else {
+          dispatchJobsFromDatabase(em);
+        }
       } catch (Throwable t) {
         logger.warn("Error dispatching jobs", t);
       } finally {
@@ -2952,6 +3267,97 @@ public class ServiceRegistryJpaImpl implements ServiceRegistry, ManagedService {
       logger.debug("Finished job dispatching");
     }
 
+    /**
+     * Pages through the dispatchable jobs in the database and dispatches them, restarted jobs first, workflow jobs
+     * last.
+     *
+     * @param em the entity manager
+     * @throws ServiceRegistryException if there is a problem communicating with the jobs database
+     */
+    private void dispatchJobsFromDatabase(EntityManager em) throws ServiceRegistryException {
+      int jobsOffset = 0;
+      List<JpaJob> dispatchableJobs = null;
+      List<JpaJob> workflowJobs = new ArrayList();
+      boolean jobsFound = false;
+      do {
+        // dispatch all dispatchable jobs with status restarted
+        dispatchableJobs = getDispatchableJobsWithStatus(em, jobsOffset, DEFAULT_DISPATCH_JOBS_LIMIT, Status.RESTART);
+        jobsOffset += DEFAULT_DISPATCH_JOBS_LIMIT;
+        jobsFound = !dispatchableJobs.isEmpty();
+
+        // skip all jobs of type workflow, we will handle them next
+        for (JpaJob job : dispatchableJobs) {
+          if (TYPE_WORKFLOW.equals(job.getJobType())) {
+            workflowJobs.add(job);
+          }
+        }
+        if (dispatchableJobs.removeAll(workflowJobs) && dispatchableJobs.isEmpty())
+          continue;
+
+        dispatchDispatchableJobs(em, dispatchableJobs);
+      } while (jobsFound);
+
+      jobsOffset = 0;
+      jobsFound = false;
+      do {
+        // dispatch all dispatchable jobs with status queued
+        dispatchableJobs = getDispatchableJobsWithStatus(em, jobsOffset, DEFAULT_DISPATCH_JOBS_LIMIT, Status.QUEUED);
+        jobsOffset += DEFAULT_DISPATCH_JOBS_LIMIT;
+        jobsFound = !dispatchableJobs.isEmpty();
+
+        // skip all jobs of type workflow, we will handle them next
+        for (JpaJob job : dispatchableJobs) {
+          if (TYPE_WORKFLOW.equals(job.getJobType())) {
+            workflowJobs.add(job);
+          }
+        }
+        if (dispatchableJobs.removeAll(workflowJobs) && dispatchableJobs.isEmpty())
+          continue;
+
+        dispatchDispatchableJobs(em, dispatchableJobs);
+      } while (jobsFound);
+
+      if (!workflowJobs.isEmpty())
+        dispatchDispatchableJobs(em, workflowJobs);
+    }
+
+    /**
+     * Dispatches the jobs waiting in the dispatch queue in queue order. The jobs are loaded in batches and checked
+     * against the database, jobs which are no longer waiting to be dispatched are dropped from the queue.
+     * <p>
+     * Services, hosts and parent jobs are looked up once for the whole round.
+     *
+     * @param em the entity manager
+     * @throws ServiceRegistryException if there is a problem communicating with the jobs database
+     */
+    private void dispatchQueuedJobs(EntityManager em) throws ServiceRegistryException {
+      List<Long> queuedJobIds = queue.snapshot();
+      if (queuedJobIds.isEmpty())
+        return;
+
+      logger.debug("Dispatching {} queued jobs", queuedJobIds.size());
+      DispatchRound round = new DispatchRound(em, true);
+      for (int i = 0; i < queuedJobIds.size(); i += DEFAULT_DISPATCH_JOBS_LIMIT) {
+        List<Long> batchIds = queuedJobIds.subList(i, Math.min(i + DEFAULT_DISPATCH_JOBS_LIMIT, queuedJobIds.size()));
+        Map<Long, JpaJob> jobsById = new HashMap<>();
+        for (JpaJob job : getJobsById(em, batchIds)) {
+          jobsById.put(job.getId(), job);
+        }
+
+        List<JpaJob> dispatchableJobs = new ArrayList<>(batchIds.size());
+        for (Long jobId : batchIds) {
+          JpaJob job = jobsById.get(jobId);
+          if (job == null || !DispatchQueue.isDispatchable(job)) {
+            logger.trace("Removing job '{}' from the dispatch queue, it is no longer waiting to be dispatched", jobId);
+            queue.remove(jobId);
+            continue;
+          }
+          dispatchableJobs.add(job);
+        }
+        dispatchDispatchableJobs(em, dispatchableJobs, round);
+      }
+    }
+
     /**
      * Dispatch the given jobs.
      *
@@ -2959,8 +3365,19 @@ public class ServiceRegistryJpaImpl implements ServiceRegistry, ManagedService {
      * @param jobsToDispatch list with dispatchable jobs to dispatch
      */
     private void dispatchDispatchableJobs(EntityManager em, List<JpaJob> jobsToDispatch) {
+      dispatchDispatchableJobs(em, jobsToDispatch, new DispatchRound(em, false));
+    }
+
+    /**
+     * Dispatch the given jobs.
+     *
+     * @param em the entity manager
+     * @param jobsToDispatch list with dispatchable jobs to dispatch
+     * @param round the state of the current round of dispatching
+     */
+    private void dispatchDispatchableJobs(EntityManager em, List<JpaJob> jobsToDispatch, DispatchRound round) {
       //Get the current system load
-      SystemLoad systemLoad = getHostLoads(em);
+      SystemLoad systemLoad = round.systemLoad;
 
       for (JpaJob job : jobsToDispatch) {
 
@@ -2999,33 +3416,19 @@ public class ServiceRegistryJpaImpl implements ServiceRegistry, ManagedService {
 
         // Start dispatching
         try {
-          List<ServiceRegistration> services = getServiceRegistrations(em);
-          List<HostRegistration> hosts = $(getHostRegistrations(em)).filter(filterOutPriorityHosts._2(job.getId()))
-                  .toList();
+          List<ServiceRegistration> services = round.getServiceRegistrations();
+          List<HostRegistration> hosts = $(round.getHostRegistrations())
+                  .filter(filterOutPriorityHosts._2(job.getId())).toList();
           List<ServiceRegistration> candidateServices = null;
 
           // Depending on whether this running job is trying to reach out to other services or whether this is an
           // attempt to execute the next operation in a workflow, choose either from a limited or from the full list
           // of services
-          Job parentJob = null;
-          try {
-            if (job.getParentJob() != null)
-              parentJob = getJob(job.getParentJob().getId());
-          } catch (NotFoundException e) {
-            // That's ok
-          }
+          Job parentJob = round.getParentJob(job);
 
           // When a job A starts a series of child jobs, then those child jobs should only be dispatched at the
           // same time if there is processing capacity available.
-          boolean parentHasRunningChildren = false;
-          if (parentJob != null) {
-            for (Job child : getChildJobs(parentJob.getId())) {
-              if (Status.RUNNING.equals(child.getStatus())) {
-                parentHasRunningChildren = true;
-                break;
-              }
-            }
-          }
+          boolean parentHasRunningChildren = parentJob != null && round.hasRunningChildren(parentJob);
 
           // If this is a root job (a new workflow or a new workflow operation), then only dispatch if there is
           // capacity, i. e. the workflow service is ok dispatching the next workflow or the next workflow operation.
@@ -3049,6 +3452,9 @@ public class ServiceRegistryJpaImpl implements ServiceRegistry, ManagedService {
             }
 
             dispatchPriorityList.remove(job.getId());
+            if (queue != null) {
+              queue.remove(job.getId());
+            }
           } catch (ServiceUnavailableException e) {
             logger.debug("Jobs of type {} currently cannot be dispatched", job.getOperation());
             // Don't mark workflow jobs as undispatchable to not impact worklfow operations
@@ -3249,6 +3655,196 @@ public class ServiceRegistryJpaImpl implements ServiceRegistry, ManagedService {
 
   }
 
+  /**
+   * The services, hosts and jobs a round of dispatching is based on. Unless the round works on a snapshot, every lookup
+   * goes to the database.
+   */
+  private final class DispatchRound {
+
+    private final EntityManager em;
+
+    /** Whether lookups are done once per round */
+    private final boolean snapshot;
+
+    /** The system load at the beginning of the round, updated with every dispatched job */
+    private final SystemLoad systemLoad;
+
+    private List<ServiceRegistration> services = null;
+
+    private List<HostRegistration> hosts = null;
+
+    private final Map<Long, Job> parentJobs = new HashMap<>();
+
+    private final Map<Long, Boolean> runningChildren = new HashMap<>();
+
+    DispatchRound(EntityManager em, boolean snapshot) {
+      this.em = em;
+      this.snapshot = snapshot;
+      this.systemLoad = getHostLoads(em);
+    }
+
+    List<ServiceRegistration> getServiceRegistrations() {
+      if (services == null || !snapshot)
+        services = ServiceRegistryJpaImpl.this.getServiceRegistrations(em);
+      return services;
+    }
+
+    List<HostRegistration> getHostRegistrations() {
+      if (hosts == null || !snapshot)
+        hosts = ServiceRegistryJpaImpl.this.getHostRegistrations(em);
+      return hosts;
+    }
+
+    Job getParentJob(JpaJob job) throws ServiceRegistryException {
+      if (job.getParentJob() == null)
+        return null;
+      long parentId = job.getParentJob().getId();
+      if (snapshot && parentJobs.containsKey(parentId))
+        return parentJobs.get(parentId);
+      Job parentJob = null;
+      try {
+        parentJob = getJob(parentId);
+      } catch (NotFoundException e) {
+        // That's ok
+      }
+      if (snapshot)
+        parentJobs.put(parentId, parentJob);
+      return parentJob;
+    }
+
+    boolean hasRunningChildren(Job parentJob) throws ServiceRegistryException {
+      Boolean running = snapshot ? runningChildren.get(parentJob.getId()) : null;
+      if (running == null) {
+        running = false;
+        for (Job child : getChildJobs(parentJob.getId())) {
+          if (Status.RUNNING.equals(child.getStatus())) {
+            running = true;
+            break;
+          }
+        }
+        if (snapshot)
+          runningChildren.put(parentJob.getId(), running);
+      }
+      return running;
+    }
+
+  }
+
+  /**
+   * Dispatches the jobs of a {@link DispatchQueue} whenever the queue signals a change. If nothing changes, it
+   * dispatches again after the dispatch interval to retry jobs which could not be dispatched before. Jobs created
+   * through other nodes are looked up once per dispatch interval. The queue is rebuilt from the database on start, on
+   * request and after the resynchronization interval.
+   */
+  class QueuedJobDispatcher implements Runnable {
+
+    private final ScheduledExecutorService executor;
+
+    private final DispatchQueue queue;
+
+    /** The maximum delay between two rounds of dispatching, in seconds */
+    private final long dispatchInterval;
+
+    /** The delay between two resynchronizations of the queue with the database, in seconds */
+    private final long resyncInterval;
+
+    QueuedJobDispatcher(ScheduledExecutorService executor, DispatchQueue queue, long dispatchInterval,
+            long resyncInterval) {
+      this.executor = executor;
+      this.queue = queue;
+      this.dispatchInterval = dispatchInterval;
+      this.resyncInterval = resyncInterval;
+    }
+
+    @Override
+    public void run() {
+      JobDispatcher dispatcher = new JobDispatcher(queue);
+      long lastResync = 0;
+      long lastRefresh = 0;
+      try {
+        while (!executor.isShutdown() && !Thread.currentThread().isInterrupted()) {
+          long now = System.currentTimeMillis();
+          if (queue.takeRebuildRequest() || now - lastResync >= TimeUnit.SECONDS.toMillis(resyncInterval)) {
+            try {
+              rebuildDispatchQueue(queue);
+              lastResync = now;
+              lastRefresh = now;
+            } catch (Throwable t) {
+              logger.warn("Error rebuilding the dispatch queue", t);
+            }
+          } else if (now - lastRefresh >= TimeUnit.SECONDS.toMillis(dispatchInterval)) {
+            try {
+              refreshDispatchQueue(queue,
+                      new Date(lastRefresh - TimeUnit.SECONDS.toMillis(DISPATCH_QUEUE_REFRESH_OVERLAP)));
+              lastRefresh = now;
+            } catch (Throwable t) {
+              logger.warn("Error looking up new jobs for the dispatch queue", t);
+            }
+          }
+          dispatcher.run();
+          queue.awaitChange(dispatchInterval, TimeUnit.SECONDS);
+        }
+      } catch (InterruptedException e) {
+        logger.debug("Queued job dispatching interrupted");
+      }
+      logger.info("Stopped queued job dispatching");
+    }
+
+  }
+
+  /**
+   * Replaces the content of the given dispatch queue with the dispatchable jobs found in the database.
+   *
+   * @param queue
+   *          the dispatch queue
+   * @throws ServiceRegistryException
+   *           if there is a problem communicating with the jobs database
+   */
+  protected void rebuildDispatchQueue(DispatchQueue queue) throws ServiceRegistryException {
+    EntityManager em = null;
+    try {
+      em = emf.createEntityManager();
+      long mark = queue.mark();
+      queue.rebuild(toDispatchQueueEntries(getDispatchableJobEntries(em)), mark);
+      logger.debug("Rebuilt dispatch queue with {} jobs", queue.size());
+    } finally {
+      if (em != null)
+        em.close();
+    }
+  }
+
+  /**
+   * Adds the dispatchable jobs created since the given date to the dispatch queue, e.g. jobs created through other
+   * nodes of the cluster.
+   *
+   * @param queue
+   *          the dispatch queue
+   * @param since
+   *          the minimum creation date of the jobs to add
+   * @throws ServiceRegistryException
+   *           if there is a problem communicating with the jobs database
+   */
+  protected void refreshDispatchQueue(DispatchQueue queue, Date since) throws ServiceRegistryException {
+    EntityManager em = null;
+    try {
+      em = emf.createEntityManager();
+      long mark = queue.mark();
+      queue.merge(toDispatchQueueEntries(getDispatchableJobEntries(em, since)), mark);
+    } finally {
+      if (em != null)
+        em.close();
+    }
+  }
+
+  private static List<DispatchQueue.Entry> toDispatchQueueEntries(List<Object[]> rows) {
+    List<DispatchQueue.Entry> entries = new ArrayList<>(rows.size());
+    for (Object[] row : rows) {
+      entries.add(DispatchQueue.entry((Long) row[0], (String) row[1], Status.values()[(Integer) row[2]],
+              (Date) row[3]));
+    }
+    return entries;
+  }
+
   /** A periodic check on each service registration to ensure that it is still alive. */
   class JobProducerHeartbeat implements Runnable {
 
@@ -48,6 +48,7 @@ import org.opencastproject.serviceregistry.api.ServiceRegistry;
 import org.opencastproject.serviceregistry.api.ServiceRegistryException;
 import org.opencastproject.serviceregistry.api.ServiceState;
 import org.opencastproject.serviceregistry.api.SystemLoad;
+import org.opencastproject.serviceregistry.impl.JobTerminationFeed;
 import org.opencastproject.serviceregistry.impl.ServiceRegistryJpaImpl;
 import org.opencastproject.systems.OpencastConstants;
 import org.opencastproject.util.NotFoundException;
@@ -60,6 +61,7 @@ import org.opencastproject.util.doc.rest.RestService;
 
 import org.apache.commons.lang3.StringUtils;
 import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
 import org.json.simple.JSONValue;
 import org.osgi.service.component.ComponentContext;
 import org.osgi.service.component.annotations.Activate;
@@ -75,6 +77,7 @@ import java.util.Map;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.ws.rs.DELETE;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.FormParam;
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
@@ -586,6 +589,39 @@ public class ServiceRegistryEndpoint {
     }
   }
 
+  @GET
+  @Path("jobs/terminated.json")
+  @Produces(MediaType.APPLICATION_JSON)
+  @RestQuery(name = "terminatedjobs", description = "Returns the jobs that reached a terminal state through this node after the given sequence number, waiting for such jobs if there are none yet.", returnDescription = "The terminated jobs and the sequence number to pass with the next request", restParameters = {
+          @RestParameter(name = "since", isRequired = true, type = Type.INTEGER, description = "The sequence number returned by the last request, or -1 to get the current sequence number"),
+          @RestParameter(name = "timeout", isRequired = false, type = Type.INTEGER, defaultValue = "30000", description = "The maximum time to wait for terminated jobs in milliseconds") }, responses = {
+          @RestResponse(responseCode = SC_OK, description = "The terminated jobs. If 'complete' is false, jobs may have been missed."),
+          @RestResponse(responseCode = SC_NOT_FOUND, description = "This node does not report terminated jobs.") })
+  @SuppressWarnings("unchecked")
+  public Response getTerminatedJobs(@QueryParam("since") long since,
+          @DefaultValue("30000") @QueryParam("timeout") long timeout) {
+    if (!(serviceRegistry instanceof ServiceRegistryJpaImpl))
+      return Response.status(Status.NOT_FOUND).build();
+    try {
+      JobTerminationFeed.Page page = ((ServiceRegistryJpaImpl) serviceRegistry).getTerminatedJobs(since, timeout);
+      JSONArray jobs = new JSONArray();
+      for (int i = 0; i < page.getJobIds().size(); i++) {
+        JSONObject job = new JSONObject();
+        job.put("id", page.getJobIds().get(i));
+        job.put("status", page.getStatuses().get(i).toString());
+        jobs.add(job);
+      }
+      JSONObject json = new JSONObject();
+      json.put("sequence", page.getSequence());
+      json.put("complete", page.isComplete());
+      json.put("jobs", jobs);
+      return Response.ok(json.toJSONString()).build();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return Response.status(Status.SERVICE_UNAVAILABLE).build();
+    }
+  }
+
   @GET
   @Path("jobs.xml")
   @Produces(MediaType.TEXT_XML)
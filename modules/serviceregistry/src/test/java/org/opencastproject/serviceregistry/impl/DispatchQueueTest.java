@@ -0,0 +1,144 @@
+/**
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.serviceregistry.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.opencastproject.job.api.Job.Status;
+import org.opencastproject.job.jpa.JpaJob;
+
+import org.easymock.EasyMock;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+public class DispatchQueueTest {
+
+  private DispatchQueue queue;
+
+  @Before
+  public void setUp() throws Exception {
+    queue = new DispatchQueue();
+    // Consume the initial signal and rebuild request
+    queue.takeRebuildRequest();
+    queue.awaitChange(0, TimeUnit.MILLISECONDS);
+  }
+
+  private JpaJob createJob(long id, String type, Status status, long created) {
+    JpaJob job = EasyMock.createNiceMock(JpaJob.class);
+    EasyMock.expect(job.getId()).andReturn(id).anyTimes();
+    EasyMock.expect(job.getJobType()).andReturn(type).anyTimes();
+    EasyMock.expect(job.getStatus()).andReturn(status).anyTimes();
+    EasyMock.expect(job.getDateCreated()).andReturn(new Date(created)).anyTimes();
+    EasyMock.expect(job.isDispatchable()).andReturn(true).anyTimes();
+    EasyMock.replay(job);
+    return job;
+  }
+
+  @Test
+  public void testDispatchOrder() {
+    queue.update(createJob(1L, ServiceRegistryJpaImpl.TYPE_WORKFLOW, Status.RESTART, 1000L));
+    queue.update(createJob(2L, "non-wf", Status.QUEUED, 1000L));
+    queue.update(createJob(3L, "non-wf", Status.RESTART, 2000L));
+    queue.update(createJob(4L, "non-wf", Status.QUEUED, 500L));
+    queue.update(createJob(5L, ServiceRegistryJpaImpl.TYPE_WORKFLOW, Status.QUEUED, 500L));
+
+    assertEquals(Arrays.asList(3L, 4L, 2L, 1L, 5L), queue.snapshot());
+  }
+
+  @Test
+  public void testUpdateRemovesJobsNoLongerWaiting() throws Exception {
+    queue.update(createJob(1L, "non-wf", Status.QUEUED, 1000L));
+    assertTrue(queue.contains(1L));
+    assertTrue("A new job must wake up the dispatcher", queue.awaitChange(0, TimeUnit.MILLISECONDS));
+
+    // Requeueing the same job must not wake up the dispatcher again
+    queue.update(createJob(1L, "non-wf", Status.QUEUED, 1000L));
+    assertFalse(queue.awaitChange(0, TimeUnit.MILLISECONDS));
+
+    queue.update(createJob(1L, "non-wf", Status.RUNNING, 1000L));
+    assertFalse(queue.contains(1L));
+    assertFalse(queue.awaitChange(0, TimeUnit.MILLISECONDS));
+
+    queue.update(createJob(1L, "non-wf", Status.FINISHED, 1000L));
+    assertTrue("A finished job must wake up the dispatcher", queue.awaitChange(0, TimeUnit.MILLISECONDS));
+    assertEquals(0, queue.size());
+  }
+
+  @Test
+  public void testRebuildKeepsRecentChanges() {
+    queue.update(createJob(1L, "non-wf", Status.QUEUED, 1000L));
+    queue.update(createJob(2L, "non-wf", Status.QUEUED, 2000L));
+    long mark = queue.mark();
+
+    // Job 3 is created while the database is being read
+    queue.update(createJob(3L, "non-wf", Status.QUEUED, 3000L));
+
+    queue.rebuild(Arrays.asList(
+            DispatchQueue.entry(2L, "non-wf", Status.QUEUED, new Date(2000L)),
+            DispatchQueue.entry(4L, "non-wf", Status.RESTART, new Date(4000L))), mark);
+
+    assertEquals(Arrays.asList(4L, 2L, 3L), queue.snapshot());
+  }
+
+  @Test
+  public void testMergeKeepsQueuedJobs() throws Exception {
+    queue.update(createJob(1L, "non-wf", Status.QUEUED, 1000L));
+    queue.update(createJob(2L, "non-wf", Status.QUEUED, 2000L));
+    queue.awaitChange(0, TimeUnit.MILLISECONDS);
+    long mark = queue.mark();
+
+    // Job 2 is restarted while the database is being read
+    queue.update(createJob(2L, "non-wf", Status.RESTART, 2000L));
+    queue.awaitChange(0, TimeUnit.MILLISECONDS);
+
+    queue.merge(Arrays.asList(
+            DispatchQueue.entry(2L, "non-wf", Status.QUEUED, new Date(2000L)),
+            DispatchQueue.entry(3L, "non-wf", Status.QUEUED, new Date(500L))), mark);
+    assertEquals(Arrays.asList(2L, 3L, 1L), queue.snapshot());
+    assertTrue("A new job must wake up the dispatcher", queue.awaitChange(0, TimeUnit.MILLISECONDS));
+
+    // Merging known jobs only must not wake up the dispatcher
+    queue.merge(Arrays.asList(DispatchQueue.entry(3L, "non-wf", Status.QUEUED, new Date(500L))), queue.mark());
+    assertEquals(3, queue.size());
+    assertFalse(queue.awaitChange(0, TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  public void testRebuildRequest() throws Exception {
+    assertFalse(queue.takeRebuildRequest());
+    queue.requestRebuild();
+    assertTrue(queue.awaitChange(0, TimeUnit.MILLISECONDS));
+    assertTrue(queue.takeRebuildRequest());
+    assertFalse(queue.takeRebuildRequest());
+
+    queue.rebuild(Collections.<DispatchQueue.Entry> emptyList(), queue.mark());
+    assertEquals(0, queue.size());
+  }
+
+}
@@ -0,0 +1,107 @@
+/**
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+
+package org.opencastproject.serviceregistry.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.opencastproject.job.api.Job.Status;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class JobTerminationFeedTest {
+
+  @Test
+  public void testReadCurrentSequence() throws Exception {
+    JobTerminationFeed feed = new JobTerminationFeed();
+    feed.append(1L, Status.FINISHED);
+    JobTerminationFeed.Page page = feed.read(-1, 1000L);
+    assertEquals(1L, page.getSequence());
+    assertTrue(page.isComplete());
+    assertTrue(page.getJobIds().isEmpty());
+  }
+
+  @Test
+  public void testReadSince() throws Exception {
+    JobTerminationFeed feed = new JobTerminationFeed();
+    feed.append(1L, Status.FINISHED);
+    feed.append(2L, Status.FAILED);
+    feed.append(3L, Status.CANCELED);
+    JobTerminationFeed.Page page = feed.read(1, 0L);
+    assertEquals(3L, page.getSequence());
+    assertTrue(page.isComplete());
+    assertEquals(Arrays.asList(2L, 3L), page.getJobIds());
+    assertEquals(Arrays.asList(Status.FAILED, Status.CANCELED), page.getStatuses());
+  }
+
+  @Test
+  public void testReadOverwritten() throws Exception {
+    JobTerminationFeed feed = new JobTerminationFeed(2);
+    for (long id = 1; id <= 5; id++) {
+      feed.append(id, Status.FINISHED);
+    }
+    JobTerminationFeed.Page page = feed.read(1, 0L);
+    assertFalse(page.isComplete());
+    assertEquals(Arrays.asList(4L, 5L), page.getJobIds());
+  }
+
+  @Test
+  public void testReadAfterRestart() throws Exception {
+    JobTerminationFeed feed = new JobTerminationFeed();
+    feed.append(1L, Status.FINISHED);
+    JobTerminationFeed.Page page = feed.read(42, 1000L);
+    assertEquals(1L, page.getSequence());
+    assertFalse(page.isComplete());
+  }
+
+  @Test
+  public void testReadWaitsForJobs() throws Exception {
+    final JobTerminationFeed feed = new JobTerminationFeed();
+    Thread appender = new Thread(() -> {
+      try {
+        Thread.sleep(200L);
+      } catch (InterruptedException e) {
+        return;
+      }
+      feed.append(7L, Status.FINISHED);
+    });
+    appender.start();
+    JobTerminationFeed.Page page = feed.read(0, 10000L);
+    assertEquals(Collections.singletonList(7L), page.getJobIds());
+    appender.join();
+  }
+
+  @Test
+  public void testReadTimeout() throws Exception {
+    JobTerminationFeed feed = new JobTerminationFeed();
+    JobTerminationFeed.Page page = feed.read(0, 50L);
+    assertEquals(0L, page.getSequence());
+    assertTrue(page.isComplete());
+    assertTrue(page.getJobIds().isEmpty());
+  }
+
+}
@@ -56,7 +56,6 @@ import org.slf4j.LoggerFactory;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStreamReader;
@@ -431,13 +430,11 @@ TimelinePreviewsService, ManagedService {
               + " failed: ffmpeg process exited abnormally with exit code " + exitCode);
 
     // put timeline previews image into workspace
-    FileInputStream timelinepreviewsFileInputStream = null;
     URI previewsFileUri = null;
     try {
-      timelinepreviewsFileInputStream = new FileInputStream(imageFilePath);
-      previewsFileUri = workspace.putInCollection(COLLECTION_ID,
-              FilenameUtils.getName(imageFilePath), timelinepreviewsFileInputStream);
-      logger.info("Copied the created timeline preview images file to the workspace {}", previewsFileUri.toString());
+      previewsFileUri = workspace.moveIntoCollection(COLLECTION_ID,
+              FilenameUtils.getName(imageFilePath), new File(imageFilePath));
+      logger.info("Moved the created timeline preview images file to the workspace {}", previewsFileUri.toString());
     } catch (FileNotFoundException ex) {
       throw new TimelinePreviewsException(
               String.format("Timeline previews image file '%s' not found", imageFilePath), ex);
@@ -447,8 +444,6 @@ TimelinePreviewsService, ManagedService {
     } catch (IllegalArgumentException ex) {
       throw new TimelinePreviewsException(ex);
     } finally {
-      IoSupport.closeQuietly(timelinepreviewsFileInputStream);
-      logger.info("Deleted local timeline preview images file at {}", imageFilePath);
       FileUtils.deleteQuietly(new File(imageFilePath));
     }
 
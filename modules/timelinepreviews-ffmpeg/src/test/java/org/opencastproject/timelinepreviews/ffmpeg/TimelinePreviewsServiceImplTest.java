@@ -136,7 +136,7 @@ public class TimelinePreviewsServiceImplTest {
     EasyMock.expect(workspace.get(EasyMock.anyObject()))
             .andReturn(file);
     Capture<String> filenameCapture = Capture.newInstance();
-    EasyMock.expect(workspace.putInCollection(
+    EasyMock.expect(workspace.moveIntoCollection(
             EasyMock.anyString(), EasyMock.capture(filenameCapture), EasyMock.anyObject()))
             .andReturn(new URI("timelinepreviews.png"));
     EasyMock.replay(workspace);
@@ -0,0 +1,83 @@
+/**
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.usertracking.impl;
+
+import javax.persistence.Access;
+import javax.persistence.AccessType;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import javax.persistence.Table;
+
+/**
+ * The change of the number of views of a media package at a position, i.e. the number of footprints starting at the
+ * position minus the number of footprints ending there. Summing up the changes up to a position yields the number of
+ * views at that position.
+ */
+@Entity(name = "FootprintDelta")
+@IdClass(FootprintDeltaId.class)
+@Access(AccessType.FIELD)
+@Table(name = "oc_user_footprint_delta")
+@NamedQueries({
+    @NamedQuery(name = "findFootprintDeltasOfMediapackage", query = "SELECT d FROM FootprintDelta d WHERE d.mediapackageId = :mediapackageId ORDER BY d.position"),
+    @NamedQuery(name = "updateFootprintDelta", query = "UPDATE FootprintDelta d SET d.delta = d.delta + :delta WHERE d.mediapackageId = :mediapackageId AND d.position = :position") })
+public class FootprintDeltaImpl {
+
+  @Id
+  @Column(name = "mediapackage", length = 128)
+  private String mediapackageId;
+
+  @Id
+  @Column(name = "position")
+  private int position;
+
+  @Column(name = "delta", nullable = false)
+  private int delta;
+
+  /**
+   * No-arg constructor needed by JPA
+   */
+  public FootprintDeltaImpl() {
+  }
+
+  public FootprintDeltaImpl(String mediapackageId, int position, int delta) {
+    this.mediapackageId = mediapackageId;
+    this.position = position;
+    this.delta = delta;
+  }
+
+  public String getMediapackageId() {
+    return mediapackageId;
+  }
+
+  public int getPosition() {
+    return position;
+  }
+
+  public int getDelta() {
+    return delta;
+  }
+
+}
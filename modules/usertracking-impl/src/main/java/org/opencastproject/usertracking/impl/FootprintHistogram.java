@@ -0,0 +1,151 @@
+/**
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.usertracking.impl;
+
+import org.opencastproject.usertracking.api.Footprint;
+import org.opencastproject.usertracking.api.FootprintList;
+import org.opencastproject.usertracking.endpoint.FootprintImpl;
+import org.opencastproject.usertracking.endpoint.FootprintsListImpl;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+
+/**
+ * Collects the changes footprints make to the view histograms of media packages, so that they can be written together
+ * with the footprints.
+ * <p>
+ * A histogram is stored as a difference array: each footprint adds one view at its inpoint and removes it at its
+ * outpoint. This allows to record a footprint by updating two positions regardless of its length, and to restore the
+ * views of a media package by summing up its changes instead of scanning all of its footprints.
+ */
+final class FootprintHistogram {
+
+  /** The changes per media package and position */
+  private final Map<String, Map<Integer, Integer>> deltas = new HashMap<>();
+
+  /**
+   * Records a footprint.
+   *
+   * @param mediapackageId
+   *          the media package
+   * @param inpoint
+   *          the start of the footprint
+   * @param outpoint
+   *          the end of the footprint
+   */
+  void add(String mediapackageId, int inpoint, int outpoint) {
+    change(mediapackageId, inpoint, outpoint, 1);
+  }
+
+  /**
+   * Records that a footprint has been changed.
+   *
+   * @param mediapackageId
+   *          the media package
+   * @param inpoint
+   *          the start of the footprint
+   * @param oldOutpoint
+   *          the previous end of the footprint
+   * @param newOutpoint
+   *          the new end of the footprint
+   */
+  void update(String mediapackageId, int inpoint, int oldOutpoint, int newOutpoint) {
+    change(mediapackageId, inpoint, oldOutpoint, -1);
+    change(mediapackageId, inpoint, newOutpoint, 1);
+  }
+
+  private void change(String mediapackageId, int inpoint, int outpoint, int views) {
+    // footprints not covering any position do not show up in the histogram
+    if (mediapackageId == null || inpoint < 0 || outpoint <= inpoint)
+      return;
+    final Map<Integer, Integer> changes = deltas.computeIfAbsent(mediapackageId, mp -> new HashMap<>());
+    changes.merge(inpoint, views, Integer::sum);
+    changes.merge(outpoint, -views, Integer::sum);
+  }
+
+  /**
+   * Writes the collected changes within the transaction of the given entity manager, which has to be the one writing
+   * the footprints. This way, the histograms are changed if and only if the footprints are written.
+   *
+   * @param em
+   *          the entity manager to write the changes with, its transaction has to be active
+   */
+  void write(EntityManager em) {
+    for (Map.Entry<String, Map<Integer, Integer>> changes : deltas.entrySet()) {
+      for (Map.Entry<Integer, Integer> change : changes.getValue().entrySet()) {
+        if (change.getValue() == 0)
+          continue;
+        Query q = em.createNamedQuery("updateFootprintDelta");
+        q.setParameter("mediapackageId", changes.getKey());
+        q.setParameter("position", change.getKey());
+        q.setParameter("delta", change.getValue());
+        if (q.executeUpdate() == 0) {
+          em.persist(new FootprintDeltaImpl(changes.getKey(), change.getKey(), change.getValue()));
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the footprints of a media package, i.e. the positions at which its number of views changes. The list
+   * always starts with position zero.
+   *
+   * @param em
+   *          the entity manager to read the histogram with
+   * @param mediapackageId
+   *          the media package
+   * @return the footprints
+   */
+  @SuppressWarnings("unchecked")
+  static FootprintList getFootprints(EntityManager em, String mediapackageId) {
+    Query q = em.createNamedQuery("findFootprintDeltasOfMediapackage");
+    q.setParameter("mediapackageId", mediapackageId);
+    final TreeMap<Integer, Integer> changes = new TreeMap<>();
+    for (FootprintDeltaImpl delta : (List<FootprintDeltaImpl>) q.getResultList()) {
+      changes.merge(delta.getPosition(), delta.getDelta(), Integer::sum);
+    }
+
+    FootprintList list = new FootprintsListImpl();
+    int views = changes.getOrDefault(0, 0);
+    list.add(footprint(0, views));
+    for (Map.Entry<Integer, Integer> change : changes.tailMap(0, false).entrySet()) {
+      if (change.getValue() != 0) {
+        views += change.getValue();
+        list.add(footprint(change.getKey(), views));
+      }
+    }
+    return list;
+  }
+
+  private static Footprint footprint(int position, int views) {
+    Footprint footprint = new FootprintImpl();
+    footprint.setPosition(position);
+    footprint.setViews(views);
+    return footprint;
+  }
+
+}
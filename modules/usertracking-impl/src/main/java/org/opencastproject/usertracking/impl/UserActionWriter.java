@@ -0,0 +1,377 @@
+/**
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.usertracking.impl;
+
+import org.opencastproject.usertracking.api.UserAction;
+import org.opencastproject.usertracking.api.UserSession;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import javax.persistence.PersistenceException;
+import javax.persistence.Query;
+
+/**
+ * Writes user actions to the database in batches instead of using one transaction per request.
+ * <p>
+ * Players report a footprint every few seconds while a video is being watched. Footprints continuing the pending
+ * footprint of the same session are merged in memory, so that a viewer watching a video without seeking results in a
+ * single row just as if the footprints had been written one by one. Pending actions are written when the batch size is
+ * reached or the flush interval has passed, whatever happens first.
+ * <p>
+ * The queue is bounded. Actions arriving while it is full are dropped, as are the actions of a batch that cannot be
+ * written, which protects the database from being overloaded by players. Both are reported via JMX.
+ */
+public class UserActionWriter implements UserActionWriterMXBean {
+
+  /** The logging facility */
+  private static final Logger logger = LoggerFactory.getLogger(UserActionWriter.class);
+
+  private final EntityManagerFactory emf;
+  private final int queueCapacity;
+  private final int batchSize;
+  private final ScheduledExecutorService executor;
+
+  /** The actions waiting to be written, guarded by <code>this</code> */
+  private List<UserAction> pending = new ArrayList<>();
+
+  /** The last pending footprint of each session, guarded by <code>this</code> */
+  private Map<String, UserAction> openFootprints = new HashMap<>();
+
+  /** Whether the writer has been closed, guarded by <code>this</code> */
+  private boolean closed = false;
+
+  /** Whether a flush has been requested because the batch size has been reached */
+  private final AtomicBoolean flushRequested = new AtomicBoolean(false);
+
+  /** Ensures batches are written one after another */
+  private final Object flushLock = new Object();
+
+  private final LongAdder written = new LongAdder();
+  private final LongAdder merged = new LongAdder();
+  private final LongAdder dropped = new LongAdder();
+  private final LongAdder flushes = new LongAdder();
+
+  /**
+   * Creates a writer and starts flushing pending actions periodically.
+   *
+   * @param emf
+   *          the factory of the entity managers used to write the actions
+   * @param queueCapacity
+   *          the maximum number of actions waiting to be written
+   * @param batchSize
+   *          the number of actions written in a single transaction
+   * @param flushInterval
+   *          the maximum time in milliseconds actions are waiting to be written
+   */
+  public UserActionWriter(EntityManagerFactory emf, int queueCapacity, int batchSize, long flushInterval) {
+    if (queueCapacity < 1 || batchSize < 1 || flushInterval < 1)
+      throw new IllegalArgumentException("Queue capacity, batch size and flush interval must be positive");
+    this.emf = emf;
+    this.queueCapacity = queueCapacity;
+    this.batchSize = batchSize;
+    this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread thread = new Thread(r, "User tracking writer");
+      thread.setDaemon(true);
+      return thread;
+    });
+    executor.scheduleWithFixedDelay(this::flush, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Queues a user action to be written.
+   *
+   * @param action
+   *          the action, its session is replaced by the persisted session when it is written
+   * @param session
+   *          the session of the action
+   * @return <code>false</code> if the writer has been closed and the action has to be written by the caller
+   */
+  public boolean add(UserAction action, UserSession session) {
+    action.setSession(session);
+    synchronized (this) {
+      if (closed)
+        return false;
+      if (UserTrackingServiceImpl.FOOTPRINT_KEY.equals(action.getType())) {
+        final UserAction open = openFootprints.get(session.getSessionId());
+        if (open != null && continues(open, action)) {
+          open.setOutpoint(action.getOutpoint());
+          merged.increment();
+          return true;
+        }
+      }
+      if (pending.size() >= queueCapacity) {
+        dropped.increment();
+        logger.debug("User tracking queue is full, dropping action of session {}", session.getSessionId());
+        return true;
+      }
+      pending.add(action);
+      if (UserTrackingServiceImpl.FOOTPRINT_KEY.equals(action.getType()))
+        openFootprints.put(session.getSessionId(), action);
+      if (pending.size() < batchSize)
+        return true;
+    }
+    if (flushRequested.compareAndSet(false, true)) {
+      try {
+        executor.execute(this::flush);
+      } catch (RuntimeException e) {
+        // the executor is shutting down, pending actions are written on close
+        flushRequested.set(false);
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Writes all pending actions.
+   */
+  public void flush() {
+    synchronized (flushLock) {
+      flushRequested.set(false);
+      final List<UserAction> actions;
+      synchronized (this) {
+        if (pending.isEmpty())
+          return;
+        actions = pending;
+        pending = new ArrayList<>();
+        openFootprints = new HashMap<>();
+      }
+      for (int i = 0; i < actions.size(); i += batchSize) {
+        write(actions.subList(i, Math.min(i + batchSize, actions.size())));
+      }
+    }
+  }
+
+  /**
+   * Stops accepting actions and writes all pending actions.
+   */
+  public void close() {
+    synchronized (this) {
+      closed = true;
+    }
+    executor.shutdown();
+    try {
+      if (!executor.awaitTermination(1, TimeUnit.MINUTES))
+        logger.warn("Timed out waiting for the user tracking writer to finish");
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    flush();
+  }
+
+  /**
+   * Writes a batch of actions in a single transaction.
+   */
+  private void write(List<UserAction> actions) {
+    EntityManager em = null;
+    EntityTransaction tx = null;
+    try {
+      em = emf.createEntityManager();
+      final Map<String, UserSession> sessions = populateSessions(em, actions);
+      tx = em.getTransaction();
+      tx.begin();
+      final Set<String> continued = new HashSet<>();
+      final FootprintHistogram histogram = new FootprintHistogram();
+      int count = 0;
+      for (UserAction action : actions) {
+        final UserSession session = sessions.get(action.getSession().getSessionId());
+        if (session == null) {
+          // the session could not be stored, which has been logged already
+          dropped.increment();
+          continue;
+        }
+        // only the first footprint of a session in this batch may continue a footprint written before
+        if (UserTrackingServiceImpl.FOOTPRINT_KEY.equals(action.getType())
+                && continued.add(session.getSessionId()) && continueLastFootprint(em, session, action, histogram)) {
+          merged.increment();
+          continue;
+        }
+        action.setSession(session);
+        em.persist(action);
+        if (UserTrackingServiceImpl.FOOTPRINT_KEY.equals(action.getType()))
+          histogram.add(action.getMediapackageId(), action.getInpoint(), action.getOutpoint());
+        count++;
+      }
+      histogram.write(em);
+      tx.commit();
+      written.add(count);
+      flushes.increment();
+    } catch (Exception e) {
+      if (tx != null && tx.isActive()) {
+        tx.rollback();
+      }
+      dropped.add(actions.size());
+      logger.warn("Unable to write {} user actions", actions.size(), e);
+    } finally {
+      if (em != null && em.isOpen()) {
+        em.close();
+      }
+    }
+  }
+
+  /**
+   * Looks up the sessions of the given actions, persisting the ones not found. Sessions which cannot be stored are
+   * missing from the result.
+   */
+  private Map<String, UserSession> populateSessions(EntityManager em, List<UserAction> actions) {
+    final Map<String, UserSession> sessions = new HashMap<>();
+    for (UserAction action : actions) {
+      sessions.putIfAbsent(action.getSession().getSessionId(), null);
+    }
+    findSessions(em, sessions);
+    final Set<String> created = new HashSet<>();
+    for (UserAction action : actions) {
+      final UserSession session = action.getSession();
+      if (sessions.get(session.getSessionId()) == null && created.add(session.getSessionId())) {
+        createSession(session);
+      }
+    }
+    if (!created.isEmpty()) {
+      // Read the new sessions back, including the ones created by another node in the meantime
+      findSessions(em, sessions);
+    }
+    for (String sessionId : created) {
+      if (sessions.get(sessionId) == null) {
+        logger.warn("Unable to store user session {}, dropping its actions", sessionId);
+        sessions.remove(sessionId);
+      }
+    }
+    return sessions;
+  }
+
+  /**
+   * Looks up the sessions with the keys of the given map which have not been found yet.
+   */
+  @SuppressWarnings("unchecked")
+  private void findSessions(EntityManager em, Map<String, UserSession> sessions) {
+    final List<String> sessionIds = new ArrayList<>();
+    for (Map.Entry<String, UserSession> entry : sessions.entrySet()) {
+      if (entry.getValue() == null)
+        sessionIds.add(entry.getKey());
+    }
+    if (sessionIds.isEmpty())
+      return;
+    Query q = em.createNamedQuery("findUserSessionsBySessionIds");
+    q.setParameter("sessionIds", sessionIds);
+    for (UserSession session : (List<UserSession>) q.getResultList()) {
+      sessions.put(session.getSessionId(), session);
+    }
+  }
+
+  /**
+   * Persists a session in its own transaction, so that it is found by other nodes as soon as possible and a session
+   * created concurrently by another node does not fail the whole batch.
+   */
+  private void createSession(UserSession session) {
+    EntityManager em = null;
+    EntityTransaction tx = null;
+    try {
+      em = emf.createEntityManager();
+      tx = em.getTransaction();
+      tx.begin();
+      em.persist(session);
+      tx.commit();
+    } catch (PersistenceException e) {
+      if (tx != null && tx.isActive()) {
+        tx.rollback();
+      }
+      // most likely the session has been created by another node, which is checked by reading it back
+      logger.debug("Unable to create user session {}: {}", session.getSessionId(), e.getMessage());
+    } finally {
+      if (em != null && em.isOpen()) {
+        em.close();
+      }
+    }
+  }
+
+  /**
+   * Extends the last footprint written for the session if the given footprint continues it.
+   */
+  @SuppressWarnings("unchecked")
+  private boolean continueLastFootprint(EntityManager em, UserSession session, UserAction footprint,
+          FootprintHistogram histogram) {
+    Query q = em.createNamedQuery("findLastUserFootprintOfSession");
+    q.setMaxResults(1);
+    q.setParameter("session", session);
+    final List<UserAction> result = q.getResultList();
+    if (result.isEmpty() || !continues(result.get(0), footprint))
+      return false;
+    final UserAction last = result.get(0);
+    histogram.update(last.getMediapackageId(), last.getInpoint(), last.getOutpoint(), footprint.getOutpoint());
+    last.setOutpoint(footprint.getOutpoint());
+    return true;
+  }
+
+  /**
+   * Returns whether the second footprint seamlessly follows the first one, in which case they can be merged.
+   */
+  private static boolean continues(UserAction first, UserAction second) {
+    return first.getMediapackageId() != null && first.getMediapackageId().equals(second.getMediapackageId())
+            && first.getOutpoint() == second.getInpoint();
+  }
+
+  @Override
+  public synchronized int getQueueDepth() {
+    return pending.size();
+  }
+
+  @Override
+  public int getQueueCapacity() {
+    return queueCapacity;
+  }
+
+  @Override
+  public long getWrittenActions() {
+    return written.sum();
+  }
+
+  @Override
+  public long getMergedFootprints() {
+    return merged.sum();
+  }
+
+  @Override
+  public long getDroppedActions() {
+    return dropped.sum();
+  }
+
+  @Override
+  public long getFlushes() {
+    return flushes.sum();
+  }
+
+}
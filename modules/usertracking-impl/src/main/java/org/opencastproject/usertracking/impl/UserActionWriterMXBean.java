@@ -0,0 +1,59 @@
+/**
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.usertracking.impl;
+
+/**
+ * JMX statistics of the write-behind queue of user actions.
+ */
+public interface UserActionWriterMXBean {
+
+  /**
+   * @return the number of user actions waiting to be written
+   */
+  int getQueueDepth();
+
+  /**
+   * @return the maximum number of user actions waiting to be written
+   */
+  int getQueueCapacity();
+
+  /**
+   * @return the number of user actions written to the database
+   */
+  long getWrittenActions();
+
+  /**
+   * @return the number of footprints merged into a preceding footprint of the same session instead of being written
+   */
+  long getMergedFootprints();
+
+  /**
+   * @return the number of user actions dropped because the queue was full or writing them failed
+   */
+  long getDroppedActions();
+
+  /**
+   * @return the number of batches written
+   */
+  long getFlushes();
+
+}
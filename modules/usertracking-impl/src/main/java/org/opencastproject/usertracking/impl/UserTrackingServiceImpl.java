@@ -35,6 +35,7 @@ import org.opencastproject.usertracking.endpoint.FootprintsListImpl;
 import org.opencastproject.usertracking.endpoint.ReportImpl;
 import org.opencastproject.usertracking.endpoint.ReportItemImpl;
 import org.opencastproject.util.NotFoundException;
+import org.opencastproject.util.jmx.JmxUtil;
 
 import org.apache.commons.lang3.StringUtils;
 import org.osgi.service.cm.ConfigurationException;
@@ -49,7 +50,9 @@ import java.util.Collection;
 import java.util.Dictionary;
 import java.util.GregorianCalendar;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
+import javax.management.ObjectInstance;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.EntityTransaction;
@@ -74,6 +77,18 @@ public class UserTrackingServiceImpl implements UserTrackingService, ManagedServ
   public static final String USER_LOGGING = "org.opencastproject.usertracking.log.user";
   public static final String SESSION_LOGGING = "org.opencastproject.usertracking.log.session";
 
+  public static final String WRITE_BEHIND = "org.opencastproject.usertracking.writebehind.enabled";
+  public static final String WRITE_BEHIND_QUEUE_SIZE = "org.opencastproject.usertracking.writebehind.queue.size";
+  public static final String WRITE_BEHIND_BATCH_SIZE = "org.opencastproject.usertracking.writebehind.batch.size";
+  public static final String WRITE_BEHIND_FLUSH_INTERVAL = "org.opencastproject.usertracking.writebehind.interval";
+
+  public static final int DEFAULT_WRITE_BEHIND_QUEUE_SIZE = 10000;
+  public static final int DEFAULT_WRITE_BEHIND_BATCH_SIZE = 500;
+  public static final int DEFAULT_WRITE_BEHIND_FLUSH_INTERVAL = 5;
+
+  /** The JMX type of the write-behind queue */
+  private static final String JMX_WRITER_TYPE = "UserTrackingWriter";
+
   private static final Logger logger = LoggerFactory.getLogger(UserTrackingServiceImpl.class);
 
   private boolean detailedTracking = false;
@@ -84,7 +99,11 @@ public class UserTrackingServiceImpl implements UserTrackingService, ManagedServ
   /** The factory used to generate the entity manager */
   protected EntityManagerFactory emf = null;
 
-  /** OSGi DI */
+  /** Writes user actions in batches, <code>null</code> if they are written immediately */
+  private volatile UserActionWriter writer = null;
+
+  /** The registration of the writer with JMX */
+  private ObjectInstance registeredWriter = null;
 
   /** OSGi DI */
   void setEntityManagerFactory(EntityManagerFactory emf) {
@@ -98,6 +117,13 @@ public class UserTrackingServiceImpl implements UserTrackingService, ManagedServ
     logger.debug("activate()");
   }
 
+  /**
+   * Deactivation callback, writes pending user actions
+   */
+  public void deactivate() {
+    setWriter(null);
+  }
+
   @Override
   public void updated(Dictionary props) throws ConfigurationException {
     if (props == null) {
@@ -122,6 +148,54 @@ public class UserTrackingServiceImpl implements UserTrackingService, ManagedServ
       logSession = Boolean.valueOf((String) val);
     }
 
+    val = props.get(WRITE_BEHIND);
+    if (val != null && Boolean.valueOf(val.toString())) {
+      final int queueSize = getIntProperty(props, WRITE_BEHIND_QUEUE_SIZE, DEFAULT_WRITE_BEHIND_QUEUE_SIZE);
+      final int batchSize = getIntProperty(props, WRITE_BEHIND_BATCH_SIZE, DEFAULT_WRITE_BEHIND_BATCH_SIZE);
+      final int flushInterval = getIntProperty(props, WRITE_BEHIND_FLUSH_INTERVAL, DEFAULT_WRITE_BEHIND_FLUSH_INTERVAL);
+      if (queueSize < 1 || batchSize < 1 || flushInterval < 1)
+        throw new ConfigurationException(WRITE_BEHIND, "Queue size, batch size and flush interval must be positive");
+      logger.info("Writing user actions in batches of {} every {} seconds, queueing up to {} actions", batchSize,
+              flushInterval, queueSize);
+      setWriter(new UserActionWriter(emf, queueSize, batchSize, TimeUnit.SECONDS.toMillis(flushInterval)));
+    } else {
+      setWriter(null);
+    }
+  }
+
+  private static int getIntProperty(Dictionary props, String key, int defaultValue) throws ConfigurationException {
+    final Object val = props.get(key);
+    final String value = val == null ? null : StringUtils.trimToNull(val.toString());
+    if (value == null)
+      return defaultValue;
+    try {
+      return Integer.parseInt(value);
+    } catch (NumberFormatException e) {
+      throw new ConfigurationException(key, "Not an integer: " + value, e);
+    }
+  }
+
+  /**
+   * Replaces the write-behind queue, writing all actions pending in the previous one.
+   */
+  private synchronized void setWriter(UserActionWriter newWriter) {
+    final UserActionWriter oldWriter = writer;
+    writer = newWriter;
+    if (oldWriter != null) {
+      JmxUtil.unregisterMXBean(registeredWriter);
+      registeredWriter = null;
+      oldWriter.close();
+    }
+    if (newWriter != null) {
+      registeredWriter = JmxUtil.registerMXBean(newWriter, JMX_WRITER_TYPE);
+    }
+  }
+
+  /**
+   * @return the write-behind queue of user actions, <code>null</code> if actions are written immediately
+   */
+  UserActionWriter getWriter() {
+    return writer;
   }
 
   public int getViews(String mediapackageId) {
@@ -146,6 +220,10 @@ public class UserTrackingServiceImpl implements UserTrackingService, ManagedServ
     if (!logIp) session.setUserIp("-omitted-");
     if (!logUser) session.setUserId("-omitted-");
     if (!logSession) session.setSessionId("-omitted-");
+    final UserActionWriter writer = this.writer;
+    if (writer != null && writer.add(a, session)) {
+      return a;
+    }
     try {
       em = emf.createEntityManager();
       tx = em.getTransaction();
@@ -157,22 +235,27 @@ public class UserTrackingServiceImpl implements UserTrackingService, ManagedServ
       q.setParameter("session", userSession);
       Collection<UserAction> userActions = q.getResultList();
 
+      FootprintHistogram histogram = new FootprintHistogram();
       if (userActions.size() >= 1) {
         UserAction last = userActions.iterator().next();
         if (last.getMediapackageId().equals(a.getMediapackageId()) && last.getType().equals(a.getType())
                 && last.getOutpoint() == a.getInpoint()) {
           //We are assuming in this case that the sessions match and are unchanged (IP wise, for example)
+          histogram.update(last.getMediapackageId(), last.getInpoint(), last.getOutpoint(), a.getOutpoint());
           last.setOutpoint(a.getOutpoint());
           a = last;
           a.setId(last.getId());
         } else {
           a.setSession(userSession);
           em.persist(a);
+          histogram.add(a.getMediapackageId(), a.getInpoint(), a.getOutpoint());
         }
       } else {
         a.setSession(userSession);
         em.persist(a);
+        histogram.add(a.getMediapackageId(), a.getInpoint(), a.getOutpoint());
       }
+      histogram.write(em);
       tx.commit();
       return a;
     } catch (Exception e) {
@@ -193,6 +276,10 @@ public class UserTrackingServiceImpl implements UserTrackingService, ManagedServ
     if (!logIp) session.setUserIp("-omitted-");
     if (!logUser) session.setUserId("-omitted-");
     if (!logSession) session.setSessionId("-omitted-");
+    final UserActionWriter writer = this.writer;
+    if (writer != null && writer.add(a, session)) {
+      return a;
+    }
     try {
       em = emf.createEntityManager();
       tx = em.getTransaction();
@@ -624,13 +711,12 @@ public class UserTrackingServiceImpl implements UserTrackingService, ManagedServ
     if (! logUser) userId = null;
     try {
       em = emf.createEntityManager();
-      Query q = null;
       if (StringUtils.trimToNull(userId) == null) {
-        q = em.createNamedQuery("findUserActionsByTypeAndMediapackageIdOrderByOutpointDESC");
-      } else {
-        q = em.createNamedQuery("findUserActionsByTypeAndMediapackageIdByUserOrderByOutpointDESC");
-        q.setParameter("userid", userId);
+        // The views of all users are kept up to date on every footprint, no need to scan all of them
+        return FootprintHistogram.getFootprints(em, mediapackageId);
       }
+      Query q = em.createNamedQuery("findUserActionsByTypeAndMediapackageIdByUserOrderByOutpointDESC");
+      q.setParameter("userid", userId);
       q.setParameter("type", FOOTPRINT_KEY);
       q.setParameter("mediapackageId", mediapackageId);
       @SuppressWarnings("unchecked")
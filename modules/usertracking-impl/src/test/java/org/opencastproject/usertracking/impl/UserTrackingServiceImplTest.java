@@ -643,6 +643,88 @@ public class UserTrackingServiceImplTest {
     verifyUserActionLists(1, 0, 10, 1);
   }
 
+  /**
+   * Test the footprints of all users being kept up to date when footprints are added or extended
+   * @throws Exception
+   */
+  @Test
+  public void testFootprintHistogram() throws Exception {
+    createAndVerifyUserAction(UserTrackingServiceImpl.FOOTPRINT_KEY, "session1", "mp", "me", "127.0.0.1", 0, 10);
+    createAndVerifyUserAction(UserTrackingServiceImpl.FOOTPRINT_KEY, "session1", "mp", "me", "127.0.0.1", 10, 30);
+    createAndVerifyUserAction(UserTrackingServiceImpl.FOOTPRINT_KEY, "session2", "mp", "someone else", "127.0.0.2", 5, 15);
+    //Footprints without length and shortened footprints
+    createAndVerifyUserAction(UserTrackingServiceImpl.FOOTPRINT_KEY, "session3", "mp", "someone else", "127.0.0.3", 20, 10);
+    createAndVerifyUserAction(UserTrackingServiceImpl.FOOTPRINT_KEY, "session1", "mp", "me", "127.0.0.1", 30, 25);
+    createAndVerifyUserAction(UserTrackingServiceImpl.FOOTPRINT_KEY, "session4", "other", "me", "127.0.0.1", 0, 50);
+
+    FootprintList list = getFootprintList("mp", null, 4);
+    verifyFootprintViewsAndPositions(list, 0, 0, 1);
+    verifyFootprintViewsAndPositions(list, 1, 5, 2);
+    verifyFootprintViewsAndPositions(list, 2, 15, 1);
+    verifyFootprintViewsAndPositions(list, 3, 25, 0);
+    list = getFootprintList("mp", "me", 2);
+    verifyFootprintViewsAndPositions(list, 0, 0, 1);
+    verifyFootprintViewsAndPositions(list, 1, 25, 0);
+    list = getFootprintList("unknown", null, 1);
+    verifyFootprintViewsAndPositions(list, 0, 0, 0);
+  }
+
+  /**
+   * Test writing user actions in batches
+   * @throws Exception
+   */
+  @Test
+  public void testWriteBehind() throws Exception {
+    Properties props = new Properties();
+    props.setProperty(UserTrackingServiceImpl.WRITE_BEHIND, "true");
+    props.setProperty(UserTrackingServiceImpl.WRITE_BEHIND_FLUSH_INTERVAL, "3600");
+    service.updated(props);
+    UserActionWriter writer = service.getWriter();
+    Assert.assertNotNull(writer);
+
+    //One viewer watching without seeking, another one jumping ahead, and an arbitrary event
+    for (int i = 0; i < 10; i++) {
+      UserSession session = createUserSession("session1", "me", "127.0.0.1");
+      UserAction action = createUserAction(UserTrackingServiceImpl.FOOTPRINT_KEY, "mp", i * 10, i * 10 + 10, new Date(),
+              session);
+      Assert.assertNull(service.addUserFootprint(action, session).getId());
+    }
+    UserSession session = createUserSession("session2", "someone else", "127.0.0.2");
+    service.addUserFootprint(createUserAction(UserTrackingServiceImpl.FOOTPRINT_KEY, "mp", 0, 10, new Date(), session),
+            session);
+    service.addUserFootprint(createUserAction(UserTrackingServiceImpl.FOOTPRINT_KEY, "mp", 50, 60, new Date(), session),
+            session);
+    service.addUserTrackingEvent(createUserAction("arbitraryType", "mp", 60, 60, new Date(), session), session);
+
+    Assert.assertEquals(4, writer.getQueueDepth());
+    Assert.assertEquals(9, writer.getMergedFootprints());
+    verifyUserActionLists(0, 0, 0, 0);
+
+    writer.flush();
+    Assert.assertEquals(0, writer.getQueueDepth());
+    Assert.assertEquals(4, writer.getWrittenActions());
+    Assert.assertEquals(0, writer.getDroppedActions());
+    Assert.assertEquals(2, service.getViews("mp"));
+    verifyUserActionListsByType(UserTrackingServiceImpl.FOOTPRINT_KEY, 3, 0, 0, 3);
+    FootprintList list = getFootprintList("mp", "me", 2);
+    verifyFootprintViewsAndPositions(list, 0, 0, 1);
+    verifyFootprintViewsAndPositions(list, 1, 100, 0);
+
+    //Continuing a footprint written before extends it, and pending actions are written on shutdown
+    session = createUserSession("session1", "me", "127.0.0.1");
+    service.addUserFootprint(createUserAction(UserTrackingServiceImpl.FOOTPRINT_KEY, "mp", 100, 120, new Date(),
+            session), session);
+    service.deactivate();
+    Assert.assertNull(service.getWriter());
+    Assert.assertEquals(10, writer.getMergedFootprints());
+    verifyUserActionListsByType(UserTrackingServiceImpl.FOOTPRINT_KEY, 3, 0, 0, 3);
+    list = getFootprintList("mp", "me", 2);
+    verifyFootprintViewsAndPositions(list, 1, 120, 0);
+
+    //Actions are written immediately again once the writer is closed
+    createAndVerifyUserAction(UserTrackingServiceImpl.FOOTPRINT_KEY, "session3", "mp", "me", "127.0.0.1", 10, 20);
+  }
+
   /**
    * Tests to make sure reports with date restrictions work as expected.
    * @throws Exception
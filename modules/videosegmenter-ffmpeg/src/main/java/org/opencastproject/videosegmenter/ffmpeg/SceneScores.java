@@ -0,0 +1,188 @@
+/**
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.videosegmenter.ffmpeg;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * The scene change scores FFmpeg calculated for the frames of a video track.
+ * <p>
+ * Only frames with a score above a lower bound are recorded, which keeps the arrays small since most frames of a
+ * recording hardly differ from their predecessor. The scene changes for any changes threshold not below that bound can
+ * then be determined without decoding the video again.
+ */
+public final class SceneScores {
+
+  /** Marks the serialized form, "OCSS" */
+  private static final int MAGIC = 0x4F435353;
+
+  /** The version of the serialized form */
+  private static final int VERSION = 1;
+
+  /** Scores not above this value have not been recorded */
+  private final float floor;
+
+  /** The presentation times of the frames in milliseconds, ascending */
+  private long[] times;
+
+  /** The scene change scores of the frames */
+  private float[] scores;
+
+  /** The number of recorded frames */
+  private int size = 0;
+
+  /**
+   * Creates an empty list of scene change scores.
+   *
+   * @param floor
+   *          the value scores have to exceed to be recorded
+   */
+  public SceneScores(float floor) {
+    this(floor, 256);
+  }
+
+  private SceneScores(float floor, int capacity) {
+    this.floor = floor;
+    this.times = new long[capacity];
+    this.scores = new float[capacity];
+  }
+
+  /**
+   * Records the score of a frame. Frames have to be added in presentation order.
+   *
+   * @param time
+   *          the presentation time of the frame in milliseconds
+   * @param score
+   *          the scene change score of the frame
+   */
+  public void add(long time, float score) {
+    if (score <= floor)
+      return;
+    if (size == times.length) {
+      times = Arrays.copyOf(times, size * 2);
+      scores = Arrays.copyOf(scores, size * 2);
+    }
+    times[size] = time;
+    scores[size] = score;
+    size++;
+  }
+
+  /**
+   * @return the value scores have to exceed to be recorded
+   */
+  public float getFloor() {
+    return floor;
+  }
+
+  /**
+   * @return the number of recorded frames
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns whether the scene changes for the given threshold can be determined from the recorded scores.
+   *
+   * @param changesThreshold
+   *          the changes threshold
+   * @return <code>true</code> if no frame exceeding the threshold may be missing
+   */
+  public boolean covers(float changesThreshold) {
+    return changesThreshold >= floor;
+  }
+
+  /**
+   * Returns the times of the frames whose score exceeds the given threshold, which is what FFmpeg's
+   * <code>select=gt(scene\,threshold)</code> filter yields.
+   *
+   * @param changesThreshold
+   *          the changes threshold
+   * @return the presentation times of the scene changes in milliseconds, ascending
+   * @throws IllegalArgumentException
+   *           if the threshold is below the recorded floor
+   */
+  public long[] getChanges(float changesThreshold) {
+    if (!covers(changesThreshold))
+      throw new IllegalArgumentException("Changes threshold " + changesThreshold + " is below the recorded floor "
+              + floor);
+    long[] changes = new long[size];
+    int count = 0;
+    for (int i = 0; i < size; i++) {
+      if (scores[i] > changesThreshold) {
+        changes[count++] = times[i];
+      }
+    }
+    return Arrays.copyOf(changes, count);
+  }
+
+  /**
+   * Writes the scores in a compact binary form.
+   *
+   * @param out
+   *          the stream to write to, it is not closed
+   * @throws IOException
+   *           if writing fails
+   */
+  public void write(OutputStream out) throws IOException {
+    DataOutputStream data = new DataOutputStream(out);
+    data.writeInt(MAGIC);
+    data.writeInt(VERSION);
+    data.writeFloat(floor);
+    data.writeInt(size);
+    for (int i = 0; i < size; i++) {
+      data.writeLong(times[i]);
+      data.writeFloat(scores[i]);
+    }
+    data.flush();
+  }
+
+  /**
+   * Reads scores written by {@link #write(OutputStream)}.
+   *
+   * @param in
+   *          the stream to read from, it is not closed
+   * @return the scores
+   * @throws IOException
+   *           if reading fails or the data is not valid
+   */
+  public static SceneScores read(InputStream in) throws IOException {
+    DataInputStream data = new DataInputStream(in);
+    if (data.readInt() != MAGIC || data.readInt() != VERSION)
+      throw new IOException("Not a scene score file of version " + VERSION);
+    float floor = data.readFloat();
+    int size = data.readInt();
+    if (size < 0)
+      throw new IOException("Invalid number of scene scores: " + size);
+    SceneScores sceneScores = new SceneScores(floor, Math.max(size, 1));
+    for (int i = 0; i < size; i++) {
+      sceneScores.add(data.readLong(), data.readFloat());
+    }
+    return sceneScores;
+  }
+
+}
@@ -57,8 +57,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.URI;
 import java.net.URL;
@@ -145,6 +148,21 @@ VideoSegmenterService, ManagedService {
   /** Default value for the option whether segments numbers depend on track duration */
   public static final boolean DEFAULT_DURATION_DEPENDENT = false;
 
+  /** Name of the constant used to retrieve the option whether FFmpeg is run only once per track */
+  public static final String OPT_SINGLE_PASS = "singlePass";
+
+  /** Default value for the option whether FFmpeg is run only once per track */
+  public static final boolean DEFAULT_SINGLE_PASS = false;
+
+  /** Name of the constant used to retrieve the option whether the scene scores of a track are kept for re-segmentation */
+  public static final String OPT_CACHE_SCENE_SCORES = "cacheSceneScores";
+
+  /** Default value for the option whether the scene scores of a track are kept for re-segmentation */
+  public static final boolean DEFAULT_CACHE_SCENE_SCORES = false;
+
+  /** File extension of cached scene scores in the working file repository */
+  public static final String SCENE_SCORES_EXTENSION = ".scenescores";
+
   /** The load introduced on the system by a segmentation job */
   public static final float DEFAULT_SEGMENTER_JOB_LOAD = 0.3f;
 
@@ -185,6 +203,12 @@ VideoSegmenterService, ManagedService {
   /** The boolean that defines whether segment numbers are interpreted as absolute or relative to track duration */
   protected boolean durationDependent = DEFAULT_DURATION_DEPENDENT;
 
+  /** Whether the scene scores are extracted once and the optimization runs on those instead of invoking FFmpeg again */
+  protected boolean singlePass = DEFAULT_SINGLE_PASS;
+
+  /** Whether extracted scene scores are put into the working file repository to be reused for the same track */
+  protected boolean cacheSceneScores = DEFAULT_CACHE_SCENE_SCORES;
+
   /** Reference to the receipt service */
   protected ServiceRegistry serviceRegistry = null;
 
@@ -309,6 +333,20 @@ VideoSegmenterService, ManagedService {
       }
     }
 
+    // Single FFmpeg pass
+    if (properties.get(OPT_SINGLE_PASS) != null) {
+      String value = (String) properties.get(OPT_SINGLE_PASS);
+      singlePass = Boolean.parseBoolean(value);
+      logger.info("Single pass segmentation is set to {}", singlePass);
+    }
+
+    // Caching of scene scores
+    if (properties.get(OPT_CACHE_SCENE_SCORES) != null) {
+      String value = (String) properties.get(OPT_CACHE_SCENE_SCORES);
+      cacheSceneScores = Boolean.parseBoolean(value);
+      logger.info("Caching of scene scores is set to {}", cacheSceneScores);
+    }
+
     segmenterJobLoad = LoadUtil.getConfiguredLoadValue(properties, SEGMENTER_JOB_LOAD_KEY, DEFAULT_SEGMENTER_JOB_LOAD, serviceRegistry);
   }
 
@@ -413,6 +451,13 @@ VideoSegmenterService, ManagedService {
 
       logger.info("Starting video segmentation of {}", mediaUrl);
 
+      // in single pass mode, FFmpeg is run once to get the scores of all frames that may possibly be selected during
+      // the optimization. The threshold is at most halved in every cycle.
+      SceneScores sceneScores = null;
+      if (singlePass) {
+        float floor = changesThreshold / (float) Math.pow(2, Math.max(maxCycles, 1));
+        sceneScores = getSceneScores(track, mediaFile, floor);
+      }
 
       // optimization loop to get a segmentation with a number of segments close
       // to the desired number of segments
@@ -423,8 +468,14 @@ VideoSegmenterService, ManagedService {
             contentTime, contentLocator);
 
 
-        // run the segmentation with FFmpeg
-        segments = runSegmentationFFmpeg(track, videoContent, mediaFile, changesThresholdLocal);
+        // run the segmentation with FFmpeg or on the extracted scene scores
+        if (sceneScores != null && sceneScores.covers(changesThresholdLocal)) {
+          segments = createSegments(track, videoContent, sceneScores.getChanges(changesThresholdLocal));
+          logger.info("Segmentation of {} with changes threshold {} yields {} segments", mediaUrl,
+                  changesThresholdLocal, segments.size());
+        } else {
+          segments = runSegmentationFFmpeg(track, videoContent, mediaFile, changesThresholdLocal);
+        }
 
 
         // calculate errors for "normal" and filtered segmentation
@@ -655,10 +706,50 @@ VideoSegmenterService, ManagedService {
     // fmt:rgb24 sar:0/1 s:320x240 i:P iskey:1 type:I checksum:8DF39EA9
     // plane_checksum:[8DF39EA9]
 
+    long[] changes = new long[segmentsStrings.size()];
+    int changeCount = 0;
+    Pattern pattern = Pattern.compile("pts_time\\:\\d+(\\.\\d+)?");
+    for (String seginfo : segmentsStrings) {
+      Matcher matcher = pattern.matcher(seginfo);
+      String time = "";
+      while (matcher.find()) {
+        time = matcher.group().substring(9);
+      }
+      if ("".equals(time)) {
+        // continue if the showinfo does not contain any time information. This may happen since the FFmpeg showinfo
+        // filter is used for multiple purposes.
+        continue;
+      }
+      try {
+        changes[changeCount++] = Math.round(Float.parseFloat(time) * 1000);
+      } catch (NumberFormatException e) {
+        logger.error("Unable to parse FFmpeg output, likely FFmpeg version mismatch!", e);
+        throw new VideoSegmenterException(e);
+      }
+    }
+
+    LinkedList<Segment> segments = createSegments(track, videoContent, Arrays.copyOf(changes, changeCount));
+
+   logger.info("Segmentation of {} yields {} segments",
+           mediaFile.toURI().toURL(), segments.size());
+
+    return segments;
+  }
+
+  /**
+   * Creates segments from the times of detected scene changes, skipping changes that follow the previous one too
+   * closely, and adds them to the given videoContent of a catalog.
+   *
+   * @param track the element to analyze
+   * @param videoContent the videoContent of the Mpeg7Catalog that the segments should be added to
+   * @param changes the presentation times of the scene changes in milliseconds, ascending
+   * @return a list of the resulting segments
+   */
+  protected LinkedList<Segment> createSegments(Track track, Video videoContent, long[] changes) {
     int segmentcount = 1;
     LinkedList<Segment> segments = new LinkedList<>();
 
-    if (segmentsStrings.size() == 0) {
+    if (changes.length == 0) {
       Segment s = videoContent.getTemporalDecomposition()
           .createSegment("segment-" + segmentcount);
       s.setMediaTime(new MediaRelTimeImpl(0, track.getDuration()));
@@ -666,24 +757,8 @@ VideoSegmenterService, ManagedService {
     } else {
       long starttime = 0;
       long endtime = 0;
-      Pattern pattern = Pattern.compile("pts_time\\:\\d+(\\.\\d+)?");
-      for (String seginfo : segmentsStrings) {
-        Matcher matcher = pattern.matcher(seginfo);
-        String time = "";
-        while (matcher.find()) {
-          time = matcher.group().substring(9);
-        }
-        if ("".equals(time)) {
-          // continue if the showinfo does not contain any time information. This may happen since the FFmpeg showinfo
-          // filter is used for multiple purposes.
-          continue;
-        }
-        try {
-          endtime = Math.round(Float.parseFloat(time) * 1000);
-        } catch (NumberFormatException e) {
-          logger.error("Unable to parse FFmpeg output, likely FFmpeg version mismatch!", e);
-          throw new VideoSegmenterException(e);
-        }
+      for (long change : changes) {
+        endtime = change;
         long segmentLength = endtime - starttime;
         if (1000 * stabilityThresholdPrefilter < segmentLength) {
           Segment segment = videoContent.getTemporalDecomposition()
@@ -705,12 +780,117 @@ VideoSegmenterService, ManagedService {
       segments.add(s);
     }
 
-   logger.info("Segmentation of {} yields {} segments",
-           mediaFile.toURI().toURL(), segments.size());
-
     return segments;
   }
 
+  /**
+   * Returns the scene scores of a track, either from the working file repository if they have been cached before or
+   * by extracting them with FFmpeg.
+   *
+   * @param track the element to analyze
+   * @param mediaFile the file of the track to analyze
+   * @param floor the lowest changes threshold the scores are needed for
+   * @return the scene scores
+   * @throws IOException
+   * @throws VideoSegmenterException
+   */
+  private SceneScores getSceneScores(Track track, File mediaFile, float floor)
+          throws IOException, VideoSegmenterException {
+    String cacheName = null;
+    if (cacheSceneScores && track.getChecksum() != null) {
+      cacheName = track.getChecksum().getValue() + SCENE_SCORES_EXTENSION;
+      try (InputStream in = workspace.read(workspace.getCollectionURI(COLLECTION_ID, cacheName))) {
+        SceneScores sceneScores = SceneScores.read(in);
+        if (sceneScores.covers(floor)) {
+          logger.info("Using {} cached scene scores of {}", sceneScores.size(), track);
+          return sceneScores;
+        }
+      } catch (NotFoundException e) {
+        logger.debug("No scene scores of {} cached yet", track);
+      } catch (IOException e) {
+        logger.warn("Unable to read cached scene scores of {}: {}", track, e.getMessage());
+      }
+    }
+
+    SceneScores sceneScores = extractSceneScores(mediaFile, floor);
+
+    if (cacheName != null) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      sceneScores.write(out);
+      try (InputStream in = new ByteArrayInputStream(out.toByteArray())) {
+        workspace.putInCollection(COLLECTION_ID, cacheName, in);
+      } catch (IOException e) {
+        logger.warn("Unable to cache scene scores of {}: {}", track, e.getMessage());
+      }
+    }
+    return sceneScores;
+  }
+
+  /**
+   * Runs FFmpeg once to get the scene change scores of all frames whose score exceeds the given floor.
+   *
+   * @param mediaFile the file of the track to analyze
+   * @param floor the value scores have to exceed to be recorded
+   * @return the scene scores
+   * @throws IOException
+   * @throws VideoSegmenterException
+   */
+  private SceneScores extractSceneScores(File mediaFile, float floor) throws IOException, VideoSegmenterException {
+    String[] command = new String[] { binary, "-nostats", "-nostdin", "-i", mediaFile.getAbsolutePath(),
+      "-filter:v", "select=gt(scene\\," + floor + "),metadata=print:key=lavfi.scene_score", "-f", "null", "-"};
+
+    logger.info("Extracting scene scores using command: {}", (Object) command);
+
+    // [Parsed_metadata_1 @ 0x2d7a6c0] frame:12   pts:12      pts_time:12
+    // [Parsed_metadata_1 @ 0x2d7a6c0] lavfi.scene_score=0.215744
+
+    SceneScores sceneScores = new SceneScores(floor);
+    Pattern timePattern = Pattern.compile("pts_time:(\\d+(\\.\\d+)?)");
+    Process process = new ProcessBuilder(command).start();
+    try {
+      try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getErrorStream()))) {
+        String time = null;
+        String line;
+        while ((line = reader.readLine()) != null) {
+          if (!line.startsWith("[Parsed_metadata")) {
+            continue;
+          }
+          Matcher matcher = timePattern.matcher(line);
+          if (matcher.find()) {
+            time = matcher.group(1);
+            continue;
+          }
+          int index = line.indexOf("lavfi.scene_score=");
+          if (index > -1 && time != null) {
+            try {
+              sceneScores.add(Math.round(Float.parseFloat(time) * 1000),
+                      Float.parseFloat(line.substring(index + 18).trim()));
+            } catch (NumberFormatException e) {
+              logger.error("Unable to parse FFmpeg output, likely FFmpeg version mismatch!", e);
+              throw new VideoSegmenterException(e);
+            }
+            time = null;
+          }
+        }
+      }
+
+      // Scores of an aborted run are incomplete and must neither be used nor cached
+      int exitCode = process.waitFor();
+      if (exitCode != 0) {
+        throw new VideoSegmenterException("FFmpeg exited abnormally with status " + exitCode
+                + " while extracting scene scores from " + mediaFile);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new VideoSegmenterException("Interrupted while extracting scene scores from " + mediaFile, e);
+    } finally {
+      process.destroy();
+    }
+
+    logger.info("Extracted {} scene scores above {} from {}", sceneScores.size(), floor, mediaFile);
+    return sceneScores;
+  }
+
   /**
    * {@inheritDoc}
    *
@@ -21,6 +21,7 @@
 
 package org.opencastproject.videosegmenter.ffmpeg;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
@@ -69,6 +70,8 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.InputStream;
@@ -314,6 +317,69 @@ public class VideoSegmenterTest {
     assertTrue("Error of Optimization is too big", error <= vsegmenter1.maxError);
   }
 
+  @Test
+  public void testAnalyzeOptimizationSinglePass() throws Exception {
+    vsegmenter1.singlePass = true;
+    Job receipt = vsegmenter1.segment(track1);
+    JobBarrier jobBarrier = new JobBarrier(null, serviceRegistry1, 1000, receipt);
+    jobBarrier.waitForJobs();
+
+    Catalog catalog = (Catalog) MediaPackageElementParser.getFromXml(receipt.getPayload());
+    Mpeg7Catalog mpeg7 = new Mpeg7CatalogImpl(catalog.getURI().toURL().openStream());
+    assertTrue("Audiovisual content was expected", mpeg7.hasVideoContent());
+
+    MultimediaContentType contentType = mpeg7.multimediaContent().next().elements().next();
+    Iterator<? extends Segment> si = contentType.getTemporalDecomposition().segments();
+    int segmentCounter = 0;
+    for ( ; si.hasNext(); ++segmentCounter) {
+      si.next();
+    }
+    float error = Math.abs((segmentCounter - vsegmenter1.prefNumber) / (float)vsegmenter1.prefNumber);
+    assertTrue("Error of Optimization is too big", error <= vsegmenter1.maxError);
+  }
+
+  @Test
+  public void testAnalyzeSinglePassFailsOnAbnormalExit() throws Exception {
+    // The binary exits with a non-zero status without printing any scores
+    vsegmenter1.binary = "false";
+    vsegmenter1.singlePass = true;
+    Job receipt = vsegmenter1.segment(track1);
+    JobBarrier jobBarrier = new JobBarrier(null, serviceRegistry1, 1000, receipt);
+    assertFalse(jobBarrier.waitForJobs().isSuccess());
+  }
+
+  @Test
+  public void testSceneScores() throws Exception {
+    SceneScores sceneScores = new SceneScores(0.01f);
+    sceneScores.add(1000L, 0.005f);
+    sceneScores.add(2000L, 0.02f);
+    sceneScores.add(3000L, 0.3f);
+    sceneScores.add(4000L, 0.05f);
+    assertEquals("Scores not above the floor should be dropped", 3, sceneScores.size());
+    assertFalse(sceneScores.covers(0.005f));
+    assertTrue(sceneScores.covers(0.01f));
+    assertArrayEquals(new long[] {2000L, 3000L, 4000L}, sceneScores.getChanges(0.01f));
+    assertArrayEquals(new long[] {3000L, 4000L}, sceneScores.getChanges(0.02f));
+    assertArrayEquals(new long[] {3000L}, sceneScores.getChanges(0.1f));
+    assertArrayEquals(new long[0], sceneScores.getChanges(0.5f));
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    sceneScores.write(out);
+    SceneScores read = SceneScores.read(new ByteArrayInputStream(out.toByteArray()));
+    assertEquals(sceneScores.getFloor(), read.getFloor(), 0f);
+    assertEquals(sceneScores.size(), read.size());
+    assertArrayEquals(sceneScores.getChanges(0.02f), read.getChanges(0.02f));
+
+    // segments created from the scores of the second scene change only
+    Mpeg7Catalog mpeg7 = vsegmenter.mpeg7CatalogService.newInstance();
+    Video videoContent = mpeg7.addVideoContent("videosegment", new MediaRelTimeImpl(0, track.getDuration()),
+            new MediaLocatorImpl(track.getURI()));
+    LinkedList<Segment> segments = vsegmenter.createSegments(track, videoContent, sceneScores.getChanges(0.1f));
+    assertEquals(2, segments.size());
+    assertEquals(3000L, segments.getFirst().getMediaTime().getMediaDuration().getDurationInMilliseconds());
+    assertEquals(3000L, segments.getLast().getMediaTime().getMediaTimePoint().getTimeInMilliseconds());
+  }
+
   @Test
   public void testAnalyzeOptimizedList() throws Exception {
     Job receipt = vsegmenter.segment(track);
@@ -53,7 +53,6 @@ import org.slf4j.LoggerFactory;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStreamReader;
@@ -358,13 +357,11 @@ public class WaveformServiceImpl extends AbstractJobProducer implements Waveform
               + "using command\n%s", exitCode, String.join(" ", command)));
 
     // put waveform image into workspace
-    FileInputStream waveformFileInputStream = null;
     URI waveformFileUri;
     try {
-      waveformFileInputStream = new FileInputStream(waveformFilePath);
-      waveformFileUri = workspace.putInCollection(COLLECTION_ID,
-              FilenameUtils.getName(waveformFilePath), waveformFileInputStream);
-      logger.info("Copied the created waveform to the workspace {}", waveformFileUri);
+      waveformFileUri = workspace.moveIntoCollection(COLLECTION_ID,
+              FilenameUtils.getName(waveformFilePath), new File(waveformFilePath));
+      logger.info("Moved the created waveform to the workspace {}", waveformFileUri);
     } catch (FileNotFoundException ex) {
       throw new WaveformServiceException(String.format("Waveform image file '%s' not found", waveformFilePath), ex);
     } catch (IOException ex) {
@@ -373,8 +370,6 @@ public class WaveformServiceImpl extends AbstractJobProducer implements Waveform
     } catch (IllegalArgumentException ex) {
       throw new WaveformServiceException(ex);
     } finally {
-      IoSupport.closeQuietly(waveformFileInputStream);
-      logger.info("Deleted local waveform image file at {}", waveformFilePath);
       FileUtils.deleteQuietly(new File(waveformFilePath));
     }
 
@@ -138,7 +138,7 @@ public class WaveformServiceImplTest {
     EasyMock.expect(workspace.get(EasyMock.anyObject()))
             .andReturn(new File(audioTrack.getURI()));
     Capture<String> filenameCapture = Capture.newInstance();
-    EasyMock.expect(workspace.putInCollection(
+    EasyMock.expect(workspace.moveIntoCollection(
             EasyMock.anyString(), EasyMock.capture(filenameCapture), EasyMock.anyObject()))
             .andReturn(new URI("waveform.png"));
     EasyMock.replay(workspace);
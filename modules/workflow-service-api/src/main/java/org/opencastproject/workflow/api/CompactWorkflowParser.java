@@ -0,0 +1,284 @@
+/**
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+
+package org.opencastproject.workflow.api;
+
+import org.opencastproject.mediapackage.MediaPackage;
+import org.opencastproject.mediapackage.MediaPackageParser;
+import org.opencastproject.workflow.api.WorkflowInstance.WorkflowState;
+import org.opencastproject.workflow.api.WorkflowOperationInstance.OperationState;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Provides a compact representation of workflow instances, used to persist workflows as job payloads.
+ * <p>
+ * The workflow and its operations are written field by field into a versioned binary record, only the mediapackage is
+ * kept as xml. The record is compressed and base64 encoded so it can be stored wherever the xml representation was
+ * stored before. {@link #parseWorkflowInstance(String)} accepts both representations, which allows to migrate existing
+ * xml payloads lazily.
+ */
+public final class CompactWorkflowParser {
+
+  /** Prefix identifying a compact workflow instance */
+  public static final String PREFIX = "workflow-compact:";
+
+  /** The version of the binary record written by {@link #toCompact(WorkflowInstance)} */
+  static final int VERSION = 1;
+
+  /** Disallow instantiating this class */
+  private CompactWorkflowParser() {
+  }
+
+  /**
+   * Returns <code>true</code> if the given payload is a compact workflow instance.
+   *
+   * @param payload
+   *          the payload
+   * @return whether the payload is in the compact representation
+   */
+  public static boolean isCompact(String payload) {
+    return payload != null && payload.startsWith(PREFIX);
+  }
+
+  /**
+   * Loads a workflow instance from either the compact or the xml representation.
+   *
+   * @param payload
+   *          the workflow instance
+   * @return the workflow instance
+   * @throws WorkflowParsingException
+   *           if creating the workflow instance fails
+   */
+  public static WorkflowInstanceImpl parseWorkflowInstance(String payload) throws WorkflowParsingException {
+    if (!isCompact(payload))
+      return WorkflowParser.parseWorkflowInstance(payload);
+
+    byte[] record = Base64.getDecoder().decode(payload.substring(PREFIX.length()));
+    try (DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(record)))) {
+      int version = in.readInt();
+      if (version != VERSION)
+        throw new WorkflowParsingException("Unsupported compact workflow version " + version);
+
+      WorkflowInstanceImpl workflow = new WorkflowInstanceImpl();
+      workflow.setId(in.readLong());
+      String state = readString(in);
+      workflow.setState(state != null ? WorkflowState.valueOf(state) : null);
+      workflow.setTemplate(readString(in));
+      workflow.setTitle(readString(in));
+      workflow.setDescription(readString(in));
+      workflow.setParentId(readLong(in));
+      workflow.setCreatorName(readString(in));
+      workflow.setOrganizationId(readString(in));
+      workflow.configurations = readConfigurations(in);
+
+      int operationCount = in.readInt();
+      List<WorkflowOperationInstance> operations = new ArrayList<>(operationCount);
+      for (int i = 0; i < operationCount; i++) {
+        operations.add(readOperation(in));
+      }
+      workflow.setOperations(operations);
+
+      String mediaPackage = readString(in);
+      if (mediaPackage != null)
+        workflow.setMediaPackage(MediaPackageParser.getFromXml(mediaPackage));
+      return workflow;
+    } catch (WorkflowParsingException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new WorkflowParsingException(e);
+    }
+  }
+
+  /**
+   * Converts a workflow instance into its compact representation.
+   *
+   * @param workflow
+   *          the workflow instance
+   * @return the compact representation
+   * @throws WorkflowParsingException
+   *           if serializing the workflow instance fails
+   */
+  public static String toCompact(WorkflowInstance workflow) throws WorkflowParsingException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(
+            new DeflaterOutputStream(bytes, new Deflater(Deflater.BEST_SPEED), 8192))) {
+      out.writeInt(VERSION);
+      out.writeLong(workflow.getId());
+      writeString(out, workflow.getState() != null ? workflow.getState().name() : null);
+      writeString(out, workflow.getTemplate());
+      writeString(out, workflow.getTitle());
+      writeString(out, workflow.getDescription());
+      writeLong(out, workflow.getParentId());
+      writeString(out, workflow.getCreatorName());
+      writeString(out, workflow.getOrganizationId());
+      writeConfigurations(out, workflow);
+
+      List<WorkflowOperationInstance> operations = workflow.getOperations();
+      out.writeInt(operations.size());
+      for (WorkflowOperationInstance operation : operations) {
+        writeOperation(out, operation);
+      }
+
+      MediaPackage mediaPackage = workflow.getMediaPackage();
+      writeString(out, mediaPackage != null ? MediaPackageParser.getAsXml(mediaPackage) : null);
+    } catch (Exception e) {
+      throw new WorkflowParsingException(e);
+    }
+    return PREFIX + Base64.getEncoder().encodeToString(bytes.toByteArray());
+  }
+
+  private static void writeOperation(DataOutputStream out, WorkflowOperationInstance operation) throws IOException {
+    writeString(out, operation.getTemplate());
+    writeLong(out, operation.getId());
+    writeString(out, operation.getState() != null ? operation.getState().name() : null);
+    writeString(out, operation.getDescription());
+    writeConfigurations(out, operation);
+    writeString(out, operation.getHoldStateUserInterfaceUrl());
+    writeString(out, operation.getHoldActionTitle());
+    out.writeBoolean(operation.isFailWorkflowOnException());
+    writeString(out, operation.getExecutionCondition());
+    writeString(out, operation.getSkipCondition());
+    writeString(out, operation.getExceptionHandlingWorkflow());
+    writeBoolean(out, operation.isAbortable());
+    writeBoolean(out, operation.isContinuable());
+    writeLong(out, operation.getDateStarted() != null ? operation.getDateStarted().getTime() : null);
+    writeLong(out, operation.getDateCompleted() != null ? operation.getDateCompleted().getTime() : null);
+    writeLong(out, operation.getTimeInQueue());
+    out.writeInt(operation.getMaxAttempts());
+    out.writeInt(operation.getFailedAttempts());
+    writeString(out, operation.getExecutionHost());
+    List<Long> history = operation.getExecutionHistory();
+    out.writeInt(history != null ? history.size() : 0);
+    if (history != null) {
+      for (Long jobId : history) {
+        out.writeLong(jobId);
+      }
+    }
+    writeString(out, operation.getRetryStrategy() != null ? operation.getRetryStrategy().name() : null);
+  }
+
+  private static WorkflowOperationInstanceImpl readOperation(DataInputStream in) throws IOException {
+    // Set the fields directly, since some of the setters have side effects
+    WorkflowOperationInstanceImpl operation = new WorkflowOperationInstanceImpl();
+    operation.template = readString(in);
+    operation.jobId = readLong(in);
+    String state = readString(in);
+    operation.state = state != null ? OperationState.valueOf(state) : null;
+    operation.description = readString(in);
+    operation.configurations = readConfigurations(in);
+    operation.holdStateUserInterfaceUrl = readString(in);
+    operation.holdActionTitle = readString(in);
+    operation.failWorkflowOnException = in.readBoolean();
+    operation.executeCondition = readString(in);
+    operation.skipCondition = readString(in);
+    operation.exceptionHandlingWorkflow = readString(in);
+    operation.abortable = readBoolean(in);
+    operation.continuable = readBoolean(in);
+    Long dateStarted = readLong(in);
+    operation.dateStarted = dateStarted != null ? new Date(dateStarted) : null;
+    Long dateCompleted = readLong(in);
+    operation.dateCompleted = dateCompleted != null ? new Date(dateCompleted) : null;
+    operation.timeInQueue = readLong(in);
+    operation.maxAttempts = in.readInt();
+    operation.failedAttempts = in.readInt();
+    operation.executionHost = readString(in);
+    int historySize = in.readInt();
+    for (int i = 0; i < historySize; i++) {
+      operation.executionHistory.add(in.readLong());
+    }
+    String retryStrategy = readString(in);
+    operation.retryStrategy = retryStrategy != null ? RetryStrategy.valueOf(retryStrategy) : null;
+    return operation;
+  }
+
+  private static void writeConfigurations(DataOutputStream out, Configurable configurable) throws IOException {
+    Set<String> keys = configurable.getConfigurationKeys();
+    out.writeInt(keys.size());
+    for (String key : keys) {
+      writeString(out, key);
+      writeString(out, configurable.getConfiguration(key));
+    }
+  }
+
+  private static Set<WorkflowConfiguration> readConfigurations(DataInputStream in) throws IOException {
+    int count = in.readInt();
+    Set<WorkflowConfiguration> configurations = new TreeSet<>();
+    for (int i = 0; i < count; i++) {
+      configurations.add(new WorkflowConfigurationImpl(readString(in), readString(in)));
+    }
+    return configurations;
+  }
+
+  private static void writeString(DataOutputStream out, String value) throws IOException {
+    if (value == null) {
+      out.writeInt(-1);
+      return;
+    }
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    int length = in.readInt();
+    if (length < 0)
+      return null;
+    byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static void writeLong(DataOutputStream out, Long value) throws IOException {
+    out.writeBoolean(value != null);
+    if (value != null)
+      out.writeLong(value);
+  }
+
+  private static Long readLong(DataInputStream in) throws IOException {
+    return in.readBoolean() ? in.readLong() : null;
+  }
+
+  private static void writeBoolean(DataOutputStream out, Boolean value) throws IOException {
+    out.writeByte(value == null ? -1 : value ? 1 : 0);
+  }
+
+  private static Boolean readBoolean(DataInputStream in) throws IOException {
+    byte value = in.readByte();
+    return value < 0 ? null : value > 0;
+  }
+
+}
@@ -35,6 +35,7 @@ import org.opencastproject.assetmanager.api.AssetManager;
 import org.opencastproject.assetmanager.util.WorkflowPropertiesUtil;
 import org.opencastproject.index.rebuild.AbstractIndexProducer;
 import org.opencastproject.index.rebuild.IndexProducer;
+import org.opencastproject.index.rebuild.IndexRebuildContext;
 import org.opencastproject.index.rebuild.IndexRebuildException;
 import org.opencastproject.index.rebuild.IndexRebuildService;
 import org.opencastproject.job.api.Job;
@@ -75,6 +76,7 @@ import org.opencastproject.util.NotFoundException;
 import org.opencastproject.util.ReadinessIndicator;
 import org.opencastproject.util.data.Tuple;
 import org.opencastproject.util.jmx.JmxUtil;
+import org.opencastproject.workflow.api.CompactWorkflowParser;
 import org.opencastproject.workflow.api.ResumableWorkflowOperationHandler;
 import org.opencastproject.workflow.api.RetryStrategy;
 import org.opencastproject.workflow.api.WorkflowDatabaseException;
@@ -188,6 +190,12 @@ public class WorkflowServiceImpl extends AbstractIndexProducer implements Workfl
   /** The default value for {@link #workflowStatsCollect} */
   public static final Boolean DEFAULT_STATS_COLLECT_CONFIG = false;
 
+  /** The configuration key for setting {@link #compactPayload} */
+  public static final String COMPACT_PAYLOAD_CONFIG_KEY = "workflow.payload.compact";
+
+  /** The default value for {@link #compactPayload} */
+  public static final boolean DEFAULT_COMPACT_PAYLOAD_CONFIG = false;
+
   /** Constant value indicating a <code>null</code> parent id */
   private static final String NULL_PARENT_ID = "-";
 
@@ -214,6 +222,9 @@ public class WorkflowServiceImpl extends AbstractIndexProducer implements Workfl
   /** Flag whether to collect JMX statistics */
   protected boolean workflowStatsCollect = DEFAULT_STATS_COLLECT_CONFIG;
 
+  /** Flag whether to persist workflow instances in the compact representation instead of xml */
+  protected boolean compactPayload = DEFAULT_COMPACT_PAYLOAD_CONFIG;
+
   /** The metadata services */
   private SortedSet<MediaPackageMetadataService> metadataServices;
 
@@ -494,7 +505,7 @@ public class WorkflowServiceImpl extends AbstractIndexProducer implements Workfl
         throw new NotFoundException("Workflow '" + id + "' has been deleted");
       }
       if (JOB_TYPE.equals(job.getJobType()) && Operation.START_WORKFLOW.toString().equals(job.getOperation())) {
-        WorkflowInstanceImpl workflow = WorkflowParser.parseWorkflowInstance(job.getPayload());
+        WorkflowInstanceImpl workflow = parsePayload(job.getPayload());
         assertPermission(workflow, Permissions.Action.READ.toString(), job.getOrganization());
         return workflow;
       } else {
@@ -603,7 +614,7 @@ public class WorkflowServiceImpl extends AbstractIndexProducer implements Workfl
       try {
         // Create a new job for this workflow instance
         String workflowDefinitionXml = WorkflowParser.toXml(workflowDefinition);
-        String workflowInstanceXml = WorkflowParser.toXml(workflowInstance);
+        String workflowInstancePayload = toPayload(workflowInstance);
         String mediaPackageXml = MediaPackageParser.getAsXml(sourceMediaPackage);
 
         List<String> arguments = new ArrayList<>();
@@ -618,7 +629,7 @@ public class WorkflowServiceImpl extends AbstractIndexProducer implements Workfl
         }
 
         Job job = serviceRegistry.createJob(JOB_TYPE, Operation.START_WORKFLOW.toString(), arguments,
-                workflowInstanceXml, false, null, WORKFLOW_JOB_LOAD);
+                workflowInstancePayload, false, null, WORKFLOW_JOB_LOAD);
 
         // Have the workflow take on the job's identity
         workflowInstance.setId(job.getId());
@@ -1161,7 +1172,7 @@ public class WorkflowServiceImpl extends AbstractIndexProducer implements Workfl
     try {
       workflowJob = serviceRegistry.getJob(workflowInstanceId);
       workflowJob.setStatus(Status.RUNNING);
-      workflowJob.setPayload(WorkflowParser.toXml(workflowInstance));
+      workflowJob.setPayload(toPayload(workflowInstance));
       serviceRegistry.updateJob(workflowJob);
 
       Job operationJob = serviceRegistry.getJob(operationJobId);
@@ -1271,9 +1282,9 @@ public class WorkflowServiceImpl extends AbstractIndexProducer implements Workfl
 
       // Synchronize the job status with the workflow
       WorkflowState workflowState = workflowInstance.getState();
-      String xml;
+      String payload;
       try {
-        xml = WorkflowParser.toXml(workflowInstance);
+        payload = toPayload(workflowInstance);
       } catch (Exception e) {
         // Can't happen, since we are converting from an in-memory object
         throw new IllegalStateException("In-memory workflow instance could not be serialized", e);
@@ -1282,7 +1293,7 @@ public class WorkflowServiceImpl extends AbstractIndexProducer implements Workfl
       Job job;
       try {
         job = serviceRegistry.getJob(workflowInstance.getId());
-        job.setPayload(xml);
+        job.setPayload(payload);
 
         // Synchronize workflow and job state
         switch (workflowState) {
@@ -1355,7 +1366,8 @@ public class WorkflowServiceImpl extends AbstractIndexProducer implements Workfl
       }
 
       try {
-        WorkflowInstance clone = WorkflowParser.parseWorkflowInstance(WorkflowParser.toXml(workflowInstance));
+        // The payload is a serialized copy of the workflow already, so there is no need to marshal it once more
+        WorkflowInstance clone = parsePayload(payload);
         fireListeners(originalWorkflowInstance, clone);
       } catch (Exception e) {
         // Can't happen, since we are converting from an in-memory object
@@ -1795,7 +1807,7 @@ public class WorkflowServiceImpl extends AbstractIndexProducer implements Workfl
         op = Operation.valueOf(operation);
         switch (op) {
           case START_WORKFLOW:
-            workflowInstance = WorkflowParser.parseWorkflowInstance(job.getPayload());
+            workflowInstance = parsePayload(job.getPayload());
             logger.debug("Starting new workflow %s", workflowInstance);
             runWorkflow(workflowInstance);
             break;
@@ -2182,6 +2194,39 @@ public class WorkflowServiceImpl extends AbstractIndexProducer implements Workfl
         workflowStatsCollect = DEFAULT_STATS_COLLECT_CONFIG;
       }
     }
+
+    String compactPayloadConfiguration = StringUtils.trimToNull((String) properties.get(COMPACT_PAYLOAD_CONFIG_KEY));
+    compactPayload = compactPayloadConfiguration != null
+            ? Boolean.parseBoolean(compactPayloadConfiguration)
+            : DEFAULT_COMPACT_PAYLOAD_CONFIG;
+    logger.info("Workflow instances are persisted as {}", compactPayload ? "compact records" : "xml");
+  }
+
+  /**
+   * Converts a workflow instance into the representation stored as the workflow job's payload.
+   *
+   * @param workflowInstance
+   *          the workflow instance
+   * @return the job payload
+   * @throws WorkflowParsingException
+   *           if serializing the workflow instance fails
+   */
+  protected String toPayload(WorkflowInstance workflowInstance) throws WorkflowParsingException {
+    return compactPayload ? CompactWorkflowParser.toCompact(workflowInstance) : WorkflowParser.toXml(workflowInstance);
+  }
+
+  /**
+   * Loads a workflow instance from a workflow job's payload. Both the compact and the xml representation are accepted,
+   * so payloads written before the compact representation was introduced are migrated on the next update.
+   *
+   * @param payload
+   *          the job payload
+   * @return the workflow instance
+   * @throws WorkflowParsingException
+   *           if creating the workflow instance fails
+   */
+  protected WorkflowInstanceImpl parsePayload(String payload) throws WorkflowParsingException {
+    return CompactWorkflowParser.parseWorkflowInstance(payload);
   }
 
   /**
@@ -2335,6 +2380,12 @@ public class WorkflowServiceImpl extends AbstractIndexProducer implements Workfl
 
   @Override
   public void repopulate(final String indexName) throws IndexRebuildException {
+    repopulate(IndexRebuildContext.sequential(indexName, getService()));
+  }
+
+  @Override
+  public void repopulate(final IndexRebuildContext context) throws IndexRebuildException {
+    final String indexName = context.getIndexName();
     final String startWorkflow = Operation.START_WORKFLOW.toString();
     final int total;
     try {
@@ -2349,6 +2400,7 @@ public class WorkflowServiceImpl extends AbstractIndexProducer implements Workfl
             + indexName.substring(1);
     if (total > 0) {
       logIndexRebuildBegin(logger.getSlf4jLogger(), indexName, total, "workflows");
+      context.setTotal(total);
       int current = 0;
       int offset = 0;
       List<String> workflows;
@@ -2370,7 +2422,7 @@ public class WorkflowServiceImpl extends AbstractIndexProducer implements Workfl
           }
           WorkflowInstance instance;
           try {
-            instance = WorkflowParser.parseWorkflowInstance(workflow);
+            instance = parsePayload(workflow);
           } catch (WorkflowParsingException e) {
             logger.warn("Skipping restore of workflow. Error parsing: {}", workflow, e);
             continue;
@@ -2383,26 +2435,30 @@ public class WorkflowServiceImpl extends AbstractIndexProducer implements Workfl
             continue;
           }
 
-          // get metadata for index update
-          final String dcXml = getEpisodeDublinCoreXml(instance.getMediaPackage());
-
-          // get acl for active workflows.
-          // don't try this for terminated workflows since the ACLs are no longer in the working file repository and
-          // they will be overwritten later in the re-indexing process by ACLs from the asset manager anyway.
-          final AccessControlList accessControlList;
-          if (instance.getState().isTerminated()) {
-            accessControlList = new AccessControlList();
-          } else {
-            accessControlList = authorizationService.getActiveAcl(instance.getMediaPackage()).getA();
-          }
-
-          SecurityUtil.runAs(securityService, organization,
-                  SecurityUtil.createSystemUser(componentContext, organization), () -> {
-                    // Send message to update index item
-                    messageSender.sendObjectMessage(destinationId, MessageSender.DestinationType.Queue,
-                            WorkflowItem.updateInstance(instance, dcXml, accessControlList));
-                  });
-          logIndexRebuildProgress(logger.getSlf4jLogger(), indexName, total, current);
+          // Workflows of the same media package are kept in order since later ones have to win in the index
+          final Organization workflowOrg = organization;
+          context.submit(instance.getMediaPackage().getIdentifier().toString(), Long.toString(instance.getId()), () ->
+              SecurityUtil.runAs(securityService, workflowOrg,
+                  SecurityUtil.createSystemUser(componentContext, workflowOrg), () -> {
+                    // get metadata for index update
+                    final String dcXml = getEpisodeDublinCoreXml(instance.getMediaPackage());
+
+                    // get acl for active workflows.
+                    // don't try this for terminated workflows since the ACLs are no longer in the working file
+                    // repository and they will be overwritten later in the re-indexing process by ACLs from the asset
+                    // manager anyway.
+                    final AccessControlList accessControlList;
+                    if (instance.getState().isTerminated()) {
+                      accessControlList = new AccessControlList();
+                    } else {
+                      accessControlList = authorizationService.getActiveAcl(instance.getMediaPackage()).getA();
+                    }
+
+                    // Update index item
+                    final WorkflowItem update = WorkflowItem.updateInstance(instance, dcXml, accessControlList);
+                    context.write(destinationId, update, () -> messageSender.sendObjectMessage(destinationId,
+                            MessageSender.DestinationType.Queue, update));
+                  }));
         }
       } while (current < total);
     }
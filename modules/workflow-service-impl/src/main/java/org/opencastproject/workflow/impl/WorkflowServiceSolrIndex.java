@@ -45,6 +45,7 @@ import org.opencastproject.serviceregistry.api.ServiceRegistryException;
 import org.opencastproject.solr.SolrServerFactory;
 import org.opencastproject.util.NotFoundException;
 import org.opencastproject.util.SolrUtils;
+import org.opencastproject.workflow.api.CompactWorkflowParser;
 import org.opencastproject.workflow.api.WorkflowDatabaseException;
 import org.opencastproject.workflow.api.WorkflowInstance;
 import org.opencastproject.workflow.api.WorkflowInstance.WorkflowState;
@@ -315,7 +316,7 @@ public class WorkflowServiceSolrIndex implements WorkflowServiceIndex {
         current++;
         WorkflowInstance instance = null;
         try {
-          instance = WorkflowParser.parseWorkflowInstance(payload);
+          instance = CompactWorkflowParser.parseWorkflowInstance(payload);
           Organization organization = orgDirectory.getOrganization(instance.getOrganizationId());
           securityService.setOrganization(organization);
           securityService.setUser(SecurityUtil.createSystemUser(systemUserName, organization));
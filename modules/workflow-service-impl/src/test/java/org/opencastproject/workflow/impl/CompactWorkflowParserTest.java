@@ -0,0 +1,171 @@
+/**
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.workflow.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.opencastproject.mediapackage.MediaPackage;
+import org.opencastproject.mediapackage.MediaPackageBuilderFactory;
+import org.opencastproject.mediapackage.MediaPackageParser;
+import org.opencastproject.workflow.api.CompactWorkflowParser;
+import org.opencastproject.workflow.api.WorkflowDefinition;
+import org.opencastproject.workflow.api.WorkflowInstance;
+import org.opencastproject.workflow.api.WorkflowInstance.WorkflowState;
+import org.opencastproject.workflow.api.WorkflowInstanceImpl;
+import org.opencastproject.workflow.api.WorkflowOperationInstance;
+import org.opencastproject.workflow.api.WorkflowOperationInstance.OperationState;
+import org.opencastproject.workflow.api.WorkflowParser;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class CompactWorkflowParserTest {
+
+  /** The logging facility */
+  private static final Logger logger = LoggerFactory.getLogger(CompactWorkflowParserTest.class);
+
+  private WorkflowInstanceImpl workflow;
+
+  @Before
+  public void setUp() throws Exception {
+    WorkflowDefinition def;
+    try (InputStream in = getClass().getResourceAsStream("/workflow-definition-1.xml")) {
+      def = WorkflowParser.parseWorkflowDefinition(in);
+    }
+    MediaPackage mp;
+    try (InputStream in = getClass().getResourceAsStream("/mediapackage-1.xml")) {
+      mp = MediaPackageBuilderFactory.newInstance().newMediaPackageBuilder().loadFromXml(in);
+    }
+    Map<String, String> props = new HashMap<>();
+    props.put("key1", "value1");
+    props.put("key2", "<value & \"special\" ünïcode>");
+    workflow = new WorkflowInstanceImpl(def, mp, 3L, null, null, props);
+    workflow.setOrganizationId("mh_default_org");
+    workflow.setId(42L);
+    workflow.setState(WorkflowState.RUNNING);
+    workflow.getOperations().get(0).setState(OperationState.SUCCEEDED);
+  }
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    String payload = CompactWorkflowParser.toCompact(workflow);
+    assertTrue(CompactWorkflowParser.isCompact(payload));
+
+    WorkflowInstance parsed = CompactWorkflowParser.parseWorkflowInstance(payload);
+    assertEquals(workflow.getId(), parsed.getId());
+    assertEquals(workflow.getState(), parsed.getState());
+    assertEquals(workflow.getTemplate(), parsed.getTemplate());
+    assertEquals(workflow.getTitle(), parsed.getTitle());
+    assertEquals(workflow.getDescription(), parsed.getDescription());
+    assertEquals(workflow.getParentId(), parsed.getParentId());
+    assertNull(parsed.getCreatorName());
+    assertEquals(workflow.getOrganizationId(), parsed.getOrganizationId());
+    assertEquals("value1", parsed.getConfiguration("key1"));
+    assertEquals(workflow.getConfiguration("key2"), parsed.getConfiguration("key2"));
+    assertEquals(MediaPackageParser.getAsXml(workflow.getMediaPackage()),
+            MediaPackageParser.getAsXml(parsed.getMediaPackage()));
+
+    List<WorkflowOperationInstance> expected = workflow.getOperations();
+    List<WorkflowOperationInstance> actual = parsed.getOperations();
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(expected.get(i).getTemplate(), actual.get(i).getTemplate());
+      assertEquals(expected.get(i).getState(), actual.get(i).getState());
+      assertEquals(expected.get(i).getPosition(), actual.get(i).getPosition());
+      assertEquals(expected.get(i).getDescription(), actual.get(i).getDescription());
+      assertEquals(expected.get(i).getConfigurationKeys(), actual.get(i).getConfigurationKeys());
+      assertEquals(expected.get(i).getExceptionHandlingWorkflow(), actual.get(i).getExceptionHandlingWorkflow());
+      assertEquals(expected.get(i).isFailWorkflowOnException(), actual.get(i).isFailWorkflowOnException());
+    }
+
+    // The current operation is derived from the operation states and must survive the round trip
+    assertEquals(workflow.getCurrentOperation().getPosition(), parsed.getCurrentOperation().getPosition());
+  }
+
+  @Test
+  public void testXmlPayloadIsStillAccepted() throws Exception {
+    String xml = WorkflowParser.toXml(workflow);
+    assertFalse(CompactWorkflowParser.isCompact(xml));
+
+    WorkflowInstance parsed = CompactWorkflowParser.parseWorkflowInstance(xml);
+    assertEquals(workflow.getId(), parsed.getId());
+    assertEquals(workflow.getOperations().size(), parsed.getOperations().size());
+    assertEquals("value1", parsed.getConfiguration("key1"));
+  }
+
+  @Test
+  public void testCompactPayloadIsSmaller() throws Exception {
+    String xml = WorkflowParser.toXml(workflow);
+    String compact = CompactWorkflowParser.toCompact(workflow);
+    assertTrue(compact.length() < xml.length());
+  }
+
+  /**
+   * Compares the time a round trip through the XML and the compact payload takes and logs the results. This takes a
+   * while and is therefore only run if the system property <code>workflowPayloadBenchmark</code> is set to true.
+   */
+  @Test
+  public void testPayloadRoundTripBenchmark() throws Exception {
+    Assume.assumeTrue(Boolean.getBoolean("workflowPayloadBenchmark"));
+    final int warmup = 500;
+    final int runs = 2000;
+    final long xmlNanos = measureXml(warmup, runs);
+    final long compactNanos = measureCompact(warmup, runs);
+    logger.info("Workflow payload: xml {} chars / {} µs per round trip, compact {} chars / {} µs per round trip",
+            WorkflowParser.toXml(workflow).length(), xmlNanos / runs / 1000,
+            CompactWorkflowParser.toCompact(workflow).length(), compactNanos / runs / 1000);
+  }
+
+  private long measureXml(int warmup, int runs) throws Exception {
+    for (int i = 0; i < warmup; i++) {
+      WorkflowParser.parseWorkflowInstance(WorkflowParser.toXml(workflow));
+    }
+    final long start = System.nanoTime();
+    for (int i = 0; i < runs; i++) {
+      WorkflowParser.parseWorkflowInstance(WorkflowParser.toXml(workflow));
+    }
+    return System.nanoTime() - start;
+  }
+
+  private long measureCompact(int warmup, int runs) throws Exception {
+    for (int i = 0; i < warmup; i++) {
+      CompactWorkflowParser.parseWorkflowInstance(CompactWorkflowParser.toCompact(workflow));
+    }
+    final long start = System.nanoTime();
+    for (int i = 0; i < runs; i++) {
+      CompactWorkflowParser.parseWorkflowInstance(CompactWorkflowParser.toCompact(workflow));
+    }
+    return System.nanoTime() - start;
+  }
+
+}
@@ -24,9 +24,12 @@ package org.opencastproject.workingfilerepository.api;
 import org.opencastproject.storage.StorageUsage;
 import org.opencastproject.util.NotFoundException;
 
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
+import java.nio.file.Files;
 
 /**
  * The Working File Repository is a file storage service that supports the lecture capture system. It may be used by
@@ -161,6 +164,30 @@ public interface WorkingFileRepository extends StorageUsage {
    */
   URI putInCollection(String collectionId, String fileName, InputStream in) throws IOException;
 
+  /**
+   * Moves a local file into a collection, overwriting the existing file if present. Implementations having access to
+   * the file system of the file should rename or hard link it instead of copying its content. The file does not exist
+   * at its original location afterwards.
+   *
+   * @param collectionId
+   *          The collection identifier
+   * @param fileName
+   *          The filename to use in storing the file
+   * @param file
+   *          the file to store
+   * @return The URI identifying the file
+   * @throws IOException
+   *           if the file cannot be read or cannot be written to the repository
+   */
+  default URI moveIntoCollection(String collectionId, String fileName, File file) throws IOException {
+    final URI uri;
+    try (InputStream in = new FileInputStream(file)) {
+      uri = putInCollection(collectionId, fileName, in);
+    }
+    Files.deleteIfExists(file.toPath());
+    return uri;
+  }
+
   /**
    * Gets the URIs of the members of this collection
    *
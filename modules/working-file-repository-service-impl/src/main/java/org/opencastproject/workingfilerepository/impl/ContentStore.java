@@ -0,0 +1,283 @@
+/**
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.workingfilerepository.impl;
+
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Content addressed storage for the working file repository.
+ * <p>
+ * Every distinct content is stored exactly once as a blob named after its md5 digest. The files in the media package
+ * and collection directories are hard links to these blobs, so storing the same content again or copying it to another
+ * media package neither costs disk space nor I/O. Since all references to a blob are hard links to the same inode, the
+ * link count of the blob is its reference count: a blob with a link count of one is no longer referenced and is
+ * removed.
+ * <p>
+ * The store requires a file system that supports hard links and exposes the link count, see {@link #create(File)}.
+ */
+final class ContentStore {
+
+  /** The logger */
+  private static final Logger logger = LoggerFactory.getLogger(ContentStore.class);
+
+  /** The name of the directory containing the blobs, relative to the working file repository root */
+  static final String BLOBS_DIRECTORY = "blobs";
+
+  /** The name of the directory for incoming content, relative to the blobs directory */
+  private static final String INCOMING_DIRECTORY = "incoming";
+
+  /** The file attribute holding the number of hard links to a file */
+  private static final String LINK_COUNT_ATTRIBUTE = "unix:nlink";
+
+  /** Incoming files older than this are considered left overs of an interrupted upload */
+  private static final long STALE_INCOMING_MILLIS = 24L * 3600L * 1000L;
+
+  /** The directory containing the blobs */
+  private final File blobsDirectory;
+
+  /** The directory for incoming content */
+  private final File incomingDirectory;
+
+  private ContentStore(File blobsDirectory) {
+    this.blobsDirectory = blobsDirectory;
+    this.incomingDirectory = new File(blobsDirectory, INCOMING_DIRECTORY);
+  }
+
+  /**
+   * Creates a content store underneath the given working file repository root directory.
+   *
+   * @param rootDirectory
+   *          the working file repository root directory
+   * @return the content store or <code>null</code> if the file system doesn't support hard links or doesn't expose the
+   *         link count
+   * @throws IOException
+   *           if the blobs directory can't be created
+   */
+  static ContentStore create(File rootDirectory) throws IOException {
+    ContentStore store = new ContentStore(new File(rootDirectory, BLOBS_DIRECTORY));
+    FileUtils.forceMkdir(store.incomingDirectory);
+
+    // Make sure hard links work and the link count can be read
+    Path probe = Files.createTempFile(store.incomingDirectory.toPath(), "probe", ".tmp");
+    Path link = probe.resolveSibling(probe.getFileName() + ".link");
+    try {
+      Files.createLink(link, probe);
+      if (linkCount(probe) != 2)
+        throw new IOException("Unexpected link count");
+      return store;
+    } catch (IOException | UnsupportedOperationException | IllegalArgumentException | SecurityException e) {
+      logger.warn("The file system at {} does not support hard links with link counts: {}", rootDirectory,
+              e.getMessage());
+      return null;
+    } finally {
+      Files.deleteIfExists(link);
+      Files.deleteIfExists(probe);
+    }
+  }
+
+  /**
+   * Creates a new file for incoming content. The file is located on the same file system as the blobs, pass it to
+   * {@link #store(File, String, File)} once the content has been written.
+   *
+   * @return the new empty file
+   * @throws IOException
+   *           if the file can't be created
+   */
+  File createIncomingFile() throws IOException {
+    FileUtils.forceMkdir(incomingDirectory);
+    return File.createTempFile("content", ".tmp", incomingDirectory);
+  }
+
+  /**
+   * Stores the content of an incoming file and links it to the given target. If a blob with the same digest exists
+   * already, the incoming file is discarded and the existing blob is linked instead. The incoming file is removed in
+   * any case.
+   *
+   * @param incoming
+   *          the incoming file
+   * @param md5
+   *          the md5 digest of the incoming file
+   * @param target
+   *          the file to link the content to, must not exist
+   * @return <code>true</code> if the content was stored already
+   * @throws IOException
+   *           if the content can't be stored or linked
+   */
+  boolean store(File incoming, String md5, File target) throws IOException {
+    Path blob = getBlob(md5).toPath();
+    try {
+      // Try to reference an existing blob first. Don't delete the incoming file before this succeeded, since the blob
+      // may have been garbage collected in the meantime.
+      if (Files.exists(blob)) {
+        try {
+          Files.createLink(target.toPath(), blob);
+          logger.debug("Content of {} is already stored as {}", target, blob);
+          return true;
+        } catch (NoSuchFileException e) {
+          logger.debug("Blob {} disappeared while linking it, storing it again", blob);
+        }
+      }
+      Files.createDirectories(blob.getParent());
+      Files.createLink(target.toPath(), incoming.toPath());
+      try {
+        Files.move(incoming.toPath(), blob, StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(incoming.toPath(), blob, StandardCopyOption.REPLACE_EXISTING);
+      }
+      return false;
+    } finally {
+      Files.deleteIfExists(incoming.toPath());
+    }
+  }
+
+
+  /**
+   * Removes the blob with the given digest if it is not referenced any longer.
+   *
+   * @param md5
+   *          the md5 digest
+   * @return <code>true</code> if the blob was removed
+   */
+  boolean release(String md5) {
+    if (md5 == null)
+      return false;
+    Path blob = getBlob(md5).toPath();
+    try {
+      if (linkCount(blob) > 1)
+        return false;
+      Files.deleteIfExists(blob);
+      logger.debug("Removed unreferenced blob {}", blob);
+      return true;
+    } catch (NoSuchFileException e) {
+      return false;
+    } catch (IOException e) {
+      logger.warn("Unable to release blob {}: {}", blob, e.getMessage());
+      return false;
+    }
+  }
+
+  /**
+   * Removes all blobs that are no longer referenced as well as stale incoming files. This catches blobs whose last
+   * reference has been removed without going through the repository.
+   *
+   * @return the number of removed blobs
+   */
+  int collectGarbage() {
+    int removed = 0;
+    File[] prefixes = blobsDirectory.listFiles();
+    if (prefixes == null)
+      return 0;
+    for (File prefix : prefixes) {
+      if (!prefix.isDirectory())
+        continue;
+      if (INCOMING_DIRECTORY.equals(prefix.getName())) {
+        long reference = System.currentTimeMillis() - STALE_INCOMING_MILLIS;
+        File[] incoming = prefix.listFiles();
+        for (int i = 0; incoming != null && i < incoming.length; i++) {
+          if (incoming[i].lastModified() < reference)
+            FileUtils.deleteQuietly(incoming[i]);
+        }
+        continue;
+      }
+      try (DirectoryStream<Path> blobs = Files.newDirectoryStream(prefix.toPath())) {
+        for (Path blob : blobs) {
+          if (release(blob.getFileName().toString()))
+            removed++;
+        }
+      } catch (IOException e) {
+        logger.warn("Unable to collect garbage in {}: {}", prefix, e.getMessage());
+      }
+    }
+    if (removed > 0)
+      logger.info("Removed {} unreferenced blobs from {}", removed, blobsDirectory);
+    return removed;
+  }
+
+  /**
+   * Returns the blob for the given digest. The blobs are spread over subdirectories named after the first two
+   * characters of the digest to keep the directories reasonably small.
+   *
+   * @param md5
+   *          the md5 digest
+   * @return the blob, which may not exist
+   */
+  File getBlob(String md5) {
+    if (md5.length() < 3 || md5.indexOf(File.separatorChar) > -1 || md5.contains(".."))
+      throw new IllegalArgumentException("Invalid digest " + md5);
+    return new File(new File(blobsDirectory, md5.substring(0, 2)), md5);
+  }
+
+  /**
+   * Returns the size of the given directory, counting files that are hard linked more than once only once.
+   *
+   * @param directory
+   *          the directory
+   * @return the size in bytes
+   */
+  static long sizeOf(File directory) {
+    final Set<Object> seen = new HashSet<>();
+    final long[] size = new long[1];
+    try {
+      Files.walkFileTree(directory.toPath(), new SimpleFileVisitor<Path>() {
+        @Override
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+          Object key = attrs.fileKey();
+          if (key == null || seen.add(key))
+            size[0] += attrs.size();
+          return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFileFailed(Path file, IOException e) {
+          return FileVisitResult.CONTINUE;
+        }
+      });
+    } catch (IOException e) {
+      logger.warn("Unable to determine the size of {}: {}", directory, e.getMessage());
+    }
+    return size[0];
+  }
+
+  /**
+   * Returns the number of hard links to the given file.
+   */
+  private static int linkCount(Path path) throws IOException {
+    return ((Number) Files.getAttribute(path, LINK_COUNT_ATTRIBUTE)).intValue();
+  }
+
+}
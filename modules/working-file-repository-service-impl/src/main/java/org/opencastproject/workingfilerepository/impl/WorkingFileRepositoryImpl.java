@@ -40,6 +40,7 @@ import org.opencastproject.workingfilerepository.jmx.WorkingFileRepositoryBean;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.BooleanUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.osgi.service.component.ComponentContext;
 import org.slf4j.Logger;
@@ -47,10 +48,12 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.file.AtomicMoveNotSupportedException;
@@ -61,6 +64,7 @@ import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Date;
 import java.util.Map;
+import java.util.UUID;
 
 import javax.management.ObjectInstance;
 
@@ -83,6 +87,9 @@ public class WorkingFileRepositoryImpl implements WorkingFileRepository, PathMap
     }
   };
 
+  /** Configuration key for enabling the content addressed, deduplicating storage */
+  public static final String DEDUPLICATION_CONFIG_KEY = "org.opencastproject.file.repo.deduplicate";
+
   /** Working file repository JMX type */
   private static final String JMX_WORKING_FILE_REPOSITORY_TYPE = "WorkingFileRepository";
 
@@ -107,6 +114,9 @@ public class WorkingFileRepositoryImpl implements WorkingFileRepository, PathMap
   /** The security service to get current organization from */
   protected SecurityService securityService;
 
+  /** The content addressed storage, <code>null</code> if deduplication is disabled */
+  protected ContentStore contentStore = null;
+
   /**
    * Activate the component
    */
@@ -139,6 +149,17 @@ public class WorkingFileRepositoryImpl implements WorkingFileRepository, PathMap
       throw e;
     }
 
+    // content addressed storage
+    if (BooleanUtils.toBoolean(StringUtils.trimToNull(cc.getBundleContext().getProperty(DEDUPLICATION_CONFIG_KEY)))) {
+      contentStore = ContentStore.create(new File(rootDirectory));
+      if (contentStore != null) {
+        logger.info("Storing files in the working file repository deduplicated by their content");
+        contentStore.collectGarbage();
+      } else {
+        logger.warn("Deduplication of files in the working file repository has been disabled");
+      }
+    }
+
     registeredMXBean = JmxUtil.registerMXBean(workingFileRepositoryBean, JMX_WORKING_FILE_REPOSITORY_TYPE);
 
     logger.info(getDiskSpace());
@@ -160,6 +181,7 @@ public class WorkingFileRepositoryImpl implements WorkingFileRepository, PathMap
     File f;
     try {
       f = getFile(mediaPackageID, mediaPackageElementID);
+      String md5 = readMd5(getMd5File(f));
 
       File parentDirectory = f.getParentFile();
       logger.debug("Attempting to delete {}", parentDirectory.getAbsolutePath());
@@ -167,6 +189,7 @@ public class WorkingFileRepositoryImpl implements WorkingFileRepository, PathMap
       File parentsParentDirectory = parentDirectory.getParentFile();
       if (parentsParentDirectory.isDirectory() && parentsParentDirectory.list().length == 0)
         FileUtils.forceDelete(parentDirectory.getParentFile());
+      release(md5);
       return true;
     } catch (NotFoundException e) {
       log.info("Unable to delete non existing media package element {}@{}", mediaPackageElementID, mediaPackageID);
@@ -281,6 +304,17 @@ public class WorkingFileRepositoryImpl implements WorkingFileRepository, PathMap
       logger.debug("Adding file {}", f.getAbsolutePath());
     }
 
+    if (contentStore != null) {
+      try {
+        putDeduplicated(f, in);
+      } catch (IOException e) {
+        FileUtils.deleteQuietly(dir);
+        throw e;
+      }
+      deleteOtherFiles(filesToDelete, f, md5File);
+      return getURI(mediaPackageID, mediaPackageElementID, filename);
+    }
+
     FileOutputStream out = null;
     try {
 
@@ -333,18 +367,189 @@ public class WorkingFileRepositoryImpl implements WorkingFileRepository, PathMap
     }
 
     // Clean up any other files
-    if (filesToDelete != null && filesToDelete.length > 0) {
-      for (File fileToDelete : filesToDelete) {
-        if (!fileToDelete.equals(f) && !fileToDelete.equals(md5File)) {
-          logger.trace("delete {}", fileToDelete.getAbsolutePath());
-          if (!fileToDelete.delete()) {
-            throw new IllegalStateException("Unable to delete file: " + fileToDelete.getAbsolutePath());
-          }
+    deleteOtherFiles(filesToDelete, f, md5File);
+
+    return getURI(mediaPackageID, mediaPackageElementID, filename);
+  }
+
+  /**
+   * Deletes the files that have been found in an element directory before a new file was put, except for the new file
+   * and its md5 file.
+   *
+   * @param filesToDelete
+   *         the files found in the directory, may be <code>null</code>
+   * @param f
+   *         the new file
+   * @param md5File
+   *         the md5 file of the new file
+   */
+  private void deleteOtherFiles(File[] filesToDelete, File f, File md5File) {
+    if (filesToDelete == null || filesToDelete.length == 0)
+      return;
+    for (File fileToDelete : filesToDelete) {
+      if (!fileToDelete.equals(f) && !fileToDelete.equals(md5File)) {
+        String md5 = fileToDelete.getName().endsWith(MD5_EXTENSION) ? readMd5(fileToDelete) : null;
+        logger.trace("delete {}", fileToDelete.getAbsolutePath());
+        if (!fileToDelete.delete()) {
+          throw new IllegalStateException("Unable to delete file: " + fileToDelete.getAbsolutePath());
         }
+        release(md5);
       }
     }
+  }
 
-    return getURI(mediaPackageID, mediaPackageElementID, filename);
+  /**
+   * Stores the content of the input stream in the content store and links it to the given file. Existing content is
+   * replaced atomically, and its blob is released if it isn't referenced any more.
+   *
+   * @param f
+   *         the file in the working file repository
+   * @param in
+   *         the content, which is closed in any case
+   * @throws IOException
+   *         if storing the content fails
+   */
+  private void putDeduplicated(File f, InputStream in) throws IOException {
+    File incoming = null;
+    try {
+      // Write the content to the content store's incoming directory while calculating its hash
+      incoming = contentStore.createIncomingFile();
+      MessageDigest messageDigest = DigestUtils.getMd5Digest();
+      try (OutputStream out = new FileOutputStream(incoming)) {
+        IOUtils.copy(new DigestInputStream(in, messageDigest), out);
+      }
+      storeDeduplicated(f, incoming, Checksum.convertToHex(messageDigest.digest()));
+    } finally {
+      IOUtils.closeQuietly(in);
+      FileUtils.deleteQuietly(incoming);
+    }
+  }
+
+  /**
+   * Stores an incoming file of the content store and links it to the given file. Existing content is replaced
+   * atomically, and its blob is released if it isn't referenced any more.
+   *
+   * @param f
+   *         the file in the working file repository
+   * @param incoming
+   *         the incoming file, see {@link ContentStore#createIncomingFile()}
+   * @param md5
+   *         the md5 hash of the incoming file
+   * @throws IOException
+   *         if storing the content fails
+   */
+  private void storeDeduplicated(File f, File incoming, String md5) throws IOException {
+    File dir = f.getParentFile();
+    File md5File = getMd5File(f);
+    String previousMd5 = readMd5(md5File);
+
+    File fTmp = null;
+    File md5FileTmp = null;
+    try {
+      // Link the blob and the hash next to the final files
+      fTmp = new File(dir, f.getName() + "." + UUID.randomUUID() + ".tmp");
+      md5FileTmp = File.createTempFile(md5File.getName(), ".tmp", dir);
+      FileUtils.writeStringToFile(md5FileTmp, md5);
+      if (contentStore.store(incoming, md5, fTmp))
+        logger.debug("File {} has been deduplicated", f.getAbsolutePath());
+
+      replace(md5FileTmp, md5File, fTmp, f);
+
+      if (previousMd5 != null && !previousMd5.equals(md5))
+        release(previousMd5);
+    } finally {
+      FileUtils.deleteQuietly(fTmp);
+      FileUtils.deleteQuietly(md5FileTmp);
+    }
+  }
+
+  /**
+   * Renames temporary files to the final version, atomically if the file system supports it.
+   *
+   * @param md5FileTmp
+   *         the temporary md5 file
+   * @param md5File
+   *         the md5 file
+   * @param fTmp
+   *         the temporary file
+   * @param f
+   *         the file
+   * @throws IOException
+   *         if renaming fails
+   */
+  private static void replace(File md5FileTmp, File md5File, File fTmp, File f) throws IOException {
+    try {
+      Files.move(md5FileTmp.toPath(), md5File.toPath(), StandardCopyOption.ATOMIC_MOVE);
+      Files.move(fTmp.toPath(), f.toPath(), StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException e) {
+      logger.trace("Atomic move not supported by this filesystem: using replace instead");
+      Files.move(md5FileTmp.toPath(), md5File.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      Files.move(fTmp.toPath(), f.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  /**
+   * Moves a file and returns its md5 hash. If both files are located on the same file system, the file is renamed and
+   * only read once to calculate the hash. Otherwise, the hash is calculated while copying the file.
+   *
+   * @param source
+   *         the file to move
+   * @param target
+   *         the new location of the file, which is overwritten if it exists
+   * @return the md5 hash
+   * @throws IOException
+   *         if moving the file fails
+   */
+  private static String move(File source, File target) throws IOException {
+    try {
+      Files.move(source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+      try (InputStream in = new FileInputStream(target)) {
+        return DigestUtils.md5Hex(in);
+      }
+    } catch (AtomicMoveNotSupportedException e) {
+      logger.debug("Unable to rename {} to {}, copying it instead", source, target);
+    }
+    MessageDigest messageDigest = DigestUtils.getMd5Digest();
+    try (InputStream in = new DigestInputStream(new FileInputStream(source), messageDigest);
+         OutputStream out = new FileOutputStream(target)) {
+      IOUtils.copy(in, out);
+    }
+    Files.delete(source.toPath());
+    return Checksum.convertToHex(messageDigest.digest());
+  }
+
+  /**
+   * Reads the hash from an md5 file.
+   *
+   * @param md5File
+   *         the md5 file
+   * @return the hash or <code>null</code> if the file doesn't exist or can't be read
+   */
+  private String readMd5(File md5File) {
+    if (!md5File.isFile())
+      return null;
+    try {
+      return StringUtils.trimToNull(FileUtils.readFileToString(md5File, "utf-8"));
+    } catch (IOException e) {
+      logger.debug("Unable to read hash from {}", md5File);
+      return null;
+    }
+  }
+
+  /**
+   * Releases the content with the given hash from the content store, if deduplication is enabled.
+   *
+   * @param md5
+   *         the md5 hash, may be <code>null</code>
+   */
+  private void release(String md5) {
+    if (contentStore != null && md5 != null) {
+      try {
+        contentStore.release(md5);
+      } catch (IllegalArgumentException e) {
+        logger.debug("Not releasing content with invalid hash {}", md5);
+      }
+    }
   }
 
   /**
@@ -561,6 +766,11 @@ public class WorkingFileRepositoryImpl implements WorkingFileRepository, PathMap
     File f = new File(PathSupport.concat(new String[]{rootDirectory, COLLECTION_PATH_PREFIX, collectionId,
             PathSupport.toSafeName(fileName)}));
     logger.debug("Attempting to write a file to {}", f.getAbsolutePath());
+    if (contentStore != null) {
+      getCollectionDirectory(collectionId, true);
+      putDeduplicated(f, in);
+      return getCollectionURI(collectionId, fileName);
+    }
     FileOutputStream out = null;
     try {
       if (!f.exists()) {
@@ -610,6 +820,51 @@ public class WorkingFileRepositoryImpl implements WorkingFileRepository, PathMap
     return getCollectionURI(collectionId, fileName);
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * The file is renamed into the repository if possible. With deduplication enabled, it becomes the blob of its content
+   * or is discarded in favor of an existing blob with the same content.
+   *
+   * @see org.opencastproject.workingfilerepository.api.WorkingFileRepository#moveIntoCollection(java.lang.String,
+   * java.lang.String, java.io.File)
+   */
+  @Override
+  public URI moveIntoCollection(String collectionId, String fileName, File file) throws IOException {
+    checkPathSafe(collectionId);
+    checkPathSafe(fileName);
+    if (!file.isFile())
+      throw new FileNotFoundException(file.toString());
+    File dir = getCollectionDirectory(collectionId, true);
+    File f = new File(dir, PathSupport.toSafeName(fileName));
+    logger.debug("Attempting to move {} to {}", file, f.getAbsolutePath());
+
+    if (contentStore != null) {
+      File incoming = contentStore.createIncomingFile();
+      try {
+        Files.delete(incoming.toPath());
+        storeDeduplicated(f, incoming, move(file, incoming));
+      } finally {
+        FileUtils.deleteQuietly(incoming);
+      }
+      return getCollectionURI(collectionId, fileName);
+    }
+
+    File md5File = getMd5File(f);
+    File fTmp = new File(dir, f.getName() + "." + UUID.randomUUID() + ".tmp");
+    File md5FileTmp = null;
+    try {
+      String md5 = move(file, fTmp);
+      md5FileTmp = File.createTempFile(md5File.getName(), ".tmp", dir);
+      FileUtils.writeStringToFile(md5FileTmp, md5);
+      replace(md5FileTmp, md5File, fTmp, f);
+    } finally {
+      FileUtils.deleteQuietly(fTmp);
+      FileUtils.deleteQuietly(md5FileTmp);
+    }
+    return getCollectionURI(collectionId, fileName);
+  }
+
   public URI copyTo(String fromCollection, String fromFileName, String toMediaPackage, String toMediaPackageElement,
                     String toFileName) throws NotFoundException, IOException {
     File source = getFileFromCollection(fromCollection, fromFileName);
@@ -628,8 +883,14 @@ public class WorkingFileRepositoryImpl implements WorkingFileRepository, PathMap
     File destFile;
     try {
       destFile = new File(destDir, PathSupport.toSafeName(toFileName));
+      // With deduplication enabled, the link references the same blob as the source
       FileSupport.link(source, destFile);
-      createMd5(destFile);
+      // The content is the same, so there is no need to hash it again
+      File sourceMd5 = getMd5File(source);
+      if (sourceMd5.isFile())
+        FileUtils.copyFile(sourceMd5, getMd5File(destFile));
+      else
+        createMd5(destFile);
     } catch (Exception e) {
       FileUtils.deleteDirectory(destDir);
     }
@@ -696,6 +957,7 @@ public class WorkingFileRepositoryImpl implements WorkingFileRepository, PathMap
       return false;
     }
     File md5File = getMd5File(f);
+    String md5 = readMd5(md5File);
 
     if (!f.isFile())
       throw new IllegalStateException(f + " is not a regular file");
@@ -705,6 +967,7 @@ public class WorkingFileRepositoryImpl implements WorkingFileRepository, PathMap
       throw new IOException("MD5 hash " + md5File + " cannot be deleted");
     if (!f.delete())
       throw new IOException(f + " cannot be deleted");
+    release(md5);
 
     if (removeCollection) {
       File parentDirectory = f.getParentFile();
@@ -844,6 +1107,8 @@ public class WorkingFileRepositoryImpl implements WorkingFileRepository, PathMap
    */
   @Override
   public Option<Long> getUsedSpace() {
+    if (contentStore != null)
+      return Option.some(ContentStore.sizeOf(new File(rootDirectory)));
     return Option.some(FileUtils.sizeOfDirectory(new File(rootDirectory)));
   }
 
@@ -880,7 +1145,10 @@ public class WorkingFileRepositoryImpl implements WorkingFileRepository, PathMap
 
     long referenceTime = System.currentTimeMillis() - days * 24 * 3600 * 1000;
     for (File f : colDir.listFiles()) {
-      long lastModified = f.lastModified();
+      // md5 files are removed together with their file
+      if (f.getName().endsWith(MD5_EXTENSION))
+        continue;
+      long lastModified = getStoredTime(f);
       logger.trace("{} last modified: {}, reference date: {}",
               f.getName(), new Date(lastModified), new Date(referenceTime));
       if (lastModified <= referenceTime) {
@@ -893,6 +1161,21 @@ public class WorkingFileRepositoryImpl implements WorkingFileRepository, PathMap
     return true;
   }
 
+  /**
+   * Returns the time a file has been stored in the repository. A deduplicated file is a hard link to a blob which keeps
+   * the modification time of the first upload of its content, so the time its md5 file has been written is used.
+   *
+   * @param f
+   *          the file
+   * @return the time the file has been stored
+   */
+  private long getStoredTime(File f) {
+    File md5File = getMd5File(f);
+    if (md5File.isFile())
+      return md5File.lastModified();
+    return f.lastModified();
+  }
+
   /**
    * {@inheritDoc}
    *
@@ -30,15 +30,20 @@ import org.opencastproject.systems.OpencastConstants;
 import org.opencastproject.util.NotFoundException;
 import org.opencastproject.util.UrlSupport;
 
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.easymock.EasyMock;
 import org.junit.After;
+import org.junit.Assume;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
@@ -247,4 +252,128 @@ public class WorkingFileRepositoryTest {
     Assert.assertFalse(result);
   }
 
+  @Test
+  public void testDeduplication() throws Exception {
+    repo.contentStore = ContentStore.create(new File(repo.rootDirectory));
+    Assume.assumeNotNull(repo.contentStore);
+
+    InputStream in = null;
+    try {
+      in = getClass().getClassLoader().getResourceAsStream("opencast_header.gif");
+      repo.put("mp-1", "element-1", "header.gif", in);
+      in = getClass().getClassLoader().getResourceAsStream("opencast_header.gif");
+      repo.put("mp-2", "element-2", "other.gif", in);
+      in = getClass().getClassLoader().getResourceAsStream("opencast_header.gif");
+      repo.putInCollection(collectionId, "dedup.gif", in);
+    } finally {
+      IOUtils.closeQuietly(in);
+    }
+    repo.copyTo(collectionId, "dedup.gif", "mp-3", "element-3", "copy.gif");
+
+    // All files reference the same blob
+    File blob = repo.contentStore.getBlob(repo.getMediaPackageElementDigest("mp-1", "element-1"));
+    Assert.assertTrue(blob.isFile());
+    for (File f : Arrays.asList(repo.getFile("mp-1", "element-1"), repo.getFile("mp-2", "element-2"),
+            repo.getFile("mp-3", "element-3"), repo.getFileFromCollection(collectionId, "dedup.gif"))) {
+      Assert.assertTrue(Files.isSameFile(blob.toPath(), f.toPath()));
+    }
+
+    // The blob is removed together with its last reference
+    repo.delete("mp-1", "element-1");
+    repo.delete("mp-2", "element-2");
+    repo.deleteFromCollection(collectionId, "dedup.gif");
+    Assert.assertTrue(blob.isFile());
+    repo.delete("mp-3", "element-3");
+    Assert.assertFalse(blob.exists());
+  }
+
+  @Test
+  public void testCleanupDeduplicatedCollection() throws Exception {
+    repo.contentStore = ContentStore.create(new File(repo.rootDirectory));
+    Assume.assumeNotNull(repo.contentStore);
+
+    repo.putInCollection(collectionId, "old.txt", new ByteArrayInputStream("content".getBytes("UTF-8")));
+    File old = repo.getFileFromCollection(collectionId, "old.txt");
+    long tenDaysAgo = System.currentTimeMillis() - 10L * 24 * 3600 * 1000;
+    Assert.assertTrue(old.setLastModified(tenDaysAgo));
+    Assert.assertTrue(new File(old.getParentFile(), "old.txt" + WorkingFileRepositoryImpl.MD5_EXTENSION)
+            .setLastModified(tenDaysAgo));
+
+    // The new file links to the blob of the old one and shares its modification time
+    repo.putInCollection(collectionId, "new.txt", new ByteArrayInputStream("content".getBytes("UTF-8")));
+    File current = repo.getFileFromCollection(collectionId, "new.txt");
+    Assert.assertTrue(Files.isSameFile(old.toPath(), current.toPath()));
+    Assert.assertEquals(tenDaysAgo / 1000, current.lastModified() / 1000);
+
+    Assert.assertTrue(repo.cleanupOldFilesFromCollection(collectionId, 1));
+    Assert.assertFalse(old.exists());
+    Assert.assertTrue(current.isFile());
+    Assert.assertEquals("content", FileUtils.readFileToString(current, "UTF-8"));
+  }
+
+  @Test
+  public void testDeduplicationReplacesContent() throws Exception {
+    repo.contentStore = ContentStore.create(new File(repo.rootDirectory));
+    Assume.assumeNotNull(repo.contentStore);
+
+    repo.put("mp-1", "element-1", "file.txt", new ByteArrayInputStream("first".getBytes("UTF-8")));
+    File first = repo.contentStore.getBlob(repo.getMediaPackageElementDigest("mp-1", "element-1"));
+    repo.put("mp-1", "element-1", "file.txt", new ByteArrayInputStream("second".getBytes("UTF-8")));
+    File second = repo.contentStore.getBlob(repo.getMediaPackageElementDigest("mp-1", "element-1"));
+
+    Assert.assertFalse(first.exists());
+    Assert.assertTrue(second.isFile());
+    InputStream in = repo.get("mp-1", "element-1");
+    try {
+      Assert.assertEquals("second", IOUtils.toString(in, "UTF-8"));
+    } finally {
+      IOUtils.closeQuietly(in);
+    }
+  }
+
+  @Test
+  public void testMoveIntoCollection() throws Exception {
+    File file = new File(repo.rootDirectory, "encoded.gif");
+    try (InputStream in = getClass().getClassLoader().getResourceAsStream("opencast_header.gif")) {
+      FileUtils.copyInputStreamToFile(in, file);
+    }
+    String md5 = DigestUtils.md5Hex(FileUtils.readFileToByteArray(file));
+    Object fileKey = Files.readAttributes(file.toPath(), BasicFileAttributes.class).fileKey();
+
+    repo.moveIntoCollection(collectionId, filename, file);
+
+    // The file has been renamed instead of being copied, and its hash has been stored
+    Assert.assertFalse(file.exists());
+    File stored = repo.getFileFromCollection(collectionId, filename);
+    if (fileKey != null)
+      Assert.assertEquals(fileKey, Files.readAttributes(stored.toPath(), BasicFileAttributes.class).fileKey());
+    Assert.assertEquals(md5, FileUtils.readFileToString(new File(stored.getPath() + ".md5"), "UTF-8"));
+    Assert.assertEquals(1, repo.getCollectionSize(collectionId));
+  }
+
+  @Test
+  public void testMoveIntoCollectionDeduplicated() throws Exception {
+    repo.contentStore = ContentStore.create(new File(repo.rootDirectory));
+    Assume.assumeNotNull(repo.contentStore);
+
+    InputStream in = null;
+    try {
+      in = getClass().getClassLoader().getResourceAsStream("opencast_header.gif");
+      repo.putInCollection(collectionId, "dedup.gif", in);
+    } finally {
+      IOUtils.closeQuietly(in);
+    }
+    File file = new File(repo.rootDirectory, "encoded.gif");
+    try (InputStream header = getClass().getClassLoader().getResourceAsStream("opencast_header.gif")) {
+      FileUtils.copyInputStreamToFile(header, file);
+    }
+
+    repo.moveIntoCollection(collectionId, "moved.gif", file);
+
+    // The moved file references the blob stored already
+    Assert.assertFalse(file.exists());
+    Assert.assertTrue(Files.isSameFile(repo.getFileFromCollection(collectionId, "dedup.gif").toPath(),
+            repo.getFileFromCollection(collectionId, "moved.gif").toPath()));
+  }
+
 }
@@ -23,12 +23,15 @@ package org.opencastproject.workspace.api;
 
 import org.opencastproject.mediapackage.identifier.Id;
 import org.opencastproject.storage.StorageUsage;
+import org.opencastproject.util.Checksum;
 import org.opencastproject.util.NotFoundException;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
+import java.nio.file.Files;
 
 /**
  * Provides efficient access java.io.File objects from potentially remote URIs. This helper service prevents different
@@ -81,6 +84,18 @@ public interface Workspace extends StorageUsage {
    */
   InputStream read(URI uri) throws NotFoundException, IOException;
 
+  /**
+   * Returns the checksum of the resource at the given URI if it is known without reading the resource, e.g. because the
+   * working file repository computed it when the file was stored.
+   *
+   * @param uri
+   *          URI identifying the resource
+   * @return the checksum or <code>null</code> if it would have to be computed from the content
+   */
+  default Checksum getChecksum(URI uri) {
+    return null;
+  }
+
 
   /**
    * Gets the base URI for files stored using this service.
@@ -122,6 +137,34 @@ public interface Workspace extends StorageUsage {
   URI putInCollection(String collectionId, String fileName, InputStream in) throws IOException,
           IllegalArgumentException;
 
+  /**
+   * Moves a local file into the given collection, overwriting any data with the same collection id and file name. This
+   * is meant for files created by a service, e.g. encoder output: if the file is located on the same file system as the
+   * working file repository, it is renamed or hard linked instead of being copied. The file does not exist at its
+   * original location afterwards.
+   *
+   * @param collectionId
+   *          The collection to use for storing this data
+   * @param fileName
+   *          the filename to use in the collection.
+   * @param file
+   *          the file to store
+   * @return the URI of the stored data
+   * @throws IOException
+   *           if reading the file or writing the data to the workspace fails
+   * @throws IllegalArgumentException
+   *           if a URI cannot be created using the arguments provided
+   */
+  default URI moveIntoCollection(String collectionId, String fileName, File file) throws IOException,
+          IllegalArgumentException {
+    final URI uri;
+    try (InputStream in = new FileInputStream(file)) {
+      uri = putInCollection(collectionId, fileName, in);
+    }
+    Files.deleteIfExists(file.toPath());
+    return uri;
+  }
+
   /**
    * Gets the URIs of the members of this collection
    *
@@ -0,0 +1,264 @@
+/**
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.workspace.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Persistent index of the digests of the files in the workspace.
+ * <p>
+ * The digest of a downloaded file is recorded together with the file's size and modification date, so the file can be
+ * validated against the remote copy without reading it again. An entry is only returned as long as size and
+ * modification date of the file still match, so files that are changed or replaced behind the workspace's back are
+ * never validated with an outdated digest.
+ * <p>
+ * The index is kept in memory and persisted as an append-only log. The log is compacted when it is loaded and once
+ * most of its records are outdated.
+ */
+final class DigestIndex {
+
+  /** The logging facility */
+  private static final Logger logger = LoggerFactory.getLogger(DigestIndex.class);
+
+  /** The field separator in the index file */
+  private static final char SEPARATOR = '\t';
+
+  /** The digest written to the index file to mark a removed entry */
+  private static final String REMOVED = "-";
+
+  /** The minimum number of outdated records in the index file before it is compacted while in use */
+  static final int COMPACT_THRESHOLD = 1000;
+
+  /** The index file */
+  private final File file;
+
+  /** The entries by absolute file path */
+  private final Map<String, Entry> entries = new HashMap<>();
+
+  /** The open index file, <code>null</code> until the first entry is written */
+  private Writer writer = null;
+
+  /** The number of records in the index file */
+  private int records = 0;
+
+  /**
+   * Creates a digest index that is persisted to the given file. Existing entries are loaded from the file.
+   *
+   * @param file
+   *          the index file
+   */
+  DigestIndex(File file) {
+    this.file = file;
+    load();
+  }
+
+  /**
+   * Returns the index file.
+   *
+   * @return the file
+   */
+  File getFile() {
+    return file;
+  }
+
+  /**
+   * Returns the recorded digest of the given file if the file has not been changed since.
+   *
+   * @param f
+   *          the workspace file
+   * @return the digest or <code>null</code> if unknown
+   */
+  synchronized String get(File f) {
+    String path = f.getAbsolutePath();
+    Entry entry = entries.get(path);
+    if (entry == null)
+      return null;
+    if (entry.matches(f))
+      return entry.digest;
+    entries.remove(path);
+    return null;
+  }
+
+  /**
+   * Records the digest of the given file in its current state.
+   *
+   * @param f
+   *          the workspace file
+   * @param digest
+   *          the digest
+   */
+  synchronized void put(File f, String digest) {
+    if (digest == null || digest.indexOf(SEPARATOR) > -1 || digest.indexOf('\n') > -1 || !f.isFile())
+      return;
+    Entry entry = new Entry(digest, f.length(), f.lastModified());
+    entries.put(f.getAbsolutePath(), entry);
+    append(f.getAbsolutePath(), entry);
+  }
+
+  /**
+   * Removes the digest of the given file.
+   *
+   * @param f
+   *          the workspace file
+   */
+  synchronized void remove(File f) {
+    if (entries.remove(f.getAbsolutePath()) != null)
+      append(f.getAbsolutePath(), new Entry(REMOVED, 0, 0));
+  }
+
+  /**
+   * Removes the digests of all files within the given directory.
+   *
+   * @param dir
+   *          the workspace directory
+   */
+  synchronized void removeAll(File dir) {
+    String prefix = dir.getAbsolutePath() + File.separator;
+    entries.keySet().removeIf(path -> path.startsWith(prefix));
+    // Outdated records are dropped on compaction, there is no need to mark each of them as removed
+    compactIfOutdated();
+  }
+
+  /** Closes the index file. */
+  synchronized void close() {
+    if (writer != null) {
+      try {
+        writer.close();
+      } catch (IOException e) {
+        logger.debug("Unable to close workspace digest index {}", file, e);
+      }
+      writer = null;
+    }
+  }
+
+  private void append(String path, Entry entry) {
+    try {
+      if (writer == null) {
+        Files.createDirectories(file.getParentFile().toPath());
+        writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND);
+      }
+      writer.write(entry.digest + SEPARATOR + entry.size + SEPARATOR + entry.lastModified + SEPARATOR + path + '\n');
+      writer.flush();
+      records++;
+    } catch (IOException e) {
+      logger.warn("Unable to write to workspace digest index {}: {}", file, e.getMessage());
+      close();
+    }
+    compactIfOutdated();
+  }
+
+  /** Compacts the index file if the outdated records exceed both the threshold and the current entries. */
+  private void compactIfOutdated() {
+    int outdated = records - entries.size();
+    if (outdated >= COMPACT_THRESHOLD && outdated > entries.size()) {
+      logger.debug("Compacting workspace digest index {} with {} outdated records", file, outdated);
+      close();
+      compact();
+    }
+  }
+
+  /** Loads the index file and compacts it if it contains outdated records. */
+  private void load() {
+    if (!file.isFile())
+      return;
+    try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        String[] fields = line.split(String.valueOf(SEPARATOR), 4);
+        if (fields.length != 4)
+          continue;
+        records++;
+        if (REMOVED.equals(fields[0])) {
+          entries.remove(fields[3]);
+          continue;
+        }
+        try {
+          entries.put(fields[3], new Entry(fields[0], Long.parseLong(fields[1]), Long.parseLong(fields[2])));
+        } catch (NumberFormatException e) {
+          logger.debug("Skipping invalid workspace digest index record {}", line);
+        }
+      }
+    } catch (IOException e) {
+      logger.warn("Unable to read workspace digest index {}: {}", file, e.getMessage());
+      entries.clear();
+      records = 0;
+      return;
+    }
+
+    // Drop entries of files that are gone or have been modified
+    entries.entrySet().removeIf(e -> !e.getValue().matches(new File(e.getKey())));
+    logger.debug("Loaded {} digests from workspace digest index {}", entries.size(), file);
+    if (records > entries.size())
+      compact();
+  }
+
+  /** Rewrites the index file so it only contains the current entries. */
+  private void compact() {
+    File tmp = new File(file.getPath() + ".tmp");
+    try {
+      try (BufferedWriter out = Files.newBufferedWriter(tmp.toPath(), StandardCharsets.UTF_8)) {
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+          Entry entry = e.getValue();
+          out.write(entry.digest + SEPARATOR + entry.size + SEPARATOR + entry.lastModified + SEPARATOR + e.getKey()
+                  + '\n');
+        }
+      }
+      Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      records = entries.size();
+    } catch (IOException e) {
+      logger.warn("Unable to compact workspace digest index {}: {}", file, e.getMessage());
+      tmp.delete();
+    }
+  }
+
+  /** A recorded digest along with the state of the file it was recorded for. */
+  private static final class Entry {
+    private final String digest;
+    private final long size;
+    private final long lastModified;
+
+    private Entry(String digest, long size, long lastModified) {
+      this.digest = digest;
+      this.size = size;
+      this.lastModified = lastModified;
+    }
+
+    private boolean matches(File f) {
+      return f.isFile() && f.length() == size && f.lastModified() == lastModified;
+    }
+  }
+
+}
@@ -22,6 +22,9 @@
 package org.opencastproject.workspace.impl;
 
 import static java.lang.String.format;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
 import static javax.servlet.http.HttpServletResponse.SC_NOT_FOUND;
 import static javax.servlet.http.HttpServletResponse.SC_OK;
 import static org.opencastproject.util.EqualsUtil.ne;
@@ -38,9 +41,13 @@ import static org.opencastproject.util.data.Prelude.sleep;
 import org.opencastproject.assetmanager.util.AssetPathUtils;
 import org.opencastproject.assetmanager.util.DistributionPathUtils;
 import org.opencastproject.mediapackage.identifier.Id;
+import org.opencastproject.security.api.Organization;
 import org.opencastproject.security.api.SecurityService;
 import org.opencastproject.security.api.TrustedHttpClient;
 import org.opencastproject.security.api.TrustedHttpClientException;
+import org.opencastproject.security.api.User;
+import org.opencastproject.util.Checksum;
+import org.opencastproject.util.ChecksumType;
 import org.opencastproject.util.FileSupport;
 import org.opencastproject.util.HttpUtil;
 import org.opencastproject.util.IoSupport;
@@ -57,12 +64,13 @@ import org.opencastproject.workingfilerepository.api.WorkingFileRepository;
 import org.opencastproject.workspace.api.Workspace;
 import org.opencastproject.workspace.impl.jmx.WorkspaceBean;
 
+import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.input.TeeInputStream;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.http.Header;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.utils.URIBuilder;
@@ -80,16 +88,31 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import javax.management.ObjectInstance;
 import javax.servlet.http.HttpServletResponse;
@@ -123,6 +146,31 @@ public final class WorkspaceImpl implements Workspace {
   public static final String WORKSPACE_CLEANUP_PERIOD_KEY = "org.opencastproject.workspace.cleanup.period";
   /** Configuration key for garbage collection max age. */
   public static final String WORKSPACE_CLEANUP_MAX_AGE_KEY = "org.opencastproject.workspace.cleanup.max.age";
+  /** Configuration key for the number of parallel requests used to download a large file. */
+  public static final String WORKSPACE_DOWNLOAD_THREADS_KEY = "org.opencastproject.workspace.download.threads";
+  /** Configuration key for the size of the chunks a large file is downloaded in, in bytes. */
+  public static final String WORKSPACE_DOWNLOAD_CHUNK_SIZE_KEY = "org.opencastproject.workspace.download.chunk.size";
+
+  /** The default number of parallel requests used to download a large file */
+  private static final int DEFAULT_DOWNLOAD_THREADS = 4;
+
+  /** The default size of the chunks a large file is downloaded in */
+  private static final long DEFAULT_DOWNLOAD_CHUNK_SIZE = 64L * 1024L * 1024L;
+
+  /** The maximum number of bytes transferred to a file at once */
+  private static final long TRANSFER_SIZE = 8L * 1024L * 1024L;
+
+  /** The extension of the files the working file repository keeps the md5 of a file in */
+  private static final String WFR_MD5_EXTENSION = ".md5";
+
+  /** The name of the digest index file in the workspace root directory */
+  private static final String DIGEST_INDEX_FILENAME = ".digests";
+
+  /** Pattern matching the value of a Content-Range header */
+  private static final Pattern CONTENT_RANGE = Pattern.compile("bytes\\s+(\\d+)-(\\d+)/(\\d+)");
+
+  /** Pattern matching a hex encoded md5 */
+  private static final Pattern MD5_PATTERN = Pattern.compile("[0-9a-fA-F]{32}");
 
   /** Workspace JMX type */
   private static final String JMX_WORKSPACE_TYPE = "Workspace";
@@ -168,6 +216,18 @@ public final class WorkspaceImpl implements Workspace {
   /** The workspce cleaner */
   private WorkspaceCleaner workspaceCleaner = null;
 
+  /** The digests of the downloaded files */
+  private DigestIndex digestIndex = null;
+
+  /** The number of parallel requests used to download a large file, downloads are not split if less than two */
+  private int downloadThreads = DEFAULT_DOWNLOAD_THREADS;
+
+  /** The size of the chunks a large file is downloaded in */
+  private long downloadChunkSize = DEFAULT_DOWNLOAD_CHUNK_SIZE;
+
+  /** The executor downloading the chunks of large files */
+  private ExecutorService downloadExecutor = null;
+
   public WorkspaceImpl() {
   }
 
@@ -230,6 +290,9 @@ public final class WorkspaceImpl implements Workspace {
       }
     }
 
+    // Load the digests of the files downloaded earlier
+    digestIndex = new DigestIndex(new File(wsRoot, DIGEST_INDEX_FILENAME));
+
     // Test whether hard linking between working file repository and workspace is possible
     if (pathMappable != null) {
       String wfrRoot = pathMappable.getPathPrefix();
@@ -289,6 +352,31 @@ public final class WorkspaceImpl implements Workspace {
       }
     }
 
+    // Downloads of large files
+    if (ensureContextProp(cc, WORKSPACE_DOWNLOAD_THREADS_KEY)) {
+      String threads = cc.getBundleContext().getProperty(WORKSPACE_DOWNLOAD_THREADS_KEY);
+      try {
+        downloadThreads = Integer.parseInt(threads);
+      } catch (NumberFormatException e) {
+        logger.warn("Invalid configuration for the number of parallel downloads ({}={})",
+                WORKSPACE_DOWNLOAD_THREADS_KEY, threads);
+      }
+    }
+    if (ensureContextProp(cc, WORKSPACE_DOWNLOAD_CHUNK_SIZE_KEY)) {
+      String chunkSize = cc.getBundleContext().getProperty(WORKSPACE_DOWNLOAD_CHUNK_SIZE_KEY);
+      try {
+        downloadChunkSize = Long.parseLong(chunkSize);
+      } catch (NumberFormatException e) {
+        logger.warn("Invalid configuration for the download chunk size ({}={})",
+                WORKSPACE_DOWNLOAD_CHUNK_SIZE_KEY, chunkSize);
+      }
+    }
+    if (downloadThreads > 1 && downloadChunkSize > 0) {
+      downloadExecutor = Executors.newFixedThreadPool(downloadThreads - 1);
+      logger.info("Downloading files in chunks of {} bytes using up to {} parallel requests", downloadChunkSize,
+              downloadThreads);
+    }
+
     registeredMXBean = JmxUtil.registerMXBean(workspaceBean, JMX_WORKSPACE_TYPE);
 
     // Start cleanup scheduler if we have sensible cleanup values:
@@ -328,6 +416,13 @@ public final class WorkspaceImpl implements Workspace {
     if (workspaceCleaner != null) {
       workspaceCleaner.shutdown();
     }
+    if (downloadExecutor != null) {
+      downloadExecutor.shutdownNow();
+      downloadExecutor = null;
+    }
+    if (digestIndex != null) {
+      digestIndex.close();
+    }
   }
 
   @Override
@@ -416,6 +511,34 @@ public final class WorkspaceImpl implements Workspace {
     return new DeleteOnCloseFileInputStream(get(uri, true));
   }
 
+  @Override
+  public Checksum getChecksum(final URI uri) {
+    String md5 = null;
+    // the working file repository stores the md5 of each file next to it
+    if (pathMappable != null && StringUtils.isNotBlank(pathMappable.getPathPrefix())
+            && StringUtils.isNotBlank(pathMappable.getUrlPrefix())
+            && uri.toString().startsWith(pathMappable.getUrlPrefix())) {
+      final File wfrCopy = workingFileRepositoryFile(uri.toString().substring(pathMappable.getUrlPrefix().length()));
+      final File md5File = new File(wfrCopy.getParentFile(), wfrCopy.getName() + WFR_MD5_EXTENSION);
+      if (wfrCopy.isFile() && md5File.isFile()) {
+        try {
+          md5 = StringUtils.trimToNull(FileUtils.readFileToString(md5File, "utf-8"));
+        } catch (IOException e) {
+          logger.debug("Unable to read md5 of {} from {}", uri, md5File, e);
+        }
+      }
+    }
+    // otherwise the digest may have been recorded when the file was downloaded
+    if (md5 == null && digestIndex != null) {
+      md5 = digestIndex.get(toWorkspaceFile(uri));
+    }
+    // entity tags of other servers are not necessarily an md5
+    if (md5 == null || !MD5_PATTERN.matcher(md5).matches())
+      return null;
+    logger.trace("Reusing known md5 {} of {}", md5, uri);
+    return Checksum.create(ChecksumType.DEFAULT_TYPE, md5);
+  }
+
   /** Copy or link <code>src</code> to <code>dst</code>. */
   private void copyOrLink(final File src, final File dst) throws IOException {
     if (linkingEnabled) {
@@ -443,9 +566,9 @@ public final class WorkspaceImpl implements Workspace {
    * @throws IOException
    *           in case of any IO related issues
    */
-  private Either<String, Option<File>> handleDownloadResponse(HttpResponse response, URI src, File dst)
+  private Either<String, Option<File>> handleDownloadResponse(HttpResponse response, HttpGet get, File dst)
           throws IOException {
-    final String url = src.toString();
+    final String url = get.getURI().toString();
     final int status = response.getStatusLine().getStatusCode();
     switch (status) {
       case HttpServletResponse.SC_NOT_FOUND:
@@ -459,6 +582,9 @@ public final class WorkspaceImpl implements Workspace {
       case HttpServletResponse.SC_OK:
         logger.debug("Downloading {} to {}", url, dst.getAbsolutePath());
         return right(some(downloadTo(response, dst)));
+      case HttpServletResponse.SC_PARTIAL_CONTENT:
+        logger.debug("Downloading {} to {} in chunks", url, dst.getAbsolutePath());
+        return right(some(downloadChunks(response, get.getURI(), dst)));
       default:
         logger.warn("Received unexpected response status {} while trying to download from {}", status, url);
         FileUtils.deleteQuietly(dst);
@@ -466,8 +592,12 @@ public final class WorkspaceImpl implements Workspace {
     }
   }
 
-  /** Create a get request to the given URI. */
-  private HttpGet createGetRequest(final URI src, final File dst, final Map<String, String> params) throws IOException {
+  /**
+   * Create a get request to the given URI. If <code>chunked</code> is set, only the first chunk is requested, and the
+   * rest of the file is downloaded in parallel if the server supports range requests.
+   */
+  private HttpGet createGetRequest(final URI src, final File dst, final Map<String, String> params,
+          final boolean chunked) throws IOException {
     try {
       URIBuilder builder = new URIBuilder(src.toString());
       for (Map.Entry<String, String> param : params.entrySet()) {
@@ -476,7 +606,10 @@ public final class WorkspaceImpl implements Workspace {
       final HttpGet get = new HttpGet(builder.build());
       // if the destination file already exists add the If-None-Match header
       if (dst.isFile() && dst.length() > 0) {
-        get.setHeader("If-None-Match", md5(dst));
+        get.setHeader("If-None-Match", digest(dst));
+      }
+      if (chunked) {
+        get.setHeader("Range", "bytes=0-" + (downloadChunkSize - 1));
       }
       return get;
     } catch (URISyntaxException e) {
@@ -491,12 +624,27 @@ public final class WorkspaceImpl implements Workspace {
    * @return the file
    */
   private File downloadIfNecessary(final URI src, final File dst) throws IOException, NotFoundException {
-    HttpGet get = createGetRequest(src, dst, Collections.emptyMap());
+    boolean chunked = downloadExecutor != null;
+    Map<String, String> params = Collections.emptyMap();
+    HttpGet get = createGetRequest(src, dst, params, chunked);
     while (true) {
       // run the http request and handle its response
+      HttpResponse response = null;
       try {
-        final Either<String, Option<File>> result = handleDownloadResponse(
-            trustedHttpClient.execute(get), src, dst);
+        response = trustedHttpClient.execute(get);
+        final Either<String, Option<File>> result;
+        try {
+          result = handleDownloadResponse(response, get, dst);
+        } catch (IOException e) {
+          if (!chunked)
+            throw e;
+          // try again without splitting the download
+          logger.warn("Downloading {} in chunks failed, downloading it at once: {}", src, e.getMessage());
+          FileUtils.deleteQuietly(dst);
+          chunked = false;
+          get = createGetRequest(src, dst, params, false);
+          continue;
+        }
         for (Option<File> ff : result.right()) {
           for (File f : ff) {
             return f;
@@ -507,12 +655,15 @@ public final class WorkspaceImpl implements Workspace {
         }
         // left: file will be ready later
         for (String token : result.left()) {
-          get = createGetRequest(src, dst, Collections.singletonMap("token", token));
+          params = Collections.singletonMap("token", token);
+          get = createGetRequest(src, dst, params, chunked);
           sleep(60000);
         }
       } catch (TrustedHttpClientException e) {
         FileUtils.deleteQuietly(dst);
         throw new NotFoundException(String.format("Could not copy %s to %s", src, dst.getAbsolutePath()), e);
+      } finally {
+        close(response);
       }
     }
   }
@@ -531,21 +682,214 @@ public final class WorkspaceImpl implements Workspace {
   }
 
   /**
-   * Download content of an HTTP response to a file.
+   * Download content of an HTTP response to a file. The md5 of the content is computed while it is being written, so
+   * that neither the next conditional request nor consumers asking for {@link #getChecksum(URI)} need to read the file
+   * again.
    *
    * @return the destination file
    */
-  private static File downloadTo(final HttpResponse response, final File dst) throws IOException {
-    // ignore return value
-    dst.createNewFile();
-    try (InputStream in = response.getEntity().getContent()) {
-      try (OutputStream out = new FileOutputStream(dst)) {
-        IOUtils.copyLarge(in, out);
+  private File downloadTo(final HttpResponse response, final File dst) throws IOException {
+    final String etag = getETag(response);
+    final MessageDigest md5 = DigestUtils.getMd5Digest();
+    try (InputStream in = new DigestInputStream(response.getEntity().getContent(), md5)) {
+      try (FileChannel out = FileChannel.open(dst.toPath(), CREATE, WRITE, TRUNCATE_EXISTING)) {
+        transfer(in, out, 0);
+      }
+    }
+    final String digest = Hex.encodeHexString(md5.digest());
+    if (etag != null && !MD5_PATTERN.matcher(etag).matches()) {
+      // keep the entity tag of servers not using the md5, so the file can still be validated with them
+      recordDigest(dst, etag);
+    } else {
+      if (etag != null && !etag.equalsIgnoreCase(digest))
+        logger.warn("Content of {} does not match its entity tag {}", dst, etag);
+      recordDigest(dst, digest);
+    }
+    return dst;
+  }
+
+  /**
+   * Download a file in chunks. The response contains the first chunk, the remaining chunks are requested in parallel
+   * and written to their position in the file.
+   *
+   * @param response
+   *          the partial response to the request for the first chunk
+   * @param uri
+   *          the URI to request the remaining chunks from
+   * @param dst
+   *          the destination file
+   * @return the destination file
+   * @throws IOException
+   *           if the response isn't what was asked for or any chunk can't be downloaded
+   */
+  private File downloadChunks(final HttpResponse response, final URI uri, final File dst) throws IOException {
+    final long[] range = getContentRange(response);
+    if (range == null || range[0] != 0)
+      throw new IOException("Unexpected content range in response from " + uri);
+    final long total = range[2];
+    final String etag = getETag(response);
+
+    final List<Future<Long>> chunks = new ArrayList<>();
+    try (FileChannel out = FileChannel.open(dst.toPath(), CREATE, WRITE, TRUNCATE_EXISTING)) {
+      if (total > range[1] + 1) {
+        // Allocate the file so the chunks can be written to their position
+        out.write(ByteBuffer.allocate(1), total - 1);
+        for (long start = range[1] + 1; start < total; start += downloadChunkSize) {
+          final long end = Math.min(start + downloadChunkSize, total) - 1;
+          chunks.add(downloadExecutor.submit(inSecurityContext(downloadChunk(uri, out, start, end, etag))));
+        }
+        logger.debug("Downloading {} bytes from {} in {} chunks", total, uri, chunks.size() + 1);
+      }
+
+      // The first chunk is being received already
+      try (InputStream in = response.getEntity().getContent()) {
+        if (transfer(in, out, 0) != range[1] + 1)
+          throw new IOException("Incomplete first chunk received from " + uri);
+      }
+      for (Future<Long> chunk : chunks) {
+        chunk.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while downloading " + uri, e);
+    } catch (ExecutionException e) {
+      throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+    } finally {
+      for (Future<Long> chunk : chunks) {
+        chunk.cancel(true);
       }
     }
+    recordDigest(dst, etag);
     return dst;
   }
 
+  /**
+   * Returns a task downloading a single chunk of a file.
+   *
+   * @return the task, which returns the number of bytes written
+   */
+  private Callable<Long> downloadChunk(final URI uri, final FileChannel out, final long start, final long end,
+          final String etag) {
+    return () -> {
+      final HttpGet get = new HttpGet(uri);
+      get.setHeader("Range", "bytes=" + start + "-" + end);
+      HttpResponse response = null;
+      try {
+        response = trustedHttpClient.execute(get);
+        final long[] range = getContentRange(response);
+        if (response.getStatusLine().getStatusCode() != HttpServletResponse.SC_PARTIAL_CONTENT || range == null
+                || range[0] != start || range[1] != end)
+          throw new IOException(format("Server did not return bytes %d-%d of %s", start, end, uri));
+        if (etag != null && !etag.equals(getETag(response)))
+          throw new IOException(format("%s changed while downloading it", uri));
+        try (InputStream in = response.getEntity().getContent()) {
+          final long transferred = transfer(in, out, start);
+          if (transferred != end - start + 1)
+            throw new IOException(format("Incomplete chunk %d-%d received from %s", start, end, uri));
+          return transferred;
+        }
+      } catch (TrustedHttpClientException e) {
+        throw new IOException(e);
+      } finally {
+        close(response);
+      }
+    };
+  }
+
+  /** Wraps a task so it runs with the organization and user of the calling thread. */
+  private <A> Callable<A> inSecurityContext(final Callable<A> task) {
+    final Organization org = securityService.getOrganization();
+    final User user = org != null ? securityService.getUser() : null;
+    return () -> {
+      securityService.setOrganization(org);
+      securityService.setUser(user);
+      try {
+        return task.call();
+      } finally {
+        securityService.setOrganization(null);
+        securityService.setUser(null);
+      }
+    };
+  }
+
+  /**
+   * Transfers the content of a stream to a file, starting at the given position.
+   *
+   * @return the number of bytes transferred
+   */
+  private static long transfer(final InputStream in, final FileChannel out, final long position) throws IOException {
+    final ReadableByteChannel source = Channels.newChannel(in);
+    long transferred = 0;
+    long n;
+    while ((n = out.transferFrom(source, position + transferred, TRANSFER_SIZE)) > 0) {
+      transferred += n;
+    }
+    return transferred;
+  }
+
+  /**
+   * Parses the Content-Range header of a response.
+   *
+   * @return first byte, last byte and total length or <code>null</code> if the header is missing or not understood
+   */
+  private static long[] getContentRange(final HttpResponse response) {
+    final Header header = response.getFirstHeader("Content-Range");
+    if (header == null)
+      return null;
+    final Matcher matcher = CONTENT_RANGE.matcher(header.getValue().trim());
+    if (!matcher.matches())
+      return null;
+    return new long[] { Long.parseLong(matcher.group(1)), Long.parseLong(matcher.group(2)),
+            Long.parseLong(matcher.group(3)) };
+  }
+
+  /**
+   * Returns the entity tag of a response without quotes. The working file repository uses the md5 of the file as
+   * entity tag and expects it to be sent back unquoted in the If-None-Match header.
+   *
+   * @return the entity tag or <code>null</code> if the response does not have one
+   */
+  private static String getETag(final HttpResponse response) {
+    final Header header = response.getFirstHeader("ETag");
+    if (header == null)
+      return null;
+    return StringUtils.trimToNull(StringUtils.strip(StringUtils.removeStart(header.getValue().trim(), "W/"), "\""));
+  }
+
+  /** Records the digest of a downloaded file or removes an outdated one. */
+  private void recordDigest(final File file, final String digest) {
+    if (digestIndex == null)
+      return;
+    if (digest != null)
+      digestIndex.put(file, digest);
+    else
+      digestIndex.remove(file);
+  }
+
+  /**
+   * Returns the digest of a workspace file, which is sent to the server to check whether the file is up to date. The
+   * file is only read if its digest hasn't been recorded yet.
+   */
+  private String digest(final File file) throws IOException {
+    String digest = digestIndex != null ? digestIndex.get(file) : null;
+    if (digest == null) {
+      digest = md5(file);
+      recordDigest(file, digest);
+    }
+    return digest;
+  }
+
+  /** Closes a response, if any. */
+  private void close(final HttpResponse response) {
+    if (response == null)
+      return;
+    try {
+      trustedHttpClient.close(response);
+    } catch (IOException e) {
+      logger.debug("Unable to close response", e);
+    }
+  }
+
   /**
    * Returns the md5 of a file
    *
@@ -603,6 +947,8 @@ public final class WorkspaceImpl implements Workspace {
       synchronized (lock) {
         File mpElementDir = f.getParentFile();
         FileUtils.forceDelete(f);
+        if (digestIndex != null)
+          digestIndex.remove(f);
 
         // Remove containing folder if a mediapackage element or a not a static collection
         if (isMediaPackage || !isStaticCollection(collectionId))
@@ -704,6 +1050,39 @@ public final class WorkspaceImpl implements Workspace {
     return uri;
   }
 
+  @Override
+  public URI moveIntoCollection(String collectionId, String fileName, File file) throws IOException {
+    String safeFileName = PathSupport.toSafeName(fileName);
+    URI uri = wfr.getCollectionURI(collectionId, fileName);
+
+    File workspaceFile = null;
+    try {
+      synchronized (lock) {
+        workspaceFile = toWorkspaceFile(uri);
+        FileUtils.forceMkdir(workspaceFile.getParentFile());
+      }
+
+      // Let the working file repository adopt the file and link it into the workspace, or keep the file as the
+      // workspace copy and upload it from there
+      if (linkingEnabled) {
+        wfr.moveIntoCollection(collectionId, fileName, file);
+        File workingFileRepoDirectory = workingFileRepositoryFile(WorkingFileRepository.COLLECTION_PATH_PREFIX,
+                collectionId);
+        FileSupport.link(new File(workingFileRepoDirectory, safeFileName), workspaceFile, true);
+      } else {
+        Files.move(file.toPath(), workspaceFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        try (InputStream in = new FileInputStream(workspaceFile)) {
+          wfr.putInCollection(collectionId, fileName, in);
+        }
+      }
+    } catch (IOException e) {
+      FileUtils.deleteQuietly(workspaceFile);
+      throw e;
+    }
+    waitForResource(uri, HttpServletResponse.SC_OK, "File %s does not appear in WFR");
+    return uri;
+  }
+
   @Override
   public URI getURI(String mediaPackageID, String mediaPackageElementID) {
     return wfr.getURI(mediaPackageID, mediaPackageElementID);
@@ -916,7 +1295,9 @@ public final class WorkspaceImpl implements Workspace {
 
     long now = new Date().getTime();
     for (File file: FileUtils.listFiles(workspaceDirectory, null, true)) {
-      long fileLastModified = file.lastModified();
+      if (digestIndex != null && file.equals(digestIndex.getFile()))
+        continue;
+      long fileLastModified = getLastChanged(file);
       // Ensure file/dir is older than maxAge
       long fileAgeInSeconds = (now - fileLastModified) / 1000;
       if (fileLastModified == 0 || fileAgeInSeconds < maxAgeInSeconds) {
@@ -926,6 +1307,8 @@ public final class WorkspaceImpl implements Workspace {
 
       // Delete old files
       if (FileUtils.deleteQuietly(file)) {
+        if (digestIndex != null)
+          digestIndex.remove(file);
         logger.info("Deleted {}", file);
       } else {
         logger.warn("Could not delete {}", file);
@@ -934,6 +1317,27 @@ public final class WorkspaceImpl implements Workspace {
     logger.info("Finished cleanup of workspace");
   }
 
+  /**
+   * Returns the time a file has been put into the workspace. Files linked from the working file repository are hard
+   * links to content which may have been stored long ago and keep its modification time. Creating a link changes the
+   * status of the file though, so the later of both times is used.
+   *
+   * @param file
+   *          the file
+   * @return the time the file has been put into the workspace or <code>0</code> if unknown
+   */
+  private static long getLastChanged(File file) {
+    final long lastModified = file.lastModified();
+    if (lastModified == 0)
+      return 0;
+    try {
+      final FileTime changed = (FileTime) Files.getAttribute(file.toPath(), "unix:ctime");
+      return Math.max(lastModified, changed.toMillis());
+    } catch (IOException | UnsupportedOperationException | IllegalArgumentException e) {
+      return lastModified;
+    }
+  }
+
   @Override
   public void cleanup(Id mediaPackageId) throws IOException {
     cleanup(mediaPackageId, false);
@@ -951,6 +1355,8 @@ public final class WorkspaceImpl implements Workspace {
       logger.debug("Clean workspace media package directory {}", mediaPackageDir);
       FileUtils.deleteDirectory(mediaPackageDir);
     }
+    if (digestIndex != null)
+      digestIndex.removeAll(mediaPackageDir);
   }
 
   @Override
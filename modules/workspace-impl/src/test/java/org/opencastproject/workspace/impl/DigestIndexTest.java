@@ -0,0 +1,95 @@
+/**
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ *
+ * The Apereo Foundation licenses this file to you under the Educational
+ * Community License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at:
+ *
+ *   http://opensource.org/licenses/ecl2.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package org.opencastproject.workspace.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+public class DigestIndexTest {
+
+  @Rule
+  public TemporaryFolder testFolder = new TemporaryFolder();
+
+  private File root;
+  private DigestIndex index;
+
+  @Before
+  public void setUp() throws Exception {
+    root = testFolder.newFolder();
+    index = new DigestIndex(new File(root, "digests"));
+  }
+
+  @After
+  public void tearDown() {
+    index.close();
+  }
+
+  @Test
+  public void testCompactionWhileInUse() throws Exception {
+    File f = new File(root, "file.txt");
+    FileUtils.writeStringToFile(f, "content", StandardCharsets.UTF_8);
+
+    // Recording the digest again and again must not make the index file grow without bounds
+    for (int i = 0; i < DigestIndex.COMPACT_THRESHOLD * 3; i++) {
+      index.put(f, "digest" + i);
+    }
+    assertTrue(lines() <= DigestIndex.COMPACT_THRESHOLD + 1);
+    assertEquals("digest" + (DigestIndex.COMPACT_THRESHOLD * 3 - 1), index.get(f));
+
+    // Records are still appended after compaction
+    index.put(f, "latest");
+    index.close();
+    assertEquals("latest", new DigestIndex(index.getFile()).get(f));
+  }
+
+  @Test
+  public void testRemoveAll() throws Exception {
+    File dir = new File(root, "mediapackage");
+    File f = new File(dir, "file.txt");
+    File other = new File(root, "other.txt");
+    FileUtils.writeStringToFile(f, "content", StandardCharsets.UTF_8);
+    FileUtils.writeStringToFile(other, "content", StandardCharsets.UTF_8);
+    index.put(f, "digest");
+    index.put(other, "other");
+
+    index.removeAll(dir);
+    assertNull(index.get(f));
+    assertEquals("other", index.get(other));
+  }
+
+  private long lines() throws Exception {
+    return Files.readAllLines(index.getFile().toPath(), StandardCharsets.UTF_8).size();
+  }
+
+}
@@ -38,10 +38,13 @@ import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
 import org.apache.http.ProtocolVersion;
 import org.apache.http.StatusLine;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.message.BasicHttpResponse;
 import org.apache.http.message.BasicStatusLine;
 import org.easymock.EasyMock;
 import org.junit.After;
@@ -50,6 +53,8 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
+import org.osgi.framework.BundleContext;
+import org.osgi.service.component.ComponentContext;
 
 import java.io.File;
 import java.io.FileInputStream;
@@ -57,6 +62,10 @@ import java.io.InputStream;
 import java.net.URI;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 import javax.servlet.http.HttpServletResponse;
 
@@ -261,6 +270,7 @@ public class WorkspaceImplTest {
     expect(response.getStatusLine())
         .andReturn(new BasicStatusLine(new ProtocolVersion("Http", 1, 1), 200, "Good to go"))
         .anyTimes();
+    expect(response.getFirstHeader(EasyMock.anyString())).andReturn(null).anyTimes();
     expect(response.getEntity()).andReturn(httpEntity);
     TrustedHttpClient trustedHttpClient = EasyMock.createNiceMock(TrustedHttpClient.class);
     expect(trustedHttpClient.execute(anyObject(HttpUriRequest.class))).andReturn(response).anyTimes();
@@ -297,4 +307,66 @@ public class WorkspaceImplTest {
     Assert.assertEquals(0L, workspace.getUsedSpace().get().longValue());
   }
 
+  @Test
+  public void testChunkedDownload() throws Exception {
+    final byte[] content = "0123456789abcdefghijklmnopqrstuvwxy".getBytes(StandardCharsets.UTF_8);
+
+    // Download in chunks of 10 bytes
+    BundleContext bundleContext = EasyMock.createNiceMock(BundleContext.class);
+    expect(bundleContext.getProperty(WorkspaceImpl.WORKSPACE_DOWNLOAD_THREADS_KEY)).andReturn("3").anyTimes();
+    expect(bundleContext.getProperty(WorkspaceImpl.WORKSPACE_DOWNLOAD_CHUNK_SIZE_KEY)).andReturn("10").anyTimes();
+    ComponentContext cc = EasyMock.createNiceMock(ComponentContext.class);
+    expect(cc.getBundleContext()).andReturn(bundleContext).anyTimes();
+    EasyMock.replay(bundleContext, cc);
+    workspace.deactivate();
+    workspace = new WorkspaceImpl(workspaceRoot, false);
+    workspace.activate(cc);
+
+    WorkingFileRepository repo = EasyMock.createNiceMock(WorkingFileRepository.class);
+    expect(repo.getBaseUri()).andReturn(new URI("http://localhost:8080/files")).anyTimes();
+    Organization organization = EasyMock.createNiceMock(Organization.class);
+    expect(organization.getId()).andReturn("org1").anyTimes();
+    SecurityService securityService = EasyMock.createNiceMock(SecurityService.class);
+    expect(securityService.getOrganization()).andReturn(organization).anyTimes();
+    EasyMock.replay(repo, organization, securityService);
+    workspace.setRepository(repo);
+    workspace.setSecurityService(securityService);
+
+    // Serve byte ranges of the content, or nothing if the client sent the right entity tag
+    final List<String> ranges = Collections.synchronizedList(new ArrayList<>());
+    final List<String> entityTags = Collections.synchronizedList(new ArrayList<>());
+    TrustedHttpClient httpClient = EasyMock.createNiceMock(TrustedHttpClient.class);
+    expect(httpClient.execute(anyObject(HttpUriRequest.class))).andAnswer(() -> {
+      HttpUriRequest request = (HttpUriRequest) EasyMock.getCurrentArguments()[0];
+      if (request.getFirstHeader("If-None-Match") != null) {
+        entityTags.add(request.getFirstHeader("If-None-Match").getValue());
+        return new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpServletResponse.SC_NOT_MODIFIED, "Not Modified");
+      }
+      String range = request.getFirstHeader("Range").getValue();
+      ranges.add(range);
+      String[] bounds = range.substring("bytes=".length()).split("-");
+      int start = Integer.parseInt(bounds[0]);
+      int end = Math.min(Integer.parseInt(bounds[1]), content.length - 1);
+      HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpServletResponse.SC_PARTIAL_CONTENT,
+              "Partial Content");
+      response.setHeader("Content-Range", "bytes " + start + "-" + end + "/" + content.length);
+      response.setHeader("ETag", "\"abc\"");
+      response.setEntity(new ByteArrayEntity(Arrays.copyOfRange(content, start, end + 1)));
+      return response;
+    }).anyTimes();
+    EasyMock.replay(httpClient);
+    workspace.setTrustedHttpClient(httpClient);
+
+    URI uri = URI.create("http://foo.com/videos/lecture.mp4");
+    File file = workspace.get(uri);
+    Assert.assertArrayEquals(content, FileUtils.readFileToByteArray(file));
+    Assert.assertEquals(4, ranges.size());
+    Assert.assertTrue(ranges.containsAll(Arrays.asList("bytes=0-9", "bytes=10-19", "bytes=20-29", "bytes=30-34")));
+
+    // The file is validated using the recorded entity tag instead of its md5
+    Assert.assertEquals(file, workspace.get(uri));
+    Assert.assertEquals(Collections.singletonList("abc"), entityTags);
+    Assert.assertArrayEquals(content, FileUtils.readFileToByteArray(file));
+  }
+
 }